@@ -5,7 +5,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 @MetaAnno(
-        value = {"core.intf.IProcess"}
+        value = {"core.intf.IProcess", "core.intf.IMultiInputProcess"}
 )
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
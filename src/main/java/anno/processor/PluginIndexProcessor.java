@@ -0,0 +1,182 @@
+package anno.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * 编译期插件索引：收集 @Input/@Process/@Output 标注的类，
+ * 按 @MetaAnno 声明的接口校验实现关系，并生成 META-INF/etl/plugins.index（domain.type=类名）。
+ * 运行时 Factory 直接加载该索引，不再扫描类路径；校验失败直接导致编译失败。
+ * 增量编译（IDE 只重编部分源文件）时与输出目录中已有的索引合并：本次未编译、且类仍然存在的条目保留。
+ */
+@SupportedAnnotationTypes({"anno.Input", "anno.Process", "anno.Output"})
+public class PluginIndexProcessor extends AbstractProcessor {
+    public static final String INDEX = "META-INF/etl/plugins.index";
+    private static final String META_ANNO = "anno.MetaAnno";
+
+    private final Map<String, String> index = new TreeMap<>();           // domain.type -> 类名
+    private final Map<String, Element> origin = new HashMap<>();         // domain.type -> 首次声明处，用于报告重复
+    private final Set<String> compiled = new HashSet<>();                // 本次编译的顶层类名，旧索引中它们的条目以本次为准
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        for (TypeElement t : ElementFilter.typesIn(env.getRootElements())) {
+            compiled.add(processingEnv.getElementUtils().getBinaryName(t).toString());
+        }
+        for (TypeElement anno : annotations) {
+            String domain = anno.getSimpleName().toString().toLowerCase(Locale.ROOT);
+            List<String> required = requiredInterfaces(anno);
+            for (Element e : env.getElementsAnnotatedWith(anno)) {
+                if (e.getKind() != ElementKind.CLASS) {
+                    error(e, "@" + anno.getSimpleName() + " can only be applied to classes");
+                    continue;
+                }
+                TypeElement cls = (TypeElement) e;
+                if (check(cls, anno, required)) register(domain, typeOf(cls, anno), cls);
+            }
+        }
+        if (env.processingOver()) write();
+        return false;
+    }
+
+    // 插件类必须是公开、非抽象、有公开无参构造，且实现注解要求的接口之一
+    private boolean check(TypeElement cls, TypeElement anno, List<String> required) {
+        String name = cls.getQualifiedName().toString();
+        boolean ok = true;
+        if (!cls.getModifiers().contains(Modifier.PUBLIC) || cls.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(cls, "Plugin " + name + " must be a public, non-abstract class");
+            ok = false;
+        }
+        if (!hasPublicNoArgConstructor(cls)) {
+            error(cls, "Plugin " + name + " must have a public no-arg constructor");
+            ok = false;
+        }
+        if (!required.isEmpty() && !implementsAny(cls, required)) {
+            error(cls, "校验失败，类 " + name + " 未实现要求接口 " + required + " (@" + anno.getSimpleName() + ")");
+            ok = false;
+        }
+        return ok;
+    }
+
+    private void register(String domain, String type, TypeElement cls) {
+        if (type == null || type.isEmpty()) {
+            error(cls, "Plugin " + cls.getQualifiedName() + " has an empty type");
+            return;
+        }
+        String key = domain + "." + type;
+        String name = processingEnv.getElementUtils().getBinaryName(cls).toString();
+        String prev = index.putIfAbsent(key, name);
+        if (prev != null && !prev.equals(name)) {
+            error(cls, "Duplicate " + domain + " plugin type '" + type + "': " + prev + " and " + name);
+            error(origin.get(key), "Duplicate " + domain + " plugin type '" + type + "': " + prev + " and " + name);
+        } else {
+            origin.put(key, cls);
+        }
+    }
+
+    private boolean hasPublicNoArgConstructor(TypeElement cls) {
+        for (ExecutableElement c : ElementFilter.constructorsIn(cls.getEnclosedElements())) {
+            if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) return true;
+        }
+        return false;
+    }
+
+    private boolean implementsAny(TypeElement cls, List<String> interfaceNames) {
+        TypeMirror t = processingEnv.getTypeUtils().erasure(cls.asType());
+        for (String iface : interfaceNames) {
+            TypeElement ie = processingEnv.getElementUtils().getTypeElement(iface);
+            if (ie != null && processingEnv.getTypeUtils().isAssignable(t, processingEnv.getTypeUtils().erasure(ie.asType()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 读取注解上 @MetaAnno 的 value（要求实现的接口全名）
+    private static List<String> requiredInterfaces(TypeElement anno) {
+        List<String> result = new ArrayList<>();
+        for (AnnotationMirror m : anno.getAnnotationMirrors()) {
+            if (!META_ANNO.equals(((TypeElement) m.getAnnotationType().asElement()).getQualifiedName().toString())) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> en : m.getElementValues().entrySet()) {
+                if (!en.getKey().getSimpleName().contentEquals("value")) continue;
+                Object v = en.getValue().getValue();
+                if (v instanceof List) {
+                    for (Object item : (List<?>) v) result.add(String.valueOf(((AnnotationValue) item).getValue()));
+                } else {
+                    result.add(String.valueOf(v));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String typeOf(TypeElement cls, TypeElement anno) {
+        for (AnnotationMirror m : cls.getAnnotationMirrors()) {
+            if (!m.getAnnotationType().asElement().equals(anno)) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> en : m.getElementValues().entrySet()) {
+                if (en.getKey().getSimpleName().contentEquals("type")) return String.valueOf(en.getValue().getValue());
+            }
+        }
+        return null;
+    }
+
+    private void write() {
+        Map<String, String> previous = readPrevious();
+        Map<String, String> merged = new TreeMap<>(index);
+        for (Map.Entry<String, String> en : previous.entrySet()) {
+            String cls = en.getValue();
+            // 本次重新编译过的类以本次结果为准（可能已改 type 或去掉注解）；已删除的类不再保留
+            if (compiled.contains(cls) || processingEnv.getElementUtils().getTypeElement(cls.replace('$', '.')) == null) continue;
+            merged.putIfAbsent(en.getKey(), cls);
+        }
+        if (merged.equals(previous)) return;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (Writer w = file.openWriter()) {
+                w.write("# Generated by " + getClass().getName() + ", do not edit\n");
+                for (Map.Entry<String, String> en : merged.entrySet()) {
+                    w.write(en.getKey() + "=" + en.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + INDEX + ": " + e.getMessage());
+        }
+    }
+
+    // 输出目录中上一次生成的索引，不存在时为空
+    private Map<String, String> readPrevious() {
+        Map<String, String> result = new TreeMap<>();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (Reader r = file.openReader(true)) {
+                Properties props = new Properties();
+                props.load(r);
+                for (String key : props.stringPropertyNames()) result.put(key, props.getProperty(key));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // 首次编译没有旧索引；旧索引损坏时整体重建
+        }
+        return result;
+    }
+
+    private void error(Element e, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, e);
+    }
+}
@@ -0,0 +1,102 @@
+package core;
+
+import tool.Log;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一次流程运行共享的取消令牌。
+ * 任一步骤首次失败时调用 cancel(cause)：记录根因、中断登记的工作线程、
+ * 触发通道的 abort 回调（清空队列、关闭通道），让上下游都能立即退出。
+ */
+public class CancellationToken {
+    private final AtomicReference<Throwable> cause = new AtomicReference<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Thread> workers = new HashSet<>(); // 正在为本流程干活的线程，受 this 保护
+
+    /**
+     * 取消流程，只有第一次调用生效
+     *
+     * @return 本次调用是否触发了取消
+     */
+    public boolean cancel(Throwable t) {
+        if (!cause.compareAndSet(null, t != null ? t : new CancellationException("Cancelled"))) {
+            return false;
+        }
+        Log.warn("Cancellation", "Pipeline cancelled: " + describe(cause.get()));
+        for (Runnable r : listeners) {
+            try {
+                r.run();
+            } catch (RuntimeException e) {
+                Log.error("Cancellation", "Cancel listener failed: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            for (Thread w : workers) w.interrupt();
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cause.get() != null;
+    }
+
+    public Throwable getCause() {
+        return cause.get();
+    }
+
+    /**
+     * 注册取消回调，已取消时立即执行；回调需幂等
+     */
+    public void onCancel(Runnable r) {
+        listeners.add(r);
+        if (isCancelled()) r.run();
+    }
+
+    /**
+     * 流程结束后移除全部回调，令牌不再持有通道引用
+     */
+    void clearListeners() {
+        listeners.clear();
+    }
+
+    /**
+     * 当前线程开始为本流程工作，取消时会被中断
+     */
+    public synchronized void enter() {
+        workers.add(Thread.currentThread());
+    }
+
+    /**
+     * 当前线程结束工作；清除可能残留的中断标记，避免污染线程池中的下一个任务
+     */
+    public void exit() {
+        synchronized (this) {
+            workers.remove(Thread.currentThread());
+        }
+        if (isCancelled()) Thread.interrupted();
+    }
+
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            CancellationException e = new CancellationException("Pipeline cancelled");
+            e.initCause(cause.get());
+            throw e;
+        }
+    }
+
+    /**
+     * 取最内层原因的描述，便于日志直接看到根因
+     */
+    public static String describe(Throwable t) {
+        Throwable root = t;
+        while (root.getCause() != null && root.getCause() != root) root = root.getCause();
+        String msg = root.getClass().getSimpleName() + ": " + root.getMessage();
+        return root == t ? msg : t.getMessage() + " <- " + msg;
+    }
+}
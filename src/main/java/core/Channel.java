@@ -5,8 +5,10 @@ import core.intf.IChannel;
 import tool.Log;
 import tool.Tuning;
 
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 
@@ -14,26 +16,87 @@ public class Channel implements IChannel<Object> {
 
     private RowSetTable header = null; // 仅存 header
 
-    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(Tuning.queueSize());
+    private final BlockingQueue<Object> queue;
     // 阻塞队列实现背压，上游 put() 可能阻塞
 
     private volatile boolean closed = false; // 发布与消费依赖该标志，防止并发写入
+    private volatile boolean stopped = false; // 下游不再需要数据，上游可提前结束
+    private final List<Runnable> stopListeners = new CopyOnWriteArrayList<>();
+    private int openWriters = 1; // 尚未关闭的上游数，受 this 保护
 
     private final ExecutorService pool; // 注入线程池，避免每个通道创建线程
     private final String channelId;     // 日志标识
+    private final String logTag;        // 日志 tag，构造时拼好，热路径不再拼接
     private final String stepId;        // 所属步骤 ID，用于调试与插件映射
+    private final CancellationToken token; // 流程级取消令牌，失败时清空并关闭通道
+    private final List<CompletableFuture<Void>> consumers = new CopyOnWriteArrayList<>(); // 消费循环的完成信号
+    private final int capacity;
+    private final LongAdder published = new LongAdder(); // 进度统计：写入行数
+    private final LongAdder taken = new LongAdder();  // 进度统计：取出行数
+
+    // poll 拆开的批次中尚未取出的部分，仅由 poll 在 pollLock 下访问
+    private final Object pollLock = new Object();
+    private volatile Object[] unpacked;
+    private int unpackedPos;
+
+    /**
+     * 一次写入的一批行，在队列中只占一个位置，消费端拆开后逐行交给处理器
+     */
+    private static final class Batch {
+        final Object[] items;
+
+        Batch(Object[] items) {
+            this.items = items;
+        }
+    }
 
     public Channel(ExecutorService pool, String stepId) {
+        this(pool, stepId, Tuning.queueSize());
+    }
+
+    public Channel(ExecutorService pool, String stepId, int capacity) {
+        this(pool, stepId, capacity, new CancellationToken());
+    }
+
+    public Channel(ExecutorService pool, String stepId, int capacity, CancellationToken token) {
         this.pool = pool;
         this.stepId = stepId;
-        this.channelId = Integer.toHexString(this.hashCode()).substring(0, 6);
-        Log.info("Channel-" + channelId + " (Step: " + stepId + ")", "Created.");
+        this.capacity = capacity;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.token = token;
+        this.channelId = String.format("%08x", this.hashCode()).substring(0, 6); // 补零，短哈希不再越界
+        this.logTag = "Channel-" + channelId + " (Step: " + stepId + ")";
+        token.onCancel(this::abort);
+        Log.info(logTag, "Created.");
     }
 
     public String getStepId() {
         return stepId;
     }
 
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 当前积压的队列条目数（一批算一条），用于进度展示
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getConsumed() {
+        return taken.sum();
+    }
+
     @Override
     public RowSetTable getHeader() {
         return header;
@@ -42,59 +105,134 @@ public class Channel implements IChannel<Object> {
     @Override
     public void setHeader(RowSetTable header) {
         this.header = header;
-        Log.info("Channel-" + channelId + " (Step: " + stepId + ")", "Set header: " + header);
+        Log.info(logTag, "Set header: " + header);
     }
 
     @Override
     public void publish(Object row) {
+        token.throwIfCancelled(); // 流程已失败，让生产者立即退出
+        if (stopped) return; // 下游已停止，静默丢弃
         if (closed) {
-            Log.warn("Channel-" + channelId + " (Step: " + stepId + ")", "Closed, drop data");
+            Log.warn(logTag, "Closed, drop data");
             return;
         }
         try {
-            queue.put(row); // 有界队列，自动阻塞，背压点
-            int size = queue.size();
-            if (size % 5000 == 0) {
-                Log.info("Channel-" + channelId + " (Step: " + stepId + ")", "Queue size: " + size);
+            queue.put(row); // 有界队列，自动阻塞，背压点；取消时 abort 会清空队列并中断等待
+            if (stopped) {
+                queue.clear(); // 阻塞期间下游已停止
+                return;
+            }
+            published.increment();
+            if (Log.infoEnabled()) {
+                int size = queue.size();
+                if (size > 0 && size % 5000 == 0) Log.info(logTag, "Queue size: " + size);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // 标记中断
+            token.throwIfCancelled();
+            throw new RuntimeException("Data publish interrupted", e);
+        }
+    }
+
+    /**
+     * 批量写入：整批只入队一次，减少锁与唤醒开销。
+     * 一批在队列中只占一个容量位置，下游最多缓冲 容量 × 批大小 行
+     */
+    public void publishAll(List<?> rows) {
+        if (rows.isEmpty()) return;
+        if (rows.size() == 1) {
+            publish(rows.get(0));
+            return;
+        }
+        token.throwIfCancelled();
+        if (stopped) return;
+        if (closed) {
+            Log.warn(logTag, "Closed, drop " + rows.size() + " rows");
+            return;
+        }
+        try {
+            queue.put(new Batch(rows.toArray()));
+            if (stopped) {
+                queue.clear();
+                return;
+            }
+            published.add(rows.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            token.throwIfCancelled();
             throw new RuntimeException("Data publish interrupted", e);
         }
     }
 
     public Object poll(long timeoutMs) throws InterruptedException {
-        return queue.poll(timeoutMs, TimeUnit.MILLISECONDS); // 支持带超时的消费
+        synchronized (pollLock) {
+            if (unpacked == null) {
+                Object item = queue.poll(timeoutMs, TimeUnit.MILLISECONDS); // 支持带超时的消费
+                if (!(item instanceof Batch)) {
+                    if (item != null) taken.increment();
+                    return item;
+                }
+                unpackedPos = 0;
+                unpacked = ((Batch) item).items;
+            }
+            Object item = unpacked[unpackedPos++];
+            if (unpackedPos == unpacked.length) unpacked = null;
+            taken.increment();
+            return item;
+        }
     }
 
     public boolean isEmpty() {
-        return queue.isEmpty(); // 提供队列剩余判断
+        return queue.isEmpty() && unpacked == null; // 提供队列剩余判断
     }
 
     @Override
     public void onReceive(Consumer<Object> handler, Runnable onDone) {
         // 启动单线程消费循环，由线程池管理生命周期
-        pool.submit(() -> runConsumerLoop(handler, onDone));
+        consumers.add(CompletableFuture.runAsync(() -> runConsumerLoop(handler, onDone), pool));
+    }
+
+    /**
+     * 所有消费循环结束后完成；没有通过 onReceive 消费的通道直接视为完成
+     */
+    public CompletableFuture<Void> completion() {
+        return CompletableFuture.allOf(consumers.toArray(new CompletableFuture[0]));
     }
 
     private void runConsumerLoop(Consumer<Object> handler, Runnable onDone) {
         AtomicInteger consumed = new AtomicInteger(0);
+        token.enter();
         try {
-            while (!closed || !queue.isEmpty()) {
+            while ((!closed || !queue.isEmpty()) && !stopped && !token.isCancelled()) {
                 Object item = queue.poll(1, TimeUnit.SECONDS); // 定期 poll 支持 graceful close
-                if (item != null) {
-                    handler.accept(item);
-                    int c = consumed.incrementAndGet();
-                    if (c % 5000 == 0) {
-                        Log.info("Channel-" + channelId + " (Step: " + stepId + ")", "Consumed: " + c);
+                if (item instanceof Batch) {
+                    for (Object row : ((Batch) item).items) {
+                        if (stopped || token.isCancelled()) break;
+                        taken.increment();
+                        handler.accept(row);
+                        logConsumed(consumed.incrementAndGet());
                     }
+                } else if (item != null) {
+                    taken.increment();
+                    handler.accept(item);
+                    logConsumed(consumed.incrementAndGet());
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // 处理器异常即步骤失败，取消整个流程
+            token.cancel(new RuntimeException("Consumer of step " + stepId + " failed", e));
         } finally {
+            token.exit();
             if (onDone != null) onDone.run(); // 通知消费结束
-            Log.success("Channel-" + channelId + " (Step: " + stepId + ")", "Consumer done, total: " + consumed.get());
+            Log.success(logTag, "Consumer done, total: " + consumed.get());
+        }
+    }
+
+    private void logConsumed(int c) {
+        if (c % 5000 == 0) {
+            Log.info(logTag, "Consumed: " + c);
         }
     }
 
@@ -104,13 +242,77 @@ public class Channel implements IChannel<Object> {
         this.onReceive(consumer, null);
     }
 
+    /**
+     * 声明写入该通道的上游个数：每个上游结束时各调用一次 close，全部关闭后通道才真正关闭，
+     * 避免先结束的上游关闭通道导致其余上游的数据被丢弃
+     */
+    public synchronized void setWriters(int writers) {
+        this.openWriters = Math.max(1, writers);
+    }
+
     @Override
     public synchronized void close() {
         // 关闭通道，阻止新数据进入，通知消费者可退出
+        if (!closed && --openWriters > 0) {
+            Log.info(logTag, "Writer closed, " + openWriters + " still open");
+            return;
+        }
         if (!closed) {
             closed = true;
-            Log.info("Channel-" + channelId + " (Step: " + stepId + ")", "Closed, remaining: " + queue.size());
+            Log.info(logTag, "Closed, remaining: " + queue.size());
+        }
+    }
+
+    /**
+     * 消费者不再需要后续数据时调用（如 limit 已取满）：关闭通道并丢弃积压，之后的写入被静默丢弃，
+     * 阻塞在 put() 上的生产者随即返回。上游通过 {@link #isStopRequested()} 或 {@link #onStop} 得知后可提前停止读取
+     */
+    public void requestStop() {
+        synchronized (this) {
+            if (stopped) return;
+            stopped = true;
+            closed = true;
+        }
+        int dropped = queue.size();
+        queue.clear();
+        synchronized (pollLock) {
+            unpacked = null;
         }
+        Log.info(logTag, "Stop requested by consumer, dropped: " + dropped);
+        for (Runnable r : stopListeners) r.run();
+    }
+
+    public boolean isStopRequested() {
+        return stopped;
+    }
+
+    /**
+     * 注册停止回调：已停止时立即执行
+     */
+    public void onStop(Runnable listener) {
+        stopListeners.add(listener);
+        if (stopped && stopListeners.remove(listener)) listener.run();
+    }
+
+    /**
+     * 所有输出通道都已被下游停止时返回 true，生产者据此结束读取
+     */
+    public static boolean allStopped(List<Channel> outputs) {
+        if (outputs == null || outputs.isEmpty()) return false;
+        for (Channel out : outputs) {
+            if (!out.stopped) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 取消时调用：关闭通道并丢弃积压数据，释放阻塞在 put() 上的生产者
+     */
+    private void abort() {
+        closed = true;
+        int dropped = queue.size();
+        queue.clear();
+        Log.warn(logTag, "Aborted, dropped: " + dropped);
     }
 
     @Override
@@ -0,0 +1,189 @@
+package core;
+
+import runtask.StepList;
+import tool.Log;
+import tool.Tuning;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻的流程执行引擎。
+ * 插件检查与类路径扫描只在进程内做一次；所有作业共享一个线程池，
+ * 按线程与缓冲行两项全局预算做 FIFO 准入，保证作业之间公平且互不饿死。
+ */
+public class Engine {
+    private static volatile Factory factory; // 进程内唯一的插件工厂
+    private static volatile Engine shared;
+
+    private static final int RETAINED_JOBS = 200; // 保留的已结束作业数，供查询
+
+    private final ExecutorService pool;
+    private final int threadBudget;
+    private final long rowBudget;
+
+    // 以下字段受 this 保护
+    private int threadsInUse = 0;
+    private long rowsInUse = 0;
+    private final Deque<JobHandle> waiting = new ArrayDeque<>();
+
+    private final Map<String, JobHandle> jobs = Collections.synchronizedMap(new LinkedHashMap<String, JobHandle>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JobHandle> eldest) {
+            return size() > RETAINED_JOBS && eldest.getValue().isDone();
+        }
+    });
+    private final AtomicLong seq = new AtomicLong();
+
+    /**
+     * 全局插件工厂：首次调用时初始化日志参数并加载插件索引（无索引时扫描并校验）
+     */
+    public static Factory factory() {
+        if (factory == null) {
+            synchronized (Engine.class) {
+                if (factory == null) {
+                    Tuning.init(); // 初始化日志与参数配置
+                    Factory f = new Factory();
+                    // 编译期索引已完成接口校验；只有退回类路径扫描时才运行时检查
+                    if (!f.isIndexed()) Checker.run("plugin", "anno");
+                    factory = f;
+                }
+            }
+        }
+        return factory;
+    }
+
+    /**
+     * 进程级共享引擎，按 Tuning 配置的预算创建
+     */
+    public static Engine shared() {
+        if (shared == null) {
+            synchronized (Engine.class) {
+                if (shared == null) shared = new Engine();
+            }
+        }
+        return shared;
+    }
+
+    public Engine() {
+        this(Tuning.engineThreads(), Tuning.engineBufferedRows());
+    }
+
+    public Engine(int threadBudget, long rowBudget) {
+        factory();
+        this.threadBudget = threadBudget;
+        this.rowBudget = rowBudget;
+        // 线程数由准入预算约束，池本身不限上限，已准入的作业不会因排队而死锁
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "etl-engine-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Tuning.print();
+        Log.success("Engine", "Started with thread budget " + threadBudget + ", row budget " + rowBudget);
+    }
+
+    public JobHandle submit(StepList list) {
+        return submit(null, list);
+    }
+
+    /**
+     * 提交作业：同步完成规划校验（非法流程立即抛出），随后排队等待准入
+     */
+    public JobHandle submit(String name, StepList list) {
+        Scheduler scheduler = new Scheduler(list, factory(), pool);
+        // 驱动线程（execute 本身）额外占 1 个线程；超出总预算的作业按独占整个预算处理
+        int threads = Math.min(scheduler.getPlan().getThreadDemand() + 1, threadBudget);
+        long rows = Math.min(scheduler.getPlan().getBufferDemand(), rowBudget);
+        JobHandle job = new JobHandle(String.valueOf(seq.incrementAndGet()), name, scheduler, this, threads, rows);
+        jobs.put(job.getJobId(), job);
+        synchronized (this) {
+            waiting.addLast(job);
+        }
+        Log.info("Engine", job + " submitted, needs " + threads + " threads, " + rows + " rows");
+        admit();
+        return job;
+    }
+
+    public JobHandle getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public List<JobHandle> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    public synchronized int getQueuedCount() {
+        return waiting.size();
+    }
+
+    // FIFO 准入：队头放不下时后面的作业也不插队，避免大作业饿死
+    private void admit() {
+        List<JobHandle> toLaunch = new ArrayList<>();
+        synchronized (this) {
+            while (!waiting.isEmpty()) {
+                JobHandle head = waiting.peekFirst();
+                if (threadsInUse + head.threads > threadBudget || rowsInUse + head.rows > rowBudget) break;
+                waiting.pollFirst();
+                threadsInUse += head.threads;
+                rowsInUse += head.rows;
+                toLaunch.add(head);
+            }
+        }
+        for (JobHandle job : toLaunch) launch(job);
+    }
+
+    private void launch(JobHandle job) {
+        Scheduler scheduler = job.scheduler();
+        job.markRunning();
+        Log.info("Engine", job + " admitted");
+        try {
+            pool.execute(() -> {
+                try {
+                    scheduler.execute();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    scheduler.cancel(e);
+                } finally {
+                    release(job);
+                    job.finish();
+                    Log.info("Engine", job + " finished");
+                    admit();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 引擎已关闭：归还预算并以失败结束，不让作业停在 RUNNING
+            scheduler.cancel(new IllegalStateException("Engine is shut down, " + job + " not started", e));
+            release(job);
+            job.finish();
+            Log.warn("Engine", job + " rejected, engine is shut down");
+        }
+    }
+
+    private synchronized void release(JobHandle job) {
+        threadsInUse -= job.threads;
+        rowsInUse -= job.rows;
+    }
+
+    synchronized boolean dequeue(JobHandle job) {
+        return waiting.remove(job);
+    }
+
+    /**
+     * 取消所有作业并关闭线程池
+     */
+    public void shutdown() {
+        List<JobHandle> all = getJobs();
+        for (JobHandle job : all) {
+            if (!job.isDone()) job.cancel();
+        }
+        pool.shutdown();
+        Log.info("Engine", "Shutdown");
+    }
+}
@@ -2,23 +2,53 @@ package core;
 import anno.Input;
 import anno.Output;
 import anno.Process;
+import anno.processor.PluginIndexProcessor;
 import cn.hutool.core.util.ClassUtil;
+import core.intf.IInput;
+import core.intf.IOutput;
+import core.intf.IProcess;
+import tool.Log;
+import tool.Tuning;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class Factory {
     private static final String PKG = "plugin";
     private final Map<String, Class<?>> reg = new ConcurrentHashMap<>();
+    // 按领域（input/process/output）分开的注册表，避免不同领域同名 type 互相覆盖
+    private final Map<String, Map<String, Class<?>>> domainReg = new ConcurrentHashMap<>();
     private final Map<String, Object> pluginCache = new ConcurrentHashMap<>();
     // 线程安全的HashMap，确保不会出现两个线程同时创建插件实例
     // 底层是分段锁实现
+    private final boolean indexed; // 是否由编译期索引注册（否则为类路径扫描）
 
     public Factory() {
-        init();
+        this(Tuning.pluginScan());
+    }
+
+    /**
+     * @param scan 为 true 时忽略编译期索引，强制扫描类路径
+     */
+    public Factory(boolean scan) {
+        this.indexed = !scan && loadIndex();
+        if (!indexed) init();
+    }
+
+    /**
+     * 插件是否来自编译期索引；索引已在编译时完成接口校验，无需再运行 Checker
+     */
+    public boolean isIndexed() {
+        return indexed;
     }
 
     /*
@@ -31,8 +61,7 @@ public class Factory {
         for (Class<? extends Annotation> a : new Class[]{Input.class, Process.class, Output.class}) {
             ClassUtil.scanPackageByAnnotation(PKG, a).forEach(cls -> {
                 try {
-                    String type = (String) a.getMethod("type").invoke(cls.getAnnotation(a));
-                    reg.put(type, cls);
+                    register(domainOf(a), (String) a.getMethod("type").invoke(cls.getAnnotation(a)), cls);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
@@ -40,6 +69,73 @@ public class Factory {
         }
     }
 
+    // 加载类路径上所有 META-INF/etl/plugins.index（每个 jar 一份），没有任何索引时返回 false
+    private boolean loadIndex() {
+        ClassLoader cl = Factory.class.getClassLoader();
+        boolean found = false;
+        try {
+            Enumeration<URL> urls = cl.getResources(PluginIndexProcessor.INDEX);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                Properties props = new Properties();
+                try (InputStream in = url.openStream()) {
+                    props.load(in);
+                }
+                for (String key : props.stringPropertyNames()) {
+                    int dot = key.indexOf('.');
+                    if (dot <= 0 || dot == key.length() - 1) {
+                        throw new IOException("Malformed entry '" + key + "' in " + url);
+                    }
+                    String domain = key.substring(0, dot);
+                    String type = key.substring(dot + 1);
+                    String className = props.getProperty(key);
+                    Class<?> prev = has(domain, type) ? domainReg.get(domain).get(type) : null;
+                    if (prev != null && !prev.getName().equals(className)) {
+                        throw new IllegalStateException("Duplicate " + domain + " plugin type '" + type + "': "
+                                + prev.getName() + " and " + className + " (" + url + ")");
+                    }
+                    register(domain, type, Class.forName(className, false, cl));
+                }
+                found = true;
+            }
+        } catch (IOException | ClassNotFoundException | LinkageError e) {
+            // 索引损坏或与类文件不一致：退回类路径扫描
+            Log.warn("Factory", "Plugin index unusable, fall back to classpath scan: " + e);
+            reg.clear();
+            domainReg.clear();
+            return false;
+        }
+        return found;
+    }
+
+    private void register(String domain, String type, Class<?> cls) {
+        reg.put(type, cls);
+        domainReg.computeIfAbsent(domain, k -> new ConcurrentHashMap<>()).put(type, cls);
+    }
+
+    /**
+     * 判断某领域下是否注册了该子类型，供执行计划预检使用
+     */
+    public boolean has(String domain, String type) {
+        Map<String, Class<?>> byType = domainReg.get(domain);
+        return byType != null && type != null && byType.containsKey(type);
+    }
+
+    /**
+     * 插件实现类，未注册时返回 null；用于在实例化前判断插件能力（如多输入）
+     */
+    public Class<?> classOf(String domain, String type) {
+        Map<String, Class<?>> byType = domainReg.get(domain);
+        return byType == null || type == null ? null : byType.get(type);
+    }
+
+    /**
+     * 某领域下已注册的全部子类型
+     */
+    public Set<String> typesOf(String domain) {
+        return new TreeSet<>(domainReg.getOrDefault(domain, new HashMap<>()).keySet());
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T getPlugin(String type, Class<T> iface) {
         Object inst = pluginCache.computeIfAbsent(type, t -> {
@@ -51,4 +147,27 @@ public class Factory {
         });
         return (T) inst;
     }
+
+    /**
+     * 为单个步骤创建独立的插件实例（不走缓存），
+     * 同一流程中出现多个同类型步骤时各自持有配置与状态
+     */
+    public <T> T create(String type, Class<T> iface) {
+        Map<String, Class<?>> byType = domainReg.getOrDefault(domainOf(iface), new HashMap<>());
+        Class<?> cls = byType.get(type);
+        if (cls == null) {
+            throw new IllegalArgumentException("No plugin registered for type: " + type + " (" + iface.getSimpleName() + ")");
+        }
+        try {
+            return iface.cast(cls.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to create plugin: " + cls.getName(), e);
+        }
+    }
+
+    private static String domainOf(Class<?> c) {
+        if (c == Input.class || c == IInput.class) return "input";
+        if (c == Output.class || c == IOutput.class) return "output";
+        return "process";
+    }
 }
@@ -0,0 +1,141 @@
+package core;
+
+import tool.Log;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 提交给 Engine 的一次作业：状态、耗时与完成信号。
+ * future() 成功时正常完成，失败时以根因异常完成，取消时以 CancellationException 完成。
+ * 结束后只保留失败根因与最终进度快照，不再持有 Scheduler，插件实例与通道随之释放。
+ */
+public class JobHandle {
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final String jobId;
+    private final String name;
+    private volatile Scheduler scheduler; // 结束后置空
+    private final Engine engine;
+    final int threads;   // 占用的线程预算
+    final long rows;     // 占用的缓冲行预算
+
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final long submittedAt = System.currentTimeMillis();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile State state = State.QUEUED;
+    private volatile CancellationException cancelCause; // 本作业发出的取消；运行结果正是它时才算被取消
+    private volatile Throwable failure;                 // 结束时的失败根因
+    private volatile List<StepProgress> finalProgress;  // 结束时的进度快照
+
+    JobHandle(String jobId, String name, Scheduler scheduler, Engine engine, int threads, long rows) {
+        this.jobId = jobId;
+        this.name = name;
+        this.scheduler = scheduler;
+        this.engine = engine;
+        this.threads = threads;
+        this.rows = rows;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 运行中的调度器，作业结束后为 null
+     */
+    Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 各步骤进度：运行中为实时快照，结束后为结束时的快照
+     */
+    public List<StepProgress> getProgress() {
+        Scheduler s = scheduler;
+        return s != null ? s.getProgress() : finalProgress;
+    }
+
+    public CompletableFuture<Void> future() {
+        return future;
+    }
+
+    public Throwable getFailure() {
+        Scheduler s = scheduler;
+        return s != null ? s.getFailure() : failure;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * 取消作业：排队中直接移出队列，运行中通过取消令牌中止
+     */
+    public void cancel() {
+        if (isDone()) return;
+        CancellationException cause = new CancellationException("Job " + jobId + " cancelled");
+        cancelCause = cause;
+        Scheduler s = scheduler;
+        if (engine.dequeue(this)) {
+            finish();
+        } else if (s == null || !s.cancel(cause)) {
+            // 运行已经结束（或已因其他原因取消），结果以运行本身为准
+            Log.debug("JobHandle", () -> "Job " + jobId + " already finished, cancel ignored");
+        }
+    }
+
+    void markRunning() {
+        startedAt = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    /**
+     * 排队中被取消，或运行的结果就是本作业发出的取消时报告 CANCELLED；运行结束后才到的取消不改变结果
+     */
+    synchronized void finish() {
+        if (future.isDone()) return;
+        finishedAt = System.currentTimeMillis();
+        failure = scheduler.getFailure();
+        finalProgress = scheduler.getProgress();
+        scheduler = null;
+        boolean neverRan = state == State.QUEUED;
+        if (neverRan || (failure != null && failure == cancelCause)) {
+            state = State.CANCELLED;
+            future.completeExceptionally(new CancellationException("Job " + jobId + " cancelled"));
+        } else if (failure != null) {
+            state = State.FAILED;
+            future.completeExceptionally(failure);
+        } else {
+            state = State.SUCCEEDED;
+            future.complete(null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Job-" + jobId + (name != null ? " (" + name + ")" : "") + " " + state;
+    }
+}
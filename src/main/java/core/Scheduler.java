@@ -1,7 +1,12 @@
 package core;
 import core.intf.IInput;
+import core.intf.IMultiInputProcess;
 import core.intf.IOutput;
 import core.intf.IProcess;
+import core.intf.IProcessStep;
+import core.plan.Edge;
+import core.plan.ExecutionPlan;
+import core.plan.Planner;
 import runtask.Step;
 import runtask.StepList;
 import tool.Log;
@@ -9,146 +14,360 @@ import tool.Tuning;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
-import static tool.Tuning.init;
+import static core.plan.Planner.INPUT;
+import static core.plan.Planner.OUTPUT;
+import static core.plan.Planner.PROCESS;
 
 public class Scheduler {
-    static {
-        init(); // 初始化日志与参数配置
-        Checker.run("plugin", "anno"); // 检查插件类与注解是否匹配
-    }
-
-    private static final String INPUT = "input";
-    private static final String PROCESS = "process";
-    private static final String OUTPUT = "output";
-
-    private final Factory fact = new Factory(); // 插件工厂
-    private final Map<Integer, Step> steps = new HashMap<>(); // 所有步骤
-    private final Map<Integer, AtomicInteger> remain = new ConcurrentHashMap<>(); // 每个步骤还需等待的上游数
-    private final Map<Integer, List<Integer>> children = new HashMap<>(); // 每个步骤的下游
+    private final Factory fact; // 插件工厂，由 Engine 全局共享，避免重复扫描类路径
+    private final ExecutionPlan plan; // 校验后的执行计划
     private final Map<Integer, Channel> inCh = new ConcurrentHashMap<>(); // 每个步骤的输入通道
     private final Map<Integer, List<Channel>> outCh = new ConcurrentHashMap<>(); // 每个步骤的输出通道
-    private final ExecutorService pool = Executors.newFixedThreadPool(Tuning.threadPoolSize()); // 全局线程池
+    private final Map<Integer, Map<String, Channel>> multiIn = new ConcurrentHashMap<>(); // 多输入步骤：父步骤 ID -> 独立输入通道
+    private final ExecutorService pool; // 线程池：独立运行时自建，由 Engine 调度时为共享池
+    private final boolean ownsPool; // 自建线程池在运行结束后关闭，共享池不关闭
+    private final CancellationToken token = new CancellationToken(); // 所有步骤与通道共享，首个失败即取消
 
-    private final List<Integer> inputSteps = new ArrayList<>();
-    private final List<Integer> processSteps = new ArrayList<>();
-    private final List<Integer> outputSteps = new ArrayList<>();
+    // 预检阶段创建并初始化好的插件实例，每个步骤独立一份
+    private final Map<Integer, IInput> inputs = new HashMap<>();
+    private final Map<Integer, IProcessStep> processes = new HashMap<>();
+    private final Map<Integer, IOutput> outputs = new HashMap<>();
 
     private final Map<Integer, CompletableFuture<Void>> stepFutures = new ConcurrentHashMap<>();
-    private final Map<Integer, CountDownLatch> stepReadyLatches = new ConcurrentHashMap<>();
+    private volatile long startedAt = 0; // execute 开始时间（纳秒），用于计算速率
+    private long timeoutNanos;            // 等待流程结束的上限，0 为不限
+    private boolean completed = false;   // execute 已返回，受 this 保护
+    private Throwable outcome;           // execute 返回时的失败根因，受 this 保护
+    private volatile List<StepProgress> finalProgress; // execute 返回时的进度快照
 
     public Scheduler(StepList list) {
+        this(list, Engine.factory(), null);
         Tuning.print();
+    }
+
+    /**
+     * 由 Engine 创建：使用共享工厂与共享线程池
+     */
+    Scheduler(StepList list, Factory fact, ExecutorService sharedPool) {
         Log.info("Scheduler", "Start scheduler setup");
+        this.fact = fact;
+
+        // 规划：拓扑排序 + 校验，非法流程在此立即抛出
+        this.plan = new Planner(fact).plan(list);
 
-        // 注册步骤，构建通道、等待计数器、步骤图
-        list.getData().forEach(s -> {
+        // 自建线程池至少容纳流程同时阻塞的任务数，避免小机器上线程饥饿
+        this.ownsPool = sharedPool == null;
+        // 独立运行按 Tuning 限时；Engine 作业可能是持续输入的长流程，由 JobHandle.cancel 结束，不限时
+        this.timeoutNanos = ownsPool ? TimeUnit.MINUTES.toNanos(Tuning.runTimeoutMinutes()) : 0;
+        this.pool = ownsPool
+                ? Executors.newFixedThreadPool(Math.max(Tuning.threadPoolSize(), plan.getThreadDemand()))
+                : sharedPool;
+
+        // 按计划构建通道与连接
+        for (Step s : plan.getOrder()) {
             int id = s.getStepId();
-            steps.put(id, s);
-            inCh.put(id, new Channel(pool, String.valueOf(id))); // 通道中注入线程池与 stepId
-            outCh.put(id, new ArrayList<>());
-            remain.put(id, new AtomicInteger(s.getParentStepId().size())); // 初始上游依赖数
-            stepReadyLatches.put(id, new CountDownLatch(1)); // 等待下游准备
-        });
-
-        // 建立父子依赖图与输出通道连接
-        steps.values().forEach(s -> {
-            int curId = s.getStepId();
-            for (String pid : s.getParentStepId()) {
-                int parentId = Integer.parseInt(pid);
-                children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(curId);
-                outCh.computeIfAbsent(parentId, k -> new ArrayList<>()).add(inCh.get(curId));
+            if (isMultiInput(s)) {
+                // 每个父步骤一条通道，通道 stepId 仍为本步骤，便于上游按目标步骤识别
+                Map<String, Channel> byParent = new LinkedHashMap<>();
+                for (Integer parent : plan.getParents(id)) {
+                    byParent.put(String.valueOf(parent), new Channel(pool, String.valueOf(id), plan.getCapacity(id), token));
+                }
+                multiIn.put(id, byParent);
+            } else {
+                Channel ch = new Channel(pool, String.valueOf(id), plan.getCapacity(id), token); // 通道中注入线程池、stepId 与取消令牌
+                ch.setWriters(plan.getParents(id).size()); // 多个父步骤共用时，全部结束才关闭
+                inCh.put(id, ch);
             }
-        });
+            outCh.put(id, new ArrayList<>());
+        }
+        for (Edge e : plan.getEdges()) {
+            Map<String, Channel> byParent = multiIn.get(e.getTo());
+            outCh.get(e.getFrom()).add(byParent != null ? byParent.get(String.valueOf(e.getFrom())) : inCh.get(e.getTo()));
+        }
+        // 停止信号向上游传播：处理步骤的输出全部被下游停止后，它的输入也不再需要
+        for (Step s : plan.stepsOf(PROCESS)) {
+            int id = s.getStepId();
+            List<Channel> outs = outCh.get(id);
+            Collection<Channel> ins = inputsOf(id);
+            Runnable propagate = () -> {
+                if (Channel.allStopped(outs)) {
+                    for (Channel in : ins) in.requestStop();
+                }
+            };
+            for (Channel out : outs) out.onStop(propagate);
+        }
+
+        Log.success("Scheduler", "Setup done " +
+                plan.stepsOf(INPUT).size() + " inputs " +
+                plan.stepsOf(PROCESS).size() + " processes " +
+                plan.stepsOf(OUTPUT).size() + " outputs");
+    }
+
+    private boolean isMultiInput(Step s) {
+        if (!PROCESS.equals(s.getDomain())) return false;
+        Class<?> cls = fact.classOf(PROCESS, s.getSubType());
+        return cls != null && IMultiInputProcess.class.isAssignableFrom(cls);
+    }
 
-        // 分类步骤类型（输入/处理/输出）
-        list.getData().forEach(s -> {
+    // 步骤的全部输入通道：多输入步骤为每个父步骤一条，其余为一条（输入步骤的通道不被使用）
+    private Collection<Channel> inputsOf(int id) {
+        Map<String, Channel> byParent = multiIn.get(id);
+        return byParent != null ? byParent.values() : Collections.singletonList(inCh.get(id));
+    }
+
+    public ExecutionPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * 设置本次运行的时限，超时即取消整个流程；0 表示不限。须在 execute 之前调用
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * 运行失败的根因，成功或尚未运行时为 null；execute 返回后固定为返回时的结果
+     */
+    public synchronized Throwable getFailure() {
+        return completed ? outcome : token.getCause();
+    }
+
+    /**
+     * 各步骤的进度快照，按拓扑序排列；可在运行中从任意线程调用，execute 返回后固定为结束时的快照
+     */
+    public List<StepProgress> getProgress() {
+        List<StepProgress> last = finalProgress;
+        if (last != null) return last;
+        double seconds = startedAt == 0 ? 0 : (System.nanoTime() - startedAt) / 1e9;
+        List<StepProgress> result = new ArrayList<>();
+        for (Step s : plan.getOrder()) {
             int id = s.getStepId();
-            switch (s.getDomain()) {
-                case INPUT: inputSteps.add(id); break;
-                case PROCESS: processSteps.add(id); break;
-                case OUTPUT: outputSteps.add(id); break;
+            boolean isInput = INPUT.equals(s.getDomain());
+            long rowsIn = 0;
+            int depth = 0, capacity = 0;
+            if (!isInput) {
+                for (Channel in : inputsOf(id)) {
+                    rowsIn += in.getConsumed();
+                    depth += in.size();
+                    capacity += in.getCapacity();
+                }
             }
-        });
+            long rowsOut = 0;
+            for (Channel c : outCh.get(id)) rowsOut += c.getPublished();
+            double rate = seconds > 0 ? (isInput ? rowsOut : rowsIn) / seconds : 0;
+            result.add(new StepProgress(id, s.getDomain(), s.getSubType(), rowsIn, rowsOut, depth, capacity, rate));
+        }
+        return result;
+    }
 
-        Log.success("Scheduler", "Setup done " +
-                inputSteps.size() + " inputs " +
-                processSteps.size() + " processes " +
-                outputSteps.size() + " outputs");
+    /**
+     * 从外部取消正在运行的流程；execute 已返回时不再改变运行结果
+     *
+     * @return 本次调用是否取消了运行
+     */
+    public boolean cancel(String reason) {
+        return cancel(new CancellationException(reason));
     }
 
-    // 启动输出步骤（被输入步骤依赖，需要优先准备）
-    private CompletableFuture<Void> runOutputStepAsync(Step s) {
-        int id = s.getStepId();
-        return CompletableFuture.runAsync(() -> {
+    public synchronized boolean cancel(Throwable cause) {
+        return !completed && token.cancel(cause);
+    }
+
+    // 预检：逆拓扑序创建并初始化全部插件，配置错误在任何数据流动前暴露
+    private void preflight() {
+        List<Step> reversed = new ArrayList<>(plan.getOrder());
+        Collections.reverse(reversed);
+        for (Step s : reversed) {
+            int id = s.getStepId();
             try {
-                IOutput o = fact.getPlugin(s.getSubType(), IOutput.class);
-                o.init(s.getConfig());
-                stepReadyLatches.get(id).countDown(); // 通知下游已准备
-                o.consume(inCh.get(id));
+                switch (s.getDomain()) {
+                    case INPUT:
+                        IInput in = fact.create(s.getSubType(), IInput.class);
+                        in.init(s.getConfig());
+                        inputs.put(id, in);
+                        break;
+                    case PROCESS:
+                        IProcessStep p = fact.create(s.getSubType(), IProcessStep.class);
+                        p.init(s.getConfig());
+                        checkDeclaredTargets(id, p);
+                        processes.put(id, p);
+                        break;
+                    case OUTPUT:
+                        IOutput o = fact.create(s.getSubType(), IOutput.class);
+                        o.init(s.getConfig());
+                        outputs.put(id, o);
+                        break;
+                }
             } catch (Exception e) {
-                throw new RuntimeException("Output step " + id + " failed", e);
+                throw new IllegalStateException("Step " + id + " (" + s.getSubType() + ") init failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // 处理步骤显式声明的输出目标必须是计划中的下游
+    private void checkDeclaredTargets(int id, IProcessStep p) {
+        Set<String> children = new HashSet<>();
+        for (Integer c : plan.getChildren(id)) children.add(String.valueOf(c));
+        for (String target : p.declareOutputTargets()) {
+            if (!children.contains(target)) {
+                throw new IllegalArgumentException("declared output target " + target + " is not a downstream step of " + id);
             }
-        }, pool);
+        }
+    }
+
+    // 启动输出步骤
+    private CompletableFuture<Void> runOutputStepAsync(Step s) {
+        int id = s.getStepId();
+        IOutput o = outputs.get(id);
+        Channel in = inCh.get(id);
+        return CompletableFuture.runAsync(() -> guarded(() -> o.consume(in), "Output step " + id + " failed"), pool);
     }
 
-    // 启动输入步骤（需要等待下游就绪）
+    // 启动输入步骤（下游已在预检阶段就绪，无需再等待）
     private CompletableFuture<Void> runInputStepAsync(Step s) {
         int id = s.getStepId();
-        return CompletableFuture.runAsync(() -> {
-            try {
-                for (Integer downstreamId : children.getOrDefault(id, Collections.emptyList())) {
-                    stepReadyLatches.get(downstreamId).await(30, TimeUnit.SECONDS);
-                }
-                IInput in = fact.getPlugin(s.getSubType(), IInput.class);
-                in.init(s.getConfig());
-                in.start(outCh.get(id));
-            } catch (Exception e) {
-                throw new RuntimeException("Input step " + id + " failed", e);
-            }
-        }, pool);
+        IInput in = inputs.get(id);
+        List<Channel> outs = outCh.get(id);
+        return CompletableFuture.runAsync(() -> guarded(() -> in.start(outs), "Input step " + id + " failed"), pool);
     }
 
     // 启动处理步骤
     private CompletableFuture<Void> runProcessStepAsync(Step s) {
         int id = s.getStepId();
-        return CompletableFuture.runAsync(() -> {
-            try {
-                IProcess p = fact.getPlugin(s.getSubType(), IProcess.class);
-                p.init(s.getConfig());
-                stepReadyLatches.get(id).countDown(); // 通知下游已准备
-                p.process(inCh.get(id), outCh.get(id));
-            } catch (Exception e) {
-                throw new RuntimeException("Process step " + id + " failed", e);
-            }
-        }, pool);
+        IProcessStep step = processes.get(id);
+        List<Channel> outs = outCh.get(id);
+        if (step instanceof IMultiInputProcess) {
+            IMultiInputProcess mp = (IMultiInputProcess) step;
+            Map<String, Channel> ins = multiIn.get(id);
+            return CompletableFuture.runAsync(() -> guarded(() -> mp.process(ins, outs), "Process step " + id + " failed"), pool);
+        }
+        IProcess p = (IProcess) step; // @Process 插件在编译期已校验实现两者之一
+        Channel in = inCh.get(id);
+        return CompletableFuture.runAsync(() -> guarded(() -> p.process(in, outs), "Process step " + id + " failed"), pool);
+    }
+
+    private interface StepBody {
+        void run() throws Exception;
+    }
+
+    // 执行步骤主体：登记线程以便取消时中断，首个异常触发整条流水线取消
+    private void guarded(StepBody body, String failMsg) {
+        token.enter();
+        try {
+            token.throwIfCancelled();
+            body.run();
+        } catch (Exception e) {
+            RuntimeException wrapped = e instanceof CancellationException && token.isCancelled()
+                    ? (CancellationException) e
+                    : new RuntimeException(failMsg, e);
+            token.cancel(wrapped);
+            throw wrapped;
+        } finally {
+            token.exit();
+        }
     }
 
     public void execute() throws InterruptedException {
+        try {
+            run();
+        } catch (RuntimeException | Error e) {
+            token.cancel(e);
+            throw e;
+        } finally {
+            // 此后的外部取消不影响已经确定的结果；进度固定为此刻的快照
+            List<StepProgress> last = getProgress();
+            synchronized (this) {
+                completed = true;
+                outcome = token.getCause();
+                finalProgress = last;
+            }
+            release();
+        }
+    }
+
+    /**
+     * 释放插件实例与通道：结束后仍被持有的 Scheduler 不再占住插件状态（堆外集合、连接表、缓存）
+     * 与未取完的通道队列。失败时个别消费循环可能仍在退出，它们持有各自的引用，不受影响
+     */
+    private void release() {
+        inputs.clear();
+        processes.clear();
+        outputs.clear();
+        stepFutures.clear();
+        inCh.clear();
+        outCh.clear();
+        multiIn.clear();
+        token.clearListeners();
+    }
+
+    private void run() throws InterruptedException {
         Log.info("Scheduler", "Start pipeline");
+        startedAt = System.nanoTime();
+
+        try {
+            preflight();
+        } catch (IllegalStateException e) {
+            token.cancel(e);
+            Log.error("Scheduler", "Pre-flight failed: " + e.getMessage());
+            shutdownPool();
+            return;
+        }
 
-        // 启动顺序：先输出，再处理，最后输入（输入可能阻塞等待下游准备）
-        for (Integer id : outputSteps) stepFutures.put(id, runOutputStepAsync(steps.get(id)));
-        for (Integer id : processSteps) stepFutures.put(id, runProcessStepAsync(steps.get(id)));
-        for (Integer id : inputSteps) stepFutures.put(id, runInputStepAsync(steps.get(id)));
+        // 启动顺序：先输出，再处理，最后输入，保证下游先于上游开始消费
+        for (Step s : plan.stepsOf(OUTPUT)) stepFutures.put(s.getStepId(), runOutputStepAsync(s));
+        for (Step s : plan.stepsOf(PROCESS)) stepFutures.put(s.getStepId(), runProcessStepAsync(s));
+        for (Step s : plan.stepsOf(INPUT)) stepFutures.put(s.getStepId(), runInputStepAsync(s));
 
+        // 失败信号：任一步骤或消费循环失败时立即完成，不再等待其余步骤
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        token.onCancel(() -> failed.completeExceptionally(token.getCause()));
+
+        long deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
         try {
-            CompletableFuture.allOf(stepFutures.values().toArray(new CompletableFuture[0]))
-                    .get(30, TimeUnit.MINUTES);
+            CompletableFuture<Void> started = CompletableFuture.allOf(stepFutures.values().toArray(new CompletableFuture[0]));
+            await(CompletableFuture.anyOf(started, failed), deadline);
+            // 步骤主体返回后，处理/输出步骤的通道消费循环可能仍在运行
+            List<Channel> all = new ArrayList<>(inCh.values());
+            for (Map<String, Channel> byParent : multiIn.values()) all.addAll(byParent.values());
+            CompletableFuture<?>[] loops = all.stream().map(Channel::completion).toArray(CompletableFuture[]::new);
+            await(CompletableFuture.anyOf(CompletableFuture.allOf(loops), failed), deadline);
+            if (token.isCancelled()) throw new ExecutionException(token.getCause());
             Log.success("Scheduler", "All steps done");
         } catch (TimeoutException e) {
+            token.cancel(new TimeoutException("Run exceeded " + TimeUnit.NANOSECONDS.toSeconds(timeoutNanos) + "s timeout"));
             Log.warn("Scheduler", "Time out");
         } catch (ExecutionException e) {
-            Log.error("Scheduler", "Run failed: " + e.getCause().getMessage());
+            Log.error("Scheduler", "Run failed: " + CancellationToken.describe(token.isCancelled() ? token.getCause() : e.getCause()));
         } finally {
+            shutdownPool();
+        }
+    }
+
+    // deadline 为 0 时不限时等待
+    private static void await(CompletableFuture<?> f, long deadline)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (deadline == 0) {
+            f.get();
+        } else {
+            f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void shutdownPool() throws InterruptedException {
+        if (!ownsPool) return; // 共享池由 Engine 管理；本作业残留线程已由取消令牌中断
+        if (token.isCancelled()) {
+            pool.shutdownNow(); // 已取消：不再等待残留任务
+        } else {
             pool.shutdown();
-            if (!pool.awaitTermination(60, TimeUnit.SECONDS)) {
-                pool.shutdownNow();
-                Log.warn("Scheduler", "Force close thread pool");
-            } else {
-                Log.success("Scheduler", "Thread pool closed");
-            }
+        }
+        if (!pool.awaitTermination(60, TimeUnit.SECONDS)) {
+            pool.shutdownNow();
+            Log.warn("Scheduler", "Force close thread pool");
+        } else {
+            Log.success("Scheduler", "Thread pool closed");
         }
     }
 }
@@ -0,0 +1,67 @@
+package core;
+
+/**
+ * 单个步骤的运行进度快照，由 Scheduler.getProgress() 生成。
+ * rowsIn 为从输入通道取出的行数，rowsOut 为写入全部下游通道的行数之和；
+ * rowsPerSec 按流程启动以来的平均速率计算。
+ */
+public class StepProgress {
+    private final int stepId;
+    private final String domain;
+    private final String subType;
+    private final long rowsIn;
+    private final long rowsOut;
+    private final int queueDepth;     // 输入通道当前积压
+    private final int queueCapacity;  // 输入通道容量
+    private final double rowsPerSec;
+
+    StepProgress(int stepId, String domain, String subType, long rowsIn, long rowsOut,
+                 int queueDepth, int queueCapacity, double rowsPerSec) {
+        this.stepId = stepId;
+        this.domain = domain;
+        this.subType = subType;
+        this.rowsIn = rowsIn;
+        this.rowsOut = rowsOut;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.rowsPerSec = rowsPerSec;
+    }
+
+    public int getStepId() {
+        return stepId;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public String getSubType() {
+        return subType;
+    }
+
+    public long getRowsIn() {
+        return rowsIn;
+    }
+
+    public long getRowsOut() {
+        return rowsOut;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public double getRowsPerSec() {
+        return rowsPerSec;
+    }
+
+    @Override
+    public String toString() {
+        return "Step " + stepId + " (" + subType + ") in=" + rowsIn + " out=" + rowsOut
+                + " queue=" + queueDepth + "/" + queueCapacity + " rate=" + String.format("%.1f", rowsPerSec) + "/s";
+    }
+}
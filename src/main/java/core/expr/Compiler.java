@@ -0,0 +1,293 @@
+package core.expr;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把语法树编译为嵌套的 Evaluator 闭包：字段引用在编译时解析为列下标，
+ * 不含字段的子表达式在编译时求值（常量折叠），与常量字符串比较时直接走字符串分支。
+ */
+final class Compiler {
+    // 函数名 -> {最少参数, 最多参数}，-1 表示不限
+    private static final Map<String, int[]> FUNCTIONS = new HashMap<>();
+
+    static {
+        fn("upper", 1, 1);
+        fn("lower", 1, 1);
+        fn("trim", 1, 1);
+        fn("length", 1, 1);
+        fn("substr", 2, 3);
+        fn("concat", 1, -1);
+        fn("contains", 2, 2);
+        fn("startswith", 2, 2);
+        fn("endswith", 2, 2);
+        fn("replace", 3, 3);
+        fn("abs", 1, 1);
+        fn("round", 1, 2);
+        fn("floor", 1, 1);
+        fn("ceil", 1, 1);
+        fn("coalesce", 1, -1);
+        fn("ifnull", 2, 2);
+        fn("isnull", 1, 1);
+        fn("if", 3, 3);
+        fn("tonumber", 1, 1);
+        fn("tostring", 1, 1);
+    }
+
+    private static void fn(String name, int min, int max) {
+        FUNCTIONS.put(name, new int[]{min, max});
+    }
+
+    static void checkCall(String name, int argc, int pos) {
+        int[] arity = FUNCTIONS.get(name);
+        if (arity == null) {
+            throw new IllegalArgumentException("Expression error at " + pos + ": unknown function '" + name + "'");
+        }
+        if (argc < arity[0] || (arity[1] >= 0 && argc > arity[1])) {
+            throw new IllegalArgumentException("Expression error at " + pos + ": function '" + name + "' expects "
+                    + (arity[0] == arity[1] ? String.valueOf(arity[0]) : arity[0] + (arity[1] < 0 ? "+" : ".." + arity[1]))
+                    + " arguments, got " + argc);
+        }
+    }
+
+    private final Map<String, Integer> index;
+
+    Compiler(List<String> fields) {
+        this.index = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) index.putIfAbsent(fields.get(i), i);
+    }
+
+    Evaluator compile(Node n) {
+        if (!(n instanceof Node.Literal) && isConstant(n)) {
+            Object v = raw(n).eval(null); // 常量折叠
+            return row -> v;
+        }
+        return raw(n);
+    }
+
+    private static boolean isConstant(Node n) {
+        if (n instanceof Node.Literal) return true;
+        if (n instanceof Node.Field) return false;
+        if (n instanceof Node.Unary) return isConstant(((Node.Unary) n).operand);
+        if (n instanceof Node.IsNull) return isConstant(((Node.IsNull) n).operand);
+        if (n instanceof Node.Binary) return isConstant(((Node.Binary) n).left) && isConstant(((Node.Binary) n).right);
+        for (Node a : ((Node.Call) n).args) {
+            if (!isConstant(a)) return false;
+        }
+        return true;
+    }
+
+    private Evaluator raw(Node n) {
+        if (n instanceof Node.Literal) {
+            Object v = ((Node.Literal) n).value;
+            return row -> v;
+        }
+        if (n instanceof Node.Field) {
+            String name = ((Node.Field) n).name;
+            Integer i = index.get(name);
+            if (i == null) {
+                throw new IllegalArgumentException("Expression error at " + n.pos + ": unknown field '" + name + "', available " + index.keySet());
+            }
+            int idx = i;
+            return row -> idx < row.size() ? row.get(idx) : null;
+        }
+        if (n instanceof Node.Unary) {
+            Node.Unary u = (Node.Unary) n;
+            Evaluator a = compile(u.operand);
+            if ("-".equals(u.op)) return row -> Values.neg(a.eval(row));
+            return row -> {
+                Boolean b = Values.bool(a.eval(row));
+                return b == null ? null : !b;
+            };
+        }
+        if (n instanceof Node.IsNull) {
+            Node.IsNull u = (Node.IsNull) n;
+            Evaluator a = compile(u.operand);
+            return u.negated ? row -> a.eval(row) != null : row -> a.eval(row) == null;
+        }
+        if (n instanceof Node.Binary) return binary((Node.Binary) n);
+        return call((Node.Call) n);
+    }
+
+    private Evaluator binary(Node.Binary b) {
+        Evaluator l = compile(b.left), r = compile(b.right);
+        switch (b.op) {
+            case "+": return row -> Values.add(l.eval(row), r.eval(row));
+            case "-": return row -> Values.sub(l.eval(row), r.eval(row));
+            case "*": return row -> Values.mul(l.eval(row), r.eval(row));
+            case "/": return row -> Values.div(l.eval(row), r.eval(row));
+            case "%": return row -> Values.mod(l.eval(row), r.eval(row));
+            case "and":
+                // 三值逻辑：任一侧为假即假，否则任一侧为 null 即 null
+                return row -> {
+                    Boolean x = Values.bool(l.eval(row));
+                    if (Boolean.FALSE.equals(x)) return false;
+                    Boolean y = Values.bool(r.eval(row));
+                    if (Boolean.FALSE.equals(y)) return false;
+                    return x == null || y == null ? null : true;
+                };
+            case "or":
+                return row -> {
+                    Boolean x = Values.bool(l.eval(row));
+                    if (Boolean.TRUE.equals(x)) return true;
+                    Boolean y = Values.bool(r.eval(row));
+                    if (Boolean.TRUE.equals(y)) return true;
+                    return x == null || y == null ? null : false;
+                };
+            default:
+                return comparison(b.op, b.left, b.right, l, r);
+        }
+    }
+
+    private Evaluator comparison(String op, Node left, Node right, Evaluator l, Evaluator r) {
+        // 与非数值字符串常量比较：直接按字符串比较，省去逐行数值解析
+        String constant = textConstant(right);
+        if (constant != null && !Values.isNumeric(constant)) {
+            return stringComparison(op, l, constant, false);
+        }
+        constant = textConstant(left);
+        if (constant != null && !Values.isNumeric(constant)) {
+            return stringComparison(op, r, constant, true);
+        }
+        switch (op) {
+            case "=": return row -> test(Values.compare(l.eval(row), r.eval(row)), c -> c == 0);
+            case "!=": return row -> test(Values.compare(l.eval(row), r.eval(row)), c -> c != 0);
+            case "<": return row -> test(Values.compare(l.eval(row), r.eval(row)), c -> c < 0);
+            case "<=": return row -> test(Values.compare(l.eval(row), r.eval(row)), c -> c <= 0);
+            case ">": return row -> test(Values.compare(l.eval(row), r.eval(row)), c -> c > 0);
+            default: return row -> test(Values.compare(l.eval(row), r.eval(row)), c -> c >= 0);
+        }
+    }
+
+    private interface IntTest {
+        boolean test(int c);
+    }
+
+    private static Boolean test(Integer c, IntTest t) {
+        return c == null ? null : t.test(c);
+    }
+
+    private static Evaluator stringComparison(String op, Evaluator e, String constant, boolean flipped) {
+        int sign = flipped ? -1 : 1;
+        switch (op) {
+            case "=": return row -> {
+                Object v = e.eval(row);
+                return v == null ? null : constant.equals(v.toString());
+            };
+            case "!=": return row -> {
+                Object v = e.eval(row);
+                return v == null ? null : !constant.equals(v.toString());
+            };
+            default: {
+                IntTest t = op.equals("<") ? c -> c < 0 : op.equals("<=") ? c -> c <= 0 : op.equals(">") ? c -> c > 0 : c -> c >= 0;
+                return row -> {
+                    Object v = e.eval(row);
+                    return v == null ? null : t.test(sign * v.toString().compareTo(constant));
+                };
+            }
+        }
+    }
+
+    private static String textConstant(Node n) {
+        if (n instanceof Node.Literal && ((Node.Literal) n).value instanceof String) return (String) ((Node.Literal) n).value;
+        return null;
+    }
+
+    private Evaluator call(Node.Call c) {
+        Evaluator[] a = new Evaluator[c.args.size()];
+        for (int i = 0; i < a.length; i++) a[i] = compile(c.args.get(i));
+        switch (c.name) {
+            case "upper": return row -> {
+                String s = Values.str(a[0].eval(row));
+                return s == null ? null : s.toUpperCase();
+            };
+            case "lower": return row -> {
+                String s = Values.str(a[0].eval(row));
+                return s == null ? null : s.toLowerCase();
+            };
+            case "trim": return row -> {
+                String s = Values.str(a[0].eval(row));
+                return s == null ? null : s.trim();
+            };
+            case "length": return row -> {
+                String s = Values.str(a[0].eval(row));
+                return s == null ? null : (Object) (long) s.length();
+            };
+            case "substr": return row -> substr(Values.str(a[0].eval(row)), a[1].eval(row), a.length > 2 ? a[2].eval(row) : null, a.length > 2);
+            case "concat": return row -> {
+                // 与 SQL 不同，null 参数按空串拼接，便于组合可空字段
+                StringBuilder sb = new StringBuilder();
+                for (Evaluator e : a) {
+                    String s = Values.str(e.eval(row));
+                    if (s != null) sb.append(s);
+                }
+                return sb.toString();
+            };
+            case "contains": return row -> stringTest(a, row, String::contains);
+            case "startswith": return row -> stringTest(a, row, String::startsWith);
+            case "endswith": return row -> stringTest(a, row, String::endsWith);
+            case "replace": return row -> {
+                String s = Values.str(a[0].eval(row)), from = Values.str(a[1].eval(row)), to = Values.str(a[2].eval(row));
+                return s == null || from == null ? s : s.replace(from, to == null ? "" : to);
+            };
+            case "abs": return row -> {
+                Number x = Values.num(a[0].eval(row));
+                if (x == null) return null;
+                return x instanceof Long && x.longValue() != Long.MIN_VALUE ? (Object) Math.abs(x.longValue()) : (Object) Math.abs(x.doubleValue());
+            };
+            case "round": return row -> {
+                Number x = Values.num(a[0].eval(row));
+                Number d = a.length > 1 ? Values.num(a[1].eval(row)) : (Number) 0L;
+                if (x == null || d == null) return null;
+                if (x instanceof Long && d.longValue() >= 0) return x;
+                BigDecimal r = BigDecimal.valueOf(x.doubleValue()).setScale(d.intValue(), RoundingMode.HALF_UP);
+                return d.intValue() <= 0 ? (Object) r.longValue() : (Object) r.doubleValue();
+            };
+            case "floor": return row -> {
+                Number x = Values.num(a[0].eval(row));
+                return x == null ? null : x instanceof Long ? x : (Object) (long) Math.floor(x.doubleValue());
+            };
+            case "ceil": return row -> {
+                Number x = Values.num(a[0].eval(row));
+                return x == null ? null : x instanceof Long ? x : (Object) (long) Math.ceil(x.doubleValue());
+            };
+            case "coalesce":
+            case "ifnull": return row -> {
+                for (Evaluator e : a) {
+                    Object v = e.eval(row);
+                    if (v != null) return v;
+                }
+                return null;
+            };
+            case "isnull": return row -> a[0].eval(row) == null;
+            case "if": return row -> Values.truthy(a[0].eval(row)) ? a[1].eval(row) : a[2].eval(row);
+            case "tonumber": return row -> Values.num(a[0].eval(row));
+            case "tostring": return row -> Values.str(a[0].eval(row));
+            default:
+                throw new IllegalArgumentException("Expression error at " + c.pos + ": unknown function '" + c.name + "'");
+        }
+    }
+
+    private interface StringPredicate {
+        boolean test(String s, String arg);
+    }
+
+    private static Object stringTest(Evaluator[] a, core.flowdata.Row row, StringPredicate p) {
+        String s = Values.str(a[0].eval(row)), x = Values.str(a[1].eval(row));
+        return s == null || x == null ? null : p.test(s, x);
+    }
+
+    // substr(s, start[, len])，start 从 1 开始，越界时截断
+    private static Object substr(String s, Object start, Object len, boolean hasLen) {
+        Number st = Values.num(start);
+        Number ln = hasLen ? Values.num(len) : null;
+        if (s == null || st == null || (hasLen && ln == null)) return null;
+        int from = Math.max(0, st.intValue() - 1);
+        if (from >= s.length()) return "";
+        int to = hasLen ? (int) Math.min(s.length(), (long) from + Math.max(0, ln.intValue())) : s.length();
+        return s.substring(from, to);
+    }
+}
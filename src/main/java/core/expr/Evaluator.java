@@ -0,0 +1,11 @@
+package core.expr;
+
+import core.flowdata.Row;
+
+/**
+ * 绑定到具体 Header 列下标后的求值函数，逐行调用时不再查字段表、不再遍历语法树
+ */
+@FunctionalInterface
+public interface Evaluator {
+    Object eval(Row row);
+}
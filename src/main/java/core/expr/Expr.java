@@ -0,0 +1,99 @@
+package core.expr;
+
+import core.flowdata.RowSetTable;
+
+import java.util.*;
+
+/**
+ * 表达式：在 init 阶段解析（语法与函数错误立即暴露），Header 到达后 bind 为按列下标求值的 Evaluator。
+ * <p>
+ * 支持：四则运算与取模、比较（= != &lt;&gt; &lt; &lt;= &gt; &gt;=）、and/or/not、is [not] null、
+ * 字符串与数值函数（upper lower trim length substr concat contains startswith endswith replace
+ * abs round floor ceil coalesce ifnull isnull if tonumber tostring）。
+ * 运算遇到 null 结果为 null；逻辑运算按三值逻辑处理。
+ */
+public final class Expr {
+    private final String source;
+    private final Node root;
+
+    private Expr(String source, Node root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * 解析表达式，语法错误抛出 IllegalArgumentException（含出错位置）
+     */
+    public static Expr parse(String source) {
+        if (source == null || source.trim().isEmpty()) {
+            throw new IllegalArgumentException("Expression is empty");
+        }
+        return new Expr(source, new Parser(source).parse());
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 表达式引用的全部字段名
+     */
+    public Set<String> getFields() {
+        Set<String> fields = new LinkedHashSet<>();
+        collect(root, fields);
+        return fields;
+    }
+
+    public Evaluator bind(RowSetTable header) {
+        return bind(header.getField());
+    }
+
+    /**
+     * 按字段列表绑定，引用不存在的字段时抛出 IllegalArgumentException
+     */
+    public Evaluator bind(List<String> fields) {
+        return new Compiler(fields).compile(root);
+    }
+
+    private static void collect(Node n, Set<String> out) {
+        if (n instanceof Node.Field) {
+            out.add(((Node.Field) n).name);
+        } else if (n instanceof Node.Unary) {
+            collect(((Node.Unary) n).operand, out);
+        } else if (n instanceof Node.IsNull) {
+            collect(((Node.IsNull) n).operand, out);
+        } else if (n instanceof Node.Binary) {
+            collect(((Node.Binary) n).left, out);
+            collect(((Node.Binary) n).right, out);
+        } else if (n instanceof Node.Call) {
+            for (Node a : ((Node.Call) n).args) collect(a, out);
+        }
+    }
+
+    /**
+     * 过滤语义：结果为真时通过，null 与假均不通过
+     */
+    public static boolean test(Evaluator e, core.flowdata.Row row) {
+        return Values.truthy(e.eval(row));
+    }
+
+    /**
+     * 取值语义：转为 Long 或 Double，null、空串或无法解析时返回 null
+     */
+    public static Number toNumber(Object v) {
+        return Values.num(v);
+    }
+
+    /**
+     * 排序语义：与表达式比较规则一致（都可解析为数值时按数值），null 排在最前
+     */
+    public static int compare(Object a, Object b) {
+        if (a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+        return Values.compare(a, b);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
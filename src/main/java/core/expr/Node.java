@@ -0,0 +1,78 @@
+package core.expr;
+
+import java.util.List;
+
+/**
+ * 表达式语法树，只在解析与编译阶段存在，运行时由 Evaluator 取代
+ */
+abstract class Node {
+    final int pos; // 在源串中的位置，用于报错
+
+    Node(int pos) {
+        this.pos = pos;
+    }
+
+    static final class Literal extends Node {
+        final Object value;
+
+        Literal(int pos, Object value) {
+            super(pos);
+            this.value = value;
+        }
+    }
+
+    static final class Field extends Node {
+        final String name;
+
+        Field(int pos, String name) {
+            super(pos);
+            this.name = name;
+        }
+    }
+
+    static final class Unary extends Node {
+        final String op; // "-" 或 "not"
+        final Node operand;
+
+        Unary(int pos, String op, Node operand) {
+            super(pos);
+            this.op = op;
+            this.operand = operand;
+        }
+    }
+
+    static final class Binary extends Node {
+        final String op;
+        final Node left;
+        final Node right;
+
+        Binary(int pos, String op, Node left, Node right) {
+            super(pos);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    static final class IsNull extends Node {
+        final Node operand;
+        final boolean negated;
+
+        IsNull(int pos, Node operand, boolean negated) {
+            super(pos);
+            this.operand = operand;
+            this.negated = negated;
+        }
+    }
+
+    static final class Call extends Node {
+        final String name; // 小写函数名
+        final List<Node> args;
+
+        Call(int pos, String name, List<Node> args) {
+            super(pos);
+            this.name = name;
+            this.args = args;
+        }
+    }
+}
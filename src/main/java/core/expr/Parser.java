@@ -0,0 +1,283 @@
+package core.expr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 递归下降解析器。优先级由低到高：
+ * or → and → not → 比较 / is [not] null → + - → * / % → 一元负号 → 字面量、字段、函数调用、括号
+ * <p>
+ * 字段名为标识符（可含中文），含空格等特殊字符时用反引号包裹：`order id`；
+ * 字符串用单引号或双引号，反斜杠转义；关键字 and/or/not/is/null/true/false 不区分大小写。
+ */
+final class Parser {
+    private final String src;
+    private int pos = 0;
+
+    // 当前记号
+    private int tokPos;
+    private char kind;      // 'n' 数值, 's' 字符串, 'i' 标识符, 'f' 反引号字段, 'o' 运算符/标点, 'e' 结束
+    private String text;
+    private Object value;
+
+    Parser(String src) {
+        this.src = src;
+        next();
+    }
+
+    Node parse() {
+        Node n = or();
+        if (kind != 'e') throw error(tokPos, "unexpected '" + text + "'");
+        return n;
+    }
+
+    private Node or() {
+        Node n = and();
+        while (isKeyword("or") || isOp("||")) {
+            int p = tokPos;
+            next();
+            n = new Node.Binary(p, "or", n, and());
+        }
+        return n;
+    }
+
+    private Node and() {
+        Node n = not();
+        while (isKeyword("and") || isOp("&&")) {
+            int p = tokPos;
+            next();
+            n = new Node.Binary(p, "and", n, not());
+        }
+        return n;
+    }
+
+    private Node not() {
+        if (isKeyword("not") || isOp("!")) {
+            int p = tokPos;
+            next();
+            return new Node.Unary(p, "not", not());
+        }
+        return comparison();
+    }
+
+    private Node comparison() {
+        Node n = additive();
+        if (isKeyword("is")) {
+            int p = tokPos;
+            next();
+            boolean negated = false;
+            if (isKeyword("not")) {
+                negated = true;
+                next();
+            }
+            if (!isKeyword("null")) throw error(tokPos, "expected 'null' after 'is'");
+            next();
+            return new Node.IsNull(p, n, negated);
+        }
+        if (kind == 'o') {
+            String op;
+            switch (text) {
+                case "=": case "==": op = "="; break;
+                case "!=": case "<>": op = "!="; break;
+                case "<": case "<=": case ">": case ">=": op = text; break;
+                default: return n;
+            }
+            int p = tokPos;
+            next();
+            n = new Node.Binary(p, op, n, additive());
+        }
+        return n;
+    }
+
+    private Node additive() {
+        Node n = multiplicative();
+        while (isOp("+") || isOp("-")) {
+            String op = text;
+            int p = tokPos;
+            next();
+            n = new Node.Binary(p, op, n, multiplicative());
+        }
+        return n;
+    }
+
+    private Node multiplicative() {
+        Node n = unary();
+        while (isOp("*") || isOp("/") || isOp("%")) {
+            String op = text;
+            int p = tokPos;
+            next();
+            n = new Node.Binary(p, op, n, unary());
+        }
+        return n;
+    }
+
+    private Node unary() {
+        if (isOp("-")) {
+            int p = tokPos;
+            next();
+            return new Node.Unary(p, "-", unary());
+        }
+        if (isOp("+")) {
+            next();
+            return unary();
+        }
+        return primary();
+    }
+
+    private Node primary() {
+        int p = tokPos;
+        switch (kind) {
+            case 'n':
+            case 's': {
+                Object v = value;
+                next();
+                return new Node.Literal(p, v);
+            }
+            case 'f': {
+                String name = text;
+                next();
+                return new Node.Field(p, name);
+            }
+            case 'i': {
+                String name = text;
+                String lower = name.toLowerCase();
+                next();
+                switch (lower) {
+                    case "null": return new Node.Literal(p, null);
+                    case "true": return new Node.Literal(p, Boolean.TRUE);
+                    case "false": return new Node.Literal(p, Boolean.FALSE);
+                }
+                if (isOp("(")) {
+                    next();
+                    List<Node> args = new ArrayList<>();
+                    if (!isOp(")")) {
+                        args.add(or());
+                        while (isOp(",")) {
+                            next();
+                            args.add(or());
+                        }
+                    }
+                    expect(")");
+                    Compiler.checkCall(lower, args.size(), p);
+                    return new Node.Call(p, lower, args);
+                }
+                return new Node.Field(p, name);
+            }
+            case 'o':
+                if (isOp("(")) {
+                    next();
+                    Node n = or();
+                    expect(")");
+                    return n;
+                }
+                throw error(p, "unexpected '" + text + "'");
+            default:
+                throw error(p, "unexpected end of expression");
+        }
+    }
+
+    private void expect(String op) {
+        if (!isOp(op)) throw error(tokPos, "expected '" + op + "'" + (kind == 'e' ? " at end" : " but found '" + text + "'"));
+        next();
+    }
+
+    private boolean isOp(String op) {
+        return kind == 'o' && text.equals(op);
+    }
+
+    private boolean isKeyword(String kw) {
+        return kind == 'i' && text.equalsIgnoreCase(kw);
+    }
+
+    // 词法：读取下一个记号
+    private void next() {
+        while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) pos++;
+        tokPos = pos;
+        value = null;
+        if (pos >= src.length()) {
+            kind = 'e';
+            text = "";
+            return;
+        }
+        char c = src.charAt(pos);
+        if (Character.isDigit(c) || (c == '.' && pos + 1 < src.length() && Character.isDigit(src.charAt(pos + 1)))) {
+            number();
+        } else if (c == '\'' || c == '"') {
+            string(c);
+        } else if (c == '`') {
+            int end = src.indexOf('`', pos + 1);
+            if (end < 0) throw error(pos, "unterminated field name");
+            kind = 'f';
+            text = src.substring(pos + 1, end);
+            pos = end + 1;
+        } else if (Character.isLetter(c) || c == '_') {
+            int start = pos;
+            while (pos < src.length() && (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '_')) pos++;
+            kind = 'i';
+            text = src.substring(start, pos);
+        } else {
+            kind = 'o';
+            String two = pos + 1 < src.length() ? src.substring(pos, pos + 2) : "";
+            switch (two) {
+                case "==": case "!=": case "<>": case "<=": case ">=": case "&&": case "||":
+                    text = two;
+                    pos += 2;
+                    return;
+            }
+            if ("+-*/%=<>!(),".indexOf(c) < 0) throw error(pos, "unexpected character '" + c + "'");
+            text = String.valueOf(c);
+            pos++;
+        }
+    }
+
+    private void number() {
+        int start = pos;
+        boolean decimal = false;
+        while (pos < src.length() && Character.isDigit(src.charAt(pos))) pos++;
+        if (pos < src.length() && src.charAt(pos) == '.') {
+            decimal = true;
+            pos++;
+            while (pos < src.length() && Character.isDigit(src.charAt(pos))) pos++;
+        }
+        if (pos < src.length() && (src.charAt(pos) == 'e' || src.charAt(pos) == 'E')) {
+            decimal = true;
+            pos++;
+            if (pos < src.length() && (src.charAt(pos) == '+' || src.charAt(pos) == '-')) pos++;
+            while (pos < src.length() && Character.isDigit(src.charAt(pos))) pos++;
+        }
+        kind = 'n';
+        text = src.substring(start, pos);
+        try {
+            value = decimal ? (Object) Double.parseDouble(text) : (Object) Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw error(start, "invalid number '" + text + "'");
+        }
+    }
+
+    private void string(char quote) {
+        int start = pos++;
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= src.length()) throw error(start, "unterminated string");
+            char c = src.charAt(pos++);
+            if (c == quote) break;
+            if (c == '\\' && pos < src.length()) {
+                char e = src.charAt(pos++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    default: sb.append(e);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        kind = 's';
+        text = src.substring(start, pos);
+        value = sb.toString();
+    }
+
+    private IllegalArgumentException error(int at, String msg) {
+        return new IllegalArgumentException("Expression error at " + at + ": " + msg + " in \"" + src + "\"");
+    }
+}
@@ -0,0 +1,155 @@
+package core.expr;
+
+/**
+ * 表达式运行时的取值与类型转换规则：
+ * 数值统一为 Long 或 Double，字符串在参与运算或比较时按数值解析，无法解析时视为 null；
+ * 任何运算遇到 null 结果为 null，过滤条件中 null 视为不通过。
+ */
+final class Values {
+    private Values() {
+    }
+
+    /**
+     * 转为 Long 或 Double；null、空串或无法解析时返回 null
+     */
+    static Number num(Object v) {
+        if (v == null) return null;
+        if (v instanceof Long || v instanceof Double) return (Number) v;
+        if (v instanceof Integer || v instanceof Short || v instanceof Byte) return ((Number) v).longValue();
+        if (v instanceof Number) return ((Number) v).doubleValue();
+        if (v instanceof Boolean) return null;
+        return parse(v.toString());
+    }
+
+    static Number parse(String s) {
+        s = s.trim();
+        int n = s.length();
+        if (n == 0) return null;
+        boolean integral = n <= 18; // 18 位以内的整数不会溢出 long
+        for (int i = 0; i < n && integral; i++) {
+            char c = s.charAt(i);
+            integral = (c >= '0' && c <= '9') || (i == 0 && (c == '-' || c == '+') && n > 1);
+        }
+        if (integral) return Long.parseLong(s);
+        // 先按字符粗筛，避免对普通文本抛出异常
+        boolean digit = false;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') digit = true;
+            else if (c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') return null;
+        }
+        if (!digit) return null;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static boolean isNumeric(Object v) {
+        return v instanceof Number || (v instanceof String && parse((String) v) != null);
+    }
+
+    /**
+     * 过滤语义的真值：Boolean 本身、字符串 "true"、非零数值为真，其余（含 null）为假
+     */
+    static boolean truthy(Object v) {
+        if (v instanceof Boolean) return (Boolean) v;
+        if (v == null) return false;
+        if (v instanceof Number) return ((Number) v).doubleValue() != 0;
+        return "true".equalsIgnoreCase(v.toString().trim());
+    }
+
+    /**
+     * 三值逻辑下的布尔值：null 保持为 null
+     */
+    static Boolean bool(Object v) {
+        return v == null ? null : truthy(v);
+    }
+
+    static Object add(Object a, Object b) {
+        Number x = num(a), y = num(b);
+        if (x == null || y == null) return null;
+        if (x instanceof Long && y instanceof Long) {
+            long l = x.longValue(), r = y.longValue(), s = l + r;
+            if (((l ^ s) & (r ^ s)) < 0) return (double) l + (double) r; // 溢出转 double
+            return s;
+        }
+        return x.doubleValue() + y.doubleValue();
+    }
+
+    static Object sub(Object a, Object b) {
+        Number x = num(a), y = num(b);
+        if (x == null || y == null) return null;
+        if (x instanceof Long && y instanceof Long) {
+            long l = x.longValue(), r = y.longValue(), d = l - r;
+            if (((l ^ r) & (l ^ d)) < 0) return (double) l - (double) r;
+            return d;
+        }
+        return x.doubleValue() - y.doubleValue();
+    }
+
+    static Object mul(Object a, Object b) {
+        Number x = num(a), y = num(b);
+        if (x == null || y == null) return null;
+        if (x instanceof Long && y instanceof Long) {
+            try {
+                return Math.multiplyExact(x.longValue(), y.longValue());
+            } catch (ArithmeticException e) {
+                return x.doubleValue() * y.doubleValue();
+            }
+        }
+        return x.doubleValue() * y.doubleValue();
+    }
+
+    // 整除时保持整数，否则为小数；除数为 0 返回 null
+    static Object div(Object a, Object b) {
+        Number x = num(a), y = num(b);
+        if (x == null || y == null) return null;
+        if (y.doubleValue() == 0) return null;
+        if (x instanceof Long && y instanceof Long && x.longValue() % y.longValue() == 0 && y.longValue() != -1) {
+            return x.longValue() / y.longValue();
+        }
+        return x.doubleValue() / y.doubleValue();
+    }
+
+    static Object mod(Object a, Object b) {
+        Number x = num(a), y = num(b);
+        if (x == null || y == null) return null;
+        if (y.doubleValue() == 0) return null;
+        if (x instanceof Long && y instanceof Long) return x.longValue() % y.longValue();
+        return x.doubleValue() % y.doubleValue();
+    }
+
+    static Object neg(Object a) {
+        Number x = num(a);
+        if (x == null) return null;
+        if (x instanceof Long && x.longValue() != Long.MIN_VALUE) return -x.longValue();
+        return -x.doubleValue();
+    }
+
+    /**
+     * 比较：两侧都可解析为数值时按数值比较（CSV 中的 "10" 与 "9" 按数值比较），
+     * 否则按字符串比较；任一侧为 null 返回 null
+     */
+    static Integer compare(Object a, Object b) {
+        if (a == null || b == null) return null;
+        Number x = num(a);
+        Number y = x == null ? null : num(b);
+        if (x != null && y != null) {
+            if (x instanceof Long && y instanceof Long) return Long.compare(x.longValue(), y.longValue());
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (a instanceof Boolean && b instanceof Boolean) return Boolean.compare((Boolean) a, (Boolean) b);
+        return a.toString().compareTo(b.toString());
+    }
+
+    static String str(Object v) {
+        if (v == null) return null;
+        if (v instanceof Double) {
+            double d = (Double) v;
+            if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15) return String.valueOf((long) d);
+        }
+        return v.toString();
+    }
+}
@@ -0,0 +1,115 @@
+package core.flowdata;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Row 的紧凑二进制编码，用于溢写到磁盘的临时文件。
+ * 每行：列数(varint) + 逐列 [类型标记 + 值]；String、Long、Integer、Double、Boolean、null 原样保留，
+ * 其余类型按 toString() 写为字符串。
+ */
+public final class RowCodec {
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+
+    private RowCodec() {
+    }
+
+    public static void write(DataOutput out, Row row) throws IOException {
+        writeVarInt(out, row.size());
+        for (Object v : row) writeValue(out, v);
+    }
+
+    /**
+     * 单个值：类型标记 + 值（RowFile 的混合类型列复用）
+     */
+    static void writeValue(DataOutput out, Object v) throws IOException {
+        if (v == null) {
+            out.writeByte(NULL);
+        } else if (v instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) v);
+        } else if (v instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) v);
+        } else if (v instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) v);
+        } else if (v instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) v);
+        } else if (v instanceof Boolean) {
+            out.writeByte((Boolean) v ? TRUE : FALSE);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, v.toString());
+        }
+    }
+
+    /**
+     * 读取下一行，到达文件末尾时返回 null
+     */
+    public static Row read(DataInput in) throws IOException {
+        int n;
+        try {
+            n = readVarInt(in);
+        } catch (EOFException e) {
+            return null;
+        }
+        Row row = new Row();
+        for (int i = 0; i < n; i++) row.add(readValue(in));
+        return row;
+    }
+
+    static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL: return null;
+            case STRING: return readString(in);
+            case LONG: return in.readLong();
+            case INT: return in.readInt();
+            case DOUBLE: return in.readDouble();
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            default: throw new IOException("Corrupt row data, unknown tag " + tag);
+        }
+    }
+
+    // writeUTF 限制 64KB，这里用 varint 长度 + UTF-8 字节
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        writeVarInt(out, b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] b = new byte[readVarInt(in)];
+        in.readFully(b);
+        return new String(b, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Corrupt row data, varint too long");
+    }
+}
@@ -0,0 +1,542 @@
+package core.flowdata;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * 二进制行文件：把 Row 按行组（block）列式存储，用于流程之间暂存数据与溢写，顺序扫描时不再解析文本。
+ * 文件结构：
+ *   文件头 —— 魔数 ETLR、版本号、字段数(varint)、各字段名；无表头的溢写文件字段数为 0
+ *   行组   —— 长度(int) + 内容 + CRC32(int)；长度为 0 表示文件结束，其后是总行数(long)
+ *   行组内容 —— 行数、列数、各行列数（全部相同时省略）、逐列 [编码 + null 个数 + null 位图 + 最小/最大值 + 数据]
+ * 每列按行组内的实际类型选择编码：整数为 zigzag 差分 varint，浮点定长，布尔位图，
+ * 字符串重复较多时用字典 + 游程编码，否则长度前缀；类型混杂的列逐值带类型标记（与 RowCodec 相同）。
+ * 读取方可先看行组的统计信息，不需要的行组整块跳过、不解码。
+ */
+public final class RowFile {
+    private static final byte[] MAGIC = {'E', 'T', 'L', 'R'};
+    private static final byte VERSION = 1;
+
+    // 列编码
+    private static final byte C_NULL = 0;     // 全部为 null
+    private static final byte C_LONG = 1;
+    private static final byte C_INT = 2;
+    private static final byte C_DOUBLE = 3;
+    private static final byte C_BOOL = 4;
+    private static final byte C_STRING = 5;
+    private static final byte C_DICT = 6;     // 字符串字典 + 游程
+    private static final byte C_MIXED = 7;
+
+    private RowFile() {
+    }
+
+    /**
+     * 写入端：攒满 blockRows 行编码为一个行组写出，close 时写出剩余行与结束标记。只由一个线程使用
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final int blockRows;
+        private final List<Row> pending = new ArrayList<>();
+        private final Buffer block = new Buffer();
+        private final DataOutputStream blockOut = new DataOutputStream(block);
+        private final Buffer data = new Buffer();
+        private final DataOutputStream dataOut = new DataOutputStream(data);
+        private final Buffer stats = new Buffer();
+        private final DataOutputStream statsOut = new DataOutputStream(stats);
+        private final Map<String, Integer> dict = new HashMap<>();
+        private final CRC32 crc = new CRC32();
+        private long rows = 0;
+        private boolean closed = false;
+
+        public Writer(OutputStream out, List<String> fields, int blockRows) throws IOException {
+            if (blockRows < 1) throw new IllegalArgumentException("blockRows must be positive");
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            this.blockRows = blockRows;
+            this.out.write(MAGIC);
+            this.out.writeByte(VERSION);
+            List<String> names = fields == null ? Collections.emptyList() : fields;
+            RowCodec.writeVarInt(this.out, names.size());
+            for (String f : names) RowCodec.writeString(this.out, f);
+        }
+
+        public void write(Row row) throws IOException {
+            pending.add(row);
+            rows++;
+            if (pending.size() >= blockRows) writeBlock();
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                if (!pending.isEmpty()) writeBlock();
+                out.writeInt(0);
+                out.writeLong(rows);
+            } finally {
+                out.close();
+            }
+        }
+
+        /**
+         * 放弃写入：丢弃未写出的行，只关闭底层流、不写结束标记，读取方会把该文件当作不完整文件拒绝
+         */
+        public void abort() throws IOException {
+            if (closed) return;
+            closed = true;
+            pending.clear();
+            out.close();
+        }
+
+        private void writeBlock() throws IOException {
+            int n = pending.size();
+            int cols = 0;
+            boolean ragged = false;
+            for (Row row : pending) cols = Math.max(cols, row.size());
+            for (Row row : pending) ragged |= row.size() != cols;
+
+            block.reset();
+            RowCodec.writeVarInt(blockOut, n);
+            RowCodec.writeVarInt(blockOut, cols);
+            blockOut.writeByte(ragged ? 1 : 0);
+            if (ragged) for (Row row : pending) RowCodec.writeVarInt(blockOut, row.size());
+            Object[] values = new Object[n];
+            for (int c = 0; c < cols; c++) {
+                int nulls = 0;
+                for (int r = 0; r < n; r++) {
+                    Row row = pending.get(r);
+                    values[r] = c < row.size() ? row.get(c) : null;
+                    if (values[r] == null) nulls++;
+                }
+                writeColumn(values, n, nulls);
+            }
+            blockOut.flush();
+
+            crc.reset();
+            crc.update(block.array(), 0, block.size());
+            out.writeInt(block.size());
+            out.write(block.array(), 0, block.size());
+            out.writeInt((int) crc.getValue());
+            pending.clear();
+        }
+
+        private void writeColumn(Object[] values, int n, int nulls) throws IOException {
+            data.reset();
+            stats.reset();
+            byte type = nulls == n ? C_NULL : typeOf(values, n);
+            switch (type) {
+                case C_LONG:
+                case C_INT: {
+                    long min = Long.MAX_VALUE, max = Long.MIN_VALUE, prev = 0;
+                    for (int r = 0; r < n; r++) {
+                        if (values[r] == null) continue;
+                        long x = ((Number) values[r]).longValue();
+                        min = Math.min(min, x);
+                        max = Math.max(max, x);
+                        writeVarLong(dataOut, zigzag(x - prev));
+                        prev = x;
+                    }
+                    writeVarLong(statsOut, zigzag(min));
+                    writeVarLong(statsOut, zigzag(max));
+                    break;
+                }
+                case C_DOUBLE: {
+                    double min = Double.NaN, max = Double.NaN;
+                    for (int r = 0; r < n; r++) {
+                        if (values[r] == null) continue;
+                        double x = (Double) values[r];
+                        if (Double.isNaN(min) || Double.compare(x, min) < 0) min = x;
+                        if (Double.isNaN(max) || Double.compare(x, max) > 0) max = x;
+                        dataOut.writeDouble(x);
+                    }
+                    statsOut.writeDouble(min);
+                    statsOut.writeDouble(max);
+                    break;
+                }
+                case C_BOOL: {
+                    byte[] bits = new byte[(n - nulls + 7) >>> 3];
+                    int k = 0;
+                    for (int r = 0; r < n; r++) {
+                        if (values[r] == null) continue;
+                        if ((Boolean) values[r]) bits[k >>> 3] |= 1 << (k & 7);
+                        k++;
+                    }
+                    dataOut.write(bits);
+                    break;
+                }
+                case C_STRING:
+                    type = writeStrings(values, n, nulls);
+                    break;
+                default:
+                    for (int r = 0; r < n; r++) {
+                        if (values[r] != null) RowCodec.writeValue(dataOut, values[r]);
+                    }
+            }
+            dataOut.flush();
+            statsOut.flush();
+
+            blockOut.writeByte(type);
+            RowCodec.writeVarInt(blockOut, nulls);
+            if (nulls > 0 && nulls < n) {
+                byte[] present = new byte[(n + 7) >>> 3];
+                for (int r = 0; r < n; r++) if (values[r] != null) present[r >>> 3] |= 1 << (r & 7);
+                blockOut.write(present);
+            }
+            blockOut.write(stats.array(), 0, stats.size());
+            RowCodec.writeVarInt(blockOut, data.size());
+            blockOut.write(data.array(), 0, data.size());
+        }
+
+        /**
+         * 不同值不超过非空值个数的一半时写字典 + 游程，否则逐个写长度前缀字符串；返回实际使用的编码
+         */
+        private byte writeStrings(Object[] values, int n, int nulls) throws IOException {
+            String min = null, max = null;
+            int limit = (n - nulls) / 2;
+            dict.clear();
+            for (int r = 0; r < n; r++) {
+                String s = (String) values[r];
+                if (s == null) continue;
+                if (min == null || s.compareTo(min) < 0) min = s;
+                if (max == null || s.compareTo(max) > 0) max = s;
+                if (dict.size() <= limit) dict.putIfAbsent(s, dict.size());
+            }
+            RowCodec.writeString(statsOut, min);
+            RowCodec.writeString(statsOut, max);
+            if (dict.size() > limit) {
+                for (int r = 0; r < n; r++) {
+                    if (values[r] != null) RowCodec.writeString(dataOut, (String) values[r]);
+                }
+                return C_STRING;
+            }
+            String[] entries = new String[dict.size()];
+            for (Map.Entry<String, Integer> e : dict.entrySet()) entries[e.getValue()] = e.getKey();
+            RowCodec.writeVarInt(dataOut, entries.length);
+            for (String s : entries) RowCodec.writeString(dataOut, s);
+            int run = 0, last = -1;
+            for (int r = 0; r < n; r++) {
+                if (values[r] == null) continue;
+                int idx = dict.get(values[r]);
+                if (idx != last && run > 0) {
+                    RowCodec.writeVarInt(dataOut, run);
+                    RowCodec.writeVarInt(dataOut, last);
+                    run = 0;
+                }
+                last = idx;
+                run++;
+            }
+            RowCodec.writeVarInt(dataOut, run);
+            RowCodec.writeVarInt(dataOut, last);
+            return C_DICT;
+        }
+
+        private static byte typeOf(Object[] values, int n) {
+            Class<?> cls = null;
+            for (int r = 0; r < n; r++) {
+                if (values[r] == null) continue;
+                if (cls == null) cls = values[r].getClass();
+                else if (cls != values[r].getClass()) return C_MIXED;
+            }
+            if (cls == Long.class) return C_LONG;
+            if (cls == Integer.class) return C_INT;
+            if (cls == Double.class) return C_DOUBLE;
+            if (cls == Boolean.class) return C_BOOL;
+            if (cls == String.class) return C_STRING;
+            return C_MIXED;
+        }
+    }
+
+    /**
+     * 读取端：逐个行组读出并校验 CRC，可按统计信息跳过行组，或用 next 逐行读取
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> fields;
+        private long blocks = 0;
+        private long rows = 0;
+        private boolean finished = false;
+        private List<Row> current = Collections.emptyList();
+        private int pos = 0;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+            byte[] magic = new byte[MAGIC.length];
+            try {
+                this.in.readFully(magic);
+            } catch (EOFException e) {
+                throw new IOException("Not a row file, too short");
+            }
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not a row file, bad magic");
+            byte version = this.in.readByte();
+            if (version != VERSION) throw new IOException("Unsupported row file version " + version);
+            int n = RowCodec.readVarInt(this.in);
+            List<String> names = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) names.add(RowCodec.readString(this.in));
+            this.fields = Collections.unmodifiableList(names);
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        /**
+         * 读出下一个行组（只解析目录与统计信息，行在 Block.rows 时才解码），文件结束时返回 null
+         */
+        public Block nextBlock() throws IOException {
+            if (finished) return null;
+            int len;
+            try {
+                len = in.readInt();
+            } catch (EOFException e) {
+                throw new IOException("Truncated row file, missing end marker after " + blocks + " blocks");
+            }
+            if (len == 0) {
+                long total = in.readLong();
+                if (total != rows) throw new IOException("Corrupt row file, expected " + total + " rows but read " + rows);
+                finished = true;
+                return null;
+            }
+            if (len < 0) throw new IOException("Corrupt row file block " + blocks + ", bad length " + len);
+            byte[] payload = new byte[len];
+            in.readFully(payload);
+            int expected = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, len);
+            if ((int) crc.getValue() != expected) {
+                throw new IOException("Corrupt row file block " + blocks + ", checksum mismatch");
+            }
+            Block block = new Block(payload);
+            blocks++;
+            rows += block.size();
+            return block;
+        }
+
+        /**
+         * 逐行读取，文件结束时返回 null
+         */
+        public Row next() throws IOException {
+            while (pos >= current.size()) {
+                Block block = nextBlock();
+                if (block == null) return null;
+                current = block.rows();
+                pos = 0;
+            }
+            return current.get(pos++);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * 一个行组：构造时解析各列的编码、null 个数与最小/最大值，rows 时解码
+     */
+    public static final class Block {
+        private final byte[] payload;
+        private final int size;
+        private final int columns;
+        private final int[] rowLengths;   // null 表示每行都是 columns 列
+        private final byte[] types;
+        private final int[] nulls;
+        private final int[] presentOffsets; // null 位图在 payload 中的位置，-1 表示没有
+        private final Object[] mins;
+        private final Object[] maxs;
+        private final int[] dataOffsets;
+        private final int[] dataLengths;
+
+        Block(byte[] payload) throws IOException {
+            this.payload = payload;
+            ByteArrayInputStream bin = new ByteArrayInputStream(payload);
+            DataInputStream d = new DataInputStream(bin);
+            size = RowCodec.readVarInt(d);
+            columns = RowCodec.readVarInt(d);
+            if (d.readByte() != 0) {
+                rowLengths = new int[size];
+                for (int r = 0; r < size; r++) rowLengths[r] = RowCodec.readVarInt(d);
+            } else {
+                rowLengths = null;
+            }
+            types = new byte[columns];
+            nulls = new int[columns];
+            presentOffsets = new int[columns];
+            mins = new Object[columns];
+            maxs = new Object[columns];
+            dataOffsets = new int[columns];
+            dataLengths = new int[columns];
+            for (int c = 0; c < columns; c++) {
+                types[c] = d.readByte();
+                nulls[c] = RowCodec.readVarInt(d);
+                presentOffsets[c] = -1;
+                if (nulls[c] > 0 && nulls[c] < size) {
+                    presentOffsets[c] = payload.length - bin.available();
+                    d.skipBytes((size + 7) >>> 3);
+                }
+                switch (types[c]) {
+                    case C_LONG:
+                        mins[c] = unzigzag(readVarLong(d));
+                        maxs[c] = unzigzag(readVarLong(d));
+                        break;
+                    case C_INT:
+                        mins[c] = (int) unzigzag(readVarLong(d));
+                        maxs[c] = (int) unzigzag(readVarLong(d));
+                        break;
+                    case C_DOUBLE:
+                        mins[c] = d.readDouble();
+                        maxs[c] = d.readDouble();
+                        break;
+                    case C_STRING:
+                    case C_DICT:
+                        mins[c] = RowCodec.readString(d);
+                        maxs[c] = RowCodec.readString(d);
+                        break;
+                    case C_NULL:
+                    case C_BOOL:
+                    case C_MIXED:
+                        break;
+                    default:
+                        throw new IOException("Corrupt row file, unknown column encoding " + types[c]);
+                }
+                dataLengths[c] = RowCodec.readVarInt(d);
+                dataOffsets[c] = payload.length - bin.available();
+                if (d.skipBytes(dataLengths[c]) != dataLengths[c]) throw new IOException("Corrupt row file, column data truncated");
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int columns() {
+            return columns;
+        }
+
+        public int nullCount(int column) {
+            return column < columns ? nulls[column] : size;
+        }
+
+        /**
+         * 列的最小值；全为 null、布尔或混合类型的列没有统计信息，返回 null
+         */
+        public Object min(int column) {
+            return column < columns ? mins[column] : null;
+        }
+
+        public Object max(int column) {
+            return column < columns ? maxs[column] : null;
+        }
+
+        public List<Row> rows() throws IOException {
+            Object[][] cols = new Object[columns][];
+            for (int c = 0; c < columns; c++) cols[c] = decode(c);
+            List<Row> rows = new ArrayList<>(size);
+            for (int r = 0; r < size; r++) {
+                int len = rowLengths == null ? columns : rowLengths[r];
+                Row row = new Row();
+                for (int c = 0; c < len; c++) row.add(cols[c][r]);
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        private boolean present(int column, int r) {
+            if (nulls[column] == 0) return true;
+            if (nulls[column] == size) return false;
+            return (payload[presentOffsets[column] + (r >>> 3)] & (1 << (r & 7))) != 0;
+        }
+
+        private Object[] decode(int c) throws IOException {
+            Object[] values = new Object[size];
+            if (types[c] == C_NULL) return values;
+            DataInputStream d = new DataInputStream(new ByteArrayInputStream(payload, dataOffsets[c], dataLengths[c]));
+            long prev = 0;
+            int k = 0;                    // 非空值序号（布尔位图用）
+            String[] dict = null;
+            int run = 0;
+            String runValue = null;
+            if (types[c] == C_DICT) {
+                dict = new String[RowCodec.readVarInt(d)];
+                for (int i = 0; i < dict.length; i++) dict[i] = RowCodec.readString(d);
+            }
+            for (int r = 0; r < size; r++) {
+                if (!present(c, r)) continue;
+                switch (types[c]) {
+                    case C_LONG:
+                        prev += unzigzag(readVarLong(d));
+                        values[r] = prev;
+                        break;
+                    case C_INT:
+                        prev += unzigzag(readVarLong(d));
+                        values[r] = (int) prev;
+                        break;
+                    case C_DOUBLE:
+                        values[r] = d.readDouble();
+                        break;
+                    case C_BOOL:
+                        values[r] = (payload[dataOffsets[c] + (k >>> 3)] & (1 << (k & 7))) != 0;
+                        break;
+                    case C_STRING:
+                        values[r] = RowCodec.readString(d);
+                        break;
+                    case C_DICT:
+                        if (run == 0) {
+                            run = RowCodec.readVarInt(d);
+                            runValue = dict[RowCodec.readVarInt(d)];
+                        }
+                        values[r] = runValue;
+                        run--;
+                        break;
+                    default:
+                        values[r] = RowCodec.readValue(d);
+                }
+                k++;
+            }
+            return values;
+        }
+    }
+
+    /**
+     * 可直接取底层数组的字节缓冲，避免每个行组复制一次
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarLong(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Corrupt row file, varlong too long");
+    }
+}
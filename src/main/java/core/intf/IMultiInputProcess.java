@@ -0,0 +1,20 @@
+package core.intf;
+
+import core.Channel;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多输入处理步骤：每个上游步骤各有一条独立的输入通道，而不是共享一条交错的通道。
+ * Scheduler 识别到该接口时按父步骤建通道，并调用 {@link #process(Map, List)}；它不是 {@link IProcess}，
+ * 不会被当作单输入步骤调用。
+ */
+public interface IMultiInputProcess extends IProcessStep {
+
+    /**
+     * @param inputs  父步骤 ID -> 该父步骤写入的通道，顺序与 parentStepId 一致
+     * @param outputs 下游通道
+     */
+    void process(Map<String, Channel> inputs, List<Channel> outputs) throws Exception;
+}
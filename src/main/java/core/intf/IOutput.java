@@ -7,4 +7,12 @@ import java.util.Map;
 public interface IOutput {
     void init(Map<String,Object> cfg);
     void consume(Channel input) throws Exception;
-}
\ No newline at end of file
+
+    /**
+     * 插件在通道消费线程之外自建的线程数（如分片写线程、并发请求线程），按步骤配置估算。
+     * 规划阶段调用，计入流程的线程需求与 Engine 的线程预算；默认 0
+     */
+    default int threadDemand(Map<String, Object> cfg) {
+        return 0;
+    }
+}
@@ -0,0 +1,24 @@
+package core.intf;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 处理步骤的公共部分：初始化与下游声明。
+ * 处理插件实现 {@link IProcess}（一条输入通道）或 {@link IMultiInputProcess}（每个父步骤一条输入通道）之一，
+ * Scheduler 按实现的接口建通道并调用对应的 process，两者互不继承，不存在调不到的方法。
+ */
+public interface IProcessStep {
+    void init(Map<String, Object> cfg);
+
+    /**
+     * 明确声明此步骤显式的下游步骤ID，用于补充管道拓扑。
+     * Scheduler 初始化后调用，非必需，默认空集。
+     *
+     * @return 该步骤显式输出目标步骤ID集合，默认无
+     */
+    default Set<String> declareOutputTargets() {
+        return Collections.emptySet();
+    }
+}
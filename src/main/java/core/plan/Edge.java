@@ -0,0 +1,33 @@
+package core.plan;
+
+/**
+ * 执行计划中的一条数据边：上游步骤 -> 下游步骤，附带通道配置
+ */
+public class Edge {
+    private final int from;
+    private final int to;
+    private final int capacity; // 下游输入通道的队列容量
+
+    public Edge(int from, int to, int capacity) {
+        this.from = from;
+        this.to = to;
+        this.capacity = capacity;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String toString() {
+        return from + " -> " + to + " (capacity " + capacity + ")";
+    }
+}
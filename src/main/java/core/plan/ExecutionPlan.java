@@ -0,0 +1,110 @@
+package core.plan;
+
+import runtask.Step;
+
+import java.util.*;
+
+/**
+ * 经过校验的执行计划：拓扑序、父子关系、带通道配置的边列表。
+ * 由 Planner 生成，Scheduler 只依据该对象建图与启动，不再直接读取 StepList。
+ */
+public class ExecutionPlan {
+    private final List<Step> order;                      // 拓扑序（上游在前）
+    private final Map<Integer, Step> steps;              // stepId -> Step
+    private final Map<Integer, List<Integer>> parents;   // stepId -> 上游
+    private final Map<Integer, List<Integer>> children;  // stepId -> 下游
+    private final Map<Integer, Integer> capacity;        // stepId -> 输入通道容量
+    private final List<Edge> edges;
+    private final Map<Integer, Integer> pluginThreads;   // stepId -> 插件自建的线程数
+
+    ExecutionPlan(List<Step> order,
+                  Map<Integer, List<Integer>> parents,
+                  Map<Integer, List<Integer>> children,
+                  Map<Integer, Integer> capacity,
+                  List<Edge> edges,
+                  Map<Integer, Integer> pluginThreads) {
+        this.order = Collections.unmodifiableList(order);
+        Map<Integer, Step> byId = new LinkedHashMap<>();
+        for (Step s : order) byId.put(s.getStepId(), s);
+        this.steps = Collections.unmodifiableMap(byId);
+        this.parents = parents;
+        this.children = children;
+        this.capacity = capacity;
+        this.edges = Collections.unmodifiableList(edges);
+        this.pluginThreads = pluginThreads;
+    }
+
+    public List<Step> getOrder() {
+        return order;
+    }
+
+    public Step getStep(int id) {
+        return steps.get(id);
+    }
+
+    public List<Integer> getParents(int id) {
+        return parents.getOrDefault(id, Collections.emptyList());
+    }
+
+    public List<Integer> getChildren(int id) {
+        return children.getOrDefault(id, Collections.emptyList());
+    }
+
+    public int getCapacity(int id) {
+        return capacity.get(id);
+    }
+
+    public List<Edge> getEdges() {
+        return edges;
+    }
+
+    /**
+     * 按拓扑序返回某一领域（input/process/output）的步骤
+     */
+    public List<Step> stepsOf(String domain) {
+        List<Step> result = new ArrayList<>();
+        for (Step s : order) {
+            if (domain.equals(s.getDomain())) result.add(s);
+        }
+        return result;
+    }
+
+    /**
+     * 流程同时占用的线程上限估计：
+     * 输入步骤占 1 个线程，处理/输出步骤的启动任务占 1 个，通道消费循环最多每个父步骤 1 个
+     * （多输入步骤按父步骤各建通道；普通步骤只有一条通道，按父步骤数估算偏保守），
+     * 另加插件自建的线程（见 IOutput.threadDemand）
+     */
+    public int getThreadDemand() {
+        int demand = 0;
+        for (Step s : order) {
+            demand += Planner.INPUT.equals(s.getDomain()) ? 1 : 1 + Math.max(1, getParents(s.getStepId()).size());
+            demand += pluginThreads.getOrDefault(s.getStepId(), 0);
+        }
+        return demand;
+    }
+
+    /**
+     * 流程最多缓冲的行数：除输入步骤外每个步骤输入通道容量之和（按父步骤数估算，同上），
+     * 作为 Engine 内存预算的估算依据
+     */
+    public long getBufferDemand() {
+        long rows = 0;
+        for (Step s : order) {
+            int id = s.getStepId();
+            if (!Planner.INPUT.equals(s.getDomain())) rows += (long) capacity.get(id) * Math.max(1, getParents(id).size());
+        }
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("order=");
+        for (int i = 0; i < order.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(order.get(i).getStepId());
+        }
+        sb.append("; edges=").append(edges);
+        return sb.toString();
+    }
+}
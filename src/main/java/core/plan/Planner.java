@@ -0,0 +1,181 @@
+package core.plan;
+
+import core.Factory;
+import core.intf.IOutput;
+import runtask.Step;
+import runtask.StepList;
+import tool.Log;
+import tool.Tuning;
+
+import java.util.*;
+
+/**
+ * 规划阶段：把 StepList 校验并编译为 ExecutionPlan。
+ * 重复 ID、悬空父引用、环、无下游的步骤、未注册的插件类型都会在此处立即失败，
+ * 而不是等到运行期超时。
+ */
+public class Planner {
+    public static final String INPUT = "input";
+    public static final String PROCESS = "process";
+    public static final String OUTPUT = "output";
+
+    // 步骤配置中可选的输入通道容量
+    public static final String CHANNEL_CAPACITY = "channelCapacity";
+
+    private final Factory fact; // 为空时跳过插件类型校验
+
+    public Planner(Factory fact) {
+        this.fact = fact;
+    }
+
+    public ExecutionPlan plan(StepList list) {
+        long start = System.nanoTime();
+        List<String> errors = new ArrayList<>();
+        List<Step> data = list == null || list.getData() == null ? Collections.emptyList() : list.getData();
+        if (data.isEmpty()) {
+            errors.add("flow has no steps");
+        }
+
+        // 1. 步骤自身校验
+        Map<Integer, Step> steps = new LinkedHashMap<>();
+        for (Step s : data) {
+            Integer id = s.getStepId();
+            if (id == null) {
+                errors.add("step without stepId: " + s.getDes());
+                continue;
+            }
+            if (steps.put(id, s) != null) {
+                errors.add("duplicate stepId " + id);
+            }
+            String domain = s.getDomain();
+            if (!INPUT.equals(domain) && !PROCESS.equals(domain) && !OUTPUT.equals(domain)) {
+                errors.add("step " + id + " has unknown domain '" + domain + "'");
+            } else if (s.getSubType() == null || s.getSubType().isEmpty()) {
+                errors.add("step " + id + " has no subType");
+            } else if (fact != null && !fact.has(domain, s.getSubType())) {
+                errors.add("step " + id + " references unregistered " + domain + " plugin '" + s.getSubType() + "'");
+            }
+        }
+
+        // 2. 父子关系与悬空引用
+        Map<Integer, List<Integer>> parents = new HashMap<>();
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        for (Step s : steps.values()) {
+            int id = s.getStepId();
+            List<Integer> ps = new ArrayList<>();
+            List<String> raw = s.getParentStepId() == null ? Collections.emptyList() : s.getParentStepId();
+            for (String pid : raw) {
+                int parentId;
+                try {
+                    parentId = Integer.parseInt(pid.trim());
+                } catch (NumberFormatException | NullPointerException e) {
+                    errors.add("step " + id + " has malformed parent id '" + pid + "'");
+                    continue;
+                }
+                if (parentId == id) {
+                    errors.add("step " + id + " lists itself as parent");
+                } else if (!steps.containsKey(parentId)) {
+                    errors.add("step " + id + " references missing parent " + parentId);
+                } else if (ps.contains(parentId)) {
+                    errors.add("step " + id + " lists parent " + parentId + " twice");
+                } else {
+                    ps.add(parentId);
+                    children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(id);
+                }
+            }
+            parents.put(id, ps);
+        }
+
+        // 3. 领域约束：输入无上游，输出有上游且无下游，输入/处理必须有下游
+        for (Step s : steps.values()) {
+            int id = s.getStepId();
+            boolean hasParents = !parents.get(id).isEmpty();
+            boolean hasChildren = children.containsKey(id);
+            if (INPUT.equals(s.getDomain())) {
+                if (hasParents) errors.add("input step " + id + " must not have parents");
+                if (!hasChildren) errors.add("input step " + id + " has no downstream step");
+            } else if (PROCESS.equals(s.getDomain())) {
+                if (!hasChildren) errors.add("process step " + id + " has no downstream step");
+            } else if (OUTPUT.equals(s.getDomain())) {
+                if (!hasParents) errors.add("output step " + id + " has no upstream step");
+                if (hasChildren) errors.add("output step " + id + " must not have downstream steps " + children.get(id));
+            }
+        }
+
+        // 4. 拓扑排序（Kahn），同层按声明顺序保证结果稳定
+        List<Step> order = new ArrayList<>();
+        Map<Integer, Integer> indegree = new HashMap<>();
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (Step s : steps.values()) {
+            int d = parents.get(s.getStepId()).size();
+            indegree.put(s.getStepId(), d);
+            if (d == 0) ready.add(s.getStepId());
+        }
+        while (!ready.isEmpty()) {
+            int id = ready.poll();
+            order.add(steps.get(id));
+            for (int c : children.getOrDefault(id, Collections.emptyList())) {
+                if (indegree.merge(c, -1, Integer::sum) == 0) ready.add(c);
+            }
+        }
+        if (order.size() < steps.size()) {
+            List<Integer> stuck = new ArrayList<>();
+            for (Integer id : steps.keySet()) {
+                if (indegree.get(id) > 0) stuck.add(id);
+            }
+            errors.add("cycle detected, unresolvable steps " + stuck);
+        }
+
+        if (!errors.isEmpty()) {
+            String msg = "Invalid flow: " + String.join("; ", errors);
+            Log.error("Planner", msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // 5. 通道配置与边列表
+        Map<Integer, Integer> capacity = new HashMap<>();
+        for (Step s : order) {
+            capacity.put(s.getStepId(), capacityOf(s));
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (Step s : order) {
+            int to = s.getStepId();
+            for (int from : parents.get(to)) {
+                edges.add(new Edge(from, to, capacity.get(to)));
+            }
+        }
+
+        // 6. 插件自建线程，计入流程线程需求
+        Map<Integer, Integer> pluginThreads = new HashMap<>();
+        for (Step s : order) {
+            int n = pluginThreadsOf(s);
+            if (n > 0) pluginThreads.put(s.getStepId(), n);
+        }
+
+        ExecutionPlan plan = new ExecutionPlan(order, parents, children, capacity, edges, pluginThreads);
+        Log.info("Planner", "Plan ready in " + (System.nanoTime() - start) / 1000 + "us: " + plan);
+        return plan;
+    }
+
+    // 输出插件按配置声明的自建线程数；配置有误时记 0，由插件 init 报告具体错误
+    private int pluginThreadsOf(Step s) {
+        if (fact == null || !OUTPUT.equals(s.getDomain())) return 0;
+        Map<String, Object> cfg = s.getConfig() == null ? Collections.emptyMap() : s.getConfig();
+        try {
+            return Math.max(0, fact.create(s.getSubType(), IOutput.class).threadDemand(cfg));
+        } catch (RuntimeException e) {
+            Log.debug("Planner", "step " + s.getStepId() + " thread demand unknown: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private static int capacityOf(Step s) {
+        Object v = s.getConfig() == null ? null : s.getConfig().get(CHANNEL_CAPACITY);
+        if (v == null) return Tuning.queueSize();
+        int c = v instanceof Number ? ((Number) v).intValue() : Integer.parseInt(v.toString().trim());
+        if (c <= 0) {
+            throw new IllegalArgumentException("step " + s.getStepId() + " has non-positive " + CHANNEL_CAPACITY + ": " + c);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,166 @@
+package org.gugu.etl.controller;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONUtil;
+import core.CancellationToken;
+import core.Engine;
+import core.JobHandle;
+import org.gugu.etl.StartUp;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import runtask.StepList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 作业接口：提交流程文件异步执行、查询/推送进度、取消。
+ * 作业在 Engine 的共享线程池中运行，请求线程只做提交与快照读取，不会阻塞。
+ */
+@Controller
+public class JobController {
+    // SSE 推送共用一个守护线程，只读取快照，不参与作业执行
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "etl-job-progress");
+        t.setDaemon(true);
+        return t;
+    });
+    
+    @PostMapping("/job/submit")
+    @ResponseBody
+    public String submit(@RequestParam String fileName, @RequestParam(required = false) String name) {
+        HashMap<Object, Object> result = new HashMap<>();
+        if (!FileUtil.exist(StartUp.getPathString(fileName))) {
+            result.put("status", "400");
+            result.put("message", "file is not exist");
+            return JSONUtil.toJsonStr(result);
+        }
+        StepList sl = StepController.getStepList(fileName);
+        JobHandle job;
+        try {
+            job = Engine.shared().submit(name != null ? name : fileName, sl);
+        } catch (IllegalArgumentException e) {
+            result.put("status", "400");
+            result.put("message", e.getMessage());
+            return JSONUtil.toJsonStr(result);
+        }
+        result.put("status", "200");
+        result.put("message", "ok");
+        result.put("jobId", job.getJobId());
+        return JSONUtil.toJsonStr(result);
+    }
+    
+    @GetMapping("/job/status")
+    @ResponseBody
+    public String status(@RequestParam String jobId) {
+        HashMap<Object, Object> result = new HashMap<>();
+        JobHandle job = Engine.shared().getJob(jobId);
+        if (job == null) {
+            result.put("status", "404");
+            result.put("message", "job is not exist");
+            return JSONUtil.toJsonStr(result);
+        }
+        result.put("status", "200");
+        result.put("message", "ok");
+        result.put("job", describe(job));
+        return JSONUtil.toJsonStr(result);
+    }
+    
+    @GetMapping("/job/list")
+    @ResponseBody
+    public String list() {
+        HashMap<Object, Object> result = new HashMap<>();
+        List<HashMap<String, Object>> jobs = new ArrayList<>();
+        for (JobHandle job : Engine.shared().getJobs()) {
+            HashMap<String, Object> j = new HashMap<>();
+            j.put("jobId", job.getJobId());
+            j.put("name", job.getName());
+            j.put("state", job.getState().name());
+            jobs.add(j);
+        }
+        result.put("status", "200");
+        result.put("message", "ok");
+        result.put("jobs", jobs);
+        return JSONUtil.toJsonStr(result);
+    }
+    
+    @PostMapping("/job/cancel")
+    @ResponseBody
+    public String cancel(@RequestParam String jobId) {
+        HashMap<Object, Object> result = new HashMap<>();
+        JobHandle job = Engine.shared().getJob(jobId);
+        if (job == null) {
+            result.put("status", "404");
+            result.put("message", "job is not exist");
+        } else if (job.isDone()) {
+            result.put("status", "400");
+            result.put("message", "job is already " + job.getState().name());
+        } else {
+            job.cancel();
+            result.put("status", "200");
+            result.put("message", "ok");
+        }
+        return JSONUtil.toJsonStr(result);
+    }
+    
+    /**
+     * 以 SSE 定时推送进度快照（事件名 progress），作业结束后推送 done 并关闭连接
+     */
+    @GetMapping("/job/stream")
+    public SseEmitter stream(@RequestParam String jobId, @RequestParam(defaultValue = "1000") long intervalMs) {
+        SseEmitter emitter = new SseEmitter(0L); // 不超时，由作业结束或客户端断开关闭
+        JobHandle job = Engine.shared().getJob(jobId);
+        if (job == null) {
+            emitter.completeWithError(new IllegalArgumentException("job is not exist: " + jobId));
+            return emitter;
+        }
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        Runnable stop = () -> {
+            ScheduledFuture<?> f = task.get();
+            if (f != null) f.cancel(false);
+        };
+        emitter.onCompletion(stop);
+        emitter.onTimeout(stop);
+        emitter.onError(e -> stop.run());
+        task.set(TICKER.scheduleAtFixedRate(() -> {
+            try {
+                boolean done = job.isDone(); // 先取状态再取快照，保证 done 事件带最终计数
+                emitter.send(SseEmitter.event().name("progress").data(JSONUtil.toJsonStr(describe(job))));
+                if (done) {
+                    emitter.send(SseEmitter.event().name("done").data(job.getState().name()));
+                    emitter.complete();
+                    stop.run();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 客户端已断开
+                stop.run();
+            }
+        }, 0, Math.max(100, intervalMs), TimeUnit.MILLISECONDS));
+        return emitter;
+    }
+    
+    private static HashMap<String, Object> describe(JobHandle job) {
+        HashMap<String, Object> j = new HashMap<>();
+        j.put("jobId", job.getJobId());
+        j.put("name", job.getName());
+        j.put("state", job.getState().name());
+        j.put("submittedAt", job.getSubmittedAt());
+        j.put("startedAt", job.getStartedAt());
+        j.put("finishedAt", job.getFinishedAt());
+        if (job.getFailure() != null && job.getState() == JobHandle.State.FAILED) {
+            j.put("failure", CancellationToken.describe(job.getFailure()));
+        }
+        j.put("steps", job.getProgress());
+        return j;
+    }
+}
@@ -81,7 +81,7 @@ public class StepController {
         return JSONUtil.toJsonStr(result);
     }
     
-    private static StepList getStepList(String fileName) {
+    static StepList getStepList(String fileName) {
         File data = new File(StartUp.getPathString(fileName));
         StringBuffer sb = new StringBuffer();
         FileUtil.readLines(data, StandardCharsets.UTF_8)
@@ -85,7 +85,7 @@ public class ConfigFileInput implements IInput {
             for (Channel output : outputs) {
                 output.publish(row);
             }
-            Log.data("ConfigFileInput", row.toString());
+            Log.data("ConfigFileInput", row::toString);
         }
     }
 
@@ -119,7 +119,7 @@ public class ConfigFileInput implements IInput {
                 for (Channel output : outputs) {
                     output.publish(row);
                 }
-                Log.data("ConfigFileInput", row.toString());
+                Log.data("ConfigFileInput", row::toString);
             }
         }
     }
@@ -58,6 +58,11 @@ public class CsvInput implements IInput {
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
+                if (headerProcessed && Channel.allStopped(outputs)) {
+                    // 下游（如 limit）已不再需要数据，提前结束读取
+                    Log.info("CsvInput", "Downstream stopped, stop reading after " + lineCount + " lines");
+                    break;
+                }
                 line = line.trim();
                 if (line.isEmpty()) continue;
 
@@ -81,7 +86,7 @@ public class CsvInput implements IInput {
                 for (Channel output : outputs) {
                     output.publish(row);
                 }
-                Log.data("CsvInput", row.toString());
+                Log.data("CsvInput", row::toString);
 
                 if (lineCount % 10000 == 0) {
                     long elapsed = System.currentTimeMillis() - startTime;
@@ -110,6 +115,13 @@ public class CsvInput implements IInput {
     }
 
     private Row parseCsvLine(String line) {
+        return parseCsvLine(line, delimiter, quoteChar);
+    }
+
+    /**
+     * 按分隔符与引号解析一行 CSV（lookup 步骤读取文件维表时复用）
+     */
+    public static Row parseCsvLine(String line, char delimiter, char quoteChar) {
         Row row = new Row();
         StringBuilder current = new StringBuilder();
         boolean inQuotes = false;
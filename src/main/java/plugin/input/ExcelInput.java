@@ -135,6 +135,10 @@ public class ExcelInput implements IProcess { // Implemented IProcess
 
             int startRowIndex = headerRow ? 1 : 0;
             for (int i = startRowIndex; i <= sheet.getLastRowNum(); i++) {
+                if (Channel.allStopped(outputs)) {
+                    Log.info("ExcelInput", "Downstream stopped, stop reading at row " + i);
+                    break;
+                }
                 org.apache.poi.ss.usermodel.Row excelRow = sheet.getRow(i);
                 if (excelRow == null) continue;
 
@@ -167,7 +171,7 @@ public class ExcelInput implements IProcess { // Implemented IProcess
                 for (Channel out : outputs) {
                     out.publish(outRow);
                 }
-                Log.data("ExcelInput", outRow.toString());
+                Log.data("ExcelInput", outRow::toString);
             }
         }
     }
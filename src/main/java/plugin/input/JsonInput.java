@@ -154,6 +154,10 @@ public class JsonInput implements IInput {
 
         // 逐条发出数据
         for (JSONObject json : jsonObjectsToProcess) {
+            if (Channel.allStopped(outputs)) {
+                Log.info("JsonInput", "Downstream stopped, stop publishing.");
+                break;
+            }
             Row row = new Row();
             for (Map<String, String> map : fieldMappings) {
                 String path = map.get("jsonPath");
@@ -162,7 +166,7 @@ public class JsonInput implements IInput {
             }
             for (Channel out : outputs) {
                 out.publish(row);
-                Log.data("JsonInput", "Published row: " + row);
+                Log.data("JsonInput", () -> "Published row: " + row);
             }
         }
     }
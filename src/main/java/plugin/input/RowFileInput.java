@@ -0,0 +1,135 @@
+package plugin.input;
+
+import anno.Input;
+import core.Channel;
+import core.expr.Expr;
+import core.flowdata.Row;
+import core.flowdata.RowFile;
+import core.flowdata.RowSetTable;
+import core.intf.IInput;
+import tool.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读取 rowfile 输出写的二进制行文件，按行组整块发布。
+ * 配置：
+ *   filePath   —— 文件路径，必填
+ *   rangeField —— 可选，按该字段的取值范围过滤；行组的最小/最大值与范围不相交时整块跳过、不解码
+ *   rangeMin   —— 范围下界（含），缺省不限
+ *   rangeMax   —— 范围上界（含），缺省不限
+ * 比较规则与表达式一致：两边都可解析为数值时按数值比较。
+ */
+@Input(type = "rowfile")
+public class RowFileInput implements IInput {
+    private String filePath;
+    private String rangeField;
+    private Object rangeMin;
+    private Object rangeMax;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        this.filePath = (String) cfg.get("filePath");
+        if (filePath == null || filePath.isEmpty()) {
+            throw new IllegalArgumentException("Missing file path");
+        }
+        this.rangeField = (String) cfg.get("rangeField");
+        this.rangeMin = cfg.get("rangeMin");
+        this.rangeMax = cfg.get("rangeMax");
+        if (rangeField == null && (rangeMin != null || rangeMax != null)) {
+            throw new IllegalArgumentException("rangeMin/rangeMax require rangeField");
+        }
+        Log.info("RowFileInput", "Init with path: " + filePath
+                + (rangeField != null ? ", range " + rangeField + " in [" + rangeMin + ", " + rangeMax + "]" : ""));
+    }
+
+    @Override
+    public void start(List<Channel> outputs) throws Exception {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            throw new IllegalArgumentException("File not found: " + filePath);
+        }
+        long rows = 0, blocks = 0, skipped = 0;
+        long startTime = System.currentTimeMillis();
+        try (RowFile.Reader reader = new RowFile.Reader(new FileInputStream(file))) {
+            RowSetTable header = new RowSetTable(reader.getFields());
+            for (Channel output : outputs) output.setHeader(header);
+            Log.header("RowFileInput", String.join(", ", header.getField()));
+            int col = -1;
+            if (rangeField != null) {
+                col = reader.getFields().indexOf(rangeField);
+                if (col < 0) throw new IllegalArgumentException("Range field not found: " + rangeField);
+            }
+
+            RowFile.Block block;
+            while ((block = reader.nextBlock()) != null) {
+                if (Channel.allStopped(outputs)) {
+                    // 下游（如 limit）已不再需要数据，提前结束读取
+                    Log.info("RowFileInput", "Downstream stopped, stop reading after " + rows + " rows");
+                    break;
+                }
+                blocks++;
+                if (col >= 0 && !overlaps(block, col)) {
+                    skipped++;
+                    continue;
+                }
+                List<Row> batch = block.rows();
+                if (col >= 0) {
+                    List<Row> kept = new ArrayList<>(batch.size());
+                    for (Row row : batch) if (inRange(col < row.size() ? row.get(col) : null)) kept.add(row);
+                    batch = kept;
+                }
+                rows += batch.size();
+                for (int k = 0; k < outputs.size(); k++) {
+                    if (k == 0) {
+                        outputs.get(0).publishAll(batch);
+                    } else {
+                        List<Row> copy = new ArrayList<>(batch.size());
+                        for (Row row : batch) copy.add(row.copy());
+                        outputs.get(k).publishAll(copy);
+                    }
+                }
+                if (Log.dataEnabled()) for (Row row : batch) Log.data("RowFileInput", row.toString());
+            }
+        } finally {
+            long totalTime = Math.max(System.currentTimeMillis() - startTime, 1);
+            Log.success("RowFileInput", "Read " + rows + " rows from " + blocks + " blocks"
+                    + (skipped > 0 ? " (" + skipped + " skipped by range)" : "") + ", " + rows * 1000 / totalTime + " rows/sec");
+            for (Channel output : outputs) {
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * 行组中该列全为 null 时不可能命中；没有统计信息（布尔、混合类型列）时不能跳过。
+     * 字符串列的最小/最大值按字典序，只有边界都不是数值（逐行也按字符串比较）时才可用于跳过；
+     * 数值列同理只在边界都是数值时可用
+     */
+    private boolean overlaps(RowFile.Block block, int col) {
+        if (block.nullCount(col) == block.size()) return false;
+        Object min = block.min(col), max = block.max(col);
+        if (min == null || max == null) return true;
+        boolean numericStats = min instanceof Number;
+        if (!boundsAre(numericStats)) return true;
+        return (rangeMax == null || Expr.compare(min, rangeMax) <= 0)
+                && (rangeMin == null || Expr.compare(max, rangeMin) >= 0);
+    }
+
+    private boolean boundsAre(boolean numeric) {
+        for (Object bound : new Object[]{rangeMin, rangeMax}) {
+            if (bound != null && (Expr.toNumber(bound) != null) != numeric) return false;
+        }
+        return true;
+    }
+
+    private boolean inRange(Object v) {
+        if (v == null) return false;
+        return (rangeMin == null || Expr.compare(v, rangeMin) >= 0)
+                && (rangeMax == null || Expr.compare(v, rangeMax) <= 0);
+    }
+}
@@ -53,6 +53,41 @@ public class TableInput implements IInput {
         Log.info("TableInput", "Starting HTTP request.");
         long startTime = System.currentTimeMillis();
 
+        RowSetTable table = parseTable(fetch(url, method, body, headers));
+        Log.header("TableInput", String.join(", ", table.getField()));
+
+        // Publish data to all output channels
+        for (Channel out : outputs) {
+            // 修正：使用 new RowSetTable(table.getField()) 来获取表头模式
+            out.setHeader(new RowSetTable(table.getField()));
+            // 修正：使用 table.getRowList() 来获取所有行
+            for (Row row : table.getRowList()) {
+                out.publish(row);
+                if (Log.dataEnabled()) Log.data("TableInput", row.toString());
+            }
+        }
+
+        long totalTime = System.currentTimeMillis() - startTime;
+        // 使用 table.getRowList().size() 来获取行数
+        long rowsPerSecond = table.getRowList().size() * 1000 / Math.max(totalTime, 1);
+
+        Log.success("TableInput", "HTTP request completed.");
+        //使用 table.getRowList().size() 来获取行数
+        Log.success("TableInput", "Total rows: " + table.getRowList().size());
+        Log.success("TableInput", "Time: " + totalTime + "ms");
+        Log.success("TableInput", "Speed: " + rowsPerSecond + " rows/sec");
+
+        // Close all output channels to signal end of stream
+        for (Channel out : outputs) {
+            out.close();
+        }
+        Log.info("TableInput", "All output channels closed.");
+    }
+
+    /**
+     * 执行一次 HTTP 请求并返回响应体，非 200 状态视为失败（lookup 步骤复用）
+     */
+    public static String fetch(String url, String method, String body, Map<String, String> headers) {
         HttpRequest request;
         if ("POST".equals(method)) {
             request = HttpRequest.post(url).body(body, String.valueOf(StandardCharsets.UTF_8));
@@ -73,8 +108,13 @@ public class TableInput implements IInput {
             Log.error("TableInput", "HTTP request returned non-200 status: " + response.getStatus() + ". Body: " + response.body());
             throw new RuntimeException("HTTP请求返回非200状态码: " + response.getStatus());
         }
+        return response.body();
+    }
 
-        String responseBody = response.body();
+    /**
+     * 解析 {"data": {"columns": [...], "rows": [{...}]}} 格式的响应为表，缺失的值填空串
+     */
+    public static RowSetTable parseTable(String responseBody) {
         JSONObject json;
         try {
             json = JSONUtil.parseObj(responseBody);
@@ -103,8 +143,6 @@ public class TableInput implements IInput {
         }
 
         RowSetTable table = new RowSetTable(headersList);
-        Log.header("TableInput", String.join(", ", headersList));
-
         for (Object rowObj : rows) {
             if (rowObj instanceof JSONObject) {
                 JSONObject rowJson = (JSONObject) rowObj;
@@ -114,36 +152,10 @@ public class TableInput implements IInput {
                     row.add(value != null ? value.toString() : "");
                 }
                 table.addRow(row);
-                Log.data("TableInput", row.toString());
             } else {
                 Log.warn("TableInput", "Skipping non-JSONObject row: " + rowObj);
             }
         }
-
-        // Publish data to all output channels
-        for (Channel out : outputs) {
-            // 修正：使用 new RowSetTable(table.getField()) 来获取表头模式
-            out.setHeader(new RowSetTable(table.getField()));
-            // 修正：使用 table.getRowList() 来获取所有行
-            for (Row row : table.getRowList()) {
-                out.publish(row);
-            }
-        }
-
-        long totalTime = System.currentTimeMillis() - startTime;
-        // 使用 table.getRowList().size() 来获取行数
-        long rowsPerSecond = table.getRowList().size() * 1000 / Math.max(totalTime, 1);
-
-        Log.success("TableInput", "HTTP request completed.");
-        //使用 table.getRowList().size() 来获取行数
-        Log.success("TableInput", "Total rows: " + table.getRowList().size());
-        Log.success("TableInput", "Time: " + totalTime + "ms");
-        Log.success("TableInput", "Speed: " + rowsPerSecond + " rows/sec");
-
-        // Close all output channels to signal end of stream
-        for (Channel out : outputs) {
-            out.close();
-        }
-        Log.info("TableInput", "All output channels closed.");
+        return table;
     }
 }
@@ -1,75 +1,107 @@
 package plugin.output;
 import anno.Output;
 import core.Channel;
+import core.flowdata.Row;
 import core.flowdata.RowSetTable;
 import core.intf.IOutput;
 import tool.Log;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 控制台输出：在本步骤自己的线程上把行格式化进复用的缓冲区，攒满或空闲时整块写到 System.out，
+ * 不再逐行经过 Log.data（每行格式化时间戳、多次加锁 println）。只在 Log.dataEnabled() 时打印行。
+ * 配置：
+ *   every      —— 每 N 行打印一行，默认 1（全部打印）
+ *   maxRows    —— 最多打印的行数，默认不限；达到后继续消费上游但不再打印
+ *   bufferSize —— 缓冲的字符数，超过后写出，默认 65536
+ *   flushMs    —— 上游暂时没有数据时，缓冲中的行最多等待的毫秒数，默认 200
+ */
 @Output(type = "console")
 public class Console implements IOutput {
+    private long every;
+    private long maxRows;
+    private int bufferSize;
+    private long flushMs;
+
+    // 以下由消费线程维护
+    private final StringBuilder buffer = new StringBuilder();
+    private long printed = 0;
+
     @Override
     public void init(Map<String, Object> config) {
-        Log.info("ConsoleOutput", "Init completed");
+        this.every = Long.parseLong(String.valueOf(config.getOrDefault("every", 1)));
+        this.maxRows = Long.parseLong(String.valueOf(config.getOrDefault("maxRows", Long.MAX_VALUE)));
+        this.bufferSize = Integer.parseInt(String.valueOf(config.getOrDefault("bufferSize", 1 << 16)));
+        this.flushMs = Long.parseLong(String.valueOf(config.getOrDefault("flushMs", 200)));
+        if (every < 1 || maxRows < 0 || bufferSize < 1 || flushMs < 1) {
+            throw new IllegalArgumentException("every, bufferSize and flushMs must be positive, maxRows must not be negative");
+        }
+        buffer.ensureCapacity(bufferSize + 256);
+        Log.info("ConsoleOutput", "Init completed" + (every > 1 ? ", every " + every + " rows" : "")
+                + (maxRows < Long.MAX_VALUE ? ", at most " + maxRows + " rows" : ""));
     }
 
     @Override
     public void consume(Channel input) throws Exception {
         String channelId = getShortChannelId(input);
         Log.info("ConsoleOutput", "Ready to consume from channel: " + channelId);
-        AtomicLong consumedCount = new AtomicLong(0);
+        long consumedCount = 0;
         Object lastProcessedData = null;
         long startTime = System.currentTimeMillis();
         long lastReportTime = startTime;
+        long lastFlush = startTime;
         boolean firstDataReceived = false;
 
-        while (!input.isClosed() || !input.isEmpty()) {
-            try {
-                Object data = input.poll(2000); // Poll with a timeout
-                if (data != null) {
-                    if (!firstDataReceived) {
-                        Log.info("ConsoleOutput", "First data received, start consuming");
-                        firstDataReceived = true;
-                        RowSetTable header = input.getHeader();
-                        if (header != null) {
-                            Log.header("ConsoleOutput", String.join(", ", header.getField()));
-                        } else {
-                            Log.warn("ConsoleOutput", "No header info available on channel " + channelId);
-                        }
-                    }
-                    lastProcessedData = data;
-                    consumedCount.incrementAndGet();
-                    Log.data("ConsoleOutput", data.toString());
-
-                    long currentTime = System.currentTimeMillis();
-                    if (consumedCount.get() % 5000 == 0 || (currentTime - lastReportTime) > 5000) {
-                        long elapsed = currentTime - startTime;
-                        long speed = consumedCount.get() * 1000 / Math.max(elapsed, 1);
-                        Log.info("ConsoleOutput", "Consumed: " + consumedCount.get() + " records (Speed: " + speed + " records/sec)");
-                        lastReportTime = currentTime;
+        try {
+            while ((!input.isClosed() || !input.isEmpty()) && !input.getToken().isCancelled()) {
+                Object data = input.poll(flushMs);
+                long currentTime = System.currentTimeMillis();
+                if (data == null) {
+                    // 上游暂时没有数据，先把攒下的行写出去
+                    flush();
+                    lastFlush = currentTime;
+                    continue;
+                }
+                if (!firstDataReceived) {
+                    Log.info("ConsoleOutput", "First data received, start consuming");
+                    firstDataReceived = true;
+                    RowSetTable header = input.getHeader();
+                    if (header != null) {
+                        Log.header("ConsoleOutput", String.join(", ", header.getField()));
+                    } else {
+                        Log.warn("ConsoleOutput", "No header info available on channel " + channelId);
                     }
+                }
+                lastProcessedData = data;
+                if (data instanceof RowSetTable) {
+                    for (Row row : ((RowSetTable) data).getRowList()) append(row, consumedCount++);
                 } else {
-                    // If data is null, check if channel is closed and empty to break loop
-                    if (input.isClosed() && input.isEmpty()) {
-                        break;
-                    }
-                    // If not closed or not empty, continue polling
-                    if (!input.isClosed()) continue;
+                    append(data, consumedCount++);
+                }
+                if (buffer.length() >= bufferSize || currentTime - lastFlush >= flushMs) {
+                    flush();
+                    lastFlush = currentTime;
+                }
+
+                if (consumedCount % 5000 == 0 || (currentTime - lastReportTime) > 5000) {
+                    long elapsed = currentTime - startTime;
+                    long speed = consumedCount * 1000 / Math.max(elapsed, 1);
+                    Log.info("ConsoleOutput", "Consumed: " + consumedCount + " records (Speed: " + speed + " records/sec)");
+                    lastReportTime = currentTime;
                 }
-            } catch (InterruptedException e) {
-                Log.warn("ConsoleOutput", "Consume interrupted");
-                Thread.currentThread().interrupt(); // Restore interrupt status
-                break;
             }
+        } catch (InterruptedException e) {
+            Log.warn("ConsoleOutput", "Consume interrupted");
+            Thread.currentThread().interrupt(); // Restore interrupt status
+        } finally {
+            flush();
         }
 
         long totalTime = System.currentTimeMillis() - startTime;
-        long totalCount = consumedCount.get();
-        long avgSpeed = totalTime > 0 ? (totalCount * 1000 / totalTime) : 0;
+        long avgSpeed = totalTime > 0 ? (consumedCount * 1000 / totalTime) : 0;
 
         Log.success("ConsoleOutput", "Consume completed");
-        Log.success("ConsoleOutput", "Total records: " + totalCount);
+        Log.success("ConsoleOutput", "Total records: " + consumedCount + ", printed: " + printed);
         Log.success("ConsoleOutput", "Total time: " + totalTime + "ms");
         Log.success("ConsoleOutput", "Average speed: " + avgSpeed + " records/sec");
 
@@ -78,8 +110,35 @@ public class Console implements IOutput {
         }
     }
 
+    /**
+     * 按抽样间隔与上限决定是否打印，打印的行直接逐值追加到缓冲区
+     */
+    private void append(Object data, long index) {
+        if (index % every != 0 || printed >= maxRows || !Log.dataEnabled()) return;
+        printed++;
+        buffer.append('\t');
+        if (data instanceof Row) {
+            Row row = (Row) data;
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) buffer.append(", ");
+                buffer.append(row.get(i));
+            }
+        } else {
+            buffer.append(data);
+        }
+        buffer.append('\n');
+    }
+
+    private void flush() {
+        if (buffer.length() == 0) return;
+        Log.flush(); // 日志由后台线程异步写出，先等它写完，表头等日志才不会排到行数据后面
+        System.out.print(buffer);
+        System.out.flush();
+        buffer.setLength(0);
+    }
+
     // Helper method to get a short channel ID for logging, duplicated from Channel.java for convenience
     private String getShortChannelId(Channel channel) {
         return Integer.toHexString(channel.hashCode()).substring(0, Math.min(6, Integer.toHexString(channel.hashCode()).length()));
     }
-}
\ No newline at end of file
+}
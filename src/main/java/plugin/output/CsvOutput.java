@@ -0,0 +1,341 @@
+package plugin.output;
+
+import anno.Output;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IOutput;
+import tool.Log;
+import tool.OutputFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把上游数据写成 CSV 文件。行直接编码进复用的字符块与字节缓冲区，缓冲区写满后经 FileChannel 整块写出，
+ * 由通道的单个消费线程按到达顺序写入。
+ * 配置（除文件名外均可选）：
+ *   filename    —— 输出文件路径，必填
+ *   delimiter   —— 字段分隔符，默认 ,
+ *   quoteChar   —— 引号字符，默认 "；字段含分隔符、引号或换行时加引号，引号本身写两遍
+ *   quoteAll    —— 所有字段都加引号，默认 false
+ *   hasHeader   —— 每个文件首行写表头，默认 true
+ *   nullValue   —— NULL 写作的文本，默认空串
+ *   charset     —— 文件编码，默认 UTF-8
+ *   lineSeparator —— 行分隔符，默认 \n
+ *   overwrite   —— 文件已存在时覆盖，默认 false（报错）
+ *   bufferSize  —— 写缓冲区字节数，默认 1048576
+ *   maxFileSize —— 单个文件的字节数上限（按 charset 编码后、压缩前，可带 KB/MB/GB），达到后在行边界切换到 name-序号.csv，默认不限
+ *   compress    —— none（默认）或 gzip，边写边压缩，文件名追加 .gz
+ * 各文件先写 name.tmp，正常结束后统一替换为目标文件；流程取消或写入失败时丢弃缓冲区并删除临时文件，
+ * 不留下看似完整的半截 CSV。
+ */
+@Output(type = "csv")
+public class CsvOutput implements IOutput {
+    private static final int CHUNK_CHARS = 1 << 16;  // 每攒满这么多字符编码一次
+
+    private String filename;
+    private char delimiter;
+    private char quoteChar;
+    private boolean quoteAll;
+    private boolean hasHeader;
+    private String nullValue;
+    private Charset charset;
+    private String lineSeparator;
+    private boolean overwrite;
+    private int bufferSize;
+    private long maxFileSize;
+    private boolean gzip;
+
+    // 以下由消费线程维护
+    private CharsetEncoder encoder;
+    private char[] chars;               // 待编码的字符块
+    private int charCount = 0;
+    private ByteBuffer bytes;           // 编码结果，写满后整块写入文件
+    private final StringBuilder line = new StringBuilder(256);
+    private List<String> header;
+    private WritableByteChannel out;    // 当前文件；gzip 时为压缩流
+    private long fileBytes = 0;         // 当前文件已写出的字节数（压缩前）
+    private int part = 0;
+    private boolean rollPending = false;
+    private long rows = 0;
+    private long totalBytes = 0;
+    private final Map<Path, Path> files = new LinkedHashMap<>(); // 尚未改名的临时文件 -> 目标文件
+    private boolean saved = false;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        this.filename = (String) cfg.get("filename");
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("文件名配置(filename)不能为空");
+        }
+        String delimiterStr = String.valueOf(cfg.getOrDefault("delimiter", ","));
+        String quoteStr = String.valueOf(cfg.getOrDefault("quoteChar", "\""));
+        if (delimiterStr.length() != 1 || quoteStr.length() != 1 || delimiterStr.equals(quoteStr)) {
+            throw new IllegalArgumentException("delimiter 与 quoteChar 必须是不同的单个字符");
+        }
+        this.delimiter = delimiterStr.charAt(0);
+        this.quoteChar = quoteStr.charAt(0);
+        this.quoteAll = Boolean.parseBoolean(String.valueOf(cfg.getOrDefault("quoteAll", false)));
+        this.hasHeader = Boolean.parseBoolean(String.valueOf(cfg.getOrDefault("hasHeader", true)));
+        this.nullValue = String.valueOf(cfg.getOrDefault("nullValue", ""));
+        this.charset = Charset.forName(String.valueOf(cfg.getOrDefault("charset", "UTF-8")));
+        this.lineSeparator = String.valueOf(cfg.getOrDefault("lineSeparator", "\n"));
+        this.overwrite = Boolean.parseBoolean(String.valueOf(cfg.getOrDefault("overwrite", false)));
+        this.bufferSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("bufferSize", 1 << 20)));
+        this.maxFileSize = OutputFiles.parseSize(String.valueOf(cfg.getOrDefault("maxFileSize", 0)));
+        String compress = String.valueOf(cfg.getOrDefault("compress", "none")).toLowerCase();
+        if (!compress.equals("none") && !compress.equals("gzip")) {
+            throw new IllegalArgumentException("不支持的压缩方式: " + compress + "，支持: none, gzip");
+        }
+        this.gzip = compress.equals("gzip");
+        if (bufferSize < 1024 || maxFileSize < 0) {
+            throw new IllegalArgumentException("bufferSize 不能小于 1024，maxFileSize 不能为负数");
+        }
+        Log.info("CsvOutput", "Init with path: " + filename + ", charset " + charset.name()
+                + (maxFileSize > 0 ? ", max file size " + maxFileSize : "") + (gzip ? ", gzip" : ""));
+    }
+
+    @Override
+    public void consume(Channel input) throws Exception {
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = new char[CHUNK_CHARS];
+        bytes = ByteBuffer.allocate(bufferSize);
+        long start = System.currentTimeMillis();
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Exception[] finishError = new Exception[1];
+        try {
+            input.onReceive(data -> {
+                try {
+                    write(input, data);
+                } catch (IOException e) {
+                    throw new IllegalStateException("写入 CSV 文件失败: " + e.getMessage(), e);
+                }
+            }, () -> {
+                try {
+                    // 流程取消时不写出缓冲区、不改名；没有任何行时也生成只含表头的文件
+                    if (!input.getToken().isCancelled()) save(input);
+                } catch (Exception e) {
+                    finishError[0] = e;
+                } finally {
+                    latch.countDown();
+                }
+            });
+            // 消费循环在上游关闭或流程取消时都会执行结束回调
+            latch.await();
+        } finally {
+            if (!saved) discard();
+        }
+        if (finishError[0] != null) {
+            Log.error("CsvOutput", "文件写入失败: " + finishError[0].getMessage());
+            throw finishError[0];
+        }
+        if (!saved) return; // 流程已取消，未写出文件
+        long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+        Log.success("CsvOutput", "Wrote " + rows + " rows, " + totalBytes + " bytes in " + part + " file(s), "
+                + rows * 1000 / elapsed + " rows/sec");
+    }
+
+    private void write(Channel input, Object data) throws IOException {
+        if (data instanceof RowSetTable) {
+            RowSetTable table = (RowSetTable) data;
+            if (header == null) header = table.getField();
+            for (Row row : table.getRowList()) write(input, row);
+            return;
+        }
+        if (!(data instanceof Row)) {
+            Log.warn("CsvOutput", "上游数据类型非 Row，跳过");
+            return;
+        }
+        if (out == null || rollPending) {
+            if (out != null) closeFile();
+            openFile(input);
+            rollPending = false;
+        }
+        Row row = (Row) data;
+        line.setLength(0);
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) line.append(delimiter);
+            Object v = row.get(i);
+            appendField(v == null ? nullValue : v.toString());
+        }
+        line.append(lineSeparator);
+        appendLine();
+        rows++;
+        if (Log.dataEnabled()) Log.data("CsvOutput", row.toString());
+        // 字符块中未编码的部分按字符数估算，文件大小在行边界上可能略超上限
+        if (maxFileSize > 0 && fileBytes + bytes.position() + charCount >= maxFileSize) rollPending = true;
+    }
+
+    /**
+     * 需要时加引号：含分隔符、引号或换行的字段整体加引号，内部引号写两遍
+     */
+    private void appendField(String s) {
+        boolean quote = quoteAll;
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == delimiter || c == quoteChar || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(s);
+            return;
+        }
+        line.append(quoteChar);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == quoteChar) line.append(quoteChar);
+            line.append(c);
+        }
+        line.append(quoteChar);
+    }
+
+    /**
+     * 把 line 拷入字符块，块满时先编码
+     */
+    private void appendLine() throws IOException {
+        int len = line.length();
+        int off = 0;
+        while (off < len) {
+            if (charCount == chars.length) encodeChars(false);
+            int n = Math.min(len - off, chars.length - charCount);
+            line.getChars(off, off + n, chars, charCount);
+            charCount += n;
+            off += n;
+        }
+    }
+
+    /**
+     * 编码字符块到字节缓冲区，缓冲区满时写出；末尾可能剩下半个代理对，移到块首等下一行补齐
+     */
+    private void encodeChars(boolean endOfInput) throws IOException {
+        CharBuffer in = CharBuffer.wrap(chars, 0, charCount);
+        while (true) {
+            CoderResult r = encoder.encode(in, bytes, endOfInput);
+            if (r.isOverflow()) {
+                drainBytes();
+            } else if (r.isUnderflow()) {
+                break;
+            } else {
+                r.throwException();
+            }
+        }
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) drainBytes();
+            encoder.reset();
+        }
+        int left = in.remaining();
+        System.arraycopy(chars, in.position(), chars, 0, left);
+        charCount = left;
+    }
+
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        int n = bytes.remaining();
+        while (bytes.hasRemaining()) out.write(bytes);
+        bytes.clear();
+        fileBytes += n;
+        totalBytes += n;
+    }
+
+    // 写出最后一个文件，再把全部临时文件替换为目标文件
+    private void save(Channel input) throws IOException {
+        if (out == null) openFile(input);
+        closeFile();
+        for (Iterator<Map.Entry<Path, Path>> it = files.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Path> f = it.next();
+            Files.move(f.getKey(), f.getValue(), StandardCopyOption.REPLACE_EXISTING);
+            it.remove();
+        }
+        saved = true;
+    }
+
+    // 丢弃缓冲区中未写出的数据，关闭当前文件并删除所有未改名的临时文件
+    private void discard() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.warn("CsvOutput", "关闭文件失败: " + e.getMessage());
+            }
+            out = null;
+        }
+        for (Path tmp : files.keySet()) {
+            try {
+                Files.deleteIfExists(tmp);
+                Log.warn("CsvOutput", "流程未正常结束，已丢弃未完成的文件: " + tmp);
+            } catch (IOException e) {
+                Log.warn("CsvOutput", "清理临时文件失败: " + tmp + ", " + e.getMessage());
+            }
+        }
+        files.clear();
+    }
+
+    private void openFile(Channel input) throws IOException {
+        Path path = Paths.get(partName(part++)).toAbsolutePath();
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        if (Files.exists(path)) {
+            if (!overwrite) throw new IOException("文件已存在且未启用覆盖模式: " + path);
+            Log.warn("CsvOutput", "文件已存在，将覆盖: " + path);
+        }
+        Path tmp = OutputFiles.tmpFile(path);
+        FileChannel file = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        files.put(tmp, path);
+        // gzip 时压缩流自带缓冲，FileChannel 仍按大块写入
+        out = gzip ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), 1 << 16)) : file;
+        fileBytes = 0;
+        if (part > 1) Log.info("CsvOutput", "切换到文件 " + path + "，已写 " + rows + " 行");
+        if (!hasHeader) return;
+        if (header == null && input.getHeader() != null) header = input.getHeader().getField();
+        if (header == null) {
+            Log.warn("CsvOutput", "上游未提供表头，不写表头行");
+            return;
+        }
+        line.setLength(0);
+        for (int i = 0; i < header.size(); i++) {
+            if (i > 0) line.append(delimiter);
+            appendField(header.get(i));
+        }
+        line.append(lineSeparator);
+        appendLine();
+    }
+
+    private void closeFile() throws IOException {
+        try {
+            encodeChars(true);
+            drainBytes();
+        } finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * 设置了 maxFileSize 时文件名为 name-序号.ext；压缩时追加 .gz
+     */
+    private String partName(int seq) {
+        return OutputFiles.partName(filename, maxFileSize > 0 ? String.format("-%03d", seq) : "", gzip);
+    }
+}
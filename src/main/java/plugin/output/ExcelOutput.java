@@ -1,104 +1,236 @@
 package plugin.output;
 
 import anno.Output;
-import cn.hutool.poi.excel.ExcelUtil;
-import cn.hutool.poi.excel.ExcelWriter;
 import core.Channel;
 import core.flowdata.Row;
+import core.flowdata.RowSetTable;
 import core.intf.IOutput;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import tool.Log;
+import tool.OutputFiles;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.CountDownLatch;
 
+/**
+ * 流式写 xlsx：基于 POI SXSSFWorkbook，内存中只保留最近 windowSize 行，其余行刷到临时文件。
+ * 行由通道的单个消费线程按到达顺序写入，超过单表行数上限后自动新建工作表继续写。
+ * 配置：
+ *   filename        —— 输出文件路径，必填
+ *   sheetname       —— 工作表名，必填；续写的工作表依次命名为 sheetname_2、sheetname_3 ...
+ *   fields          —— 列定义 [{fieldName: ...}]，作为表头；缺省使用上游表头
+ *   hasHeader       —— 是否在每个工作表首行写表头，默认 true
+ *   append          —— 追加到已有文件，默认 false；同名工作表存在时接在其最后一行之后写，否则新建工作表
+ *   windowSize      —— 内存中保留的行数，默认 100
+ *   maxRowsPerSheet —— 单个工作表的行数上限（含表头），默认 1048576（Excel 上限）
+ */
 @Output(type = "excelOutput")
 public class ExcelOutput implements IOutput {
-    private Map<String, Object> config;
-    private ExcelWriter writer;
+    public static final int EXCEL_MAX_ROWS = 1_048_576;
+
     private String filename;
     private String sheetname;
     private boolean append;
     private boolean hasHeader;
-    private List<Map<String, String>> fields;
-    private boolean headerWritten = false;
     private List<String> fieldNames;
-    private ExecutorService executorService;
-    private List<Future<?>> futures;
-    private final int THREAD_POOL_SIZE = 4;
+    private int windowSize;
+    private int maxRowsPerSheet;
+
+    // 以下由消费线程维护
+    private SXSSFWorkbook workbook;
+    private Sheet sheet;
+    private int sheetCount = 0;
+    private int nextRow;
+    private CellStyle dateStyle;
+    private long written = 0;
 
     @Override
     public void init(Map<String, Object> cfg) {
-        this.config = cfg;
-        this.filename = (String) config.get("filename");
-        this.sheetname = (String) config.get("sheetname");
-        this.append = convertToBoolean(config.get("append"), false);
-        this.hasHeader = convertToBoolean(config.get("hasHeader"), true);
-        this.fields = (List<Map<String, String>>) config.get("fields");
-
-        if (filename == null || sheetname == null || fields == null || fields.isEmpty()) {
-            throw new IllegalArgumentException("缺少必要的配置参数：filename、sheetname 或 fields");
+        this.filename = (String) cfg.get("filename");
+        this.sheetname = (String) cfg.get("sheetname");
+        this.append = convertToBoolean(cfg.get("append"), false);
+        this.hasHeader = convertToBoolean(cfg.get("hasHeader"), true);
+        if (filename == null || sheetname == null) {
+            throw new IllegalArgumentException("缺少必要的配置参数：filename 或 sheetname");
         }
-        this.fieldNames = new ArrayList<>();
-        for (Map<String, String> field : fields) {
-            fieldNames.add(field.get("fieldName"));
+        Object fields = cfg.get("fields");
+        if (fields != null) {
+            this.fieldNames = new ArrayList<>();
+            for (Object field : (List<?>) fields) {
+                fieldNames.add(String.valueOf(((Map<?, ?>) field).get("fieldName")));
+            }
+            if (fieldNames.isEmpty()) throw new IllegalArgumentException("fields 不能为空");
         }
-        this.executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
-        this.futures = new ArrayList<>();
-        if (append) {
-            writer = ExcelUtil.getWriter(filename, sheetname);
-        } else {
-            writer = ExcelUtil.getWriter(filename);
-            writer.setSheet(sheetname);
+        this.windowSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("windowSize", 100)));
+        this.maxRowsPerSheet = Integer.parseInt(String.valueOf(cfg.getOrDefault("maxRowsPerSheet", EXCEL_MAX_ROWS)));
+        if (windowSize < 1) throw new IllegalArgumentException("windowSize must be positive");
+        if (maxRowsPerSheet < (hasHeader ? 2 : 1) || maxRowsPerSheet > EXCEL_MAX_ROWS) {
+            throw new IllegalArgumentException("maxRowsPerSheet must be between " + (hasHeader ? 2 : 1) + " and " + EXCEL_MAX_ROWS);
         }
+        Log.info("ExcelOutput", "Init " + filename + " sheet " + sheetname + ", window " + windowSize + " rows");
     }
 
     @Override
     public void consume(Channel input) throws Exception {
-
+        openWorkbook();
+        CountDownLatch latch = new CountDownLatch(1);
+        Exception[] finishError = new Exception[1];
         try {
-            input.subscribe(row -> {
-                synchronized (this) {
-                    try {
-                        if (hasHeader && !headerWritten) {
-                            writer.writeHeadRow(fieldNames);
-                            headerWritten = true;
-                        }
-                        Future<?> future = executorService.submit(() -> {
-                            try {
-                                writer.writeRow((Iterable<?>) row);
-                            } catch (Exception e) {
-                                throw new RuntimeException("处理Excel数据时出错", e);
-                            }
-                        });
-                        futures.add(future);
-                    } catch (Exception e) {
-                        throw new RuntimeException("处理Excel数据时出错", e);
-                    }
-                }
-            });
-            input.onReceive(null, () -> {
-                synchronized (this) {
-                    for (Future<?> future : futures) {
-                        try {
-                            future.get();
-                        } catch (InterruptedException | ExecutionException e) {
-                            throw new RuntimeException("线程执行出错", e);
-                        }
-                    }
-                    if (writer != null) {
-                        writer.close();
-                        writer = null;
-                    }
-                    executorService.shutdown();
+            input.onReceive(data -> write(input, data), () -> {
+                try {
+                    // 流程取消时不落盘，避免留下半截文件
+                    if (!input.getToken().isCancelled()) save(input);
+                } catch (Exception e) {
+                    finishError[0] = e;
+                } finally {
+                    latch.countDown();
                 }
             });
-        } catch (Exception e) {
-            if (writer != null) {
-                writer.close();
+            // 消费循环在上游关闭或流程取消时都会执行结束回调
+            latch.await();
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+        if (finishError[0] != null) {
+            Log.error("ExcelOutput", "文件写入失败: " + finishError[0].getMessage());
+            throw finishError[0];
+        }
+        Log.success("ExcelOutput", "写入 " + written + " 行到 " + filename + "，工作表数 " + sheetCount);
+    }
+
+    /**
+     * 追加模式以已有文件为模板，SXSSF 只允许在模板工作表的最后一行之后续写
+     */
+    private void openWorkbook() throws Exception {
+        File file = new File(filename);
+        if (append && file.isFile()) {
+            XSSFWorkbook template;
+            try (InputStream in = new FileInputStream(file)) {
+                template = new XSSFWorkbook(in);
+            }
+            workbook = new SXSSFWorkbook(template, windowSize);
+        } else {
+            workbook = new SXSSFWorkbook(windowSize);
+        }
+        // 临时文件压缩，大输出时磁盘占用约为未压缩的十分之一
+        workbook.setCompressTempFiles(true);
+        dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+    }
+
+    private void write(Channel input, Object data) {
+        if (data instanceof RowSetTable) {
+            for (Row row : ((RowSetTable) data).getRowList()) write(input, row);
+            return;
+        }
+        if (!(data instanceof Row)) {
+            Log.warn("ExcelOutput", "上游数据类型非 Row，跳过");
+            return;
+        }
+        if (sheet == null || nextRow >= maxRowsPerSheet) nextSheet(input);
+        writeCells(sheet.createRow(nextRow++), (Row) data);
+        written++;
+        if (Log.dataEnabled()) Log.data("ExcelOutput", data.toString());
+    }
+
+    private void nextSheet(Channel input) {
+        sheetCount++;
+        String name = sheetCount == 1 ? sheetname : sheetname + "_" + sheetCount;
+        Sheet existing = workbook.getXSSFWorkbook().getSheet(name);
+        if (existing != null) {
+            // 追加到模板中已有的工作表：模板行保留在 XSSF 中，新行从其后开始
+            sheet = workbook.getSheet(name);
+            nextRow = existing.getPhysicalNumberOfRows() == 0 ? 0 : existing.getLastRowNum() + 1;
+            if (nextRow >= maxRowsPerSheet) {
+                nextSheet(input);
+                return;
             }
-            executorService.shutdownNow();
-            throw e;
+            if (nextRow > 0) return; // 已有内容（含表头）时直接续写
+        } else {
+            sheet = workbook.createSheet(name);
+            nextRow = 0;
+        }
+        if (sheetCount > 1) Log.info("ExcelOutput", "工作表 " + name + " 开始于第 " + (written + 1) + " 行");
+        if (hasHeader) {
+            List<String> header = fieldNames;
+            if (header == null) {
+                RowSetTable hdr = input.getHeader();
+                if (hdr == null) throw new IllegalStateException("未配置 fields，且上游未提供表头");
+                header = hdr.getField();
+            }
+            org.apache.poi.ss.usermodel.Row row = sheet.createRow(nextRow++);
+            for (int i = 0; i < header.size(); i++) row.createCell(i).setCellValue(header.get(i));
         }
     }
 
+    private void writeCells(org.apache.poi.ss.usermodel.Row row, Row data) {
+        for (int i = 0; i < data.size(); i++) {
+            Object v = data.get(i);
+            if (v == null) continue;
+            Cell cell = row.createCell(i);
+            if (v instanceof Number) {
+                cell.setCellValue(((Number) v).doubleValue());
+            } else if (v instanceof Boolean) {
+                cell.setCellValue((Boolean) v);
+            } else if (v instanceof Date) {
+                cell.setCellValue((Date) v);
+                cell.setCellStyle(dateStyle);
+            } else if (v instanceof LocalDateTime) {
+                cell.setCellValue((LocalDateTime) v);
+                cell.setCellStyle(dateStyle);
+            } else if (v instanceof LocalDate) {
+                cell.setCellValue((LocalDate) v);
+                cell.setCellStyle(dateStyle);
+            } else {
+                cell.setCellValue(v.toString());
+            }
+        }
+    }
+
+    /**
+     * 先写临时文件再替换，追加模式下模板文件在写完前仍可读
+     */
+    private void save(Channel input) throws Exception {
+        if (sheet == null) nextSheetForEmptyInput(input);
+        Path target = Paths.get(filename).toAbsolutePath();
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        Path tmp = OutputFiles.tmpFile(target);
+        try (OutputStream out = new FileOutputStream(tmp.toFile())) {
+            workbook.write(out);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 没有任何数据行时也生成带表头的工作表，表头同样缺省取上游表头（都无法取得时只建空表）
+     */
+    private void nextSheetForEmptyInput(Channel input) {
+        if (workbook.getXSSFWorkbook().getSheet(sheetname) != null) return;
+        sheetCount = 1;
+        sheet = workbook.createSheet(sheetname);
+        List<String> header = fieldNames;
+        if (header == null && input.getHeader() != null) header = input.getHeader().getField();
+        if (hasHeader && header != null) {
+            org.apache.poi.ss.usermodel.Row row = sheet.createRow(0);
+            for (int i = 0; i < header.size(); i++) row.createCell(i).setCellValue(header.get(i));
+        }
+    }
 
     private boolean convertToBoolean(Object value, boolean defaultValue) {
         if (value == null) {
@@ -0,0 +1,146 @@
+package plugin.output;
+
+import anno.Output;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowFile;
+import core.flowdata.RowSetTable;
+import core.intf.IOutput;
+import tool.Log;
+import tool.OutputFiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 把上游数据写成二进制行文件（格式见 RowFile），供后续流程用 rowfile 输入直接读取，不必再解析文本。
+ * 配置：
+ *   filename  —— 输出文件路径，必填
+ *   blockRows —— 每个行组的行数，默认 4096；行组越大压缩越好，读取时按行组跳过的粒度也越粗
+ *   overwrite —— 文件已存在时覆盖，默认 false（报错）
+ * 先写 filename.tmp，正常结束后再替换为目标文件；流程取消或写入失败时删除临时文件，不留下可被当作完整数据读取的半截文件。
+ */
+@Output(type = "rowfile")
+public class RowFileOutput implements IOutput {
+    private String filename;
+    private int blockRows;
+    private boolean overwrite;
+
+    // 以下由消费线程维护
+    private RowFile.Writer writer;
+    private Path target;
+    private Path tmp;
+    private boolean saved = false;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        this.filename = (String) cfg.get("filename");
+        if (filename == null || filename.isEmpty()) {
+            throw new IllegalArgumentException("文件名配置(filename)不能为空");
+        }
+        this.blockRows = Integer.parseInt(String.valueOf(cfg.getOrDefault("blockRows", 4096)));
+        this.overwrite = Boolean.parseBoolean(String.valueOf(cfg.getOrDefault("overwrite", false)));
+        if (blockRows < 1) throw new IllegalArgumentException("blockRows must be positive");
+        Log.info("RowFileOutput", "Init with path: " + filename + ", block rows " + blockRows);
+    }
+
+    @Override
+    public void consume(Channel input) throws Exception {
+        long start = System.currentTimeMillis();
+        CountDownLatch latch = new CountDownLatch(1);
+        Exception[] finishError = new Exception[1];
+        try {
+            input.onReceive(data -> {
+                try {
+                    write(input, data);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("写入行文件失败: " + e.getMessage(), e);
+                }
+            }, () -> {
+                try {
+                    // 流程取消时不写结束标记、不落盘；没有任何行时也生成只含表头的文件
+                    if (!input.getToken().isCancelled()) save(input);
+                } catch (Exception e) {
+                    finishError[0] = e;
+                } finally {
+                    latch.countDown();
+                }
+            });
+            // 消费循环在上游关闭或流程取消时都会执行结束回调
+            latch.await();
+        } finally {
+            if (!saved) discard();
+        }
+        if (finishError[0] != null) {
+            Log.error("RowFileOutput", "文件写入失败: " + finishError[0].getMessage());
+            throw finishError[0];
+        }
+        if (!saved) return; // 流程已取消，未写出文件
+        long rows = writer == null ? 0 : writer.getRows();
+        long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+        Log.success("RowFileOutput", "Wrote " + rows + " rows to " + filename + ", " + rows * 1000 / elapsed + " rows/sec");
+    }
+
+    private void write(Channel input, Object data) throws IOException {
+        if (data instanceof RowSetTable) {
+            RowSetTable table = (RowSetTable) data;
+            if (writer == null) open(input, table.getField());
+            for (Row row : table.getRowList()) writer.write(row);
+            return;
+        }
+        if (!(data instanceof Row)) {
+            Log.warn("RowFileOutput", "上游数据类型非 Row，跳过");
+            return;
+        }
+        if (writer == null) open(input, null);
+        writer.write((Row) data);
+        if (Log.dataEnabled()) Log.data("RowFileOutput", data.toString());
+    }
+
+    // 写出剩余行与结束标记，再把临时文件替换为目标文件
+    private void save(Channel input) throws IOException {
+        if (writer == null) open(input, null);
+        writer.close();
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        saved = true;
+    }
+
+    // 关闭底层流但不写结束标记，并删除临时文件
+    private void discard() {
+        if (writer == null) return;
+        try {
+            writer.abort();
+            Files.deleteIfExists(tmp);
+            Log.warn("RowFileOutput", "流程未正常结束，已丢弃未完成的文件: " + tmp);
+        } catch (IOException e) {
+            Log.warn("RowFileOutput", "清理临时文件失败: " + tmp + ", " + e.getMessage());
+        }
+    }
+
+    /**
+     * 字段名取自上游表头，没有表头时写成无字段名的文件
+     */
+    private void open(Channel input, List<String> fields) throws IOException {
+        if (fields == null && input.getHeader() != null) fields = input.getHeader().getField();
+        if (fields == null) {
+            Log.warn("RowFileOutput", "上游未提供表头，文件不带字段名");
+            fields = Collections.emptyList();
+        }
+        target = Paths.get(filename).toAbsolutePath();
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            if (!overwrite) throw new IOException("文件已存在且未启用覆盖模式: " + target);
+            Log.warn("RowFileOutput", "文件已存在，将覆盖: " + target);
+        }
+        tmp = OutputFiles.tmpFile(target);
+        writer = new RowFile.Writer(Files.newOutputStream(tmp), fields, blockRows);
+    }
+}
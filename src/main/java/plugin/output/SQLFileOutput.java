@@ -6,21 +6,43 @@ import core.flowdata.Row;
 import core.flowdata.RowSetTable;
 import core.intf.IOutput;
 import tool.Log;
+import tool.OutputFiles;
+import tool.RowHash;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.Condition;
-
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把上游数据写成 SQL 脚本：INSERT 语句，或数据库批量导入格式。
+ * 配置（除表名、文件名外均可选）：
+ *   format      —— insert（默认）逐条 INSERT；bulk 生成批量导入脚本：
+ *                  PostgreSQL 为 COPY ... FROM STDIN 文本块，数据直接写在脚本中，用 psql 执行；
+ *                  MySQL 为数据文件加一条 LOAD DATA LOCAL INFILE 语句（需开启 local_infile）
+ *   data_file   —— bulk + MySQL 时的数据文件路径，默认与 filename 同名、扩展名为 .tsv；支持 ${date}
+ *   batch_size  —— 每条 INSERT 包含的行数，默认 1；大于 1 时生成 INSERT ... VALUES (...),(...) 多行语句
+ *   buffer_size —— 写文件缓冲区字节数，默认 262144；只在缓冲区写满和结束时落盘，不再逐行 flush
+ *   shards      —— 分片数，默认 1；大于 1 时每个分片一个写线程、各写各的文件 name-分片号-序号.sql
+ *   shard_by    —— 分片字段，逗号分隔或列表，同一键的行落在同一分片；缺省按行轮询
+ *   max_file_size —— 单个文件的字节数上限（UTF-8 编码后、压缩前，可带 KB/MB/GB），达到后在语句边界切换到下一个文件，默认不限；
+ *                  配置后即使只有一个分片也按 name-0-序号.sql 命名。每个文件各自带建表语句与导入控制语句，可单独执行
+ *   compress    —— none（默认）或 gzip，边写边压缩，文件名追加 .gz；不能与 bulk + MySQL 同用（LOAD DATA 不读压缩文件）
+ * 批量导入格式每行一条记录，字段以制表符分隔，NULL 写作 \N，反斜杠、制表符与换行转义为 \\、\t、\n、\r。
+ * 各文件先写 name.tmp，正常结束后统一替换为目标文件；流程取消或写入失败时删除临时文件，不留下看似完整的半截脚本。
+ */
 @Output(type = "sqlfile")
 public class SQLFileOutput implements IOutput {
 
@@ -40,25 +62,37 @@ public class SQLFileOutput implements IOutput {
     private boolean createTable;          // 是否自动建表
     private boolean overwrite;            // 是否覆盖已有文件
     private boolean createParentDir;      // 是否自动创建父目录
+    private int batchSize;                // 每条INSERT的行数
+    private int bufferSize;               // 写缓冲区大小
+    private boolean bulk;                 // 批量导入格式
+    private String dataFile;              // bulk + MySQL 的数据文件
+
+    private int shards;                   // 分片数
+    private List<String> shardBy;         // 分片字段，空为轮询
+    private long maxFileSize;             // 单文件字节数上限（压缩前），0 为不限
+    private boolean gzip;                 // 压缩输出
+
+    private static final int NEWLINE_BYTES = System.lineSeparator().length(); // BufferedWriter.newLine 写出的字节数
+    private static final int CHUNK_ROWS = 512;   // 分发给分片线程的每块行数
+    private static final int CHUNKS_QUEUED = 8;  // 每个分片排队的块数，写满时分发线程等待（背压）
 
     // 同步控制
     private volatile boolean initialized = false;  // 初始化完成标志
     private final ReentrantLock initLock = new ReentrantLock();  // 初始化锁
     private final Condition initCondition = initLock.newCondition();  // 初始化条件
 
+    // 以下由消费线程维护
+    private RowSetTable header;           // 上游表头，第一条数据到达时获取
+    private Dispatcher dispatcher;        // 各分片的写入器，第一条数据到达时创建
+    private boolean saved = false;        // 已正常写完并改名为目标文件
+
     @Override
     public void init(Map<String, Object> cfg) {
         initLock.lock();
         try {
             // 1. 解析数据库类型配置（默认MySQL）
-            String dbTypeStr = ((String) cfg.getOrDefault("dbtype", "mysql")).toUpperCase();
-            try {
-                this.dbType = DatabaseType.valueOf(dbTypeStr);
-                Log.debug("SQLFileOutput", "数据库类型设置为: " + dbType);
-            } catch (IllegalArgumentException e) {
-                throw new IllegalArgumentException("不支持的数据库类型: " + dbTypeStr +
-                        "，支持的类型: " + Arrays.toString(DatabaseType.values()));
-            }
+            this.dbType = databaseType(cfg);
+            Log.debug("SQLFileOutput", "数据库类型设置为: " + dbType);
 
             // 2. 校验必要配置项
             this.filename = (String) cfg.get("filename");
@@ -78,9 +112,42 @@ public class SQLFileOutput implements IOutput {
             this.createTable = (Boolean) cfg.getOrDefault("create_table", false);
             this.overwrite = (Boolean) cfg.getOrDefault("overwrite", false);
             this.createParentDir = (Boolean) cfg.getOrDefault("create_parent_dir", true);
+            this.batchSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("batch_size", 1)));
+            this.bufferSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("buffer_size", 1 << 18)));
+            if (batchSize < 1 || bufferSize < 1) {
+                throw new IllegalArgumentException("batch_size 与 buffer_size 必须为正数");
+            }
+            String format = String.valueOf(cfg.getOrDefault("format", "insert")).toLowerCase();
+            if (!format.equals("insert") && !format.equals("bulk")) {
+                throw new IllegalArgumentException("不支持的输出格式: " + format + "，支持的格式: insert, bulk");
+            }
+            this.bulk = format.equals("bulk");
+            this.dataFile = (String) cfg.get("data_file");
+            this.shards = Integer.parseInt(String.valueOf(cfg.getOrDefault("shards", 1)));
+            this.shardBy = new ArrayList<>();
+            Object by = cfg.get("shard_by");
+            if (by instanceof Collection) {
+                for (Object o : (Collection<?>) by) shardBy.add(String.valueOf(o).trim());
+            } else if (by != null) {
+                for (String f : by.toString().split(",")) {
+                    if (!f.trim().isEmpty()) shardBy.add(f.trim());
+                }
+            }
+            this.maxFileSize = OutputFiles.parseSize(String.valueOf(cfg.getOrDefault("max_file_size", 0)));
+            String compress = String.valueOf(cfg.getOrDefault("compress", "none")).toLowerCase();
+            if (!compress.equals("none") && !compress.equals("gzip")) {
+                throw new IllegalArgumentException("不支持的压缩方式: " + compress + "，支持: none, gzip");
+            }
+            this.gzip = compress.equals("gzip");
+            if (shards < 1 || maxFileSize < 0) {
+                throw new IllegalArgumentException("shards 必须为正数，max_file_size 不能为负数");
+            }
+            if (gzip && bulk && dbType == DatabaseType.MYSQL) {
+                throw new IllegalArgumentException("LOAD DATA 不能读取 gzip 压缩的数据文件，bulk + MySQL 时不支持 compress");
+            }
 
-            Log.debug("SQLFileOutput", String.format("配置参数: 日期格式=%s, 自动建表=%b, 覆盖模式=%b, 创建目录=%b",
-                    dateFormat, createTable, overwrite, createParentDir));
+            Log.debug("SQLFileOutput", String.format("配置参数: 日期格式=%s, 自动建表=%b, 覆盖模式=%b, 创建目录=%b, 批大小=%d, 格式=%s, 分片=%d, 单文件上限=%d, 压缩=%s",
+                    dateFormat, createTable, overwrite, createParentDir, batchSize, format, shards, maxFileSize, compress));
 
             // 4. 标记初始化完成
             this.initialized = true;
@@ -91,42 +158,86 @@ public class SQLFileOutput implements IOutput {
         }
     }
 
+    /**
+     * 多分片时每个分片一个写线程
+     */
+    @Override
+    public int threadDemand(Map<String, Object> cfg) {
+        int n = Integer.parseInt(String.valueOf(cfg.getOrDefault("shards", 1)));
+        return n > 1 ? n : 0;
+    }
+
     @Override
     public void consume(Channel input) throws Exception {
         // 阶段1：等待初始化完成
         awaitInitialization();
 
-        // 阶段2：准备输出文件
+        // 阶段2：注册数据处理器；第一条数据到达时才取表头并创建各分片文件，不限定表头的等待时间。
+        // 结束回调写出各分片最后一条未满的语句并把临时文件改名为目标文件
         String finalFilename = processFilenameWithDate();
-        Path outputPath = prepareOutputFile(finalFilename);
-        Log.info("SQLFileOutput", "开始写入" + dbType + "格式SQL文件: " + finalFilename);
-
-        // 阶段3：数据预处理
         CountDownLatch completionLatch = new CountDownLatch(1);
         AtomicInteger processedRows = new AtomicInteger(0);
-        RowSetTable header = awaitTableHeader(input);
-
-        try (BufferedWriter writer = Files.newBufferedWriter(outputPath)) {
-            // 写入建表语句（如果配置）
-            if (createTable) {
-                writeCreateTableStatement(writer, header);
-            }
-
-            // 注册数据处理器
+        Exception[] finishError = new Exception[1];
+        try {
             input.onReceive(
-                    data -> processData(writer, data, header, processedRows),
-                    () -> onProcessingComplete(completionLatch, processedRows, finalFilename)
+                    data -> processData(input, finalFilename, data, processedRows),
+                    () -> {
+                        try {
+                            // 流程取消时不写结束语句、不改名，半截文件由 close 删除
+                            if (!input.getToken().isCancelled()) save(input, finalFilename);
+                        } catch (Exception e) {
+                            finishError[0] = e;
+                        } finally {
+                            completionLatch.countDown();
+                        }
+                    }
             );
 
-            // 等待处理完成（最多等待5分钟）
-            if (!completionLatch.await(5, TimeUnit.MINUTES)) {
-                Log.error("SQLFileOutput", "数据处理超时，已等待5分钟");
-                throw new TimeoutException("数据处理超时");
+            // 等待处理完成：消费循环在上游关闭或流程取消时都会执行结束回调，完成与通道关闭绑定，无需超时
+            completionLatch.await();
+        } finally {
+            if (dispatcher != null) dispatcher.close();
+        }
+        if (finishError[0] != null) {
+            Log.error("SQLFileOutput", "文件写入失败: " + finishError[0].getMessage());
+            throw finishError[0];
+        }
+        if (saved) onProcessingComplete(processedRows, finalFilename);
+    }
+
+    /**
+     * 取表头并创建各分片的第一个文件。上游在发布第一条数据前设置表头；
+     * 没有表头时退而使用批次自带的字段列表
+     */
+    private void open(Channel input, String finalFilename, Object first) throws IOException {
+        header = input.getHeader();
+        if (header == null && first instanceof RowSetTable) {
+            header = new RowSetTable(((RowSetTable) first).getField());
+        }
+        if (header == null) {
+            throw new IllegalStateException("未能获取表头信息：上游未设置表头");
+        }
+        Log.debug("SQLFileOutput", "成功获取表头，字段数: " + header.getField().size());
+        Log.info("SQLFileOutput", "开始写入" + dbType + "格式SQL文件: " + finalFilename
+                + (shards > 1 ? "，分片数 " + shards : ""));
+        dispatcher = new Dispatcher(finalFilename, header);
+    }
+
+    /**
+     * 正常结束：写完各分片后把临时文件改名为目标文件。没有任何行时也生成文件（建表语句或空的导入块），
+     * 上游既没有表头也没有数据时无从生成，只记录警告
+     */
+    private void save(Channel input, String finalFilename) throws Exception {
+        if (dispatcher == null) {
+            if (input.getHeader() == null) {
+                Log.warn("SQLFileOutput", "上游未提供表头且没有数据，不生成文件: " + finalFilename);
+                return;
             }
-        } catch (IOException e) {
-            Log.error("SQLFileOutput", "文件写入失败: " + e.getMessage());
-            throw e;
+            open(input, finalFilename, null);
         }
+        dispatcher.finish();
+        dispatcher.commit();
+        saved = true;
     }
 
     // ==================== 同步控制方法 ==================== //
@@ -151,31 +262,11 @@ public class SQLFileOutput implements IOutput {
         }
     }
 
-    /**
-     * 等待表头信息到达（带重试机制）
-     */
-    private RowSetTable awaitTableHeader(Channel input) throws InterruptedException {
-        Log.debug("SQLFileOutput", "开始等待表头信息...");
-        RowSetTable header = input.getHeader();
-        int attempts = 0;
-        while (header == null && attempts++ < 10) {
-            Thread.sleep(100);
-            header = input.getHeader();
-        }
-
-        if (header == null) {
-            Log.error("SQLFileOutput", "等待表头信息超时（1秒）");
-            throw new IllegalStateException("未能获取表头信息");
-        }
-
-        Log.debug("SQLFileOutput", "成功获取表头，字段数: " + header.getField().size());
-        return header;
-    }
-
     // ==================== 文件操作方法 ==================== //
 
     /**
-     * 准备输出文件（包含目录检查和创建）
+     * 准备输出文件（包含目录检查和创建），返回目标路径；数据先写入同目录的临时文件，
+     * 正常结束后才替换目标文件，已存在的文件在此之前保持不变
      */
     private Path prepareOutputFile(String filePath) throws IOException {
         Path path = Paths.get(filePath);
@@ -197,16 +288,11 @@ public class SQLFileOutput implements IOutput {
         if (Files.exists(path)) {
             if (overwrite) {
                 Log.warn("SQLFileOutput", "文件已存在，将覆盖: " + path);
-                Files.delete(path);
             } else {
                 throw new IOException("文件已存在且未启用覆盖模式: " + path);
             }
         }
-
-        // 3. 创建新文件
-        Path createdFile = Files.createFile(path);
-        Log.info("SQLFileOutput", "文件创建成功: " + createdFile);
-        return createdFile;
+        return path;
     }
 
     /**
@@ -217,7 +303,6 @@ public class SQLFileOutput implements IOutput {
         writer.write(generateCreateTableStatement(header));
         writer.newLine();
         writer.newLine();
-        writer.flush();
         Log.info("SQLFileOutput", "建表语句写入完成");
     }
 
@@ -226,13 +311,13 @@ public class SQLFileOutput implements IOutput {
     /**
      * 处理接收到的数据
      */
-    private void processData(BufferedWriter writer, Object data, RowSetTable header,
-                             AtomicInteger counter) {
+    private void processData(Channel input, String finalFilename, Object data, AtomicInteger counter) {
         try {
+            if (dispatcher == null && data != null) open(input, finalFilename, data);
             if (data instanceof RowSetTable) {
-                processBatch(writer, (RowSetTable) data, counter);
+                processBatch((RowSetTable) data, counter);
             } else if (data instanceof Row) {
-                processSingleRow(writer, (Row) data, header, counter);
+                processSingleRow((Row) data, counter);
             } else if (data != null) {
                 Log.warn("SQLFileOutput", "无法识别的数据类型: " + data.getClass().getName());
             }
@@ -245,45 +330,438 @@ public class SQLFileOutput implements IOutput {
     /**
      * 处理批量数据
      */
-    private void processBatch(BufferedWriter writer, RowSetTable batch,
-                              AtomicInteger counter) throws IOException {
+    private void processBatch(RowSetTable batch, AtomicInteger counter) throws Exception {
         logDataBatch(batch);
-        for (String sql : generateInsertStatements(batch)) {
-            writer.write(sql);
-            writer.newLine();
+        for (Row row : batch.getRowList()) {
+            dispatcher.route(row, batch.getField());
         }
         int added = batch.getRowList().size();
         counter.addAndGet(added);
-        writer.flush();
         Log.debug("SQLFileOutput", "已写入 " + added + " 行数据");
     }
 
     /**
      * 处理单行数据
      */
-    private void processSingleRow(BufferedWriter writer, Row row, RowSetTable header,
-                                  AtomicInteger counter) throws IOException {
-        RowSetTable wrapper = new RowSetTable(header.getField());
-        wrapper.addRow(row);
+    private void processSingleRow(Row row, AtomicInteger counter) throws Exception {
+        dispatcher.route(row, header.getField());
+        counter.incrementAndGet();
+        if (Log.LOG_LEVEL == 3) Log.debug("SQLFileOutput", "已写入单行数据: " + row);
+    }
+
+    // ==================== 分片写入 ==================== //
+
+    /**
+     * 分发行到各分片：只有一个分片时在消费线程中直接写；多个分片时按块交给各自的写线程，
+     * 格式化、转义与压缩都在写线程中并行进行
+     */
+    private final class Dispatcher {
+        private final Shard[] shardList;
+        private final int[] keyIdx;              // 分片字段下标，null 为轮询
+        private final ExecutorService writers;   // 多分片时的写线程
+        private final List<BlockingQueue<Chunk>> queues = new ArrayList<>();
+        private final List<Future<?>> workers = new ArrayList<>();
+        private final Chunk[] filling;           // 各分片正在攒的块，仅由消费线程访问
+        private volatile Exception failure;      // 写线程的第一个异常
+        private long next = 0;                   // 轮询计数
+
+        Dispatcher(String filename, RowSetTable header) throws IOException {
+            if (shardBy.isEmpty()) {
+                keyIdx = null;
+            } else {
+                keyIdx = new int[shardBy.size()];
+                for (int i = 0; i < keyIdx.length; i++) {
+                    keyIdx[i] = header.getFieldIndex(shardBy.get(i));
+                    if (keyIdx[i] < 0) {
+                        throw new IllegalArgumentException("shard_by field '" + shardBy.get(i) + "' not in header " + header.getField());
+                    }
+                }
+            }
+            shardList = new Shard[shards];
+            for (int i = 0; i < shards; i++) shardList[i] = new Shard(i, filename, header);
+            try {
+                for (Shard shard : shardList) shard.open();
+            } catch (IOException e) {
+                for (Shard shard : shardList) shard.closeQuietly();
+                throw e;
+            }
+            filling = new Chunk[shards];
+            if (shards == 1) {
+                writers = null;
+                return;
+            }
+            writers = Executors.newFixedThreadPool(shards);
+            for (Shard shard : shardList) {
+                BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(CHUNKS_QUEUED);
+                queues.add(queue);
+                workers.add(writers.submit(() -> drain(shard, queue)));
+            }
+        }
+
+        void route(Row row, List<String> fields) throws Exception {
+            if (shards == 1) {
+                shardList[0].write(row, fields);
+                return;
+            }
+            int target = keyIdx == null
+                    ? (int) (next++ % shards)
+                    : RowHash.partition(RowHash.fingerprint(row, keyIdx), shards);
+            Chunk chunk = filling[target];
+            if (chunk != null && chunk.fields != fields) {
+                send(target, chunk);
+                chunk = null;
+            }
+            if (chunk == null) chunk = filling[target] = new Chunk(fields);
+            chunk.rows.add(row);
+            if (chunk.rows.size() >= CHUNK_ROWS) {
+                send(target, chunk);
+                filling[target] = null;
+            }
+        }
 
-        for (String sql : generateInsertStatements(wrapper)) {
-            writer.write(sql);
-            writer.newLine();
+        // 队列写满时等待写线程；写线程失败后立即放弃，避免永远阻塞
+        private void send(int target, Chunk chunk) throws Exception {
+            while (!queues.get(target).offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (failure != null) throw failure;
+            }
+            if (failure != null) throw failure;
+        }
+
+        private Void drain(Shard shard, BlockingQueue<Chunk> queue) throws Exception {
+            try {
+                while (true) {
+                    Chunk chunk = queue.take();
+                    if (chunk == Chunk.END) break;
+                    for (Row row : chunk.rows) shard.write(row, chunk.fields);
+                }
+                shard.finish();
+                return null;
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+                throw e;
+            }
+        }
+
+        /**
+         * 发送剩余的块并等待所有分片写完
+         */
+        void finish() throws Exception {
+            if (shards == 1) {
+                shardList[0].finish();
+                return;
+            }
+            for (int i = 0; i < shards; i++) {
+                if (filling[i] != null) send(i, filling[i]);
+                filling[i] = null;
+                send(i, Chunk.END);
+            }
+            for (Future<?> w : workers) {
+                try {
+                    w.get();
+                } catch (ExecutionException e) {
+                    throw failure != null ? failure : new IOException(e.getCause());
+                }
+            }
+        }
+
+        /**
+         * 全部分片写完后，把各自的临时文件改名为目标文件
+         */
+        void commit() throws IOException {
+            for (Shard shard : shardList) shard.commit();
+        }
+
+        /**
+         * 释放资源：停止写线程，关闭尚未正常结束的文件并删除未改名的临时文件。
+         * 先等写线程退出，避免删除仍在写入的文件
+         */
+        void close() throws InterruptedException {
+            if (writers != null) {
+                writers.shutdownNow();
+                if (!writers.awaitTermination(10, TimeUnit.SECONDS)) {
+                    Log.warn("SQLFileOutput", "分片写线程未能在 10 秒内退出");
+                }
+            }
+            for (Shard shard : shardList) shard.closeQuietly();
+        }
+    }
+
+    /**
+     * 交给分片写线程的一块行，同一块内字段列表相同
+     */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(null);
+
+        final List<String> fields;
+        final List<Row> rows = new ArrayList<>();
+
+        Chunk(List<String> fields) {
+            this.fields = fields;
         }
-        counter.incrementAndGet();
-        writer.flush();
-        Log.debug("SQLFileOutput", "已写入单行数据: " + row);
     }
 
     /**
-     * 处理完成回调
+     * 一个输出分片：依次写若干个文件，超过 max_file_size 后在语句边界切换到下一个；
+     * 每个文件自带建表语句与导入控制语句。只由一个线程访问
      */
-    private void onProcessingComplete(CountDownLatch latch, AtomicInteger counter,
-                                      String filename) {
+    private final class Shard {
+        private final int index;
+        private final String filename;        // 已替换日期变量的配置文件名
+        private final RowSetTable header;
+        private int part = 0;                 // 下一个文件的序号
+        private BufferedWriter script;        // 当前脚本文件
+        private BufferedWriter rows;          // 行数据写入目标：bulk + MySQL 为数据文件，其余同 script
+        private final Map<Path, Path> files = new LinkedHashMap<>(); // 尚未改名的临时文件 -> 目标文件
+        private long written = 0;             // 当前文件已写入的字节数（UTF-8 编码后、压缩前）
+        private long rowCount = 0;
+        private boolean rollPending = false;  // 当前文件已满，下一行到来时再打开新文件，避免末尾空文件
+
+        private List<String> prefixFields;    // insertPrefix 对应的字段列表
+        private String insertPrefix;          // "INSERT INTO `t` (`a`, `b`) VALUES "，每种字段列表只拼一次
+        private final StringBuilder stmt = new StringBuilder(4096); // 正在拼接的语句
+        private int pending = 0;              // stmt 中已有的行数
+
+        Shard(int index, String filename, RowSetTable header) {
+            this.index = index;
+            this.filename = filename;
+            this.header = header;
+        }
+
+        void open() throws IOException {
+            String name = partName(filename, index, part++);
+            script = create(prepareOutputFile(name));
+            written = 0;
+            if (createTable) {
+                writeCreateTableStatement(script, header);
+            }
+            rows = bulk ? startBulk(name) : script;
+        }
+
+        /**
+         * 把一行追加到当前语句，攒满 batch_size 行后写出；字段列表变化时先写出已攒的行
+         */
+        void write(Row row, List<String> fields) throws IOException {
+            if (rollPending) {
+                open();
+                rollPending = false;
+            }
+            rowCount++;
+            if (bulk) {
+                appendBulkRow(row, fields);
+            } else {
+                if (fields != prefixFields) {
+                    if (prefixFields == null || !prefixFields.equals(fields)) {
+                        flushStatement();
+                        insertPrefix = buildInsertPrefix(fields);
+                    }
+                    prefixFields = fields;
+                }
+                stmt.append(pending == 0 ? insertPrefix : ",");
+                appendValues(stmt, row);
+                if (++pending < batchSize) return;
+                flushStatement();
+            }
+            if (maxFileSize > 0 && written >= maxFileSize) {
+                endFile();
+                rollPending = true;
+            }
+        }
+
+        /**
+         * 写出已攒的语句（没有时什么也不做），只写入缓冲区，不强制落盘
+         */
+        private void flushStatement() throws IOException {
+            if (pending == 0) return;
+            stmt.append(';');
+            written += utf8Length(stmt) + NEWLINE_BYTES;
+            script.append(stmt);
+            script.newLine();
+            stmt.setLength(0);
+            pending = 0;
+        }
+
+        /**
+         * 写出导入控制语句，返回行数据的写入目标。
+         * PostgreSQL：COPY 语句后紧跟数据，结束时写 \.；MySQL：LOAD DATA 指向单独创建的数据文件
+         */
+        private BufferedWriter startBulk(String scriptName) throws IOException {
+            prefixFields = header.getField();
+            if (dbType == DatabaseType.POSTGRESQL) {
+                script.write("COPY " + quoteIdentifier(tableName) + " (" + columnList(prefixFields) + ") FROM STDIN;");
+                script.newLine();
+                return script;
+            }
+            Path dataPath = prepareOutputFile(resolveDataFile(scriptName));
+            StringBuilder load = new StringBuilder("LOAD DATA LOCAL INFILE '");
+            appendEscaped(load, dataPath.toAbsolutePath().toString().replace('\\', '/'));
+            load.append("' INTO TABLE ").append(quoteIdentifier(tableName))
+                    .append(" CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (")
+                    .append(columnList(prefixFields)).append(");");
+            script.write(load.toString());
+            script.newLine();
+            Log.info("SQLFileOutput", "批量导入数据文件: " + dataPath);
+            return create(dataPath);
+        }
+
+        // 打开目标文件对应的临时文件，结束时由 commit 改名
+        private BufferedWriter create(Path target) throws IOException {
+            Path tmp = OutputFiles.tmpFile(target);
+            BufferedWriter writer = openWriter(tmp);
+            files.put(tmp, target);
+            return writer;
+        }
+
+        /**
+         * 以导入文本格式追加一行；字段列表须与 Header 一致，导入语句开头已声明列顺序
+         */
+        private void appendBulkRow(Row row, List<String> fields) throws IOException {
+            if (fields != prefixFields && !prefixFields.equals(fields)) {
+                throw new IllegalStateException("bulk 格式不支持中途改变字段列表: " + fields + "，应为 " + prefixFields);
+            }
+            for (int i = 0; i < row.size(); i++) {
+                if (i > 0) stmt.append('\t');
+                Object value = row.get(i);
+                if (value == null) stmt.append("\\N");
+                else appendBulkEscaped(stmt, value.toString());
+            }
+            stmt.append('\n');
+            written += utf8Length(stmt);
+            rows.append(stmt);
+            stmt.setLength(0);
+        }
+
+        // 结束当前文件：写出未满的语句或 COPY 结束标记，关闭写入器
+        private void endFile() throws IOException {
+            if (bulk) {
+                if (dbType == DatabaseType.POSTGRESQL) {
+                    script.write("\\.");
+                    script.newLine();
+                }
+            } else {
+                flushStatement();
+            }
+            BufferedWriter s = script, r = rows;
+            script = rows = null;
+            try {
+                if (r != s) r.close();
+            } finally {
+                s.close();
+            }
+        }
+
+        void finish() throws IOException {
+            if (script != null) endFile();
+            if (shards > 1 || maxFileSize > 0) {
+                Log.info("SQLFileOutput", "分片 " + index + " 写入 " + rowCount + " 行，文件数 " + part);
+            }
+        }
+
+        void commit() throws IOException {
+            Iterator<Map.Entry<Path, Path>> it = files.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Path, Path> f = it.next();
+                Files.move(f.getKey(), f.getValue(), StandardCopyOption.REPLACE_EXISTING);
+                Log.info("SQLFileOutput", "文件写入完成: " + f.getValue());
+                it.remove();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                if (rows != null && rows != script) rows.close();
+                if (script != null) script.close();
+            } catch (IOException e) {
+                Log.warn("SQLFileOutput", "关闭文件失败: " + e.getMessage());
+            }
+            script = rows = null;
+            for (Path tmp : files.keySet()) {
+                try {
+                    Files.deleteIfExists(tmp);
+                    Log.warn("SQLFileOutput", "流程未正常结束，已丢弃未完成的文件: " + tmp);
+                } catch (IOException e) {
+                    Log.warn("SQLFileOutput", "清理临时文件失败: " + tmp + ", " + e.getMessage());
+                }
+            }
+            files.clear();
+        }
+    }
+
+    /**
+     * 打开带缓冲的 UTF-8 写入器，compress=gzip 时边写边压缩
+     */
+    private BufferedWriter openWriter(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if (gzip) out = new GZIPOutputStream(out, 1 << 16);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    /**
+     * 按 UTF-8 编码后的字节数，与 openWriter 的编码一致；不成对的代理字符编码为 '?'，计 1 字节
+     */
+    static long utf8Length(CharSequence s) {
+        long n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else {
+                n += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 分片文件名：单分片且不切分时就是配置的文件名，否则为 name-分片号-序号.ext；压缩时追加 .gz
+     */
+    private String partName(String name, int shard, int part) {
+        boolean split = shards > 1 || maxFileSize > 0;
+        return OutputFiles.partName(name, split ? String.format("-%d-%03d", shard, part) : "", gzip);
+    }
+
+    // ==================== 批量导入格式 ==================== //
+
+    /**
+     * COPY 文本格式与 LOAD DATA 默认转义规则相同：反斜杠、制表符、换行、回车写成反斜杠序列
+     */
+    private static void appendBulkEscaped(StringBuilder out, String value) {
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String esc;
+            switch (c) {
+                case '\\': esc = "\\\\"; break;
+                case '\t': esc = "\\t"; break;
+                case '\n': esc = "\\n"; break;
+                case '\r': esc = "\\r"; break;
+                default: continue;
+            }
+            out.append(value, from, i).append(esc);
+            from = i + 1;
+        }
+        out.append(value, from, value.length());
+    }
+
+    /**
+     * 数据文件路径：只有一个文件且配置了 data_file 时使用配置值，否则把脚本文件名的扩展名换成 .tsv
+     */
+    private String resolveDataFile(String script) {
+        if (dataFile != null && shards == 1 && maxFileSize == 0) return withDate(dataFile);
+        return OutputFiles.stripExtension(script) + ".tsv";
+    }
+
+    /**
+     * 处理完成日志，只在正常写完后记录
+     */
+    private void onProcessingComplete(AtomicInteger counter, String filename) {
         int total = counter.get();
         Log.success("SQLFileOutput",
                 String.format("数据处理完成，共写入 %d 行数据到文件: %s", total, filename));
-        latch.countDown();
     }
 
     // ==================== SQL生成方法 ==================== //
@@ -313,41 +791,41 @@ public class SQLFileOutput implements IOutput {
     }
 
     /**
-     * 生成INSERT语句数组
+     * 生成INSERT语句的固定前缀：表名与字段列表只转义拼接一次
      */
-    private String[] generateInsertStatements(RowSetTable table) {
-        return table.getRowList().stream()
-                .map(row -> buildInsertStatement(row, table.getField()))
-                .toArray(String[]::new);
+    private String buildInsertPrefix(List<String> fields) {
+        return "INSERT INTO " + quoteIdentifier(tableName) + " (" + columnList(fields) + ") VALUES ";
     }
 
     /**
-     * 构建单条INSERT语句
+     * 转义后以逗号分隔的字段列表
      */
-    private String buildInsertStatement(Row row, List<String> fields) {
-        StringBuilder sql = new StringBuilder("INSERT INTO ")
-                .append(quoteIdentifier(tableName))
-                .append(" (")
-                .append(String.join(", ", fields.stream()
-                        .map(this::quoteIdentifier)
-                        .toArray(String[]::new)))
-                .append(") VALUES (");
+    private String columnList(List<String> fields) {
+        StringBuilder cols = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) cols.append(", ");
+            cols.append(quoteIdentifier(fields.get(i)));
+        }
+        return cols.toString();
+    }
 
+    /**
+     * 追加一行的值列表 ('a', NULL, ...)
+     */
+    private void appendValues(StringBuilder sql, Row row) {
+        sql.append('(');
         for (int i = 0; i < row.size(); i++) {
+            if (i > 0) sql.append(", ");
             Object value = row.get(i);
             if (value == null) {
                 sql.append("NULL");
             } else {
-                String escaped = dbType == DatabaseType.MYSQL ?
-                        escapeMySQL(value.toString()) :
-                        escapePostgreSQL(value.toString());
-                sql.append("'").append(escaped).append("'");
+                sql.append('\'');
+                appendEscaped(sql, value.toString());
+                sql.append('\'');
             }
-
-            if (i < row.size() - 1) sql.append(", ");
         }
-
-        return sql.append(");").toString();
+        sql.append(')');
     }
 
     // ==================== 辅助方法 ==================== //
@@ -376,38 +854,80 @@ public class SQLFileOutput implements IOutput {
      * 处理带日期变量的文件名
      */
     private String processFilenameWithDate() {
-        if (filename.contains("${date}")) {
+        return withDate(filename);
+    }
+
+    private String withDate(String name) {
+        if (name.contains("${date}")) {
             String dateStr = new SimpleDateFormat(dateFormat).format(new Date());
-            return filename.replace("${date}", dateStr);
+            return name.replace("${date}", dateStr);
+        }
+        return name;
+    }
+
+    /**
+     * 读取 dbtype 配置（默认 mysql），不支持的类型抛 IllegalArgumentException
+     */
+    static DatabaseType databaseType(Map<String, Object> cfg) {
+        String dbTypeStr = String.valueOf(cfg.getOrDefault("dbtype", "mysql")).toUpperCase();
+        try {
+            return DatabaseType.valueOf(dbTypeStr);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的数据库类型: " + dbTypeStr +
+                    "，支持的类型: " + Arrays.toString(DatabaseType.values()));
         }
-        return filename;
     }
 
     /**
      * 转义标识符（表名/字段名）
      */
     private String quoteIdentifier(String identifier) {
-        return dbType == DatabaseType.MYSQL ?
-                "`" + identifier + "`" :
-                "\"" + identifier + "\"";
+        return quoteIdentifier(dbType, identifier);
+    }
+
+    private void appendEscaped(StringBuilder sql, String value) {
+        appendEscaped(dbType, sql, value);
     }
 
     /**
-     * MySQL特殊字符转义
+     * 按数据库类型给标识符加引号：MySQL 用反引号，PostgreSQL 用双引号，标识符中的引号字符写两遍。
+     * TableOutput 生成的语句使用同一规则
      */
-    private String escapeMySQL(String value) {
-        return value.replace("\\", "\\\\")
-                .replace("'", "\\'")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r");
+    static String quoteIdentifier(DatabaseType type, String identifier) {
+        return type == DatabaseType.MYSQL ?
+                "`" + identifier.replace("`", "``") + "`" :
+                "\"" + identifier.replace("\"", "\"\"") + "\"";
     }
 
     /**
-     * PostgreSQL特殊字符转义
+     * 按数据库类型转义字符串值并直接追加，不含特殊字符时整段追加。
+     * MySQL 转义反斜杠、引号、换行与 NUL；PostgreSQL 转义反斜杠并把单引号写成两个
      */
-    private String escapePostgreSQL(String value) {
-        return value.replace("\\", "\\\\")
-                .replace("'", "''");
+    static void appendEscaped(DatabaseType type, StringBuilder sql, String value) {
+        int from = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String esc;
+            if (type == DatabaseType.MYSQL) {
+                switch (c) {
+                    case '\\': esc = "\\\\"; break;
+                    case '\'': esc = "\\'"; break;
+                    case '"': esc = "\\\""; break;
+                    case '\n': esc = "\\n"; break;
+                    case '\r': esc = "\\r"; break;
+                    case '\0': esc = "\\0"; break;
+                    default: continue;
+                }
+            } else {
+                switch (c) {
+                    case '\\': esc = "\\\\"; break;
+                    case '\'': esc = "''"; break;
+                    default: continue;
+                }
+            }
+            sql.append(value, from, i).append(esc);
+            from = i + 1;
+        }
+        sql.append(value, from, value.length());
     }
 }
\ No newline at end of file
@@ -1,123 +1,367 @@
 package plugin.output;
 
 import anno.Output;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
 import core.Channel;
+import core.flowdata.Row;
 import core.flowdata.RowSetTable;
 import core.intf.IOutput;
 import tool.Log;
-import java.io.BufferedReader;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
-//TODO 已从旧版迭代为新版，待测试
+/**
+ * 通过后端服务的 /api/output/execute 接口把数据写入数据库。
+ * 接收逐行的 Row（按通道 Header 取字段名）或整表的 RowSetTable，每行生成一条 INSERT，
+ * 攒满 batchSize 条或最早一条已等待 maxBatchDelayMs 后作为一个 batch 请求发送；最多 maxInFlight 个请求同时在途，
+ * 连接由 JDK 的 keep-alive 连接池复用。缓冲的语句不超过 (maxInFlight + 1) × batchSize 条。
+ * 配置：
+ *   connectionId   —— 后端数据库连接 ID，必填
+ *   tableName      —— 目标表名，必填
+ *   dbtype         —— 目标库类型，mysql（默认）或 postgresql，决定标识符引号与字符串转义，规则同 sqlfile 输出
+ *   url            —— 接口地址，默认 http://localhost:3000/api/output/execute
+ *   batchSize      —— 每个请求的语句数，默认 500
+ *   maxBatchDelayMs —— 未攒满的批次最多等待的毫秒数，默认 1000；上游产出慢时也能按时写入
+ *   maxInFlight    —— 同时在途的请求数，默认 4；为 1 时按顺序逐批提交
+ *   retries        —— 请求确定未被执行时的重试次数，默认 3：连接失败、请求体未发完，或后端返回 503（未开始执行）。
+ *                    请求发出后的读取超时、连接中断与其他 5xx 不重试：后端可能已执行了部分或全部语句，重发会重复插入；
+ *                    4xx（表不存在、主键冲突等）也不重试
+ *   retryBackoffMs —— 首次重试前的等待，之后每次翻倍，默认 200
+ *   timeoutMs      —— 连接与读取超时，默认 30000
+ * 重试耗尽或有语句执行失败时步骤失败。多个请求并发时批次之间的提交顺序不保证。
+ * 值个数与字段数不一致的行不生成语句，跳过并告警，结束时汇总跳过的行数。
+ */
 @Output(type = "table")
 public class TableOutput implements IOutput {
+    private static final String DEFAULT_URL = "http://localhost:3000/api/output/execute";
 
     private String connectionId;
     private String tableName;
+    private SQLFileOutput.DatabaseType dbType;
+    private String url;
+    private int batchSize;
+    private long maxBatchDelayMs;
+    private int maxInFlight;
+    private int retries;
+    private long retryBackoffMs;
+    private int timeoutMs;
+
+    // 以下由消费线程维护
+    private long skipped = 0;             // 值个数与字段数不一致而跳过的行
 
     // IOutput 接口的 init 方法，用于初始化插件配置
     @Override
     public void init(Map<String, Object> cfg) {
         this.connectionId = (String) cfg.get("connectionId");
         this.tableName = (String) cfg.get("tableName");
-        Log.info("TableOutput", "Initialized with connectionId: " + connectionId + ", tableName: " + tableName);
+        if (connectionId == null || connectionId.isEmpty()) {
+            throw new IllegalArgumentException("Missing required configuration parameter: 'connectionId'.");
+        }
+        if (tableName == null || tableName.isEmpty()) {
+            throw new IllegalArgumentException("Missing required configuration parameter: 'tableName'.");
+        }
+        this.dbType = SQLFileOutput.databaseType(cfg);
+        this.url = String.valueOf(cfg.getOrDefault("url", DEFAULT_URL));
+        this.batchSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("batchSize", 500)));
+        this.maxBatchDelayMs = Long.parseLong(String.valueOf(cfg.getOrDefault("maxBatchDelayMs", 1000)));
+        this.maxInFlight = Integer.parseInt(String.valueOf(cfg.getOrDefault("maxInFlight", 4)));
+        this.retries = Integer.parseInt(String.valueOf(cfg.getOrDefault("retries", 3)));
+        this.retryBackoffMs = Long.parseLong(String.valueOf(cfg.getOrDefault("retryBackoffMs", 200)));
+        this.timeoutMs = Integer.parseInt(String.valueOf(cfg.getOrDefault("timeoutMs", 30_000)));
+        if (batchSize < 1 || maxInFlight < 1 || maxBatchDelayMs < 1 || retries < 0) {
+            throw new IllegalArgumentException("batchSize, maxInFlight and maxBatchDelayMs must be positive, retries must not be negative");
+        }
+        Log.info("TableOutput", "Initialized with connectionId: " + connectionId + ", tableName: " + tableName
+                + ", dbtype: " + dbType + ", batchSize: " + batchSize + ", maxInFlight: " + maxInFlight);
+    }
+
+    /**
+     * maxInFlight 个发送线程加一个定时器线程
+     */
+    @Override
+    public int threadDemand(Map<String, Object> cfg) {
+        return Integer.parseInt(String.valueOf(cfg.getOrDefault("maxInFlight", 4))) + 1;
     }
 
-    // 接收上游数据
+    // 接收上游数据，上游结束且所有在途请求完成后返回
     @Override
-    public void consume(Channel input) {
+    public void consume(Channel input) throws Exception {
         Log.info("TableOutput", "Starting to consume data from input channel.");
+        Sender sender = new Sender();
+        CountDownLatch done = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
 
-        // 订阅输入通道，当有数据到达时进行处理
-        input.onReceive(rowSetTableObj -> {
-            if (!(rowSetTableObj instanceof RowSetTable)) {
-                Log.warn("TableOutput", "Received non-RowSetTable object from channel, skipping.");
-                return;
-            }
-            RowSetTable table = (RowSetTable) rowSetTableObj;
+        try {
+            // 订阅输入通道，当有数据到达时进行处理
+            input.onReceive(data -> {
+                try {
+                    if (data instanceof Row) {
+                        RowSetTable header = input.getHeader();
+                        if (header == null) {
+                            throw new IllegalStateException("Input channel header is not set, cannot build INSERT for rows.");
+                        }
+                        add(sender, header.getField(), (Row) data);
+                    } else if (data instanceof RowSetTable) {
+                        RowSetTable table = (RowSetTable) data;
+                        for (Row row : table.getRowList()) add(sender, table.getField(), row);
+                    } else {
+                        Log.warn("TableOutput", "Received unsupported object from channel, skipping.");
+                    }
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException("TableOutput delivery failed", e);
+                }
+            }, () -> {
+                // 当上游通道关闭时，发送最后一批并等待在途请求；流程已取消时不再发送
+                try {
+                    sender.finish(!input.getToken().isCancelled());
+                } catch (Exception e) {
+                    failure[0] = e;
+                } finally {
+                    done.countDown();
+                }
+            });
+            done.await();
+        } finally {
+            sender.close();
+        }
+        if (skipped > 0) Log.warn("TableOutput", skipped + " rows skipped because their value count did not match the header");
+        if (failure[0] != null) throw failure[0];
+    }
 
-            // 参数校验
-            if (connectionId == null || connectionId.isEmpty()) {
-                Log.error("TableOutput", "Missing required configuration parameter: 'connectionId'. Cannot send data.");
-                return;
-            }
-            if (tableName == null || tableName.isEmpty()) {
-                Log.error("TableOutput", "Missing required configuration parameter: 'tableName'. Cannot send data.");
-                return;
-            }
-            if (table == null) {
-                Log.error("TableOutput", "Input RowSetTable is null. Cannot send data.");
-                return;
-            }
+    /**
+     * 攒批与并发发送：调用 add/finish 的消费线程在在途请求已满时等待（背压），
+     * 发送线程失败后下一次 add 立即抛出。定时器把等待超过 maxBatchDelayMs 的未满批次发出，
+     * 与消费线程通过 this 互斥
+     */
+    private final class Sender {
+        private final ExecutorService senders = Executors.newFixedThreadPool(maxInFlight);
+        private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        private final Semaphore inFlight = new Semaphore(maxInFlight);
+        private List<String> batch = new ArrayList<>(batchSize);
+        private long batchStarted;        // 当前批次第一条语句的时间（纳秒）
+        private volatile Exception failure;
+        private final AtomicLong sentRows = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong retried = new AtomicLong();
+        private final long start = System.nanoTime();
 
-            // 生成 SQL 插入语句
-            String[] sqlStatements = table.getInsertSQL(tableName);
+        Sender() {
+            long tick = Math.max(10, maxBatchDelayMs / 4);
+            ticker.scheduleWithFixedDelay(this::flushStale, tick, tick, TimeUnit.MILLISECONDS);
+        }
 
-            // 逐条发送 SQL 语句
-            for (String sql : sqlStatements) {
-                // 构造请求数据
-                String requestData = "{\"connectionId\": \"" + connectionId + "\", \"sql\": \"" + escapeJson(sql) + "\"}";
-                String requestUrl = "http://localhost:3000/api/output/execute";
+        synchronized void add(String sql) throws Exception {
+            if (failure != null) throw failure;
+            if (batch.isEmpty()) batchStarted = System.nanoTime();
+            batch.add(sql);
+            if (batch.size() >= batchSize) flush();
+        }
 
-                Log.info("TableOutput", "Sending request to URL: " + requestUrl);
-                Log.debug("TableOutput", "Request Body: " + requestData); // 使用 debug 级别，避免过多日志
+        // 定时器线程：未满批次等待过久时发出
+        private synchronized void flushStale() {
+            if (batch.isEmpty() || System.nanoTime() - batchStarted < maxBatchDelayMs * 1_000_000) return;
+            try {
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-                // 发送 HTTP POST 请求到 Node.js 后端
+        private synchronized void flush() throws InterruptedException {
+            if (batch.isEmpty()) return;
+            inFlight.acquire(); // 先占在途名额再取出批次，等待被中断时语句仍留在批次中
+            List<String> toSend = batch;
+            batch = new ArrayList<>(batchSize);
+            senders.execute(() -> {
                 try {
-                    URL url = new URL(requestUrl);
-                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                    connection.setRequestMethod("POST");
-                    connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
-                    connection.setRequestProperty("Accept", "application/json");
-                    connection.setDoOutput(true);
-
-                    try (OutputStream os = connection.getOutputStream()) {
-                        byte[] inputBytes = requestData.getBytes(StandardCharsets.UTF_8);
-                        os.write(inputBytes, 0, inputBytes.length);
-                    }
+                    send(toSend);
+                    sentRows.addAndGet(toSend.size());
+                } catch (Exception e) {
+                    if (failure == null) failure = e;
+                    Log.error("TableOutput", "Batch of " + toSend.size() + " statements failed: " + e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
 
-                    int responseCode = connection.getResponseCode();
-                    Log.info("TableOutput", "HTTP Response Code: " + responseCode);
-
-                    // 读取响应体
-                    StringBuilder response = new StringBuilder();
-                    try (BufferedReader in = new BufferedReader(new InputStreamReader(
-                            responseCode >= 200 && responseCode < 300 ? connection.getInputStream() : connection.getErrorStream()
-                    ))) {
-                        String inputLine;
-                        while ((inputLine = in.readLine()) != null) {
-                            response.append(inputLine);
-                        }
-                    }
-                    Log.info("TableOutput", "HTTP Response Body: " + response.toString());
+        void finish(boolean flushRemaining) throws Exception {
+            ticker.shutdownNow();
+            synchronized (this) {
+                if (flushRemaining) flush();
+            }
+            inFlight.acquire(maxInFlight); // 所有在途请求结束
+            inFlight.release(maxInFlight);
+            if (failure != null) throw failure;
+            double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+            Log.success("TableOutput", String.format("Sent %d rows in %d requests (%d retries), %.0f rows/s",
+                    sentRows.get(), requests.get(), retried.get(), sentRows.get() / seconds));
+        }
 
-                    if (responseCode == HttpURLConnection.HTTP_OK) {
-                        Log.success("TableOutput", "Data insertion successful for SQL statement.");
-                    } else {
-                        Log.error("TableOutput", "Data insertion failed, HTTP response code: " + responseCode + ". Response: " + response.toString());
+        void close() {
+            ticker.shutdownNow();
+            senders.shutdownNow();
+        }
+
+        /**
+         * 发送一批语句：只有确定后端未执行时（请求未发出或 503）按指数退避重试，
+         * 其余失败直接抛出，避免重发已执行的 INSERT
+         */
+        private void send(List<String> statements) throws Exception {
+            JSONObject body = new JSONObject();
+            body.set("connectionId", connectionId);
+            body.set("batch", statements);
+            byte[] payload = body.toString().getBytes(StandardCharsets.UTF_8);
+            long backoff = retryBackoffMs;
+            for (int attempt = 0; ; attempt++) {
+                requests.incrementAndGet();
+                IOException error;
+                try {
+                    Response resp = post(payload);
+                    if (resp.code >= 200 && resp.code < 300) {
+                        checkResults(resp.body, statements.size());
+                        return;
+                    }
+                    if (resp.code != HttpURLConnection.HTTP_UNAVAILABLE) {
+                        throw new IllegalStateException("HTTP " + resp.code + ": " + resp.body);
                     }
+                    error = new IOException("HTTP " + resp.code + ": " + resp.body);
+                } catch (NotSentException e) {
+                    error = e;
                 } catch (IOException e) {
-                    Log.error("TableOutput", "Failed to send request: " + e.getMessage());
+                    throw new IllegalStateException("Request failed after it was sent, statements may have been executed, not retrying: "
+                            + e.getMessage(), e);
+                }
+                if (attempt >= retries) throw error;
+                retried.incrementAndGet();
+                Log.warn("TableOutput", "Request failed (" + error.getMessage() + "), retry " + (attempt + 1)
+                        + "/" + retries + " in " + backoff + "ms");
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+    /**
+     * 请求体没有完整发出：后端收不到完整的 batch，不可能执行，可以安全重试
+     */
+    private static final class NotSentException extends IOException {
+        NotSentException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    private static final class Response {
+        final int code;
+        final String body;
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    /**
+     * 发送一次 POST。响应体读完且不调用 disconnect，连接才会回到 keep-alive 池被下一个请求复用。
+     * 连接或写请求体失败时抛 NotSentException；之后（等待、读取响应）的失败无法判断后端是否已执行
+     */
+    private Response post(byte[] payload) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(payload.length);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(payload);
+        } catch (IOException e) {
+            throw new NotSentException(e);
+        }
+        int code = connection.getResponseCode();
+        InputStream is = code >= 200 && code < 300 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (is != null) {
+            try (InputStream in = is) {
+                byte[] buf = new byte[4096];
+                for (int n; (n = in.read(buf)) > 0; ) response.write(buf, 0, n);
+            }
+        }
+        return new Response(code, new String(response.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 接口对单条语句的失败仍返回 200，按 summary 核对成功数
+     */
+    private static void checkResults(String body, int expected) {
+        if (body == null || body.isEmpty()) return;
+        JSONObject resp = JSONUtil.parseObj(body);
+        JSONObject summary = resp.getByPath("data.summary", JSONObject.class);
+        if (summary == null) return;
+        int success = summary.getInt("success", expected);
+        if (success < summary.getInt("total", expected)) {
+            Object firstError = null;
+            for (Object r : resp.getByPath("data.results", JSONArray.class)) {
+                JSONObject result = (JSONObject) r;
+                if (!result.getBool("success", true)) {
+                    firstError = result.get("error");
+                    break;
                 }
             }
-        }, () -> {
-            // 当上游通道关闭时，此回调会被触发
-            Log.info("TableOutput", "Input channel closed, TableOutput finished processing all available data.");
-        });
+            throw new IllegalStateException((summary.getInt("total") - success) + " of " + summary.getInt("total")
+                    + " statements failed, first error: " + firstError);
+        }
     }
 
-    // 转义 JSON 字符串，保持不变
-    private String escapeJson(String input) {
-        if (input == null) {
-            return "";
+    /**
+     * 值个数与字段数一致的行加入批次；不一致的行跳过，首行记录详情，结束时汇总
+     */
+    private void add(Sender sender, List<String> fields, Row row) throws Exception {
+        if (row.size() != fields.size()) {
+            if (skipped++ == 0) {
+                Log.warn("TableOutput", "Row has " + row.size() + " values but header has " + fields.size()
+                        + " fields " + fields + ", skipped: " + row);
+            }
+            return;
+        }
+        sender.add(insertSql(fields, row));
+    }
+
+    /**
+     * 生成一行的 INSERT 语句：标识符引号与值的转义按 dbtype，与 sqlfile 输出一致，null 写 NULL
+     */
+    private String insertSql(List<String> fields, Row row) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(SQLFileOutput.quoteIdentifier(dbType, tableName)).append(" (");
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(SQLFileOutput.quoteIdentifier(dbType, fields.get(i)));
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) sql.append(", ");
+            Object value = row.get(i);
+            if (value == null) {
+                sql.append("NULL");
+                continue;
+            }
+            sql.append('\'');
+            SQLFileOutput.appendEscaped(dbType, sql, value.toString());
+            sql.append('\'');
         }
-        return input.replace("\\", "\\\\")
-                .replace("\"", "\\\"");
+        return sql.append(")").toString();
     }
-}
\ No newline at end of file
+}
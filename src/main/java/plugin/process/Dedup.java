@@ -0,0 +1,113 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import tool.BloomFilter;
+import tool.Log;
+import tool.OffHeapLongSet;
+import tool.RowHash;
+
+import java.util.*;
+
+/**
+ * 去重：按指定字段计算 64 位指纹，只保留每个键第一次出现的行。
+ * 配置：
+ *   fields       —— 去重字段，逗号分隔或列表，缺省为全部字段
+ *   mode         —— exact（默认）指纹存入堆外开放寻址表；bloom 用布隆过滤器近似去重，
+ *                   内存只有 exact 的几分之一，但会按 fpp 的概率把新键误判为重复而丢弃
+ *   expectedKeys —— 预计不同键数，exact 据此确定初始容量（可自动扩容），bloom 据此确定位数，默认 1000000
+ *   fpp          —— bloom 模式的误判率，默认 0.01
+ * exact 模式比较的是 64 位指纹，一千万个键发生指纹碰撞的概率约为百万分之三。
+ */
+@Process(type = "dedup")
+public class Dedup implements IProcess {
+    private List<String> fields;
+    private boolean bloom;
+    private long expectedKeys;
+    private double fpp;
+
+    private OffHeapLongSet seen;
+    private BloomFilter filter;
+
+    // 以下由消费线程维护
+    private RowSetTable boundHeader;
+    private int[] keyIdx;
+    private long kept = 0;
+    private long dropped = 0;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        fields = new ArrayList<>();
+        Object f = cfg.get("fields");
+        if (f instanceof Collection) {
+            for (Object o : (Collection<?>) f) fields.add(String.valueOf(o).trim());
+        } else if (f != null) {
+            for (String s : f.toString().split(",")) {
+                if (!s.trim().isEmpty()) fields.add(s.trim());
+            }
+        }
+        String mode = String.valueOf(cfg.getOrDefault("mode", "exact")).toLowerCase();
+        if (!mode.equals("exact") && !mode.equals("bloom")) {
+            throw new IllegalArgumentException("unknown dedup mode '" + mode + "', expected exact/bloom");
+        }
+        bloom = mode.equals("bloom");
+        expectedKeys = Long.parseLong(String.valueOf(cfg.getOrDefault("expectedKeys", 1_000_000)));
+        fpp = Double.parseDouble(String.valueOf(cfg.getOrDefault("fpp", 0.01)));
+        if (expectedKeys < 1) throw new IllegalArgumentException("expectedKeys must be positive");
+        if (bloom) filter = new BloomFilter(expectedKeys, fpp);
+        else seen = new OffHeapLongSet(expectedKeys);
+        Log.info("Dedup", "Init " + mode + " on " + (fields.isEmpty() ? "all fields" : fields)
+                + ", " + memoryBytes() / 1024 + " KB");
+    }
+
+    @Override
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("dedup 步骤需要至少1个输出通道");
+        }
+        input.onReceive(rowObj -> {
+            if (!(rowObj instanceof Row)) {
+                Log.warn("Dedup", "上游数据类型非 Row，跳过");
+                return;
+            }
+            RowSetTable hdr = input.getHeader();
+            if (hdr != boundHeader) bind(hdr, outputs); // 首行或 Header 变化时绑定
+
+            Row row = (Row) rowObj;
+            long fp = RowHash.fingerprint(row, keyIdx);
+            if (bloom ? !filter.put(fp) : !seen.add(fp)) {
+                dropped++;
+                return;
+            }
+            kept++;
+            outputs.get(0).publish(row);
+            for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(row.copy());
+            if (Log.dataEnabled()) Log.data("Dedup", row.toString());
+        }, () -> {
+            Log.info("Dedup", "上游通道关闭，保留 " + kept + " 行，去除重复 " + dropped + " 行，占用 "
+                    + memoryBytes() / 1024 + " KB");
+            for (Channel out : outputs) out.close();
+        });
+    }
+
+    private void bind(RowSetTable hdr, List<Channel> outputs) {
+        if (hdr == null) throw new IllegalStateException("上游通道 Header 为空，无法去重");
+        List<String> names = fields.isEmpty() ? hdr.getField() : fields;
+        keyIdx = new int[names.size()];
+        for (int i = 0; i < keyIdx.length; i++) {
+            keyIdx[i] = hdr.getFieldIndex(names.get(i));
+            if (keyIdx[i] < 0) {
+                throw new IllegalArgumentException("dedup field '" + names.get(i) + "' not in upstream header " + hdr.getField());
+            }
+        }
+        for (Channel out : outputs) out.setHeader(hdr);
+        boundHeader = hdr;
+    }
+
+    private long memoryBytes() {
+        return bloom ? filter.memoryBytes() : seen.memoryBytes();
+    }
+}
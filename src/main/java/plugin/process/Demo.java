@@ -63,10 +63,10 @@ public class Demo implements IProcess {
                     int age = Integer.parseInt(ageValue.toString().trim());
                     if (age > 28) {
                         outputs.get(0).publish(row.copy());
-                        Log.data("Demo", "Routed to output 0 (age > 28): " + row.toString());
+                        Log.data("Demo", () -> "Routed to output 0 (age > 28): " + row);
                     } else {
                         outputs.get(1).publish(row.copy());
-                        Log.data("Demo", "Routed to output 1 (age <= 28): " + row.toString());
+                        Log.data("Demo", () -> "Routed to output 1 (age <= 28): " + row);
                     }
                 } else {
                     Log.warn("Demo", "Age index " + ageColumnIndex + " out of bounds for row size " + row.size() + ". Skipping.");
@@ -0,0 +1,120 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.expr.Evaluator;
+import core.expr.Expr;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import tool.Log;
+
+import java.util.*;
+
+/**
+ * 表达式步骤：按 filter 过滤行，并按 columns 计算派生列。
+ * 配置：
+ *   filter  —— 过滤表达式（可选），结果为真才保留，只能引用上游字段
+ *   columns —— 派生列（可选），列名 -> 表达式，按配置顺序计算；
+ *              同名列覆盖原值，新列追加在末尾，后面的列可以引用前面算出的列
+ * 表达式在 init 时解析，Header 到达时绑定到列下标。
+ */
+@Process(type = "expr")
+public class ExprProcess implements IProcess {
+    private Expr filter;
+    private final LinkedHashMap<String, Expr> columns = new LinkedHashMap<>();
+
+    // 以下由消费线程在 Header 到达时编译
+    private RowSetTable boundHeader;
+    private Evaluator filterEval;
+    private Evaluator[] columnEvals;
+    private int[] columnIndex;      // 派生列在输出行中的下标
+    private int outWidth;
+    private long kept = 0;
+    private long dropped = 0;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(Map<String, Object> cfg) {
+        Object f = cfg.get("filter");
+        if (f != null && !f.toString().trim().isEmpty()) {
+            filter = Expr.parse(f.toString());
+        }
+        Object cols = cfg.get("columns");
+        if (cols instanceof Map) {
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) cols).entrySet()) {
+                columns.put(e.getKey(), Expr.parse(String.valueOf(e.getValue())));
+            }
+        } else if (cols != null) {
+            throw new IllegalArgumentException("columns must be a map of column name to expression");
+        }
+        if (filter == null && columns.isEmpty()) {
+            throw new IllegalArgumentException("expr step needs a filter or columns");
+        }
+        Log.info("Expr", "Init with filter: " + filter + ", columns: " + columns);
+    }
+
+    @Override
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("expr 步骤需要至少1个输出通道");
+        }
+        input.onReceive(rowObj -> {
+            if (!(rowObj instanceof Row)) {
+                Log.warn("Expr", "上游数据类型非 Row，跳过");
+                return;
+            }
+            RowSetTable hdr = input.getHeader();
+            if (hdr != boundHeader) bind(hdr, outputs); // 首行或 Header 变化时绑定
+
+            Row row = (Row) rowObj;
+            if (filterEval != null && !Expr.test(filterEval, row)) {
+                dropped++;
+                return;
+            }
+            Row out = row;
+            if (columnEvals.length > 0) {
+                out = new Row();
+                out.addAll(row);
+                while (out.size() < outWidth) out.add(null);
+                for (int i = 0; i < columnEvals.length; i++) {
+                    out.set(columnIndex[i], columnEvals[i].eval(out));
+                }
+            }
+            kept++;
+            outputs.get(0).publish(out);
+            for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(out.copy());
+            if (Log.dataEnabled()) Log.data("Expr", out.toString());
+        }, () -> {
+            Log.info("Expr", "上游通道关闭，保留 " + kept + " 行，过滤 " + dropped + " 行");
+            for (Channel out : outputs) out.close();
+        });
+    }
+
+    private void bind(RowSetTable hdr, List<Channel> outputs) {
+        if (hdr == null) throw new IllegalStateException("上游通道 Header 为空，无法绑定表达式");
+        List<String> fields = new ArrayList<>(hdr.getField());
+        filterEval = filter != null ? filter.bind(fields) : null;
+
+        columnIndex = new int[columns.size()];
+        int i = 0;
+        for (String name : columns.keySet()) {
+            int idx = fields.indexOf(name);
+            if (idx < 0) {
+                idx = fields.size();
+                fields.add(name);
+            }
+            columnIndex[i++] = idx;
+        }
+        outWidth = fields.size();
+        // 派生列对输出行求值，可引用上游字段与其它派生列
+        columnEvals = new Evaluator[columns.size()];
+        i = 0;
+        for (Expr e : columns.values()) columnEvals[i++] = e.bind(fields);
+
+        RowSetTable outHeader = columns.isEmpty() ? hdr : new RowSetTable(fields);
+        for (Channel out : outputs) out.setHeader(outHeader);
+        Log.header("Expr", String.join(", ", fields));
+        boundHeader = hdr;
+    }
+}
@@ -0,0 +1,464 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowFile;
+import core.flowdata.RowSetTable;
+import core.intf.IMultiInputProcess;
+import tool.Log;
+import tool.Tuning;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * 哈希连接：右侧（构建侧）建哈希表，左侧（探测侧）逐行查找。
+ * 配置：
+ *   left / right       —— 左、右输入的父步骤 ID，缺省按 parentStepId 顺序取前两个
+ *   leftKey / rightKey —— 连接字段，多个字段用逗号分隔或使用列表；只配 key 时两侧同名
+ *   joinType           —— inner（默认）/ left / anti
+ *   memoryRows         —— 构建侧在内存中保留的最大行数，超过后按 grace hash 分区溢写磁盘
+ *   spillPartitions    —— 溢写分区数，默认 16
+ *   spillDir           —— 溢写目录，默认系统临时目录
+ * 输出字段为左侧全部字段 + 右侧非连接字段（与左侧重名时加 _right 后缀）；anti 只输出左侧字段。
+ * 连接键为 null 的行永不匹配；数值键按整数比较（"7" 与 7 相等，但 "007" 与 "7" 不等）。
+ */
+@Process(type = "join")
+public class HashJoin implements IMultiInputProcess {
+    private String leftId;
+    private String rightId;
+    private List<String> leftKeys;
+    private List<String> rightKeys;
+    private String joinType;
+    private long memoryRows;
+    private int partitions;
+    private File spillDir;
+
+    private Channel left;
+    private Channel right;
+    private List<Channel> outputs;
+
+    // 构建侧，仅由右侧消费线程写入；buildDone 之后只读
+    private JoinTable table = new JoinTable();
+    private int[] rightKeyIdx;
+    private int[] rightKeepIdx;     // 输出中保留的右侧字段下标
+
+    // 以下受 this 保护
+    private boolean buildDone = false;
+    private boolean drained = false;     // 构建完成且缓存的左侧行已处理
+    private boolean probeDone = false;
+    private final List<Row> pending = new ArrayList<>();   // 构建完成前到达的左侧行
+    private SpillFile pendingSpill;                        // pending 超过内存上限后的溢写
+    private SpillFile[] buildParts;                        // 非 null 表示已进入分区溢写模式
+    private SpillFile[] probeParts;
+
+    private volatile int[] leftKeyIdx;
+    private volatile boolean headerSet = false;
+    private long emitted = 0;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        leftId = cfg.get("left") == null ? null : String.valueOf(cfg.get("left"));
+        rightId = cfg.get("right") == null ? null : String.valueOf(cfg.get("right"));
+        Object key = cfg.get("key");
+        leftKeys = names(cfg.getOrDefault("leftKey", key));
+        rightKeys = names(cfg.getOrDefault("rightKey", key));
+        if (leftKeys.isEmpty() || rightKeys.isEmpty()) {
+            throw new IllegalArgumentException("join needs leftKey/rightKey (or key)");
+        }
+        if (leftKeys.size() != rightKeys.size()) {
+            throw new IllegalArgumentException("leftKey and rightKey must have the same number of fields");
+        }
+        joinType = String.valueOf(cfg.getOrDefault("joinType", "inner")).toLowerCase();
+        if (!joinType.equals("inner") && !joinType.equals("left") && !joinType.equals("anti")) {
+            throw new IllegalArgumentException("unknown joinType '" + joinType + "', expected inner/left/anti");
+        }
+        memoryRows = Long.parseLong(String.valueOf(cfg.getOrDefault("memoryRows", Tuning.joinMemoryRows())));
+        partitions = Integer.parseInt(String.valueOf(cfg.getOrDefault("spillPartitions", 16)));
+        if (memoryRows < 1 || partitions < 1) {
+            throw new IllegalArgumentException("memoryRows and spillPartitions must be positive");
+        }
+        spillDir = new File(String.valueOf(cfg.getOrDefault("spillDir", System.getProperty("java.io.tmpdir"))));
+        Log.info("HashJoin", "Init " + joinType + " join on " + leftKeys + " = " + rightKeys + ", memoryRows: " + memoryRows);
+    }
+
+    @Override
+    public void process(Map<String, Channel> inputs, List<Channel> outputs) throws Exception {
+        if (inputs.size() != 2) {
+            throw new IllegalStateException("join 步骤需要恰好2个上游，实际: " + inputs.keySet());
+        }
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("join 步骤需要至少1个输出通道");
+        }
+        Iterator<String> it = inputs.keySet().iterator();
+        String first = it.next(), second = it.next();
+        String l = leftId != null ? leftId : (rightId != null && rightId.equals(first) ? second : first);
+        String r = rightId != null ? rightId : (l.equals(first) ? second : first);
+        if (!inputs.containsKey(l) || !inputs.containsKey(r) || l.equals(r)) {
+            throw new IllegalArgumentException("left/right (" + l + "/" + r + ") must be the two distinct parents " + inputs.keySet());
+        }
+        this.left = inputs.get(l);
+        this.right = inputs.get(r);
+        this.outputs = outputs;
+
+        right.onReceive(this::build, this::finishBuild);
+        left.onReceive(this::probeOrBuffer, this::finishProbe);
+    }
+
+    // ==================== 构建侧 ==================== //
+
+    private void build(Object obj) {
+        if (!(obj instanceof Row)) return;
+        Row row = (Row) obj;
+        if (rightKeyIdx == null) bindRight();
+        if (!headerSet) tryOutputHeader();
+        Object key = key(row, rightKeyIdx);
+        if (key == null) return; // null 键永不匹配
+        try {
+            if (buildParts != null) {
+                buildParts[partition(key)].write(row);
+                return;
+            }
+            table.add(key, row);
+            if (table.size() > memoryRows) spillBuild();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Join spill failed", e);
+        }
+    }
+
+    // 构建侧超出内存上限：把已在内存的行按键分区写出，之后的行直接写分区
+    private void spillBuild() throws IOException {
+        Log.warn("HashJoin", "Build side exceeds " + memoryRows + " rows, spilling to " + partitions + " partitions");
+        SpillFile[] parts = new SpillFile[partitions];
+        for (int i = 0; i < partitions; i++) parts[i] = new SpillFile(spillDir, "build-" + i);
+        for (int i = 0; i < table.size(); i++) {
+            Row row = table.row(i);
+            parts[partition(key(row, rightKeyIdx))].write(row);
+        }
+        table = new JoinTable();
+        synchronized (this) {
+            buildParts = parts;
+        }
+    }
+
+    private void finishBuild() {
+        List<Row> drain;
+        synchronized (this) {
+            if (rightKeyIdx == null && right.getHeader() != null) bindRight();
+            try {
+                if (buildParts != null) {
+                    probeParts = new SpillFile[partitions];
+                    for (int i = 0; i < partitions; i++) probeParts[i] = new SpillFile(spillDir, "probe-" + i);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Join spill failed", e);
+            }
+            buildDone = true; // 之后到达的左侧行直接探测或写分区
+            drain = new ArrayList<>(pending);
+            pending.clear();
+        }
+        Log.info("HashJoin", "Build side done, " + (buildParts != null ? "spilled" : table.size() + " rows in memory"));
+        boolean finish;
+        try {
+            if (!left.getToken().isCancelled()) {
+                for (Row row : drain) probe(row);
+                if (pendingSpill != null) {
+                    try (SpillFile.Reader reader = pendingSpill.read()) {
+                        Row row;
+                        while ((row = reader.next()) != null) probe(row);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Join spill failed", e);
+        } finally {
+            synchronized (this) {
+                drained = true;
+                finish = probeDone;
+            }
+        }
+        if (finish) complete();
+    }
+
+    // ==================== 探测侧 ==================== //
+
+    private void probeOrBuffer(Object obj) {
+        if (!(obj instanceof Row)) return;
+        Row row = (Row) obj;
+        if (leftKeyIdx == null) leftKeyIdx = indices(left.getHeader(), leftKeys, "left");
+        if (!headerSet) tryOutputHeader();
+        synchronized (this) {
+            if (!buildDone) {
+                // 构建未完成：先缓存，超过内存上限写临时文件，避免上游在满队列上阻塞
+                try {
+                    if (pending.size() < memoryRows) {
+                        pending.add(row);
+                    } else {
+                        if (pendingSpill == null) pendingSpill = new SpillFile(spillDir, "pending");
+                        pendingSpill.write(row);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Join spill failed", e);
+                }
+                return;
+            }
+        }
+        probe(row);
+    }
+
+    private void probe(Row row) {
+        Object key = key(row, leftKeyIdx);
+        if (key != null && probeParts != null) {
+            try {
+                SpillFile part = probeParts[partition(key)];
+                synchronized (part) {
+                    part.write(row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Join spill failed", e);
+            }
+            return;
+        }
+        probe(row, key, table);
+    }
+
+    private void probe(Row row, Object key, JoinTable t) {
+        int idx = key == null ? -1 : t.first(key);
+        if (joinType.equals("anti")) {
+            if (idx < 0) emit(row);
+            return;
+        }
+        if (idx < 0) {
+            if (joinType.equals("left")) emit(joined(row, null));
+            return;
+        }
+        for (; idx >= 0; idx = t.next(idx)) emit(joined(row, t.row(idx)));
+    }
+
+    private void finishProbe() {
+        boolean finish;
+        synchronized (this) {
+            probeDone = true;
+            finish = drained;
+        }
+        if (finish) complete(); // 两侧中后结束的一方负责收尾
+    }
+
+    // 两侧都结束后调用一次：溢写模式下逐分区连接，然后关闭下游
+    private void complete() {
+        try {
+            if (probeParts != null && !left.getToken().isCancelled()) {
+                for (int i = 0; i < partitions; i++) joinPartition(buildParts[i], probeParts[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Join spill failed", e);
+        } finally {
+            cleanup();
+            Log.info("HashJoin", "Join finished, emitted " + emitted + " rows");
+            for (Channel out : outputs) out.close();
+        }
+    }
+
+    private void joinPartition(SpillFile build, SpillFile probe) throws IOException {
+        JoinTable t = new JoinTable();
+        try (SpillFile.Reader reader = build.read()) {
+            Row row;
+            while ((row = reader.next()) != null) t.add(key(row, rightKeyIdx), row);
+        }
+        if (t.size() > memoryRows) {
+            Log.warn("HashJoin", "Partition still has " + t.size() + " build rows (key skew?), joining in memory");
+        }
+        try (SpillFile.Reader reader = probe.read()) {
+            Row row;
+            while ((row = reader.next()) != null) probe(row, key(row, leftKeyIdx), t);
+        }
+        build.delete();
+        probe.delete();
+    }
+
+    private void cleanup() {
+        if (pendingSpill != null) pendingSpill.delete();
+        for (SpillFile[] parts : new SpillFile[][]{buildParts, probeParts}) {
+            if (parts == null) continue;
+            for (SpillFile f : parts) if (f != null) f.delete();
+        }
+    }
+
+    // ==================== 输出 ==================== //
+
+    private Row joined(Row l, Row r) {
+        Row out = new Row();
+        out.addAll(l);
+        for (int idx : rightKeepIdx) out.add(r == null || idx >= r.size() ? null : r.get(idx));
+        return out;
+    }
+
+    private void emit(Row row) {
+        if (!headerSet) setOutputHeader();
+        synchronized (outputs) {
+            emitted++;
+        }
+        outputs.get(0).publish(row);
+        for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(row.copy());
+        if (Log.dataEnabled()) Log.data("HashJoin", row.toString());
+    }
+
+    // 两侧 Header 都已到达时尽早下发输出 Header，下游不必等到第一条结果行
+    private void tryOutputHeader() {
+        if (left.getHeader() != null && (joinType.equals("anti") || right.getHeader() != null)) setOutputHeader();
+    }
+
+    private synchronized void setOutputHeader() {
+        if (headerSet) return;
+        List<String> fields = new ArrayList<>(left.getHeader().getField());
+        if (!joinType.equals("anti")) {
+            if (rightKeepIdx == null) bindRight();
+            List<String> rightFields = right.getHeader() == null ? Collections.emptyList() : right.getHeader().getField();
+            for (int idx : rightKeepIdx) {
+                String name = rightFields.get(idx);
+                fields.add(fields.contains(name) ? name + "_right" : name);
+            }
+        }
+        RowSetTable header = new RowSetTable(fields);
+        for (Channel out : outputs) out.setHeader(header);
+        Log.header("HashJoin", String.join(", ", fields));
+        headerSet = true;
+    }
+
+    // ==================== 键 ==================== //
+
+    private synchronized void bindRight() {
+        if (rightKeyIdx != null) return;
+        RowSetTable hdr = right.getHeader();
+        if (hdr == null) {
+            // 右侧没有任何数据也没有 Header：没有可保留的右侧字段
+            rightKeepIdx = new int[0];
+            rightKeyIdx = new int[0];
+            return;
+        }
+        rightKeyIdx = indices(hdr, rightKeys, "right");
+        List<Integer> keep = new ArrayList<>();
+        Set<Integer> keys = new HashSet<>();
+        for (int k : rightKeyIdx) keys.add(k);
+        for (int i = 0; i < hdr.getField().size(); i++) if (!keys.contains(i)) keep.add(i);
+        rightKeepIdx = keep.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] indices(RowSetTable hdr, List<String> names, String side) {
+        if (hdr == null) throw new IllegalStateException(side + " 输入的 Header 为空，无法定位连接字段");
+        int[] idx = new int[names.size()];
+        for (int i = 0; i < idx.length; i++) {
+            idx[i] = hdr.getField().indexOf(names.get(i));
+            if (idx[i] < 0) {
+                throw new IllegalArgumentException("join key '" + names.get(i) + "' not found in " + side + " input " + hdr.getField());
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * 连接键：单字段为规范化后的值，多字段为值列表；任一字段为 null 返回 null
+     */
+    static Object key(Row row, int[] idx) {
+        if (idx.length == 1) return normalize(idx[0] < row.size() ? row.get(idx[0]) : null);
+        List<Object> key = new ArrayList<>(idx.length);
+        for (int i : idx) {
+            Object v = normalize(i < row.size() ? row.get(i) : null);
+            if (v == null) return null;
+            key.add(v);
+        }
+        return key;
+    }
+
+    // 整数与规范整数字符串统一为 Long，其余按字符串比较
+    static Object normalize(Object v) {
+        if (v == null) return null;
+        if (v instanceof Long) return v;
+        if (v instanceof Integer || v instanceof Short || v instanceof Byte) return ((Number) v).longValue();
+        String s = v.toString();
+        int n = s.length();
+        if (n == 0 || n > 18) return s;
+        int i = s.charAt(0) == '-' && n > 1 ? 1 : 0;
+        if (s.charAt(i) == '0' && n > i + 1) return s; // 前导零不视为整数
+        for (int j = i; j < n; j++) {
+            char c = s.charAt(j);
+            if (c < '0' || c > '9') return s;
+        }
+        if (i == 1 && s.equals("-0")) return s;
+        return Long.parseLong(s);
+    }
+
+    private int partition(Object key) {
+        int h = key.hashCode() * 0x85EBCA6B;
+        return ((h ^ (h >>> 15)) & 0x7FFFFFFF) % partitions;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> names(Object v) {
+        List<String> result = new ArrayList<>();
+        if (v instanceof List) {
+            for (Object o : (List<Object>) v) result.add(String.valueOf(o).trim());
+        } else if (v != null) {
+            for (String s : v.toString().split(",")) if (!s.trim().isEmpty()) result.add(s.trim());
+        }
+        return result;
+    }
+
+    /**
+     * 溢写临时文件：RowFile 行组编码（无字段名），读取前写出最后一个行组
+     */
+    static final class SpillFile {
+        private static final int BLOCK_ROWS = 1024;
+
+        private final File file;
+        private RowFile.Writer out;
+
+        SpillFile(File dir, String name) throws IOException {
+            Files.createDirectories(dir.toPath());
+            this.file = File.createTempFile("etl-join-" + name + "-", ".spill", dir);
+            this.file.deleteOnExit();
+            this.out = new RowFile.Writer(new FileOutputStream(file), Collections.emptyList(), BLOCK_ROWS);
+        }
+
+        void write(Row row) throws IOException {
+            out.write(row);
+        }
+
+        Reader read() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            return new Reader(new RowFile.Reader(new FileInputStream(file)));
+        }
+
+        void delete() {
+            try {
+                if (out != null) out.close();
+            } catch (IOException ignored) {
+                // 删除前关闭失败不影响删除
+            }
+            out = null;
+            if (file.exists() && !file.delete()) Log.warn("HashJoin", "Failed to delete spill file " + file);
+        }
+
+        static final class Reader implements Closeable {
+            private final RowFile.Reader in;
+
+            Reader(RowFile.Reader in) {
+                this.in = in;
+            }
+
+            Row next() throws IOException {
+                return in.next();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        }
+    }
+}
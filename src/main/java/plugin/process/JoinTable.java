@@ -0,0 +1,103 @@
+package plugin.process;
+
+import core.flowdata.Row;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HashJoin 的构建侧哈希表。键为 HashJoin.normalize 之后的值：
+ * Long 键进入开放寻址的 long 表（不装箱），其余键（字符串、组合键）进入普通 HashMap。
+ * 同键的多行通过 next 数组串成链表。构建完成后只读，可被多个探测线程共享。
+ */
+final class JoinTable {
+    private final List<Row> rows = new ArrayList<>();
+    private int[] next = new int[16];          // 行下标 -> 同键的下一行，-1 结束
+
+    // long 键开放寻址表：head 为 -1 表示空槽
+    private long[] longKeys = new long[16];
+    private int[] longHead = newHeads(16);
+    private int longSize = 0;
+
+    private final Map<Object, Integer> otherHead = new HashMap<>();
+
+    int size() {
+        return rows.size();
+    }
+
+    void add(Object key, Row row) {
+        int idx = rows.size();
+        rows.add(row);
+        if (idx == next.length) next = Arrays.copyOf(next, idx * 2);
+        if (key instanceof Long) {
+            if ((longSize + 1) * 2 > longKeys.length) rehash();
+            long k = (Long) key;
+            int slot = slot(k, longKeys.length);
+            while (longHead[slot] >= 0 && longKeys[slot] != k) slot = (slot + 1) & (longKeys.length - 1);
+            if (longHead[slot] < 0) {
+                longKeys[slot] = k;
+                longSize++;
+                next[idx] = -1;
+            } else {
+                next[idx] = longHead[slot];
+            }
+            longHead[slot] = idx;
+        } else {
+            Integer prev = otherHead.put(key, idx);
+            next[idx] = prev == null ? -1 : prev;
+        }
+    }
+
+    /**
+     * 该键的第一行下标，无匹配返回 -1；继续遍历用 {@link #next(int)}
+     */
+    int first(Object key) {
+        if (key instanceof Long) {
+            long k = (Long) key;
+            int slot = slot(k, longKeys.length);
+            while (longHead[slot] >= 0) {
+                if (longKeys[slot] == k) return longHead[slot];
+                slot = (slot + 1) & (longKeys.length - 1);
+            }
+            return -1;
+        }
+        Integer head = otherHead.get(key);
+        return head == null ? -1 : head;
+    }
+
+    int next(int idx) {
+        return next[idx];
+    }
+
+    Row row(int idx) {
+        return rows.get(idx);
+    }
+
+    private void rehash() {
+        long[] oldKeys = longKeys;
+        int[] oldHead = longHead;
+        longKeys = new long[oldKeys.length * 2];
+        longHead = newHeads(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHead[i] < 0) continue;
+            int slot = slot(oldKeys[i], longKeys.length);
+            while (longHead[slot] >= 0) slot = (slot + 1) & (longKeys.length - 1);
+            longKeys[slot] = oldKeys[i];
+            longHead[slot] = oldHead[i];
+        }
+    }
+
+    private static int slot(long k, int capacity) {
+        long h = k * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (capacity - 1);
+    }
+
+    private static int[] newHeads(int n) {
+        int[] a = new int[n];
+        Arrays.fill(a, -1);
+        return a;
+    }
+}
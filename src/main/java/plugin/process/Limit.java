@@ -0,0 +1,75 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import tool.Log;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 只输出前 N 行，取满后关闭下游并通知上游停止，预览大文件时不必读完整个输入。
+ * 配置：
+ *   limit  —— 输出行数，必填，可为 0
+ *   offset —— 先跳过的行数，默认 0
+ */
+@Process(type = "limit")
+public class Limit implements IProcess {
+    private long limit;
+    private long offset;
+
+    // 以下由消费线程维护
+    private long seen = 0;
+    private long emitted = 0;
+    private boolean done = false;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        Object l = cfg.get("limit");
+        if (l == null) throw new IllegalArgumentException("limit 步骤缺少 limit 配置");
+        limit = Long.parseLong(String.valueOf(l));
+        offset = Long.parseLong(String.valueOf(cfg.getOrDefault("offset", 0)));
+        if (limit < 0 || offset < 0) throw new IllegalArgumentException("limit and offset must not be negative");
+        Log.info("Limit", "Init limit " + limit + (offset > 0 ? " offset " + offset : ""));
+    }
+
+    @Override
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("limit 步骤需要至少1个输出通道");
+        }
+        input.onReceive(rowObj -> {
+            if (done) return;
+            if (!(rowObj instanceof Row)) {
+                Log.warn("Limit", "上游数据类型非 Row，跳过");
+                return;
+            }
+            if (seen++ == 0) {
+                RowSetTable hdr = input.getHeader();
+                for (Channel out : outputs) out.setHeader(hdr);
+            }
+            if (seen > offset && emitted < limit) {
+                Row row = (Row) rowObj;
+                emitted++;
+                outputs.get(0).publish(row);
+                for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(row.copy());
+                if (Log.dataEnabled()) Log.data("Limit", row.toString());
+            }
+            if (emitted >= limit) {
+                finish(outputs);
+                input.requestStop(); // 取满后停止消费，并经调度器向上游传播
+            }
+        }, () -> finish(outputs));
+    }
+
+    // 取满或上游结束时各调用一次，只关闭一次下游（共享通道按关闭次数计数）
+    private void finish(List<Channel> outputs) {
+        if (done) return;
+        done = true;
+        Log.info("Limit", "输出 " + emitted + " 行，读取 " + seen + " 行");
+        for (Channel out : outputs) out.close();
+    }
+}
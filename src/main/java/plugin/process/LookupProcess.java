@@ -0,0 +1,344 @@
+package plugin.process;
+
+import anno.Process;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import plugin.input.CsvInput;
+import plugin.input.TableInput;
+import tool.BoundedCache;
+import tool.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 查找补全：按 key 字段到维表中查找，把维表字段追加到行尾。
+ * 配置：
+ *   key / lookupKey  —— 输入行的查找字段 / 维表中的键字段（缺省与 key 同名）
+ *   fields           —— 追加的维表字段，逗号分隔或列表，缺省为维表除键外的全部字段（lazy 模式下取自第一批查找的响应）；与输入重名时加 _lookup 后缀
+ *   source           —— http（与 table 输入相同的接口格式）或 file（带表头的 CSV），缺省按是否配置 url 判断
+ *   url / method / body / headers / keysParam —— http 维表；按需查找时把一批键以 keysParam（默认 keys）传给接口：
+ *                      POST 合并进 body 的 JSON 对象，GET 以逗号拼接放入查询参数
+ *   filePath / delimiter / quoteChar          —— 文件维表
+ *   mode             —— eager 启动时全量加载（file 缺省），lazy 按需批量查找并缓存（http 缺省）
+ *   eagerMaxRows     —— 全量加载的行数上限，默认 1000000，超过时报错提示改用 lazy
+ *   cacheSize / eviction / ttlMs —— lazy 模式缓存容量（默认 10000）、淘汰策略 lru（默认）/ lfu、过期毫秒（0 不过期）
+ *   cacheMisses / negativeTtlMs  —— 是否缓存查不到的键（默认 true）及其过期毫秒（缺省同 ttlMs）
+ *   batchSize        —— 每次请求最多查找的键数，默认 100
+ *   onMiss           —— keep（默认，追加字段填 null）/ drop（丢弃该行）/ fail（步骤失败）
+ * lazy 模式下未命中的行先暂存，凑满一批键后一次请求，再按到达顺序输出。
+ */
+@Process(type = "lookup")
+public class LookupProcess implements IProcess {
+    private static final Row ABSENT = new Row(); // 负缓存哨兵
+
+    private String key;
+    private String lookupKey;
+    private List<String> fields;
+    private boolean http;
+    private boolean eager;
+    private String onMiss;
+    private int batchSize;
+    private long ttlMs;
+    private long negativeTtlMs;
+    private boolean cacheMisses;
+    private long eagerMaxRows;
+
+    private String url;
+    private String method;
+    private String body;
+    private Map<String, String> headers;
+    private String keysParam;
+    private String filePath;
+    private char delimiter;
+    private char quoteChar;
+
+    private Map<String, Row> table;             // eager：键 -> 维表行
+    private BoundedCache<String, Row> cache;    // lazy
+
+    // 以下由消费线程维护
+    private RowSetTable boundHeader;
+    private boolean headerSent;          // 输出 Header 是否已下发；lazy 未配置 fields 时等首个维表响应
+    private int keyIdx;
+    private int[] pick;                  // 追加字段在维表行中的下标，首个维表响应后确定
+    private List<String> lookupFields;   // 维表字段，首个维表响应后确定
+    private final List<Row> pendingRows = new ArrayList<>();
+    private final List<Row> pendingHits = new ArrayList<>();      // 与 pendingRows 对齐，未命中为 null
+    private final LinkedHashSet<String> missKeys = new LinkedHashSet<>();
+    private long requests = 0;
+    private long fetchedKeys = 0;
+    private long emitted = 0;
+    private long missed = 0;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(Map<String, Object> cfg) {
+        key = (String) cfg.get("key");
+        if (key == null || key.isEmpty()) throw new IllegalArgumentException("lookup needs a key field");
+        lookupKey = (String) cfg.getOrDefault("lookupKey", key);
+        fields = names(cfg.get("fields"));
+
+        url = (String) cfg.get("url");
+        filePath = (String) cfg.get("filePath");
+        String source = String.valueOf(cfg.getOrDefault("source", url != null ? "http" : "file")).toLowerCase();
+        if (source.equals("http")) {
+            if (url == null || url.isEmpty()) throw new IllegalArgumentException("Missing URL parameter.");
+            http = true;
+            method = ((String) cfg.getOrDefault("method", "POST")).toUpperCase();
+            if (!"GET".equals(method) && !"POST".equals(method)) {
+                throw new IllegalArgumentException("Unsupported HTTP method: " + method + ". Only GET/POST are supported.");
+            }
+            body = (String) cfg.getOrDefault("body", "");
+            headers = (Map<String, String>) cfg.getOrDefault("headers", new HashMap<>());
+            keysParam = (String) cfg.getOrDefault("keysParam", "keys");
+        } else if (source.equals("file")) {
+            if (filePath == null || filePath.isEmpty()) throw new IllegalArgumentException("Missing file path");
+            String d = (String) cfg.getOrDefault("delimiter", ",");
+            String q = (String) cfg.getOrDefault("quoteChar", "\"");
+            if (d.length() != 1) throw new IllegalArgumentException("Delimiter must be a single character");
+            if (q.length() != 1) throw new IllegalArgumentException("Quote character must be a single character");
+            delimiter = d.charAt(0);
+            quoteChar = q.charAt(0);
+        } else {
+            throw new IllegalArgumentException("unknown lookup source '" + source + "', expected http/file");
+        }
+
+        String mode = String.valueOf(cfg.getOrDefault("mode", http ? "lazy" : "eager")).toLowerCase();
+        if (!mode.equals("eager") && !mode.equals("lazy")) {
+            throw new IllegalArgumentException("unknown lookup mode '" + mode + "', expected eager/lazy");
+        }
+        eager = mode.equals("eager");
+        if (!eager && !http) throw new IllegalArgumentException("lazy lookup needs an http source");
+
+        onMiss = String.valueOf(cfg.getOrDefault("onMiss", "keep")).toLowerCase();
+        if (!onMiss.equals("keep") && !onMiss.equals("drop") && !onMiss.equals("fail")) {
+            throw new IllegalArgumentException("unknown onMiss '" + onMiss + "', expected keep/drop/fail");
+        }
+        batchSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("batchSize", 100)));
+        ttlMs = Long.parseLong(String.valueOf(cfg.getOrDefault("ttlMs", 0)));
+        negativeTtlMs = Long.parseLong(String.valueOf(cfg.getOrDefault("negativeTtlMs", ttlMs)));
+        cacheMisses = Boolean.parseBoolean(String.valueOf(cfg.getOrDefault("cacheMisses", true)));
+        eagerMaxRows = Long.parseLong(String.valueOf(cfg.getOrDefault("eagerMaxRows", 1_000_000)));
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if (!eager) {
+            int size = Integer.parseInt(String.valueOf(cfg.getOrDefault("cacheSize", 10_000)));
+            cache = new BoundedCache<>(size, BoundedCache.policyOf(String.valueOf(cfg.getOrDefault("eviction", "lru"))));
+        }
+        Log.info("Lookup", "Init " + source + " source, mode " + mode + ", key " + key + " -> " + lookupKey);
+    }
+
+    @Override
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("lookup 步骤需要至少1个输出通道");
+        }
+        if (eager) load();
+
+        input.onReceive(rowObj -> {
+            if (!(rowObj instanceof Row)) {
+                Log.warn("Lookup", "上游数据类型非 Row，跳过");
+                return;
+            }
+            RowSetTable hdr = input.getHeader();
+            if (hdr != boundHeader) bind(hdr, outputs); // 首行或 Header 变化时绑定
+
+            Row row = (Row) rowObj;
+            String k = keyOf(row.get(keyIdx));
+            if (eager) {
+                emit(row, k == null ? null : table.get(k), outputs);
+                return;
+            }
+            Row hit = k == null ? ABSENT : null;
+            // 已有暂存行时其后的行也暂存，保证输出顺序
+            if (hit == null && (missKeys.isEmpty() || !missKeys.contains(k))) hit = cache.get(k);
+            if (hit != null && pendingRows.isEmpty() && headerSent) {
+                emit(row, hit, outputs);
+                return;
+            }
+            pendingRows.add(row);
+            pendingHits.add(hit);
+            if (hit == null) missKeys.add(k);
+            if (missKeys.size() >= batchSize || pendingRows.size() >= batchSize * 10) flush(outputs);
+        }, () -> {
+            if (!pendingRows.isEmpty()) flush(outputs);
+            String stats = eager ? "table " + table.size() + " rows"
+                    : "cache " + cache + ", requests " + requests + ", fetched keys " + fetchedKeys;
+            Log.info("Lookup", "上游通道关闭，输出 " + emitted + " 行，未匹配 " + missed + " 行，" + stats);
+            for (Channel out : outputs) out.close();
+        });
+    }
+
+    // 查找暂存行中的未命中键，回填缓存后按顺序输出
+    private void flush(List<Channel> outputs) {
+        Map<String, Row> found = missKeys.isEmpty() ? Collections.emptyMap() : index(request(missKeys));
+        for (String k : missKeys) {
+            Row r = found.get(k);
+            if (r != null) cache.put(k, r, ttlMs);
+            else if (cacheMisses) cache.put(k, ABSENT, negativeTtlMs);
+        }
+        for (int i = 0; i < pendingRows.size(); i++) {
+            Row hit = pendingHits.get(i);
+            if (hit == null) hit = found.get(keyOf(pendingRows.get(i).get(keyIdx)));
+            if (!headerSent) sendHeader(outputs);
+            emit(pendingRows.get(i), hit, outputs);
+        }
+        pendingRows.clear();
+        pendingHits.clear();
+        missKeys.clear();
+    }
+
+    private void emit(Row row, Row hit, List<Channel> outputs) {
+        if (hit == ABSENT) hit = null;
+        if (hit == null) {
+            missed++;
+            if (onMiss.equals("drop")) return;
+            if (onMiss.equals("fail")) {
+                throw new IllegalStateException("lookup key not found: " + row.get(keyIdx));
+            }
+        }
+        Row out = new Row();
+        out.addAll(row);
+        // 维表字段未确定（尚未收到任何维表响应）时不可能命中，只补 null
+        int width = pick != null ? pick.length : fields.size();
+        for (int i = 0; i < width; i++) out.add(hit == null ? null : hit.get(pick[i]));
+        emitted++;
+        outputs.get(0).publish(out);
+        for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(out.copy());
+        if (Log.dataEnabled()) Log.data("Lookup", out.toString());
+    }
+
+    private void bind(RowSetTable hdr, List<Channel> outputs) {
+        if (hdr == null) throw new IllegalStateException("上游通道 Header 为空，无法查找");
+        keyIdx = hdr.getFieldIndex(key);
+        if (keyIdx < 0) throw new IllegalArgumentException("lookup key field '" + key + "' not in upstream header " + hdr.getField());
+        boundHeader = hdr;
+        headerSent = false;
+        // lazy 模式未配置 fields 时维表字段要等第一批真实键的响应才知道，此前的行都暂存，不单独发请求探测字段
+        if (lookupFields != null || !fields.isEmpty()) sendHeader(outputs);
+    }
+
+    private void sendHeader(List<Channel> outputs) {
+        List<String> names = fields;
+        if (lookupFields != null) {
+            names = new ArrayList<>();
+            for (int idx : pick) names.add(lookupFields.get(idx));
+        } else if (fields.isEmpty()) {
+            Log.warn("Lookup", "未收到任何维表响应（查找键均为空），无法确定维表字段，不追加字段");
+        }
+        List<String> outFields = new ArrayList<>(boundHeader.getField());
+        for (String name : names) {
+            outFields.add(outFields.contains(name) ? name + "_lookup" : name);
+        }
+        RowSetTable outHeader = new RowSetTable(outFields);
+        for (Channel out : outputs) out.setHeader(outHeader);
+        Log.header("Lookup", String.join(", ", outFields));
+        headerSent = true;
+    }
+
+    // 确定维表字段与追加字段下标
+    private void describe(List<String> columns) {
+        if (columns.indexOf(lookupKey) < 0) {
+            throw new IllegalArgumentException("lookup key '" + lookupKey + "' not in lookup columns " + columns);
+        }
+        List<String> wanted = fields.isEmpty() ? new ArrayList<>(columns) : fields;
+        if (fields.isEmpty()) wanted.remove(lookupKey);
+        pick = new int[wanted.size()];
+        for (int i = 0; i < pick.length; i++) {
+            pick[i] = columns.indexOf(wanted.get(i));
+            if (pick[i] < 0) throw new IllegalArgumentException("lookup field '" + wanted.get(i) + "' not in lookup columns " + columns);
+        }
+        lookupFields = columns;
+    }
+
+    private void load() throws Exception {
+        long start = System.currentTimeMillis();
+        RowSetTable t = http ? TableInput.parseTable(TableInput.fetch(url, method, body, headers)) : readFile();
+        if (t.getRowList().size() > eagerMaxRows) {
+            throw new IllegalStateException("lookup table has " + t.getRowList().size() + " rows, over eagerMaxRows "
+                    + eagerMaxRows + "; use mode lazy");
+        }
+        table = index(t);
+        Log.success("Lookup", "Loaded " + table.size() + " keys in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private RowSetTable readFile() throws Exception {
+        File file = new File(filePath);
+        if (!file.exists()) throw new IllegalArgumentException("File not found: " + filePath);
+        RowSetTable t = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                Row row = CsvInput.parseCsvLine(line.trim(), delimiter, quoteChar);
+                if (t == null) t = row.RowChangeTable();
+                else t.addRow(row);
+            }
+        }
+        if (t == null) throw new IllegalArgumentException("Lookup file is empty: " + filePath);
+        return t;
+    }
+
+    private RowSetTable request(Collection<String> keys) {
+        requests++;
+        fetchedKeys += keys.size();
+        return TableInput.parseTable(TableInput.fetch(urlFor(keys), method, bodyFor(keys), headers));
+    }
+
+    // 维表按键建索引，重复键保留第一行
+    private Map<String, Row> index(RowSetTable t) {
+        if (lookupFields == null) describe(t.getField());
+        else if (!lookupFields.equals(t.getField())) {
+            throw new IllegalStateException("lookup columns changed from " + lookupFields + " to " + t.getField());
+        }
+        int k = lookupFields.indexOf(lookupKey);
+        Map<String, Row> m = new HashMap<>(Math.max(16, t.getRowList().size() * 2));
+        for (Row r : t.getRowList()) {
+            String v = keyOf(r.get(k));
+            if (v != null) m.putIfAbsent(v, r);
+        }
+        return m;
+    }
+
+    // 按 method 把键放入请求：POST 合并进 body 的 JSON 对象，GET 拼到查询参数
+    private String bodyFor(Collection<String> keys) {
+        if (!"POST".equals(method)) return body;
+        JSONObject json = body == null || body.isEmpty() ? new JSONObject() : JSONUtil.parseObj(body);
+        json.set(keysParam, new ArrayList<>(keys));
+        return json.toString();
+    }
+
+    private String urlFor(Collection<String> keys) {
+        if ("POST".equals(method)) return url;
+        try {
+            return url + (url.contains("?") ? "&" : "?") + keysParam + "="
+                    + URLEncoder.encode(String.join(",", keys), StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String keyOf(Object v) {
+        return v == null ? null : v.toString();
+    }
+
+    private static List<String> names(Object v) {
+        List<String> result = new ArrayList<>();
+        if (v instanceof Collection) {
+            for (Object o : (Collection<?>) v) result.add(String.valueOf(o).trim());
+        } else if (v != null) {
+            for (String s : v.toString().split(",")) {
+                if (!s.trim().isEmpty()) result.add(s.trim());
+            }
+        }
+        return result;
+    }
+}
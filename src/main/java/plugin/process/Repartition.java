@@ -0,0 +1,129 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import tool.Log;
+import tool.RowHash;
+
+import java.util.*;
+
+/**
+ * 按键哈希重分区：同一键的行总是进入同一个下游，便于下游按键并行处理。
+ * 配置：
+ *   fields    —— 分区字段，逗号分隔或列表，必填
+ *   batchSize —— 每个分区攒够多少行后整批写入下游通道，默认 64
+ *   lingerMs  —— 未满的批次最多停留的毫秒数，默认 50；上游空闲超过该时长或距上次写出超过该时长时写出全部未满批次
+ * 下游按步骤 ID 升序编号为分区 0..N-1，分区号只取决于键值与下游个数，多次运行结果一致。
+ * 步骤线程自己带超时地读取输入通道，批次只按大小或时间写出，上游整批写入的行不会被拆成单行批次。
+ */
+@Process(type = "repartition")
+public class Repartition implements IProcess {
+    private List<String> fields;
+    private int batchSize;
+    private long lingerMs;
+
+    // 以下由消费线程维护
+    private Channel[] targets;
+    private List<Row>[] batches;
+    private long[] counts;
+    private RowSetTable boundHeader;
+    private int[] keyIdx;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        fields = new ArrayList<>();
+        Object f = cfg.get("fields");
+        if (f instanceof Collection) {
+            for (Object o : (Collection<?>) f) fields.add(String.valueOf(o).trim());
+        } else if (f != null) {
+            for (String s : f.toString().split(",")) {
+                if (!s.trim().isEmpty()) fields.add(s.trim());
+            }
+        }
+        if (fields.isEmpty()) throw new IllegalArgumentException("repartition needs fields");
+        batchSize = Integer.parseInt(String.valueOf(cfg.getOrDefault("batchSize", 64)));
+        lingerMs = Long.parseLong(String.valueOf(cfg.getOrDefault("lingerMs", 50)));
+        if (batchSize < 1 || lingerMs < 1) throw new IllegalArgumentException("batchSize and lingerMs must be positive");
+        Log.info("Repartition", "Init on " + fields + ", batch size " + batchSize + ", linger " + lingerMs + "ms");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("repartition 步骤需要至少1个输出通道");
+        }
+        List<Channel> sorted = new ArrayList<>(outputs);
+        sorted.sort(Comparator.comparingInt((Channel c) -> Integer.parseInt(c.getStepId())));
+        targets = sorted.toArray(new Channel[0]);
+        batches = new List[targets.length];
+        for (int i = 0; i < batches.length; i++) batches[i] = new ArrayList<>(batchSize);
+        counts = new long[targets.length];
+
+        long lastFlush = System.currentTimeMillis();
+        try {
+            while ((!input.isClosed() || !input.isEmpty()) && !input.isStopRequested()) {
+                input.getToken().throwIfCancelled();
+                Object rowObj = input.poll(lingerMs);
+                if (rowObj != null) route(input, rowObj);
+                long now = System.currentTimeMillis();
+                // 上游空闲一个 lingerMs，或距上次写出已超过 lingerMs：写出未满的批次
+                if (rowObj == null || now - lastFlush >= lingerMs) {
+                    flushAll();
+                    lastFlush = now;
+                }
+            }
+        } catch (InterruptedException e) {
+            input.getToken().throwIfCancelled();
+            throw e;
+        }
+        input.getToken().throwIfCancelled();
+        flushAll();
+        Log.info("Repartition", "上游通道关闭，各分区行数 " + Arrays.toString(counts));
+        for (Channel out : targets) out.close();
+    }
+
+    private void route(Channel input, Object rowObj) {
+        if (!(rowObj instanceof Row)) {
+            Log.warn("Repartition", "上游数据类型非 Row，跳过");
+            return;
+        }
+        RowSetTable hdr = input.getHeader();
+        if (hdr != boundHeader) bind(hdr);
+
+        Row row = (Row) rowObj;
+        int p = RowHash.partition(RowHash.fingerprint(row, keyIdx), targets.length);
+        List<Row> batch = batches[p];
+        batch.add(row);
+        counts[p]++;
+        if (batch.size() >= batchSize) flush(p);
+    }
+
+    private void bind(RowSetTable hdr) {
+        if (hdr == null) throw new IllegalStateException("上游通道 Header 为空，无法分区");
+        keyIdx = new int[fields.size()];
+        for (int i = 0; i < keyIdx.length; i++) {
+            keyIdx[i] = hdr.getFieldIndex(fields.get(i));
+            if (keyIdx[i] < 0) {
+                throw new IllegalArgumentException("repartition field '" + fields.get(i) + "' not in upstream header " + hdr.getField());
+            }
+        }
+        for (Channel out : targets) out.setHeader(hdr);
+        Log.header("Repartition", String.join(", ", hdr.getField()));
+        boundHeader = hdr;
+    }
+
+    private void flush(int p) {
+        targets[p].publishAll(batches[p]); // publishAll 复制了行引用，列表可以复用
+        batches[p].clear();
+    }
+
+    private void flushAll() {
+        for (int p = 0; p < batches.length; p++) {
+            if (!batches[p].isEmpty()) flush(p);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import tool.Log;
+
+import java.util.*;
+
+/**
+ * 蓄水池抽样：从输入中等概率抽取 size 行，上游结束后按原始顺序输出。
+ * 配置：
+ *   size    —— 抽样行数，必填
+ *   seed    —— 随机种子，配置后同一输入的抽样结果可复现
+ *   maxRows —— 最多扫描的行数，达到后通知上游停止读取，只在已扫描的行中抽样（预览大文件用）；缺省扫描全部
+ */
+@Process(type = "sample")
+public class Sample implements IProcess {
+    private int size;
+    private long maxRows;
+    private Random random;
+
+    // 以下由消费线程维护
+    private Row[] reservoir;
+    private long[] order;      // 各样本在输入中的序号，用于按原始顺序输出
+    private long seen = 0;
+    private boolean done = false;
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        Object s = cfg.get("size");
+        if (s == null) throw new IllegalArgumentException("sample 步骤缺少 size 配置");
+        size = Integer.parseInt(String.valueOf(s));
+        maxRows = Long.parseLong(String.valueOf(cfg.getOrDefault("maxRows", Long.MAX_VALUE)));
+        if (size < 0 || maxRows < 1) throw new IllegalArgumentException("size must not be negative and maxRows must be positive");
+        Object seed = cfg.get("seed");
+        random = seed == null ? new Random() : new Random(Long.parseLong(String.valueOf(seed)));
+        reservoir = new Row[size];
+        order = new long[size];
+        Log.info("Sample", "Init size " + size + (maxRows < Long.MAX_VALUE ? " from first " + maxRows + " rows" : ""));
+    }
+
+    @Override
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("sample 步骤需要至少1个输出通道");
+        }
+        input.onReceive(rowObj -> {
+            if (done) return;
+            if (!(rowObj instanceof Row)) {
+                Log.warn("Sample", "上游数据类型非 Row，跳过");
+                return;
+            }
+            if (seen == 0) {
+                RowSetTable hdr = input.getHeader();
+                for (Channel out : outputs) out.setHeader(hdr);
+            }
+            // 第 k 行（从 0 计）以 size/(k+1) 的概率替换蓄水池中随机一行
+            if (seen < size) {
+                reservoir[(int) seen] = (Row) rowObj;
+                order[(int) seen] = seen;
+            } else {
+                long j = (long) (random.nextDouble() * (seen + 1));
+                if (j < size) {
+                    reservoir[(int) j] = (Row) rowObj;
+                    order[(int) j] = seen;
+                }
+            }
+            if (++seen >= maxRows) {
+                finish(outputs);
+                input.requestStop();
+            }
+        }, () -> finish(outputs));
+    }
+
+    private void finish(List<Channel> outputs) {
+        if (done) return;
+        done = true;
+        int n = (int) Math.min(seen, size);
+        Integer[] idx = new Integer[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        Arrays.sort(idx, Comparator.comparingLong(i -> order[i]));
+        for (int i : idx) {
+            Row row = reservoir[i];
+            outputs.get(0).publish(row);
+            for (int k = 1; k < outputs.size(); k++) outputs.get(k).publish(row.copy());
+            if (Log.dataEnabled()) Log.data("Sample", row.toString());
+        }
+        reservoir = null;
+        Log.info("Sample", "从 " + seen + " 行中抽取 " + n + " 行");
+        for (Channel out : outputs) out.close();
+    }
+}
@@ -5,10 +5,9 @@ import core.Channel;
 import core.flowdata.Row;
 import core.flowdata.RowSetTable;
 import core.intf.IProcess;
+import tool.AhoCorasick;
 import tool.Log;
-import java.math.BigDecimal;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 @Process(type = "switch")
@@ -23,11 +22,17 @@ public class SwitchCase implements IProcess {
     private Map<String, String> rawCaseMap;
     private String defaultTarget;
 
+    private static final Set<String> KNOWN_TYPES = new HashSet<>(Arrays.asList(
+            "string", "integer", "bignumber", "number", "double", "float", "boolean", "date"));
+
     private Map<Object, String> parsedCaseMap;
+    private AhoCorasick containsMatcher;          // 包含匹配模式下由全部 case 键构建
     private Map<String, Channel> targetChannels = new HashMap<>();
     private Map<String, Object> pluginConfig;
 
     private volatile boolean headerSet = false;  // 延迟设置 Header 标志
+    private SwitchRouter router;                 // 编译后的路由表，仅由消费线程访问
+    private long dropped = 0;                    // 没有可用目标通道而丢弃的行数，仅由消费线程访问
 
     @Override
     public void init(Map<String, Object> cfg) {
@@ -42,26 +47,39 @@ public class SwitchCase implements IProcess {
         this.rawCaseMap = (Map<String, String>) cfg.get("caseMap");
         this.defaultTarget = (String) cfg.get("defaultTarget");
 
+        String type = caseValueType == null ? "string" : caseValueType.toLowerCase();
+        if (useContainsComparison) {
+            if (!"string".equals(type)) {
+                Log.warn("SwitchCase", "useContainsComparison 启用，但 caseValueType 不是 String，将强制按 String 处理");
+            }
+        } else if ("date".equals(type) && (caseValueMask == null || caseValueMask.isEmpty())) {
+            throw new IllegalArgumentException("date 类型需要配置 caseValueMask");
+        } else if (!KNOWN_TYPES.contains(type)) {
+            Log.warn("SwitchCase", "未知类型 '" + caseValueType + "'，默认作为 String");
+        }
+
+        // caseMap 的键与行值使用同一个解析器，保证两边语义一致
         this.parsedCaseMap = new HashMap<>();
+        SwitchRouter.ValueParser keyParser = useContainsComparison ? Object::toString
+                : SwitchRouter.parser(type, caseValueMask, caseDecimalSymbol, caseGroupingSymbol);
         if (rawCaseMap != null) {
             for (Map.Entry<String, String> entry : rawCaseMap.entrySet()) {
                 try {
-                    Object parsedKey;
-                    if (useContainsComparison) {
-                        parsedKey = entry.getKey(); // 使用原始字符串
-                        if (!"String".equalsIgnoreCase(caseValueType)) {
-                            Log.warn("SwitchCase", "useContainsComparison 启用，但 caseValueType 不是 String，将强制按 String 处理");
-                        }
-                    } else {
-                        parsedKey = parseValue(entry.getKey(), caseValueType, caseValueMask, caseDecimalSymbol, caseGroupingSymbol);
-                    }
-                    parsedCaseMap.put(parsedKey, entry.getValue());
+                    parsedCaseMap.put(keyParser.parse(entry.getKey()), entry.getValue());
                 } catch (ParseException | IllegalArgumentException e) {
                     Log.error("SwitchCase", "解析 caseMap key '" + entry.getKey() + "' 失败: " + e.getMessage());
                 }
             }
         }
 
+        if (useContainsComparison) {
+            // 模式按字典序排列，只为日志与下标稳定；多个模式命中时由自动机的最左、最长规则决定
+            List<String> patterns = new ArrayList<>();
+            for (Object key : parsedCaseMap.keySet()) patterns.add(String.valueOf(key));
+            Collections.sort(patterns);
+            containsMatcher = new AhoCorasick(patterns);
+        }
+
         Log.info("SwitchCase", "Init with switchField: " + switchField +
                 ", useContainsComparison: " + useContainsComparison +
                 ", caseValueType: " + caseValueType +
@@ -97,86 +115,23 @@ public class SwitchCase implements IProcess {
 
             Row row = (Row) rowObj;
             RowSetTable hdr = input.getHeader();
-            int switchFieldIndex = hdr != null ? hdr.getFieldIndex(switchField) : -1;
-
-            if (switchFieldIndex == -1) {
-                Log.error("SwitchCase", "字段 '" + switchField + "' 不存在于上游 Header 中，使用默认路由");
-                publishToTarget(row, defaultTarget);
-                return;
+            SwitchRouter r = router;
+            if (r == null || r.header != hdr) {
+                r = router = compileRouter(hdr); // 首行或 Header 变化时编译路由表
             }
-
-            Object rawSwitchValue = row.get(switchFieldIndex);
-            if (rawSwitchValue == null) {
-                Log.debug("SwitchCase", "字段值为空，使用默认路由");
-                publishToTarget(row, defaultTarget);
-                return;
-            }
-
-            Object parsedSwitchValue;
-            try {
-                parsedSwitchValue = parseValue(rawSwitchValue, caseValueType, caseValueMask, caseDecimalSymbol, caseGroupingSymbol);
-            } catch (ParseException | IllegalArgumentException e) {
-                Log.error("SwitchCase", "字段值转换失败: " + rawSwitchValue + " -> " + e.getMessage());
-                publishToTarget(row, defaultTarget);
-                return;
+            publishTo(row, r.route(row));
+        }, () -> {
+            if (router != null && router.parseFailures > 0) {
+                Log.warn("SwitchCase", "字段值转换失败 " + router.parseFailures + " 行，已使用默认路由");
             }
-
-            String targetStepId = null;
-            if (useContainsComparison && parsedSwitchValue instanceof String) {
-                String switchString = (String) parsedSwitchValue;
-                for (Map.Entry<Object, String> entry : parsedCaseMap.entrySet()) {
-                    if (entry.getKey() instanceof String && switchString.contains((String) entry.getKey())) {
-                        targetStepId = entry.getValue();
-                        break;
-                    }
-                }
-            } else {
-                targetStepId = parsedCaseMap.get(parsedSwitchValue);
+            if (dropped > 0) {
+                Log.warn("SwitchCase", "共 " + dropped + " 行没有可用的目标通道，已丢弃");
             }
-
-            publishToTarget(row, targetStepId != null ? targetStepId : defaultTarget);
-        }, () -> {
             Log.info("SwitchCase", "上游通道关闭，SwitchCase 结束处理");
             targetChannels.values().forEach(Channel::close);
         });
     }
 
-    private Object parseValue(Object rawValue, String type, String mask, String decimalSymbol, String groupingSymbol)
-            throws ParseException {
-        if (rawValue == null) return null;
-
-        String stringValue = rawValue.toString();
-        switch (type.toLowerCase()) {
-            case "string":
-                return stringValue;
-            case "integer":
-                if (!groupingSymbol.isEmpty()) stringValue = stringValue.replace(groupingSymbol, "");
-                return Integer.parseInt(stringValue);
-            case "bignumber":
-            case "number":
-            case "double":
-            case "float":
-                if (!decimalSymbol.equals(".")) stringValue = stringValue.replace(decimalSymbol, ".");
-                if (!groupingSymbol.isEmpty()) stringValue = stringValue.replace(groupingSymbol, "");
-                return new BigDecimal(stringValue);
-            case "boolean":
-                switch (stringValue.toLowerCase()) {
-                    case "true": case "y": case "1": return true;
-                    case "false": case "n": case "0": return false;
-                    default: throw new IllegalArgumentException("无法解析布尔值: " + stringValue);
-                }
-            case "date":
-                if (mask == null || mask.isEmpty())
-                    throw new IllegalArgumentException("date 类型需要配置 caseValueMask");
-                SimpleDateFormat sdf = new SimpleDateFormat(mask);
-                sdf.setLenient(false);
-                return sdf.parse(stringValue);
-            default:
-                Log.warn("SwitchCase", "未知类型 '" + type + "'，默认作为 String");
-                return stringValue;
-        }
-    }
-
     private void prepareTargetChannels(List<Channel> outputs) {
         if (!targetChannels.isEmpty()) return;
 
@@ -204,13 +159,50 @@ public class SwitchCase implements IProcess {
         }
     }
 
-    private void publishToTarget(Row row, String targetStepId) {
-        Channel ch = targetChannels.get(targetStepId);
+    // 按 Header 编译路由表：分支字段下标、值解析器与目标通道都在此一次性确定
+    private SwitchRouter compileRouter(RowSetTable hdr) {
+        int switchFieldIndex = hdr != null ? hdr.getFieldIndex(switchField) : -1;
+        if (switchFieldIndex == -1) {
+            Log.error("SwitchCase", "字段 '" + switchField + "' 不存在于上游 Header 中，使用默认路由");
+        }
+        String type = caseValueType == null ? "string" : caseValueType.toLowerCase();
+        Channel def = defaultTarget != null ? targetChannels.get(defaultTarget) : null;
+        if (useContainsComparison) {
+            List<String> patterns = containsMatcher.getPatterns();
+            Channel[] targets = new Channel[patterns.size()];
+            for (int i = 0; i < targets.length; i++) {
+                String target = parsedCaseMap.get(patterns.get(i));
+                targets[i] = targetChannels.get(target);
+                if (targets[i] == null) {
+                    Log.error("SwitchCase", "分支 '" + patterns.get(i) + "' 的目标通道不存在: " + target + "，该分支的行走默认路由");
+                }
+            }
+            return SwitchRouter.contains(hdr, switchFieldIndex, containsMatcher, targets, def);
+        }
+        Map<Object, Channel> cases = new HashMap<>();
+        for (Map.Entry<Object, String> entry : parsedCaseMap.entrySet()) {
+            Channel ch = targetChannels.get(entry.getValue());
+            if (ch != null) {
+                cases.put(entry.getKey(), ch);
+            } else {
+                Log.error("SwitchCase", "分支 '" + entry.getKey() + "' 的目标通道不存在: " + entry.getValue() + "，该分支的行走默认路由");
+            }
+        }
+        return SwitchRouter.compile(hdr, switchFieldIndex, type, caseValueMask, caseDecimalSymbol,
+                caseGroupingSymbol, cases, def);
+    }
+
+    // 路由结果为 null 只说明行落到了默认路由而默认通道不可用；分支目标缺失已在 compileRouter 中逐个报告
+    private void publishTo(Row row, Channel ch) {
         if (ch != null) {
             ch.publish(row);
-            Log.data("SwitchCase", "Row 路由至 " + targetStepId + ": " + row);
-        } else {
-            Log.error("SwitchCase", "目标通道不存在: " + targetStepId);
+            if (Log.dataEnabled()) Log.data("SwitchCase", "Row 路由至 " + ch.getStepId() + ": " + row);
+            return;
+        }
+        if (dropped++ == 0) {
+            Log.error("SwitchCase", defaultTarget == null
+                    ? "行未匹配任何可用分支，且未配置 defaultTarget，丢弃: " + row
+                    : "行落到默认路由，但默认目标通道不存在: " + defaultTarget + "，丢弃: " + row);
         }
     }
 
@@ -0,0 +1,212 @@
+package plugin.process;
+
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import tool.AhoCorasick;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * SwitchCase 的编译后路由表：在 Header 到达时一次性确定分支字段下标、值解析器，
+ * 并把 caseMap 中的 stepId 预先解析为 Channel 引用，逐行路由时不再查 Header、不再查字符串表。
+ * 路由器只被所属通道的单个消费线程使用，内部的 SimpleDateFormat 等状态无需同步。
+ */
+abstract class SwitchRouter {
+    final RowSetTable header;   // 编译时对应的 Header，Header 变化时重新编译
+    final int fieldIndex;
+    final Channel defaultChannel;
+    long parseFailures = 0;     // 值解析失败而走默认路由的行数
+
+    SwitchRouter(RowSetTable header, int fieldIndex, Channel defaultChannel) {
+        this.header = header;
+        this.fieldIndex = fieldIndex;
+        this.defaultChannel = defaultChannel;
+    }
+
+    /**
+     * 返回目标通道；值为空、解析失败或无匹配时返回默认通道（可能为 null）
+     */
+    final Channel route(Row row) {
+        if (fieldIndex < 0) return defaultChannel;
+        Object raw = row.get(fieldIndex);
+        if (raw == null) return defaultChannel;
+        try {
+            Channel ch = match(raw);
+            return ch != null ? ch : defaultChannel;
+        } catch (ParseException | IllegalArgumentException e) {
+            parseFailures++;
+            return defaultChannel;
+        }
+    }
+
+    abstract Channel match(Object raw) throws ParseException;
+
+    /**
+     * 包含匹配路由
+     * @param targets 与 matcher 模式下标对应的目标通道
+     */
+    static SwitchRouter contains(RowSetTable header, int fieldIndex, AhoCorasick matcher,
+                                 Channel[] targets, Channel defaultChannel) {
+        return new ContainsRouter(header, fieldIndex, matcher, targets, defaultChannel);
+    }
+
+    /**
+     * 精确匹配路由
+     * @param cases 解析后的分支值 -> 目标通道
+     */
+    static SwitchRouter compile(RowSetTable header, int fieldIndex, String type, String mask,
+                                String decimalSymbol, String groupingSymbol,
+                                Map<Object, Channel> cases, Channel defaultChannel) {
+        String t = type == null ? "string" : type.toLowerCase();
+        switch (t) {
+            case "string":
+                return new ExactRouter(header, fieldIndex, cases, defaultChannel, raw -> raw.toString());
+            case "integer":
+                return new IntRouter(header, fieldIndex, cases, defaultChannel, groupingSymbol);
+            default:
+                ValueParser parser = parser(t, mask, decimalSymbol, groupingSymbol);
+                return new ExactRouter(header, fieldIndex, cases, defaultChannel, parser);
+        }
+    }
+
+    interface ValueParser {
+        Object parse(Object raw) throws ParseException;
+    }
+
+    /**
+     * 按类型解析分支值，caseMap 的键与逐行的字段值共用；日期格式等对象只创建一次。
+     * date 类型缺少 mask 时抛 IllegalArgumentException，SwitchCase 在 init 中即已校验
+     */
+    static ValueParser parser(String type, String mask, String decimalSymbol, String groupingSymbol) {
+        switch (type) {
+            case "integer":
+                return raw -> {
+                    if (raw instanceof Integer) return raw;
+                    String s = raw.toString();
+                    if (!groupingSymbol.isEmpty()) s = s.replace(groupingSymbol, "");
+                    return Integer.parseInt(s);
+                };
+            case "bignumber":
+            case "number":
+            case "double":
+            case "float":
+                return raw -> {
+                    String s = raw.toString();
+                    if (!decimalSymbol.equals(".")) s = s.replace(decimalSymbol, ".");
+                    if (!groupingSymbol.isEmpty()) s = s.replace(groupingSymbol, "");
+                    return new BigDecimal(s);
+                };
+            case "boolean":
+                return raw -> {
+                    switch (raw.toString().toLowerCase()) {
+                        case "true": case "y": case "1": return true;
+                        case "false": case "n": case "0": return false;
+                        default: throw new IllegalArgumentException("无法解析布尔值: " + raw);
+                    }
+                };
+            case "date":
+                if (mask == null || mask.isEmpty())
+                    throw new IllegalArgumentException("date 类型需要配置 caseValueMask");
+                SimpleDateFormat sdf = new SimpleDateFormat(mask);
+                sdf.setLenient(false);
+                return raw -> sdf.parse(raw.toString());
+            default:
+                return Object::toString;
+        }
+    }
+
+    /**
+     * 精确匹配：解析后查哈希表
+     */
+    static final class ExactRouter extends SwitchRouter {
+        private final Map<Object, Channel> table;
+        private final ValueParser parser;
+
+        ExactRouter(RowSetTable header, int fieldIndex, Map<Object, Channel> cases, Channel def, ValueParser parser) {
+            super(header, fieldIndex, def);
+            this.table = new HashMap<>(cases);
+            this.parser = parser;
+        }
+
+        @Override
+        Channel match(Object raw) throws ParseException {
+            return table.get(parser.parse(raw));
+        }
+    }
+
+    /**
+     * 包含匹配：Aho-Corasick 自动机一次扫描取值，按最左、最长规则选出胜出的模式
+     */
+    static final class ContainsRouter extends SwitchRouter {
+        private final AhoCorasick matcher;
+        private final Channel[] targets; // 与 matcher 的模式下标一一对应，可能为 null
+
+        ContainsRouter(RowSetTable header, int fieldIndex, AhoCorasick matcher, Channel[] targets, Channel def) {
+            super(header, fieldIndex, def);
+            this.matcher = matcher;
+            this.targets = targets;
+        }
+
+        @Override
+        Channel match(Object raw) {
+            int p = matcher.find(raw.toString());
+            return p >= 0 ? targets[p] : null;
+        }
+    }
+
+    /**
+     * 整数匹配：开放寻址的 int -> Channel 表，避免装箱
+     */
+    static final class IntRouter extends SwitchRouter {
+        private final int[] keys;
+        private final Channel[] values;  // null 表示空槽
+        private final int mask;
+        private final String groupingSymbol;
+
+        IntRouter(RowSetTable header, int fieldIndex, Map<Object, Channel> cases, Channel def, String groupingSymbol) {
+            super(header, fieldIndex, def);
+            this.groupingSymbol = groupingSymbol;
+            int cap = Integer.highestOneBit(Math.max(2, cases.size() * 2 - 1)) << 1; // 负载因子不超过 0.5
+            this.keys = new int[cap];
+            this.values = new Channel[cap];
+            this.mask = cap - 1;
+            for (Map.Entry<Object, Channel> e : cases.entrySet()) {
+                if (e.getKey() instanceof Integer && e.getValue() != null) put((Integer) e.getKey(), e.getValue());
+            }
+        }
+
+        private void put(int key, Channel ch) {
+            int i = mix(key) & mask;
+            while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+            keys[i] = key;
+            values[i] = ch;
+        }
+
+        @Override
+        Channel match(Object raw) {
+            int key;
+            if (raw instanceof Integer) {
+                key = (Integer) raw;
+            } else {
+                String s = raw.toString();
+                if (!groupingSymbol.isEmpty()) s = s.replace(groupingSymbol, "");
+                key = Integer.parseInt(s);
+            }
+            int i = mix(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) return values[i];
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
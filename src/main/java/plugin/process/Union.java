@@ -0,0 +1,256 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.expr.Expr;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IMultiInputProcess;
+import tool.Log;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 合并多个上游：每个父步骤一条独立通道，所有父步骤都结束后才关闭下游。
+ * 配置：
+ *   orderBy    —— 排序字段，逗号分隔或列表；配置后各上游须已按该字段升序排列，按 k 路归并输出全局有序的结果，
+ *                 比较规则与表达式一致（都可解析为数值时按数值），null 最小；不配置时按到达顺序合并
+ *   descending —— 上游按降序排列，默认 false
+ *   bufferRows —— 有序模式下等待某个上游时，其它上游最多预读缓存的总行数，默认 100000；
+ *                 多个上游来自同一源头时，预读让源头不因某条通道写满而阻塞（超过该值仍可能互相等待）
+ * 各上游字段名必须相同，顺序可以不同（按第一个输出行所在上游的字段顺序对齐）。
+ */
+@Process(type = "union")
+public class Union implements IMultiInputProcess {
+    private static final long POLL_MS = 100;
+
+    private List<String> orderBy;
+    private boolean descending;
+    private long bufferRows;
+
+    private List<Channel> outputs;
+    private RowSetTable outHeader;    // 受 this 保护
+    private int[] keyIdx;             // 有序模式：排序字段在输出行中的下标
+    private long emitted = 0;         // 有序模式由归并线程写，无序模式受 this 保护
+
+    @Override
+    public void init(Map<String, Object> cfg) {
+        orderBy = new ArrayList<>();
+        Object f = cfg.get("orderBy");
+        if (f instanceof Collection) {
+            for (Object o : (Collection<?>) f) orderBy.add(String.valueOf(o).trim());
+        } else if (f != null) {
+            for (String s : f.toString().split(",")) {
+                if (!s.trim().isEmpty()) orderBy.add(s.trim());
+            }
+        }
+        descending = Boolean.parseBoolean(String.valueOf(cfg.getOrDefault("descending", false)));
+        bufferRows = Long.parseLong(String.valueOf(cfg.getOrDefault("bufferRows", 100_000)));
+        Log.info("Union", orderBy.isEmpty() ? "Init unordered" : "Init ordered by " + orderBy + (descending ? " desc" : ""));
+    }
+
+    @Override
+    public void process(Map<String, Channel> inputs, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("union 步骤需要至少1个输出通道");
+        }
+        this.outputs = outputs;
+        if (orderBy.isEmpty()) concat(inputs);
+        else merge(inputs);
+    }
+
+    // 无序合并：每个上游各自的消费循环直接写下游，互不等待
+    private void concat(Map<String, Channel> inputs) {
+        AtomicInteger open = new AtomicInteger(inputs.size());
+        for (Map.Entry<String, Channel> e : inputs.entrySet()) {
+            Channel in = e.getValue();
+            int[][] mapping = new int[1][];
+            RowSetTable[] bound = new RowSetTable[1];
+            in.onReceive(rowObj -> {
+                if (!(rowObj instanceof Row)) {
+                    Log.warn("Union", "上游数据类型非 Row，跳过");
+                    return;
+                }
+                if (in.getHeader() != bound[0]) {
+                    bound[0] = in.getHeader();
+                    mapping[0] = mappingFor(e.getKey(), bound[0]);
+                }
+                emit(remap((Row) rowObj, mapping[0]));
+            }, () -> {
+                if (open.decrementAndGet() == 0) finish();
+            });
+        }
+    }
+
+    private synchronized void emit(Row row) {
+        emitted++;
+        outputs.get(0).publish(row);
+        for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(row.copy());
+        if (Log.dataEnabled()) Log.data("Union", row.toString());
+    }
+
+    private void finish() {
+        Log.info("Union", "所有上游已结束，输出 " + emitted + " 行");
+        for (Channel out : outputs) out.close();
+    }
+
+    /**
+     * 上游行到输出字段顺序的下标映射，顺序一致时返回 null；第一个到达的上游决定输出 Header
+     */
+    private synchronized int[] mappingFor(String parent, RowSetTable hdr) {
+        if (hdr == null) throw new IllegalStateException("上游 " + parent + " 通道 Header 为空，无法合并");
+        if (outHeader == null) {
+            outHeader = hdr;
+            for (Channel out : outputs) out.setHeader(hdr);
+            Log.header("Union", String.join(", ", hdr.getField()));
+            return null;
+        }
+        List<String> want = outHeader.getField();
+        List<String> have = hdr.getField();
+        if (want.equals(have)) return null;
+        if (want.size() != have.size() || !new HashSet<>(want).equals(new HashSet<>(have))) {
+            throw new IllegalArgumentException("union parent " + parent + " has fields " + have + ", expected " + want);
+        }
+        int[] map = new int[want.size()];
+        for (int i = 0; i < map.length; i++) map[i] = have.indexOf(want.get(i));
+        return map;
+    }
+
+    private static Row remap(Row row, int[] map) {
+        if (map == null) return row;
+        Row out = new Row();
+        for (int idx : map) out.add(idx < row.size() ? row.get(idx) : null);
+        return out;
+    }
+
+    /**
+     * 单个上游的归并游标：当前行、预读缓存与字段映射
+     */
+    private final class Source {
+        final String parent;
+        final Channel ch;
+        final ArrayDeque<Row> ahead = new ArrayDeque<>();
+        RowSetTable bound;
+        int[] mapping;
+        Row head;        // 已对齐到输出字段顺序
+        boolean done;
+
+        Source(String parent, Channel ch) {
+            this.parent = parent;
+            this.ch = ch;
+        }
+
+        // 通道中立即可取的行转入预读缓存，不等待
+        int drain(long limit) throws InterruptedException {
+            int n = 0;
+            while (n < limit) {
+                Object o = ch.poll(0);
+                if (o == null) break;
+                if (o instanceof Row) {
+                    ahead.addLast((Row) o);
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    // 有序合并：在步骤线程中做 k 路归并
+    private void merge(Map<String, Channel> inputs) throws InterruptedException {
+        List<Source> sources = new ArrayList<>();
+        for (Map.Entry<String, Channel> e : inputs.entrySet()) sources.add(new Source(e.getKey(), e.getValue()));
+
+        Comparator<Source> byKey = (a, b) -> compareKeys(a.head, b.head);
+        PriorityQueue<Source> heap = new PriorityQueue<>(Math.max(1, sources.size()), byKey);
+        for (Source s : sources) {
+            if (advance(s, sources)) heap.add(s);
+        }
+        long start = System.currentTimeMillis();
+        while (!heap.isEmpty()) {
+            Source s = heap.poll();
+            Row row = s.head;
+            emitted++;
+            outputs.get(0).publish(row);
+            for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(row.copy());
+            if (Log.dataEnabled()) Log.data("Union", row.toString());
+            if (advance(s, sources)) {
+                if (compareKeys(row, s.head) > 0) {
+                    throw new IllegalStateException("union parent " + s.parent + " is not sorted by " + orderBy
+                            + ": " + s.head + " after " + row);
+                }
+                heap.add(s);
+            }
+        }
+        Log.success("Union", "Merged " + emitted + " rows from " + sources.size() + " parents in "
+                + (System.currentTimeMillis() - start) + "ms");
+        finish();
+    }
+
+    /**
+     * 取该上游的下一行作为 head，上游结束时返回 false。
+     * 等待期间把其它上游已到达的行读入预读缓存，保证共同的源头不会因某条通道写满而阻塞
+     */
+    private boolean advance(Source s, List<Source> all) throws InterruptedException {
+        long wait = 1; // 预读有进展时只短暂等待当前上游，否则逐步退避到 POLL_MS
+        while (true) {
+            Row next = s.ahead.pollFirst();
+            if (next == null) {
+                Object o = s.ch.poll(wait);
+                if (o instanceof Row) next = (Row) o;
+                else if (o != null) continue;
+            }
+            if (next != null) {
+                if (s.ch.getHeader() != s.bound) bindSource(s);
+                s.head = remap(next, s.mapping);
+                return true;
+            }
+            if (s.ch.isClosed() && s.ch.isEmpty()) {
+                s.done = true;
+                s.head = null;
+                return false;
+            }
+            s.ch.getToken().throwIfCancelled();
+            // 任一上游已有 Header 时尽早确定输出 Header，下游不必等到第一行归并输出
+            if (outHeader == null) {
+                for (Source o : all) {
+                    if (o.ch.getHeader() != null) {
+                        mappingFor(o.parent, o.ch.getHeader());
+                        break;
+                    }
+                }
+            }
+            // 预读总量达到 bufferRows 后不再读，只等待当前上游
+            long buffered = 0;
+            int drained = 0;
+            for (Source o : all) buffered += o.ahead.size();
+            for (Source o : all) {
+                if (o != s && !o.done && buffered + drained < bufferRows) drained += o.drain(bufferRows - buffered - drained);
+            }
+            wait = drained > 0 ? 1 : Math.min(POLL_MS, wait * 2);
+        }
+    }
+
+    private void bindSource(Source s) {
+        s.bound = s.ch.getHeader();
+        s.mapping = mappingFor(s.parent, s.bound);
+        if (keyIdx != null) return;
+        List<String> fields = outHeader.getField();
+        keyIdx = new int[orderBy.size()];
+        for (int i = 0; i < keyIdx.length; i++) {
+            keyIdx[i] = fields.indexOf(orderBy.get(i));
+            if (keyIdx[i] < 0) {
+                throw new IllegalArgumentException("union orderBy field '" + orderBy.get(i) + "' not in fields " + fields);
+            }
+        }
+    }
+
+    // head 均已对齐到输出字段顺序，按输出 Header 中的下标比较
+    private int compareKeys(Row a, Row b) {
+        for (int idx : keyIdx) {
+            int c = Expr.compare(a.get(idx), b.get(idx));
+            if (c != 0) return descending ? -c : c;
+        }
+        return 0;
+    }
+}
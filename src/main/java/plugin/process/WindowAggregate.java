@@ -0,0 +1,381 @@
+package plugin.process;
+
+import anno.Process;
+import core.Channel;
+import core.expr.Expr;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IProcess;
+import tool.Log;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 事件时间窗口聚合：按 timeField 把行分到滚动或滑动窗口，按 groupBy 分组计算聚合，
+ * 水位线越过窗口结束时间即输出该窗口的结果，不必等上游关闭。
+ * 配置：
+ *   timeField  —— 事件时间字段，必填
+ *   timeFormat —— epoch（默认，毫秒时间戳）或 SimpleDateFormat 格式；输出的窗口起止时间使用同一格式
+ *   window     —— 窗口长度，毫秒数或带单位的时长（500ms / 30s / 5m / 1h / 1d），必填
+ *   slide      —— 滑动步长，缺省等于 window（滚动窗口）
+ *   maxDelay   —— 允许的乱序时长，水位线 = 已见最大事件时间 - maxDelay，默认 0；
+ *                 所属窗口都已输出的迟到行丢弃并计数
+ *   groupBy    —— 分组字段，逗号分隔或列表，可选
+ *   aggregates —— 输出列名 -> 聚合（count / count(f) / sum(f) / min(f) / max(f) / avg(f)），按配置顺序输出
+ * 输出字段：window_start, window_end, 分组字段, 聚合列。
+ * 状态按"窗格"（window 与 slide 的最大公约数）保存，每行只更新一个窗格，窗口输出时合并所含窗格；
+ * 每个窗格每个分组只保存一个 double 数组。
+ * 持续输入的流程请通过 Engine 提交：独立运行的 Scheduler 默认 30 分钟后取消整个流程
+ * （-Detl.runTimeoutMinutes 调整，0 为不限，或调用 Scheduler.setTimeout），Engine 作业不限时。
+ */
+@Process(type = "window")
+public class WindowAggregate implements IProcess {
+    private static final Pattern AGG = Pattern.compile("(?i)\\s*(count|sum|min|max|avg)\\s*(?:\\(\\s*([^)]*?)\\s*\\))?\\s*");
+    private static final Pattern DURATION = Pattern.compile("(?i)\\s*(\\d+)\\s*(ms|s|m|h|d)?\\s*");
+
+    private static final int COUNT = 0, COUNT_FIELD = 1, SUM = 2, MIN = 3, MAX = 4, AVG = 5;
+
+    private String timeField;
+    private String timeFormat;   // null 表示 epoch 毫秒
+    private long size;
+    private long slide;
+    private long pane;
+    private long maxDelay;
+    private List<String> groupBy;
+    private List<String> aggNames;
+    private int[] aggKind;
+    private String[] aggField;
+    private int[] aggSlot;       // 聚合在累加数组中的起始下标
+    private int slots;
+
+    // 以下由消费线程维护
+    private SimpleDateFormat format;
+    private RowSetTable boundHeader;
+    private int timeIdx;
+    private int[] groupIdx;
+    private int[] aggIdx;
+    private final TreeMap<Long, LinkedHashMap<GroupKey, double[]>> panes = new TreeMap<>(); // 窗格起点 -> 分组 -> 累加
+    private long nextWindow = Long.MIN_VALUE;   // 下一个待输出窗口的起点，MIN_VALUE 表示尚无数据
+    private long maxEventTime = Long.MIN_VALUE;
+    private long windows = 0;
+    private long emitted = 0;
+    private long late = 0;
+    private long badTime = 0;
+
+    /**
+     * 分组键，预先计算哈希
+     */
+    private static final class GroupKey {
+        final Object[] values;
+        final int hash;
+
+        GroupKey(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GroupKey && Arrays.equals(values, ((GroupKey) o).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(Map<String, Object> cfg) {
+        timeField = (String) cfg.get("timeField");
+        if (timeField == null || timeField.isEmpty()) throw new IllegalArgumentException("window needs timeField");
+        String fmt = String.valueOf(cfg.getOrDefault("timeFormat", "epoch"));
+        timeFormat = "epoch".equalsIgnoreCase(fmt) ? null : fmt;
+        if (timeFormat != null) new SimpleDateFormat(timeFormat); // 格式非法时在 init 阶段报错
+        if (cfg.get("window") == null) throw new IllegalArgumentException("window needs a window size");
+        size = duration(cfg.get("window"));
+        slide = cfg.get("slide") == null ? size : duration(cfg.get("slide"));
+        maxDelay = cfg.get("maxDelay") == null ? 0 : duration(cfg.get("maxDelay"));
+        if (size <= 0 || slide <= 0) throw new IllegalArgumentException("window and slide must be positive");
+        pane = gcd(size, slide);
+
+        groupBy = new ArrayList<>();
+        Object g = cfg.get("groupBy");
+        if (g instanceof Collection) {
+            for (Object o : (Collection<?>) g) groupBy.add(String.valueOf(o).trim());
+        } else if (g != null) {
+            for (String s : g.toString().split(",")) {
+                if (!s.trim().isEmpty()) groupBy.add(s.trim());
+            }
+        }
+
+        Object aggs = cfg.get("aggregates");
+        if (!(aggs instanceof Map) || ((Map<?, ?>) aggs).isEmpty()) {
+            throw new IllegalArgumentException("window needs aggregates, a map of column name to count/sum(f)/min(f)/max(f)/avg(f)");
+        }
+        Map<String, Object> aggMap = (Map<String, Object>) aggs;
+        aggNames = new ArrayList<>(aggMap.keySet());
+        aggKind = new int[aggNames.size()];
+        aggField = new String[aggNames.size()];
+        aggSlot = new int[aggNames.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> e : aggMap.entrySet()) {
+            Matcher m = AGG.matcher(String.valueOf(e.getValue()));
+            if (!m.matches()) throw new IllegalArgumentException("unknown aggregate '" + e.getValue() + "' for " + e.getKey());
+            String fn = m.group(1).toLowerCase();
+            String field = m.group(2) == null || m.group(2).isEmpty() ? null : m.group(2);
+            if (field == null && !fn.equals("count")) throw new IllegalArgumentException(fn + " needs a field for " + e.getKey());
+            aggKind[i] = fn.equals("count") ? (field == null ? COUNT : COUNT_FIELD)
+                    : fn.equals("sum") ? SUM : fn.equals("min") ? MIN : fn.equals("max") ? MAX : AVG;
+            aggField[i] = field;
+            aggSlot[i] = slots;
+            slots += aggKind[i] == AVG ? 2 : 1; // avg 保存和与计数
+            i++;
+        }
+        Log.info("Window", "Init window " + size + "ms, slide " + slide + "ms, pane " + pane + "ms, maxDelay "
+                + maxDelay + "ms, groupBy " + groupBy + ", aggregates " + aggMap);
+    }
+
+    @Override
+    public void process(Channel input, List<Channel> outputs) throws Exception {
+        if (outputs == null || outputs.isEmpty()) {
+            throw new IllegalStateException("window 步骤需要至少1个输出通道");
+        }
+        if (timeFormat != null) format = new SimpleDateFormat(timeFormat);
+        // 输出字段只取决于配置，立即设置 Header，下游无需等待第一个窗口
+        List<String> fields = new ArrayList<>(Arrays.asList("window_start", "window_end"));
+        fields.addAll(groupBy);
+        fields.addAll(aggNames);
+        RowSetTable outHeader = new RowSetTable(fields);
+        for (Channel out : outputs) out.setHeader(outHeader);
+        Log.header("Window", String.join(", ", fields));
+
+        input.onReceive(rowObj -> {
+            if (!(rowObj instanceof Row)) {
+                Log.warn("Window", "上游数据类型非 Row，跳过");
+                return;
+            }
+            RowSetTable hdr = input.getHeader();
+            if (hdr != boundHeader) bind(hdr);
+
+            Row row = (Row) rowObj;
+            long t;
+            try {
+                t = eventTime(row.get(timeIdx));
+            } catch (ParseException | NumberFormatException e) {
+                if (badTime++ == 0) Log.warn("Window", "Unparseable event time '" + row.get(timeIdx) + "', row skipped");
+                return;
+            }
+            if (nextWindow != Long.MIN_VALUE && t < nextWindow) {
+                late++; // 包含该行的窗口都已输出
+                return;
+            }
+            if (nextWindow == Long.MIN_VALUE || panes.isEmpty()) {
+                // 尚无数据或状态已清空：从包含该行的最早窗口开始
+                long first = firstWindowOf(t);
+                nextWindow = nextWindow == Long.MIN_VALUE ? first : Math.max(nextWindow, first);
+            }
+            accumulate(row, t);
+            if (t > maxEventTime) {
+                maxEventTime = t;
+                fire(maxEventTime - maxDelay, outputs);
+            }
+        }, () -> {
+            fire(Long.MAX_VALUE, outputs); // 上游结束，输出所有剩余窗口
+            Log.info("Window", "上游通道关闭，输出 " + windows + " 个窗口 " + emitted + " 行，迟到丢弃 " + late
+                    + " 行，时间无法解析 " + badTime + " 行");
+            for (Channel out : outputs) out.close();
+        });
+    }
+
+    private void bind(RowSetTable hdr) {
+        if (hdr == null) throw new IllegalStateException("上游通道 Header 为空，无法聚合");
+        timeIdx = indexOf(hdr, timeField);
+        groupIdx = new int[groupBy.size()];
+        for (int i = 0; i < groupIdx.length; i++) groupIdx[i] = indexOf(hdr, groupBy.get(i));
+        aggIdx = new int[aggField.length];
+        for (int i = 0; i < aggIdx.length; i++) aggIdx[i] = aggField[i] == null ? -1 : indexOf(hdr, aggField[i]);
+        boundHeader = hdr;
+    }
+
+    private static int indexOf(RowSetTable hdr, String field) {
+        int idx = hdr.getFieldIndex(field);
+        if (idx < 0) throw new IllegalArgumentException("window field '" + field + "' not in upstream header " + hdr.getField());
+        return idx;
+    }
+
+    private void accumulate(Row row, long t) {
+        long paneStart = Math.floorDiv(t, pane) * pane;
+        Object[] key = new Object[groupIdx.length];
+        for (int i = 0; i < key.length; i++) key[i] = row.get(groupIdx[i]);
+        double[] acc = panes.computeIfAbsent(paneStart, p -> new LinkedHashMap<>())
+                .computeIfAbsent(new GroupKey(key), k -> newAccumulator());
+        for (int i = 0; i < aggKind.length; i++) {
+            int s = aggSlot[i];
+            if (aggKind[i] == COUNT) {
+                acc[s]++;
+                continue;
+            }
+            Object v = row.get(aggIdx[i]);
+            if (aggKind[i] == COUNT_FIELD) {
+                if (v != null && !v.toString().isEmpty()) acc[s]++;
+                continue;
+            }
+            Number n = Expr.toNumber(v);
+            if (n == null) continue;
+            double d = n.doubleValue();
+            switch (aggKind[i]) {
+                case SUM:
+                    acc[s] = Double.isNaN(acc[s]) ? d : acc[s] + d;
+                    break;
+                case MIN:
+                    acc[s] = Double.isNaN(acc[s]) ? d : Math.min(acc[s], d);
+                    break;
+                case MAX:
+                    acc[s] = Double.isNaN(acc[s]) ? d : Math.max(acc[s], d);
+                    break;
+                default: // AVG
+                    acc[s] += d;
+                    acc[s + 1]++;
+            }
+        }
+    }
+
+    // 计数与 avg 从 0 开始，sum/min/max 以 NaN 表示"还没有数值"
+    private double[] newAccumulator() {
+        double[] acc = new double[slots];
+        for (int i = 0; i < aggKind.length; i++) {
+            if (aggKind[i] == SUM || aggKind[i] == MIN || aggKind[i] == MAX) acc[aggSlot[i]] = Double.NaN;
+        }
+        return acc;
+    }
+
+    private void merge(double[] into, double[] from) {
+        for (int i = 0; i < aggKind.length; i++) {
+            int s = aggSlot[i];
+            switch (aggKind[i]) {
+                case SUM:
+                    if (!Double.isNaN(from[s])) into[s] = Double.isNaN(into[s]) ? from[s] : into[s] + from[s];
+                    break;
+                case MIN:
+                    if (!Double.isNaN(from[s])) into[s] = Double.isNaN(into[s]) ? from[s] : Math.min(into[s], from[s]);
+                    break;
+                case MAX:
+                    if (!Double.isNaN(from[s])) into[s] = Double.isNaN(into[s]) ? from[s] : Math.max(into[s], from[s]);
+                    break;
+                case AVG:
+                    into[s] += from[s];
+                    into[s + 1] += from[s + 1];
+                    break;
+                default: // COUNT / COUNT_FIELD
+                    into[s] += from[s];
+            }
+        }
+    }
+
+    /**
+     * 输出结束时间不晚于水位线的所有窗口，并丢弃之后不再需要的窗格
+     */
+    private void fire(long watermark, List<Channel> outputs) {
+        while (!panes.isEmpty()) {
+            // 跳过没有数据的窗口
+            nextWindow = Math.max(nextWindow, firstWindowOf(panes.firstKey()));
+            long end = nextWindow + size;
+            if (end > watermark) break;
+            LinkedHashMap<GroupKey, double[]> result = new LinkedHashMap<>();
+            for (Map.Entry<Long, LinkedHashMap<GroupKey, double[]>> p : panes.subMap(nextWindow, end).entrySet()) {
+                for (Map.Entry<GroupKey, double[]> e : p.getValue().entrySet()) {
+                    double[] acc = result.get(e.getKey());
+                    if (acc == null) result.put(e.getKey(), acc = newAccumulator());
+                    merge(acc, e.getValue());
+                }
+            }
+            if (!result.isEmpty()) emit(nextWindow, end, result, outputs);
+            nextWindow += slide;
+            panes.headMap(nextWindow).clear(); // 之后的窗口都从 nextWindow 开始
+        }
+    }
+
+    private void emit(long start, long end, Map<GroupKey, double[]> result, List<Channel> outputs) {
+        windows++;
+        Object ws = formatTime(start);
+        Object we = formatTime(end);
+        for (Map.Entry<GroupKey, double[]> e : result.entrySet()) {
+            Row out = new Row();
+            out.add(ws);
+            out.add(we);
+            Collections.addAll(out, e.getKey().values);
+            double[] acc = e.getValue();
+            for (int i = 0; i < aggKind.length; i++) {
+                int s = aggSlot[i];
+                if (aggKind[i] == COUNT || aggKind[i] == COUNT_FIELD) out.add((long) acc[s]);
+                else if (aggKind[i] == AVG) out.add(acc[s + 1] == 0 ? null : acc[s] / acc[s + 1]);
+                else out.add(number(acc[s]));
+            }
+            emitted++;
+            outputs.get(0).publish(out);
+            for (int i = 1; i < outputs.size(); i++) outputs.get(i).publish(out.copy());
+            if (Log.dataEnabled()) Log.data("Window", out.toString());
+        }
+    }
+
+    // 包含时间 t 的最早窗口起点：最小的 k * slide，满足 k * slide + size > t
+    private long firstWindowOf(long t) {
+        return (Math.floorDiv(t - size, slide) + 1) * slide;
+    }
+
+    private long eventTime(Object v) throws ParseException {
+        if (v == null) throw new NumberFormatException("null");
+        if (format == null) {
+            Number n = Expr.toNumber(v);
+            if (n == null) throw new NumberFormatException(v.toString());
+            return n.longValue();
+        }
+        return format.parse(v.toString()).getTime();
+    }
+
+    private Object formatTime(long t) {
+        return format == null ? (Object) t : format.format(new Date(t));
+    }
+
+    // 整数结果输出为 Long，无数值时为 null
+    private static Object number(double d) {
+        if (Double.isNaN(d)) return null;
+        if (d == Math.rint(d) && Math.abs(d) < 1e15) return (long) d;
+        return d;
+    }
+
+    static long duration(Object v) {
+        if (v instanceof Number) return ((Number) v).longValue();
+        Matcher m = DURATION.matcher(String.valueOf(v));
+        if (!m.matches()) throw new IllegalArgumentException("bad duration '" + v + "', expected e.g. 500ms/30s/5m/1h/1d");
+        long n = Long.parseLong(m.group(1));
+        String unit = m.group(2) == null ? "ms" : m.group(2).toLowerCase();
+        switch (unit) {
+            case "s":
+                return n * 1000;
+            case "m":
+                return n * 60_000;
+            case "h":
+                return n * 3_600_000;
+            case "d":
+                return n * 86_400_000;
+            default:
+                return n;
+        }
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
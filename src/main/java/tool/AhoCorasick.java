@@ -0,0 +1,135 @@
+package tool;
+
+import java.util.*;
+
+/**
+ * 多模式子串匹配自动机（Aho-Corasick）。
+ * 构建后只读，可被多线程共享；每次 find 对文本只扫描一遍，耗时与模式数量无关。
+ * <p>
+ * 多个模式同时出现时的优先规则（确定性）：
+ * 1. 在文本中起始位置最靠左者优先；
+ * 2. 起始位置相同时，更长的模式优先。
+ * 空串模式视为在位置 0 处匹配、长度为 0。
+ */
+public final class AhoCorasick {
+    private final List<String> patterns;
+    // 节点 i 的转移：chars[i] 升序，next[i] 与之一一对应
+    private final char[][] chars;
+    private final int[][] next;
+    private final int[] fail;
+    private final int[] depth;
+    private final int[] out;    // 以该节点结尾的最长模式下标，无则 -1
+    private final int emptyPattern;
+
+    public AhoCorasick(List<String> patterns) {
+        this.patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+
+        // 1. 建 trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        depths.add(0);
+        terminal.add(-1);
+        int empty = -1;
+        for (int p = 0; p < patterns.size(); p++) {
+            String s = patterns.get(p);
+            if (s == null) throw new IllegalArgumentException("pattern " + p + " is null");
+            if (s.isEmpty()) {
+                if (empty < 0) empty = p;
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < s.length(); i++) {
+                Integer child = trie.get(node).get(s.charAt(i));
+                if (child == null) {
+                    child = trie.size();
+                    trie.add(new TreeMap<>());
+                    depths.add(i + 1);
+                    terminal.add(-1);
+                    trie.get(node).put(s.charAt(i), child);
+                }
+                node = child;
+            }
+            if (terminal.get(node) < 0) terminal.set(node, p); // 重复模式取第一个
+        }
+        this.emptyPattern = empty;
+
+        int n = trie.size();
+        chars = new char[n][];
+        next = new int[n][];
+        fail = new int[n];
+        depth = new int[n];
+        out = new int[n];
+        for (int i = 0; i < n; i++) {
+            TreeMap<Character, Integer> t = trie.get(i);
+            chars[i] = new char[t.size()];
+            next[i] = new int[t.size()];
+            int k = 0;
+            for (Map.Entry<Character, Integer> e : t.entrySet()) {
+                chars[i][k] = e.getKey();
+                next[i][k++] = e.getValue();
+            }
+            depth[i] = depths.get(i);
+        }
+
+        // 2. BFS 计算失败指针与输出（自身模式优先，否则继承失败节点的最长输出）
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        out[0] = -1;
+        for (int c : next[0]) {
+            fail[c] = 0;
+            queue.add(c);
+        }
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            out[u] = terminal.get(u) >= 0 ? terminal.get(u) : out[fail[u]];
+            for (int k = 0; k < chars[u].length; k++) {
+                int v = next[u][k];
+                int f = fail[u];
+                int t;
+                while ((t = step(f, chars[u][k])) < 0 && f != 0) f = fail[f];
+                fail[v] = t >= 0 ? t : 0;
+                queue.add(v);
+            }
+        }
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * 返回按优先规则胜出的模式下标，没有任何模式出现时返回 -1
+     */
+    public int find(CharSequence text) {
+        if (emptyPattern >= 0 && patterns.size() == 1) return emptyPattern;
+        int bestStart = emptyPattern >= 0 ? 0 : Integer.MAX_VALUE;
+        int bestLen = -1;
+        int best = emptyPattern;
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            // 当前状态能回溯到的最左起点已越过最佳起点，后续匹配不可能更优
+            if (i - depth[node] > bestStart) break;
+            char c = text.charAt(i);
+            int t;
+            while ((t = step(node, c)) < 0 && node != 0) node = fail[node];
+            node = t >= 0 ? t : 0;
+            int p = out[node];
+            if (p >= 0) {
+                int len = patterns.get(p).length();
+                int start = i - len + 1;
+                if (start < bestStart || (start == bestStart && len > bestLen)) {
+                    bestStart = start;
+                    bestLen = len;
+                    best = p;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int step(int node, char c) {
+        int k = Arrays.binarySearch(chars[node], c);
+        return k >= 0 ? next[node][k] : -1;
+    }
+}
@@ -0,0 +1,67 @@
+package tool;
+
+/**
+ * 布隆过滤器：按预计元素数与误判率确定位数与哈希次数，输入为已散列的 64 位值。
+ * 判定"已存在"可能误判（把新元素当成重复），判定"不存在"一定准确。非线程安全。
+ */
+public class BloomFilter {
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+    private long added = 0;
+
+    public BloomFilter(long expected, double fpp) {
+        if (expected < 1) throw new IllegalArgumentException("expected must be positive: " + expected);
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        long words = Math.max(1, (m + 63) >>> 6);
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expected + " keys at fpp " + fpp);
+        }
+        this.bits = new long[(int) words];
+        this.numBits = words << 6;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expected * Math.log(2)));
+    }
+
+    /**
+     * 加入一个散列值，有任一位由 0 变 1（即一定是新元素）时返回 true
+     */
+    public boolean put(long hash) {
+        boolean changed = false;
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1; // 双重散列，步长取奇数
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits[word] & mask) == 0) {
+                bits[word] |= mask;
+                changed = true;
+            }
+        }
+        if (changed) added++;
+        return changed;
+    }
+
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    public long memoryBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,159 @@
+package tool;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * 容量有界的键值缓存，支持 LRU / LFU 淘汰与按条目的过期时间，并统计命中情况。
+ * 值不能为 null（需要负缓存时由调用方放入哨兵对象）。非线程安全，供单个消费线程使用。
+ */
+public class BoundedCache<K, V> {
+    public enum Policy { LRU, LFU }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expireAt;   // 0 表示永不过期
+        int freq = 1;
+
+        Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private final Policy policy;
+    private final int capacity;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> map;              // LRU 时按访问顺序排列
+    private final HashMap<Integer, LinkedHashSet<K>> buckets;  // LFU：访问频次 -> 键（先进先出）
+    private int minFreq = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+
+    public BoundedCache(int capacity, Policy policy) {
+        this(capacity, policy, System::currentTimeMillis);
+    }
+
+    public BoundedCache(int capacity, Policy policy, LongSupplier clock) {
+        if (capacity < 1) throw new IllegalArgumentException("cache capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+        this.clock = clock;
+        this.map = new LinkedHashMap<>(16, 0.75f, policy == Policy.LRU);
+        this.buckets = policy == Policy.LFU ? new HashMap<>() : null;
+    }
+
+    /**
+     * 按名称解析淘汰策略（lru / lfu，忽略大小写）
+     */
+    public static Policy policyOf(String name) {
+        try {
+            return Policy.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown eviction policy '" + name + "', expected lru/lfu");
+        }
+    }
+
+    /**
+     * 查找未过期的值，未命中返回 null；过期条目在此时移除并计为未命中
+     */
+    public V get(K key) {
+        Entry<V> e = map.get(key); // LRU 模式下 get 即刷新访问顺序
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (e.expireAt != 0 && clock.getAsLong() >= e.expireAt) {
+            remove(key, e);
+            expirations++;
+            misses++;
+            return null;
+        }
+        if (buckets != null) touch(key, e);
+        hits++;
+        return e.value;
+    }
+
+    /**
+     * 放入缓存，ttlMs <= 0 表示永不过期；已满时按策略淘汰一个条目
+     */
+    public void put(K key, V value, long ttlMs) {
+        if (value == null) throw new IllegalArgumentException("cache value must not be null");
+        Entry<V> old = map.get(key);
+        if (old != null) remove(key, old);
+        else if (map.size() >= capacity) evict();
+        Entry<V> e = new Entry<>(value, ttlMs > 0 ? clock.getAsLong() + ttlMs : 0);
+        map.put(key, e);
+        if (buckets != null) {
+            buckets.computeIfAbsent(1, f -> new LinkedHashSet<>()).add(key);
+            minFreq = 1;
+        }
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    private void evict() {
+        K victim;
+        if (buckets == null) {
+            victim = map.keySet().iterator().next(); // 最久未访问
+        } else {
+            // 过期移除可能清空最低频次桶，此时重新求最小频次
+            if (!buckets.containsKey(minFreq)) minFreq = Collections.min(buckets.keySet());
+            victim = buckets.get(minFreq).iterator().next(); // 最低频次中最早进入的
+        }
+        remove(victim, map.get(victim));
+        evictions++;
+    }
+
+    private void remove(K key, Entry<V> e) {
+        map.remove(key);
+        if (buckets != null) {
+            LinkedHashSet<K> set = buckets.get(e.freq);
+            set.remove(key);
+            if (set.isEmpty()) buckets.remove(e.freq);
+        }
+    }
+
+    // LFU：频次加一并移到下一个桶
+    private void touch(K key, Entry<V> e) {
+        LinkedHashSet<K> set = buckets.get(e.freq);
+        set.remove(key);
+        if (set.isEmpty()) {
+            buckets.remove(e.freq);
+            if (minFreq == e.freq) minFreq++;
+        }
+        e.freq++;
+        buckets.computeIfAbsent(e.freq, f -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public String toString() {
+        return policy + " " + map.size() + "/" + capacity + ", hits " + hits + ", misses " + misses
+                + ", evictions " + evictions + ", expired " + expirations;
+    }
+}
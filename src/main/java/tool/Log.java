@@ -1,7 +1,19 @@
 package tool;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
+/**
+ * 日志：调用线程只做级别判断并把消息放进环形缓冲区，由后台写线程统一格式化（时间戳按秒缓存）
+ * 并整块写到 System.out，调用方不再在 println 的锁上排队。
+ * 缓冲区满时调用方等待写线程腾出位置，不丢日志；进程退出前会把剩余日志写完。
+ * 每行都会调用的地方用 Supplier 重载，级别关闭时不构造消息字符串。
+ */
 public class Log {
     public static int LOG_LEVEL = 1; // 0=none, 1=data only, 2=info/warn/error only, 3=all
     public static boolean ENABLE_KAOMOJI = true;
@@ -14,21 +26,36 @@ public class Log {
     private static final String GREEN          = "\u001B[32m";
     private static final String RED            = "\u001B[31m";
 
-    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int RING_SIZE = 1 << 13;       // 环形缓冲区条数，2 的幂
+    private static final int WRITE_CHUNK = 1 << 16;     // 攒够这么多字符写一次
+
+    private static final Writer WRITER = new Writer();
 
     // data and header logs are only output when LOG_LEVEL == 1 or 3
+    public static boolean dataEnabled() {
+        return LOG_LEVEL == 1 || LOG_LEVEL == 3;
+    }
+
+    public static boolean infoEnabled() {
+        return LOG_LEVEL >= 2;
+    }
+
+    public static boolean debugEnabled() {
+        return LOG_LEVEL == 3;
+    }
+
     public static void data(String tag, String content) {
-        if (LOG_LEVEL == 1 || LOG_LEVEL == 3) {
-            String formattedContent = removeBrackets(content);
-            logData(tag, formattedContent);
-        }
+        if (dataEnabled()) WRITER.publish(Entry.DATA, null, tag, content, null, null);
+    }
+
+    public static void data(String tag, Supplier<String> content) {
+        if (dataEnabled()) WRITER.publish(Entry.DATA, null, tag, content.get(), null, null);
     }
 
     public static void header(String tag, String content) {
-        if (LOG_LEVEL == 1 || LOG_LEVEL == 3) {
-            String formattedContent = removeBrackets(content);
-            logHeader(tag, formattedContent);
-        }
+        if (LOG_LEVEL == 1 || LOG_LEVEL == 3) WRITER.publish(Entry.HEADER, null, tag, content, null, null);
     }
 
     // info/success/warn/error are only output when LOG_LEVEL >= 2 (i.e., 2 and 3)
@@ -36,6 +63,10 @@ public class Log {
         if (LOG_LEVEL >= 2) log("INFO", tag, beautify(msg), BLUE, null);
     }
 
+    public static void info(String tag, Supplier<String> msg) {
+        if (LOG_LEVEL >= 2) log("INFO", tag, beautify(msg.get()), BLUE, null);
+    }
+
     public static void success(String tag, String msg) {
         if (LOG_LEVEL >= 2) {
             String tail = shouldAddKaomoji(tag, msg) ? "ദ്ദി˶ｰ̀֊ｰ́ )" : null;
@@ -59,21 +90,24 @@ public class Log {
         if (LOG_LEVEL == 3) log("DEBUG", tag, beautify(msg), null, null);
     }
 
+    public static void debug(String tag, Supplier<String> msg) {
+        if (LOG_LEVEL == 3) log("DEBUG", tag, beautify(msg.get()), null, null);
+    }
+
     public static void trace(String tag, String msg) {
         if (LOG_LEVEL == 3) log("TRACE", tag, beautify(msg), null, null);
     }
 
+    /**
+     * 等待此前提交的日志全部写到 System.out。直接写 System.out 的代码（如控制台输出）先调用它，保持先后顺序
+     */
+    public static void flush() {
+        WRITER.flush(TimeUnit.SECONDS.toNanos(10));
+    }
+
     private static void log(String level, String tag, String msg, String color, String tail) {
         if (LOG_LEVEL == 0) return;
-        String time = LocalDateTime.now().format(TIME_FMT);
-        String thread = Thread.currentThread().getName();
-        String base = String.format("[%s] [%-5s] [%s] [%s] %s", time, level, tag, thread, msg);
-        if (tail != null) base += " " + tail;
-        if (color != null) {
-            System.out.println(color + base + RESET);
-        } else {
-            System.out.println(base);
-        }
+        WRITER.publish(Entry.LINE, level, tag, msg, color, tail);
     }
 
     private static boolean shouldAddKaomoji(String tag, String msg) {
@@ -89,36 +123,6 @@ public class Log {
         return msg;
     }
 
-    private static void logData(String tag, String content) {
-        if (LOG_LEVEL == 0) return;
-        String time = LocalDateTime.now().format(TIME_FMT);
-        String thread = Thread.currentThread().getName();
-        String prefix = String.format("[%s] ", time) +
-                BLUE + "[DATA ]" + RESET + " " +
-                "[" + tag + "]" + " [" + thread + "]";
-        String[] lines = content.split("\n");
-        System.out.println(prefix);
-        for (String line : lines) {
-            System.out.println("\t" + DARK_GRAY + line + RESET);
-            System.out.println("\t" + DARK_GRAY + "───────────────────────────────" + RESET); // Separator line
-        }
-    }
-
-    private static void logHeader(String tag, String content) {
-        if (LOG_LEVEL == 0) return;
-        String time = LocalDateTime.now().format(TIME_FMT);
-        String thread = Thread.currentThread().getName();
-        String prefix = String.format("[%s] ", time) +
-                BLUE + "[HEAD ]" + RESET + " " +
-                "[" + tag + "]" + " [" + thread + "]";
-        String[] lines = content.split("\n");
-        System.out.println(prefix);
-        for (String line : lines) {
-            System.out.println("\t" + DARK_GRAY + line + RESET);
-            System.out.println("\t" + DARK_GRAY + "───────────────────────────────" + RESET);
-        }
-    }
-
     private static String removeBrackets(String s) {
         if (s == null) return "";
         s = s.trim();
@@ -127,4 +131,162 @@ public class Log {
         }
         return s;
     }
-}
\ No newline at end of file
+
+    /**
+     * 环形缓冲区中的一格，循环复用；seq 等于写线程期望的序号时内容可读
+     */
+    private static final class Entry {
+        static final int LINE = 0;
+        static final int DATA = 1;
+        static final int HEADER = 2;
+
+        volatile long seq = -1;
+        int kind;
+        long time;
+        String level;
+        String tag;
+        String thread;
+        String msg;
+        String color;
+        String tail;
+    }
+
+    /**
+     * 多生产者、单消费者的环形缓冲区与后台写线程。
+     * 生产者用 CAS 自增取得序号，填好格子后写 seq 发布；写线程按序号顺序读出，保证与提交顺序一致
+     */
+    private static final class Writer implements Runnable {
+        private final Entry[] ring = new Entry[RING_SIZE];
+        private final AtomicLong next = new AtomicLong();   // 下一个待分配的序号
+        private volatile long consumed = 0;                 // 写线程已读出的序号上界，之前的格子可复用
+        private volatile long written = 0;                  // 已写到 System.out 的序号上界
+        private volatile boolean parked = false;
+        private final Thread thread;
+        private final StringBuilder out = new StringBuilder(WRITE_CHUNK + 1024);
+
+        // 时间戳缓存：同一秒内只拼接毫秒
+        private long cachedSecond = Long.MIN_VALUE;
+        private String cachedPrefix;
+        private final ZoneId zone = ZoneId.systemDefault();
+
+        Writer() {
+            for (int i = 0; i < ring.length; i++) ring[i] = new Entry();
+            thread = new Thread(this, "log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(TimeUnit.SECONDS.toNanos(5)), "log-flush"));
+        }
+
+        void publish(int kind, String level, String tag, String msg, String color, String tail) {
+            long seq = next.getAndIncrement();
+            // 缓冲区满：等写线程腾出这一格
+            for (int spins = 0; seq - consumed >= RING_SIZE; spins++) {
+                wake();
+                if (spins < 100) Thread.yield();
+                else LockSupport.parkNanos(50_000);
+            }
+            Entry e = ring[(int) seq & (RING_SIZE - 1)];
+            e.kind = kind;
+            e.time = System.currentTimeMillis();
+            e.level = level;
+            e.tag = tag;
+            e.thread = Thread.currentThread().getName();
+            e.msg = msg;
+            e.color = color;
+            e.tail = tail;
+            e.seq = seq;
+            wake();
+        }
+
+        private void wake() {
+            if (parked) LockSupport.unpark(thread);
+        }
+
+        boolean flush(long timeoutNanos) {
+            long target = next.get();
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (written < target) {
+                if (Thread.currentThread() == thread || System.nanoTime() > deadline) return false;
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(20_000);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            long cursor = 0;
+            while (true) {
+                Entry e = ring[(int) cursor & (RING_SIZE - 1)];
+                if (e.seq != cursor) {
+                    // 暂时没有新日志：先把攒下的写出去，再等待
+                    if (out.length() > 0) {
+                        write(cursor);
+                        continue;
+                    }
+                    written = cursor;
+                    parked = true;
+                    if (ring[(int) cursor & (RING_SIZE - 1)].seq != cursor) LockSupport.parkNanos(1_000_000);
+                    parked = false;
+                    continue;
+                }
+                try {
+                    format(e);
+                } catch (RuntimeException ex) {
+                    out.append("[log-writer] failed to format log entry: ").append(ex).append('\n');
+                }
+                e.msg = null;
+                e.tag = null;
+                consumed = ++cursor;
+                if (out.length() >= WRITE_CHUNK) write(cursor);
+            }
+        }
+
+        private void write(long upTo) {
+            try {
+                System.out.print(out);
+                System.out.flush();
+            } catch (RuntimeException ignored) {
+                // 输出流异常时丢弃这一块，写线程不能退出
+            }
+            out.setLength(0);
+            written = upTo;
+        }
+
+        private void format(Entry e) {
+            if (e.kind == Entry.LINE) {
+                if (e.color != null) out.append(e.color);
+                out.append('[');
+                appendTime(e.time);
+                out.append("] [").append(e.level);
+                for (int i = e.level.length(); i < 5; i++) out.append(' ');
+                out.append("] [").append(e.tag).append("] [").append(e.thread).append("] ").append(e.msg);
+                if (e.tail != null) out.append(' ').append(e.tail);
+                if (e.color != null) out.append(RESET);
+                out.append('\n');
+                return;
+            }
+            out.append('[');
+            appendTime(e.time);
+            out.append("] ").append(BLUE).append(e.kind == Entry.DATA ? "[DATA ]" : "[HEAD ]").append(RESET)
+                    .append(" [").append(e.tag).append("] [").append(e.thread).append("]\n");
+            for (String line : removeBrackets(e.msg).split("\n")) {
+                out.append('\t').append(DARK_GRAY).append(line).append(RESET).append('\n');
+                out.append('\t').append(DARK_GRAY).append("───────────────────────────────").append(RESET).append('\n');
+            }
+        }
+
+        private void appendTime(long millis) {
+            long second = millis / 1000;
+            if (second != cachedSecond) {
+                cachedSecond = second;
+                cachedPrefix = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), zone).format(TIME_FMT) + ".";
+            }
+            int ms = (int) (millis % 1000);
+            out.append(cachedPrefix);
+            if (ms < 100) out.append('0');
+            if (ms < 10) out.append('0');
+            out.append(ms);
+        }
+    }
+}
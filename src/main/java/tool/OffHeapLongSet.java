@@ -0,0 +1,102 @@
+package tool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * 存放在堆外内存中的 long 集合，开放寻址 + 线性探测。
+ * 按高 4 位分成 16 段，各段独立扩容，扩容时只需重排一段，也不会产生巨大的堆内数组。
+ * 适合存放已经散列过的 64 位指纹（低位用于定位槽位）。非线程安全。
+ */
+public class OffHeapLongSet {
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int MAX_SEGMENT_SLOTS = 1 << 27; // 每段最多 1GB
+    private static final int MIN_SEGMENT_SLOTS = 1 << 10;
+
+    private final LongBuffer[] tables = new LongBuffer[SEGMENTS];
+    private final int[] sizes = new int[SEGMENTS];
+    private boolean hasZero = false; // 0 用作空槽标记，单独记录
+    private long size = 0;
+
+    /**
+     * @param expected 预计元素数，用于确定初始容量（之后按需扩容）
+     */
+    public OffHeapLongSet(long expected) {
+        long perSegment = Math.max(MIN_SEGMENT_SLOTS, expected / SEGMENTS * 2);
+        int slots = (int) Math.min(MAX_SEGMENT_SLOTS, Long.highestOneBit(perSegment - 1) << 1);
+        for (int i = 0; i < SEGMENTS; i++) tables[i] = allocate(slots);
+    }
+
+    /**
+     * 加入一个值，此前不存在时返回 true
+     */
+    public boolean add(long v) {
+        if (v == 0) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int seg = (int) (v >>> (64 - SEGMENT_BITS));
+        LongBuffer t = tables[seg];
+        if (!insert(t, v)) return false;
+        size++;
+        if (++sizes[seg] > t.capacity() / 10 * 7) grow(seg); // 装载因子 0.7
+        return true;
+    }
+
+    public boolean contains(long v) {
+        if (v == 0) return hasZero;
+        LongBuffer t = tables[(int) (v >>> (64 - SEGMENT_BITS))];
+        int mask = t.capacity() - 1;
+        for (int i = (int) v & mask; ; i = (i + 1) & mask) {
+            long cur = t.get(i);
+            if (cur == v) return true;
+            if (cur == 0) return false;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 当前占用的堆外字节数
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (LongBuffer t : tables) bytes += (long) t.capacity() * Long.BYTES;
+        return bytes;
+    }
+
+    private static boolean insert(LongBuffer t, long v) {
+        int mask = t.capacity() - 1;
+        for (int i = (int) v & mask; ; i = (i + 1) & mask) {
+            long cur = t.get(i);
+            if (cur == v) return false;
+            if (cur == 0) {
+                t.put(i, v);
+                return true;
+            }
+        }
+    }
+
+    private void grow(int seg) {
+        LongBuffer old = tables[seg];
+        if (old.capacity() >= MAX_SEGMENT_SLOTS) {
+            throw new IllegalStateException("OffHeapLongSet segment full at " + sizes[seg] + " entries");
+        }
+        LongBuffer t = allocate(old.capacity() * 2);
+        for (int i = 0; i < old.capacity(); i++) {
+            long v = old.get(i);
+            if (v != 0) insert(t, v);
+        }
+        tables[seg] = t; // 旧缓冲区随对象回收释放
+    }
+
+    private static LongBuffer allocate(int slots) {
+        return ByteBuffer.allocateDirect(slots * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+}
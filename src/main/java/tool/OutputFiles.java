@@ -0,0 +1,62 @@
+package tool;
+
+import java.nio.file.Path;
+
+/**
+ * 文件类输出插件共用的文件名与大小配置处理：按序号/分片切分的文件名、压缩后缀、KB/MB/GB 大小解析
+ */
+public final class OutputFiles {
+    private OutputFiles() {
+    }
+
+    /**
+     * 在扩展名前插入 suffix（为空时不插入），压缩时再追加 .gz：
+     * partName("out/data.sql", "-0-001", true) 为 out/data-0-001.sql.gz；目录名中的点不当作扩展名
+     */
+    public static String partName(String name, String suffix, boolean gzip) {
+        if (suffix != null && !suffix.isEmpty()) {
+            int dot = extensionIndex(name);
+            name = dot < 0 ? name + suffix : name.substring(0, dot) + suffix + name.substring(dot);
+        }
+        return gzip && !name.endsWith(".gz") ? name + ".gz" : name;
+    }
+
+    /**
+     * 写入中的临时文件：与目标同目录、追加 .tmp，正常结束后再替换为目标文件，保证同一文件系统内改名
+     */
+    public static Path tmpFile(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * 去掉扩展名：out/data.sql 为 out/data
+     */
+    public static String stripExtension(String name) {
+        int dot = extensionIndex(name);
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * 解析文件大小配置：纯数字为字节数，可带 KB/MB/GB 后缀（不区分大小写）；格式错误时抛 IllegalArgumentException
+     */
+    public static long parseSize(String v) {
+        String s = v.trim().toUpperCase();
+        long unit = 1;
+        if (s.endsWith("KB")) unit = 1L << 10;
+        else if (s.endsWith("MB")) unit = 1L << 20;
+        else if (s.endsWith("GB")) unit = 1L << 30;
+        if (unit > 1) s = s.substring(0, s.length() - 2).trim();
+        try {
+            return Long.parseLong(s) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无法解析文件大小: " + v);
+        }
+    }
+
+    // 最后一个路径分隔符之后的最后一个点，没有扩展名时为 -1
+    private static int extensionIndex(String name) {
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        int dot = name.lastIndexOf('.');
+        return dot > slash ? dot : -1;
+    }
+}
@@ -0,0 +1,42 @@
+package tool;
+
+import core.flowdata.Row;
+
+/**
+ * 行键的稳定散列：结果只取决于字段的字符串值，与 JVM、运行次数无关。
+ * dedup 判重、repartition 与 sqlfile 分片共用，保证同一键在各处落到同一分区。
+ */
+public final class RowHash {
+    private RowHash() {
+    }
+
+    /**
+     * 键字段的 64 位指纹：逐字符 FNV-1a，每个字段先混入长度（null 为 0）以区分字段边界，最后做一次 murmur3 混合
+     */
+    public static long fingerprint(Row row, int[] idx) {
+        long h = 0xcbf29ce484222325L;
+        for (int i : idx) {
+            Object v = i < row.size() ? row.get(i) : null;
+            if (v == null) {
+                h *= 0x100000001b3L;
+            } else {
+                String s = v.toString();
+                h = (h ^ (s.length() + 1)) * 0x100000001b3L;
+                for (int j = 0; j < s.length(); j++) h = (h ^ s.charAt(j)) * 0x100000001b3L;
+            }
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 指纹到分区号 [0, n)
+     */
+    public static int partition(long fingerprint, int n) {
+        return (int) ((fingerprint >>> 1) % n);
+    }
+}
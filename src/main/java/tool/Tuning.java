@@ -22,6 +22,31 @@ public class Tuning {
         return Integer.getInteger("etl.objectPoolSize", defaultSize);
     }
 
+    // Engine 同时运行的所有作业可占用的线程总预算
+    public static int engineThreads() {
+        return Integer.getInteger("etl.engine.threads", Math.max(32, threadPoolSize() * 4));
+    }
+
+    // Engine 所有作业通道中可缓冲的总行数，默认按每行约 1KB、占用四分之一堆估算
+    public static long engineBufferedRows() {
+        return Long.getLong("etl.engine.bufferedRows", Math.max(queueSize(), MEM_MB * 1024 / 4));
+    }
+
+    // 连接步骤构建侧在内存中保留的最大行数，超过后分区溢写磁盘
+    public static long joinMemoryRows() {
+        return Long.getLong("etl.join.memoryRows", Math.max(10_000, MEM_MB * 1024 / 8));
+    }
+
+    // 独立运行的 Scheduler 等待流程结束的上限（分钟），超时即取消整个流程；0 表示不限。Engine 作业不受此限制
+    public static long runTimeoutMinutes() {
+        return Long.getLong("etl.runTimeoutMinutes", 30);
+    }
+
+    // 忽略编译期插件索引，强制扫描类路径（IDE 增量编译导致索引不完整时使用）
+    public static boolean pluginScan() {
+        return Boolean.parseBoolean(System.getProperty("etl.pluginScan", "false"));
+    }
+
     public static boolean enableLog() {
         return Boolean.parseBoolean(System.getProperty("etl.enableLog", "true"));
     }
@@ -46,6 +71,11 @@ public class Tuning {
         Log.info("Tuning", "Thread pool size: " + threadPoolSize());
         Log.info("Tuning", "Queue capacity: " + queueSize());
         Log.info("Tuning", "Object pool size: " + objectPoolSize());
+        Log.info("Tuning", "Engine threads: " + engineThreads());
+        Log.info("Tuning", "Engine buffered rows: " + engineBufferedRows());
+        Log.info("Tuning", "Join memory rows: " + joinMemoryRows());
+        Log.info("Tuning", "Run timeout minutes: " + runTimeoutMinutes());
+        Log.info("Tuning", "Plugin scan: " + pluginScan());
         Log.info("Tuning", "Log enabled: " + enableLog());
         Log.info("Tuning", "Log level: " + logLevel());
         Log.info("Tuning", "Kaomoji enabled: " + enableKaomoji());
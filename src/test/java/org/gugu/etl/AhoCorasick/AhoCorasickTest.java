@@ -0,0 +1,120 @@
+package org.gugu.etl.AhoCorasick;
+
+import org.junit.jupiter.api.Test;
+import tool.AhoCorasick;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AhoCorasickTest {
+
+    // 朴素实现：最左起点优先，起点相同取最长
+    private static int naive(List<String> patterns, String text) {
+        int best = -1, bestStart = Integer.MAX_VALUE, bestLen = -1;
+        for (int p = 0; p < patterns.size(); p++) {
+            int start = text.indexOf(patterns.get(p));
+            int len = patterns.get(p).length();
+            if (start < 0) continue;
+            if (start < bestStart || (start == bestStart && len > bestLen)) {
+                best = p;
+                bestStart = start;
+                bestLen = len;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void test_priorityRules() {
+        List<String> patterns = Arrays.asList("book", "notebook", "note", "laptop");
+        AhoCorasick ac = new AhoCorasick(patterns);
+        assertEquals(1, ac.find("a notebook stand"));  // 同一起点取最长
+        assertEquals(2, ac.find("notes on a laptop"));  // 起点最靠左
+        assertEquals(0, ac.find("ebook reader"));
+        assertEquals(3, ac.find("laptop notebook"));
+        assertEquals(-1, ac.find("tablet"));
+        assertEquals(-1, ac.find(""));
+    }
+
+    @Test
+    public void test_overlapAndEmptyPattern() {
+        AhoCorasick ac = new AhoCorasick(Arrays.asList("he", "she", "his", "hers"));
+        assertEquals(1, ac.find("ushers"));
+        assertEquals(0, ac.find("ahem"));
+        assertEquals(2, ac.find("this"));
+
+        AhoCorasick withEmpty = new AhoCorasick(Arrays.asList("", "ab"));
+        assertEquals(1, withEmpty.find("abc"));
+        assertEquals(0, withEmpty.find("xab"));
+        assertEquals(0, withEmpty.find("zzz"));
+    }
+
+    /**
+     * 随机模式与文本，与朴素实现逐一比对
+     */
+    @Test
+    public void test_matchesNaive() {
+        Random rnd = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> patterns = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            int count = 1 + rnd.nextInt(30);
+            while (patterns.size() < count) {
+                String p = randomString(rnd, 1 + rnd.nextInt(5), 3);
+                if (seen.add(p)) patterns.add(p);
+            }
+            AhoCorasick ac = new AhoCorasick(patterns);
+            for (int t = 0; t < 50; t++) {
+                String text = randomString(rnd, rnd.nextInt(40), 3);
+                assertEquals(naive(patterns, text), ac.find(text), patterns + " / " + text);
+            }
+        }
+    }
+
+    /**
+     * 数百个商品编码子串：自动机单次扫描与逐个 contains 的耗时对比
+     */
+    @Test
+    public void test_manyPatternsCost() {
+        Random rnd = new Random(7);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 500; i++) patterns.add(String.format("SKU-%04d-%c", i, (char) ('A' + i % 26)));
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            values.add("order " + i + " item " + (rnd.nextBoolean()
+                    ? patterns.get(rnd.nextInt(patterns.size()))
+                    : "SKU-" + rnd.nextInt(100000)) + " shipped");
+        }
+        AhoCorasick ac = new AhoCorasick(patterns);
+
+        long t0 = System.nanoTime();
+        long hitsNaive = 0;
+        for (String v : values) {
+            for (String p : patterns) {
+                if (v.contains(p)) {
+                    hitsNaive++;
+                    break;
+                }
+            }
+        }
+        long t1 = System.nanoTime();
+        long hitsAc = 0;
+        for (String v : values) {
+            if (ac.find(v) >= 0) hitsAc++;
+        }
+        long t2 = System.nanoTime();
+
+        assertEquals(hitsNaive, hitsAc);
+        if (Boolean.getBoolean("etl.bench")) {
+            System.out.printf("500 patterns: contains loop %.0f ns/row, automaton %.0f ns/row%n",
+                    (double) (t1 - t0) / values.size(), (double) (t2 - t1) / values.size());
+        }
+    }
+
+    private static String randomString(Random rnd, int len, int alphabet) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) sb.append((char) ('a' + rnd.nextInt(alphabet)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package org.gugu.etl.Cancellation;
+
+import core.CancellationToken;
+import core.Scheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CancellationTest {
+
+    /**
+     * 输入文件不存在：下游控制台不应再等待 30 分钟超时
+     */
+    @Test
+    public void test_inputFailureCompletesImmediately() throws InterruptedException {
+        Step input = new Step()
+                .withStepId(1)
+                .withDes("读取不存在的CSV")
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", "src/test/java/org/gugu/etl/Cancellation/missing.csv");
+
+        Step output = new Step()
+                .withStepId(2)
+                .withDes("输出到控制台")
+                .withDomain("output")
+                .withSubType("console")
+                .withParentStepId(Collections.singletonList("1"));
+
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        long start = System.currentTimeMillis();
+        scheduler.execute();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertNotNull(scheduler.getFailure());
+        assertTrue(CancellationToken.describe(scheduler.getFailure()).contains("File not found"));
+        assertTrue(elapsed < 10_000, "execute took " + elapsed + "ms");
+    }
+
+    /**
+     * 输出步骤失败时，阻塞在满队列上的上游生产者应被释放并退出
+     */
+    @Test
+    public void test_outputFailureReleasesBlockedProducer(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("big.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 50_000; i++) {
+                w.write(i + ",name" + i + "\n");
+            }
+        }
+        Path existing = Files.createFile(dir.resolve("exists.sql"));
+
+        Step input = new Step()
+                .withStepId(1)
+                .withDes("读取大CSV")
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+
+        Step output = new Step()
+                .withStepId(2)
+                .withDes("写入已存在且不允许覆盖的文件")
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filename", existing.toString())
+                .withConfig("table_name", "t")
+                .withConfig("overwrite", false)
+                .withConfig("channelCapacity", 8);
+
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        long start = System.currentTimeMillis();
+        scheduler.execute();
+        long elapsed = System.currentTimeMillis() - start;
+
+        Throwable failure = scheduler.getFailure();
+        assertNotNull(failure);
+        assertTrue(CancellationToken.describe(failure).contains("IOException"));
+        assertTrue(elapsed < 10_000, "execute took " + elapsed + "ms");
+    }
+
+    @Test
+    public void test_firstCauseWins() {
+        CancellationToken token = new CancellationToken();
+        int[] calls = {0};
+        token.onCancel(() -> calls[0]++);
+        assertTrue(token.cancel(new IllegalStateException("first")));
+        assertFalse(token.cancel(new IOException("second")));
+        assertEquals("first", token.getCause().getMessage());
+        assertEquals(1, calls[0]);
+    }
+
+    /**
+     * 运行时限可按流程设置：超时后整个流程以 TimeoutException 取消，未写完的文件不保留
+     */
+    @Test
+    public void test_configurableTimeout(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("big.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 300_000; i++) {
+                w.write(i + ",name" + i + "\n");
+            }
+        }
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(2)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filename", dir.resolve("out.sql").toString())
+                .withConfig("table_name", "t")
+                .withConfig("channelCapacity", 1);
+
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.setTimeout(-1, TimeUnit.SECONDS));
+        scheduler.setTimeout(50, TimeUnit.MILLISECONDS);
+        scheduler.execute();
+
+        assertTrue(scheduler.getFailure() instanceof TimeoutException, String.valueOf(scheduler.getFailure()));
+        assertFalse(Files.exists(dir.resolve("out.sql")));
+    }
+}
@@ -0,0 +1,114 @@
+package org.gugu.etl.Console;
+
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import plugin.output.Console;
+import tool.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class ConsoleTest {
+    private PrintStream savedOut;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    @BeforeEach
+    public void capture() {
+        savedOut = System.out;
+        Log.flush(); // 之前测试的异步日志不要写进本次捕获
+        System.setOut(new PrintStream(captured, true));
+    }
+
+    @AfterEach
+    public void restore() {
+        Log.flush();
+        System.setOut(savedOut);
+    }
+
+    /**
+     * 在当前线程运行 consume，另起线程按批写入 total 行后关闭通道
+     */
+    private static void run(Map<String, Object> cfg, int total) throws Exception {
+        Console console = new Console();
+        console.init(cfg);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 4);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            Future<?> producer = pool.submit(() -> {
+                List<Row> batch = new ArrayList<>();
+                for (int i = 0; i < total; i++) {
+                    Row row = new Row();
+                    row.add(i);
+                    row.add("n" + i);
+                    batch.add(row);
+                    if (batch.size() == 100) {
+                        ch.publishAll(batch);
+                        batch = new ArrayList<>();
+                    }
+                }
+                ch.publishAll(batch);
+                ch.close();
+            });
+            console.consume(ch);
+            producer.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<String> rowLines() {
+        return Arrays.stream(new String(captured.toByteArray(), StandardCharsets.UTF_8).split("\n"))
+                .filter(l -> l.matches("\t\\d+, n\\d+"))
+                .map(String::trim)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 按间隔抽样、达到上限后不再打印，但上游数据全部被消费
+     */
+    @Test
+    public void test_sampleAndCap() throws Exception {
+        Log.LOG_LEVEL = 1;
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("every", 3);
+        cfg.put("maxRows", 100);
+        run(cfg, 20_000);
+
+        List<String> lines = rowLines();
+        assertEquals(100, lines.size());
+        for (int i = 0; i < 100; i++) assertEquals(i * 3 + ", n" + i * 3, lines.get(i));
+    }
+
+    @Test
+    public void test_printsAllRowsInOrder() throws Exception {
+        Log.LOG_LEVEL = 1;
+        run(new HashMap<>(), 5_000);
+        List<String> lines = rowLines();
+        assertEquals(5_000, lines.size());
+        assertEquals("4999, n4999", lines.get(4_999));
+    }
+
+    @Test
+    public void test_silentWhenDataLogDisabled() throws Exception {
+        Log.LOG_LEVEL = 0;
+        run(new HashMap<>(), 5_000);
+        assertEquals(0, captured.size());
+    }
+}
@@ -0,0 +1,108 @@
+package org.gugu.etl.CsvOutput;
+
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import core.intf.IOutput;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.output.CsvOutput;
+import plugin.output.SQLFileOutput;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CSV 与 SQL 脚本输出的写入吞吐对比，默认不运行：
+ *   mvn test -Dtest=CsvOutputBenchmarkTest -Detl.bench=true [-Detl.bench.rows=10000000]
+ * 两者写同样的数据，直接向通道写行，不含解析开销
+ */
+@EnabledIfSystemProperty(named = "etl.bench", matches = "true")
+@ExtendWith(QuietLog.class)
+public class CsvOutputBenchmarkTest {
+    private static final long ROWS = Long.getLong("etl.bench.rows", 10_000_000L);
+
+    private static long write(IOutput out, Map<String, Object> cfg) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            out.init(cfg);
+            Channel ch = new Channel(pool, "2", 10_000);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name", "city", "amount")));
+            long start = System.nanoTime();
+            Future<?> consumer = pool.submit(() -> {
+                out.consume(ch);
+                return null;
+            });
+            for (long i = 0; i < ROWS; i++) {
+                Row row = new Row();
+                row.add(String.valueOf(i));
+                row.add("user" + (i % 1000));
+                row.add(i % 7 == 0 ? "O'Fallon, MO" : "Shanghai");
+                row.add(String.valueOf(i % 10_000 / 100.0));
+                ch.publish(row);
+            }
+            ch.close();
+            consumer.get();
+            return System.nanoTime() - start;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long sizeAndClean(Path dir) throws Exception {
+        long size = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path f : (Iterable<Path>) files::iterator) {
+                size += Files.size(f);
+                Files.delete(f);
+            }
+        }
+        return size;
+    }
+
+    @Test
+    public void benchCsvVsSqlFile(@TempDir Path dir) throws Exception {
+        Map<String, Supplier<Map<String, Object>>> runs = new LinkedHashMap<>();
+        runs.put("csv", () -> new HashMap<>());
+        runs.put("csv-gzip", () -> {
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("compress", "gzip");
+            return cfg;
+        });
+        runs.put("sqlfile-insert", () -> {
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("table_name", "bench");
+            cfg.put("batch_size", 1000);
+            return cfg;
+        });
+        runs.put("sqlfile-bulk", () -> {
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("table_name", "bench");
+            cfg.put("dbtype", "postgresql");
+            cfg.put("format", "bulk");
+            return cfg;
+        });
+        for (Map.Entry<String, Supplier<Map<String, Object>>> run : runs.entrySet()) {
+            Path runDir = Files.createDirectory(dir.resolve(run.getKey()));
+            Map<String, Object> cfg = run.getValue().get();
+            boolean csv = run.getKey().startsWith("csv");
+            cfg.put("filename", runDir.resolve(csv ? "bench.csv" : "bench.sql").toString());
+            long nanos = write(csv ? new CsvOutput() : new SQLFileOutput(), cfg);
+            long size = sizeAndClean(runDir);
+            System.out.printf("%-15s rows=%d time=%dms rows/s=%d size=%dMB%n",
+                    run.getKey(), ROWS, nanos / 1_000_000, (long) (ROWS / (nanos / 1e9)), size >> 20);
+            assertTrue(size > 0);
+        }
+    }
+}
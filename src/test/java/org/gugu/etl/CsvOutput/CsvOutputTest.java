@@ -0,0 +1,195 @@
+package org.gugu.etl.CsvOutput;
+
+import core.CancellationToken;
+import core.Channel;
+import core.Scheduler;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.output.CsvOutput;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class CsvOutputTest {
+    private static Row row(Object... values) {
+        Row row = new Row();
+        row.addAll(Arrays.asList(values));
+        return row;
+    }
+
+    /**
+     * 在当前线程运行 consume，另起线程写入 rows 后关闭通道
+     */
+    private static void write(Map<String, Object> cfg, List<String> header, List<Row> rows) throws Exception {
+        CsvOutput out = new CsvOutput();
+        out.init(cfg);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 100);
+            ch.setHeader(new RowSetTable(header));
+            Future<?> producer = pool.submit(() -> {
+                for (Row r : rows) ch.publish(r);
+                ch.close();
+            });
+            out.consume(ch);
+            producer.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static String read(Path file, Charset charset) throws Exception {
+        try (InputStream in = file.toString().endsWith(".gz")
+                ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file)) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) > 0; ) bos.write(buf, 0, n);
+            return new String(bos.toByteArray(), charset);
+        }
+    }
+
+    /**
+     * 含分隔符、引号、换行的字段加引号，NULL 写作 nullValue；跨字符块的代理对不被拆坏
+     */
+    @Test
+    public void test_quotingNullsAndCharset(@TempDir Path dir) throws Exception {
+        StringBuilder wide = new StringBuilder("x");
+        for (int i = 0; i < 40_000; i++) wide.append("😀");
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("filename", dir.resolve("out.csv").toString());
+        cfg.put("nullValue", "\\N");
+        write(cfg, Arrays.asList("id", "text"), Arrays.asList(
+                row(1, "plain"),
+                row(2, "a,b"),
+                row(3, "say \"hi\""),
+                row(4, "two\nlines"),
+                row(5, null),
+                row(6, "中文"),
+                row(7, wide.toString())));
+        assertEquals("id,text\n1,plain\n2,\"a,b\"\n3,\"say \"\"hi\"\"\"\n4,\"two\nlines\"\n5,\\N\n6,中文\n7," + wide + "\n",
+                read(dir.resolve("out.csv"), StandardCharsets.UTF_8));
+
+        cfg.put("filename", dir.resolve("gbk.csv").toString());
+        cfg.put("charset", "GBK");
+        cfg.put("delimiter", ";");
+        cfg.put("quoteAll", true);
+        cfg.put("lineSeparator", "\r\n");
+        write(cfg, Arrays.asList("id", "text"), Collections.singletonList(row(1, "中文;x")));
+        assertEquals("\"id\";\"text\"\r\n\"1\";\"中文;x\"\r\n", read(dir.resolve("gbk.csv"), Charset.forName("GBK")));
+    }
+
+    /**
+     * 达到 maxFileSize 后在行边界切换文件，每个文件带表头，gzip 压缩，拼接后行序不变
+     */
+    @Test
+    public void test_rolloverWithGzip(@TempDir Path dir) throws Exception {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) rows.add(row(String.valueOf(i), "name" + i));
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("filename", dir.resolve("out.csv").toString());
+        cfg.put("maxFileSize", "10KB");
+        cfg.put("compress", "gzip");
+        write(cfg, Arrays.asList("id", "name"), rows);
+
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.sorted().collect(Collectors.toList());
+        }
+        assertTrue(files.size() > 5, "files " + files);
+        assertEquals("out-000.csv.gz", files.get(0).getFileName().toString());
+        int next = 0;
+        for (Path f : files) {
+            String text = read(f, StandardCharsets.UTF_8);
+            assertTrue(text.length() < 10 * 1024 + 64, f + " " + text.length());
+            String[] lines = text.split("\n");
+            assertEquals("id,name", lines[0]);
+            for (int i = 1; i < lines.length; i++) {
+                assertEquals(next + ",name" + next, lines[i]);
+                next++;
+            }
+        }
+        assertEquals(5000, next);
+    }
+
+    /**
+     * csv 输入直接接 csv 输出，内容原样写回
+     */
+    @Test
+    public void test_pipelineRoundTrip(@TempDir Path dir) throws Exception {
+        Path in = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(in)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 3000; i++) w.write(i + ",n" + i + "\n");
+        }
+        Path out = dir.resolve("sub/out.csv");
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(
+                new Step().withStepId(1).withDomain("input").withSubType("csv")
+                        .withConfig("filePath", in.toString()),
+                new Step().withStepId(2).withDomain("output").withSubType("csv")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filename", out.toString()))));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        assertEquals(read(in, StandardCharsets.UTF_8), read(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 流程取消时不写出缓冲区：已切换出的文件与当前文件都被删除，已有的目标文件保持原样
+     */
+    @Test
+    public void test_cancelLeavesNoPartialFile(@TempDir Path dir) throws Exception {
+        Path old = Files.write(dir.resolve("out-000.csv"), "old".getBytes(StandardCharsets.UTF_8));
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 1000);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            CsvOutput out = new CsvOutput();
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("filename", dir.resolve("out.csv").toString());
+            cfg.put("bufferSize", 1024);
+            cfg.put("maxFileSize", "4KB");
+            cfg.put("overwrite", true);
+            out.init(cfg);
+            Future<?> consumer = pool.submit(() -> {
+                out.consume(ch);
+                return null;
+            });
+            for (int i = 0; i < 2000; i++) ch.publish(row(i, "name" + i));
+            Path tmp = dir.resolve("out-001.csv.tmp");
+            for (int i = 0; i < 200 && !Files.exists(tmp); i++) Thread.sleep(10);
+            assertTrue(Files.exists(tmp));
+            ch.getToken().cancel(new CancellationException("test"));
+            consumer.get(10, TimeUnit.SECONDS);
+
+            try (Stream<Path> list = Files.list(dir)) {
+                assertEquals(Collections.singletonList(old), list.collect(Collectors.toList()));
+            }
+            assertEquals("old", read(old, StandardCharsets.UTF_8));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.gugu.etl.Dedup;
+
+import core.CancellationToken;
+import core.Scheduler;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+import tool.BloomFilter;
+import tool.OffHeapLongSet;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.gugu.etl.Flows.rowsOut;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class DedupTest {
+    private static Scheduler run(Path csv, Step dedup, Path out) throws InterruptedException {
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(3)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("2"))
+                .withConfig("filename", out.toString())
+                .withConfig("table_name", "t");
+        dedup.withStepId(2).withDomain("process").withSubType("dedup").withParentStepId(Collections.singletonList("1"));
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, dedup, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        return scheduler;
+    }
+
+    @Test
+    public void test_dedupOnFieldsKeepsFirst(@TempDir Path dir) throws Exception {
+        Path csv = Files.write(dir.resolve("in.csv"), ("day,user,amount\n" +
+                "1,a,5\n" +
+                "1,b,6\n" +
+                "2,a,7\n" +
+                "1,a,8\n" +
+                "1,ab,9\n" +
+                "1a,b,10\n").getBytes(StandardCharsets.UTF_8));
+        Scheduler scheduler = run(csv, new Step().withConfig("fields", "day,user"), dir.resolve("out.sql"));
+        assertEquals(5, rowsOut(scheduler, 2)); // 只有 (1,a) 重复；(1,ab) 与 (1a,b) 不同
+        String sql = new String(Files.readAllBytes(dir.resolve("out.sql")), StandardCharsets.UTF_8);
+        assertTrue(sql.contains("'1', 'a', '5'"), sql);
+        assertFalse(sql.contains("'1', 'a', '8'"), sql);
+    }
+
+    /**
+     * 大量键触发堆外表分段扩容；bloom 模式在预计键数内误删比例接近 fpp
+     */
+    @Test
+    public void test_exactAndBloomOnManyKeys(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("big.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,v\n");
+            for (int i = 0; i < 100_000; i++) w.write((i % 40_000) + "," + i + "\n");
+        }
+        Scheduler exact = run(csv, new Step().withConfig("fields", "id").withConfig("expectedKeys", 1_000),
+                dir.resolve("exact.sql"));
+        assertEquals(40_000, rowsOut(exact, 2));
+
+        Scheduler bloom = run(csv, new Step().withConfig("fields", "id").withConfig("mode", "bloom")
+                .withConfig("expectedKeys", 40_000).withConfig("fpp", 0.01), dir.resolve("bloom.sql"));
+        long kept = rowsOut(bloom, 2);
+        assertTrue(kept <= 40_000 && kept > 40_000 * 0.97, "kept " + kept);
+    }
+
+    @Test
+    public void test_offHeapLongSet() {
+        OffHeapLongSet set = new OffHeapLongSet(16);
+        long before = set.memoryBytes();
+        Random r = new Random(7);
+        long[] values = new long[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = r.nextLong();
+            assertTrue(set.add(values[i]));
+        }
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        for (long v : values) {
+            assertFalse(set.add(v));
+            assertTrue(set.contains(v));
+        }
+        assertFalse(set.contains(12345L));
+        assertEquals(values.length + 1, set.size());
+        assertTrue(set.memoryBytes() > before);
+    }
+
+    @Test
+    public void test_bloomFilterHasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        Random r = new Random(11);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = r.nextLong();
+            filter.put(values[i]);
+        }
+        for (long v : values) assertTrue(filter.mightContain(v));
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(r.nextLong())) falsePositives++;
+        }
+        assertTrue(falsePositives < 300, "false positives " + falsePositives);
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1.5));
+    }
+}
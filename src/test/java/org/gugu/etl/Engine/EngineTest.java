@@ -0,0 +1,180 @@
+package org.gugu.etl.Engine;
+
+import core.Engine;
+import core.JobHandle;
+import core.Scheduler;
+import core.StepProgress;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class EngineTest {
+    @BeforeEach
+    public void setUp() {
+        Engine.factory();
+    }
+
+    private static StepList csvToConsole(String path) {
+        Step input = new Step()
+                .withStepId(1)
+                .withDes("读取csv文件")
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", path);
+        Step output = new Step()
+                .withStepId(2)
+                .withDes("输出到控制台")
+                .withDomain("output")
+                .withSubType("console")
+                .withParentStepId(Collections.singletonList("1"));
+        return new StepList(Arrays.asList(input, output));
+    }
+
+    /**
+     * 多个小流程共享一个引擎并发运行，线程预算小于总需求时排队准入
+     */
+    @Test
+    public void test_manyJobsShareOnePool() throws Exception {
+        Engine engine = new Engine(8, 100_000);
+        List<JobHandle> jobs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            jobs.add(engine.submit("small-" + i, csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv")));
+        }
+        CompletableFuture.allOf(jobs.stream().map(JobHandle::future).toArray(CompletableFuture[]::new))
+                .get(60, TimeUnit.SECONDS);
+        for (JobHandle job : jobs) {
+            assertEquals(JobHandle.State.SUCCEEDED, job.getState());
+        }
+        engine.shutdown();
+    }
+
+    @Test
+    public void test_failedJobCompletesWithRootCause() throws Exception {
+        Engine engine = new Engine(8, 100_000);
+        JobHandle job = engine.submit(csvToConsole("src/test/java/org/gugu/etl/Engine/missing.csv"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> job.future().get(30, TimeUnit.SECONDS));
+        assertEquals(JobHandle.State.FAILED, job.getState());
+        assertTrue(e.getCause().getCause().getMessage().contains("File not found"));
+        engine.shutdown();
+    }
+
+    @Test
+    public void test_invalidFlowRejectedAtSubmit() {
+        Engine engine = new Engine(8, 100_000);
+        Step orphan = new Step().withStepId(1).withDomain("output").withSubType("console");
+        assertThrows(IllegalArgumentException.class, () -> engine.submit(new StepList(Collections.singletonList(orphan))));
+        engine.shutdown();
+    }
+
+    /**
+     * 预算只够一个作业时第二个作业排队；排队与运行中的作业都可以取消
+     */
+    @Test
+    public void test_cancelQueuedAndRunningJobs(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("big.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 300_000; i++) {
+                w.write(i + ",name" + i + "\n");
+            }
+        }
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(2)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filename", dir.resolve("out.sql").toString())
+                .withConfig("table_name", "t")
+                .withConfig("channelCapacity", 1);
+
+        Engine engine = new Engine(4, 100_000);
+        JobHandle running = engine.submit("big", new StepList(Arrays.asList(input, output)));
+        JobHandle queued = engine.submit("next", csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv"));
+
+        assertEquals(JobHandle.State.RUNNING, running.getState());
+        assertEquals(JobHandle.State.QUEUED, queued.getState());
+
+        queued.cancel();
+        assertEquals(JobHandle.State.CANCELLED, queued.getState());
+
+        running.cancel();
+        assertThrows(CancellationException.class, () -> running.future().get(10, TimeUnit.SECONDS));
+        assertEquals(JobHandle.State.CANCELLED, running.getState());
+        engine.shutdown();
+    }
+
+    /**
+     * 运行结束后才到的取消不改变结果：作业仍报告成功
+     */
+    @Test
+    public void test_cancelAfterRunKeepsOutcome() throws Exception {
+        Scheduler scheduler = new Scheduler(csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv"));
+        scheduler.execute();
+        assertFalse(scheduler.cancel("too late"));
+        assertNull(scheduler.getFailure());
+
+        Engine engine = new Engine(8, 100_000);
+        JobHandle job = engine.submit(csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv"));
+        job.future().get(30, TimeUnit.SECONDS);
+        job.cancel();
+        assertEquals(JobHandle.State.SUCCEEDED, job.getState());
+        assertNull(job.getFailure());
+        engine.shutdown();
+    }
+
+    /**
+     * 作业结束后保留最终进度快照
+     */
+    @Test
+    public void test_finishedJobKeepsProgress() throws Exception {
+        Engine engine = new Engine(8, 100_000);
+        JobHandle job = engine.submit(csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv"));
+        job.future().get(30, TimeUnit.SECONDS);
+        List<StepProgress> steps = job.getProgress();
+        assertEquals(2, steps.size());
+        assertTrue(steps.get(0).getRowsOut() > 0);
+        assertEquals(steps.get(0).getRowsOut(), steps.get(1).getRowsIn());
+        engine.shutdown();
+    }
+
+    /**
+     * 引擎关闭后提交的作业以失败结束，不停留在 RUNNING，也不占用预算
+     */
+    @Test
+    public void test_submitAfterShutdownFails() throws Exception {
+        Engine engine = new Engine(8, 100_000);
+        engine.shutdown();
+        JobHandle first = engine.submit(csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv"));
+        JobHandle second = engine.submit(csvToConsole("src/test/java/org/gugu/etl/CsvInput/smallFile.csv"));
+        for (JobHandle job : Arrays.asList(first, second)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> job.future().get(5, TimeUnit.SECONDS));
+            assertEquals(JobHandle.State.FAILED, job.getState());
+            assertTrue(e.getCause().getMessage().contains("shut down"), e.getCause().getMessage());
+        }
+        assertEquals(0, engine.getQueuedCount());
+    }
+}
@@ -0,0 +1,129 @@
+package org.gugu.etl.ExcelOutput;
+
+import core.CancellationToken;
+import core.Scheduler;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class ExcelOutputTest {
+    private static Path csv(Path dir, int from, int to) throws Exception {
+        Path csv = dir.resolve("in-" + from + ".csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            for (int i = from; i < to; i++) w.write(i + ",n" + i + "\n");
+        }
+        return csv;
+    }
+
+    private static void run(Path csv, Path xlsx, boolean append) throws InterruptedException {
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(
+                new Step().withStepId(1).withDomain("input").withSubType("csv")
+                        .withConfig("filePath", csv.toString()),
+                new Step().withStepId(2).withDomain("output").withSubType("excelOutput")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filename", xlsx.toString())
+                        .withConfig("sheetname", "data")
+                        .withConfig("append", append)
+                        .withConfig("windowSize", 50)
+                        .withConfig("maxRowsPerSheet", 1000))));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+    }
+
+    /**
+     * 按工作表顺序读出：表名 -> 各行单元格文本
+     */
+    private static Map<String, List<List<String>>> read(Path xlsx) throws Exception {
+        Map<String, List<List<String>>> sheets = new LinkedHashMap<>();
+        DataFormatter fmt = new DataFormatter();
+        try (InputStream in = Files.newInputStream(xlsx); XSSFWorkbook wb = new XSSFWorkbook(in)) {
+            for (Sheet sheet : wb) {
+                List<List<String>> rows = new ArrayList<>();
+                for (org.apache.poi.ss.usermodel.Row row : sheet) {
+                    List<String> cells = new ArrayList<>();
+                    row.forEach(c -> cells.add(fmt.formatCellValue(c)));
+                    rows.add(cells);
+                }
+                sheets.put(sheet.getSheetName(), rows);
+            }
+        }
+        return sheets;
+    }
+
+    /**
+     * 行按通道顺序写入，超过单表上限后续写到新工作表，每个工作表带表头
+     */
+    @Test
+    public void test_orderedRowsRollOverSheets(@TempDir Path dir) throws Exception {
+        Path xlsx = dir.resolve("out.xlsx");
+        run(csv(dir, 0, 2500), xlsx, false);
+
+        Map<String, List<List<String>>> sheets = read(xlsx);
+        assertEquals(Arrays.asList("data", "data_2", "data_3"), new ArrayList<>(sheets.keySet()));
+        assertEquals(1000, sheets.get("data").size());
+        assertEquals(1000, sheets.get("data_2").size());
+        assertEquals(2500 - 999 * 2 + 1, sheets.get("data_3").size());
+        int next = 0;
+        for (List<List<String>> rows : sheets.values()) {
+            assertEquals(Arrays.asList("id", "name"), rows.get(0));
+            for (List<String> row : rows.subList(1, rows.size())) {
+                assertEquals(Arrays.asList(String.valueOf(next), "n" + next), row);
+                next++;
+            }
+        }
+        assertEquals(2500, next);
+    }
+
+    /**
+     * 追加模式接在已有工作表末尾续写，写满后同样滚动到新工作表
+     */
+    @Test
+    public void test_appendContinuesExistingSheet(@TempDir Path dir) throws Exception {
+        Path xlsx = dir.resolve("out.xlsx");
+        run(csv(dir, 0, 600), xlsx, false);
+        run(csv(dir, 600, 1200), xlsx, true);
+
+        Map<String, List<List<String>>> sheets = read(xlsx);
+        assertEquals(Arrays.asList("data", "data_2"), new ArrayList<>(sheets.keySet()));
+        List<List<String>> first = sheets.get("data");
+        List<List<String>> second = sheets.get("data_2");
+        assertEquals(1000, first.size());
+        assertEquals(Arrays.asList("id", "name"), first.get(0));
+        assertEquals(Arrays.asList("599", "n599"), first.get(600));
+        assertEquals(Arrays.asList("600", "n600"), first.get(601)); // 续写紧接原有最后一行，不重复表头
+        assertEquals(Arrays.asList("998", "n998"), first.get(999));
+        assertEquals(1 + 201, second.size());
+        assertEquals(Arrays.asList("id", "name"), second.get(0));
+        assertEquals(Arrays.asList("999", "n999"), second.get(1));
+        assertEquals(Arrays.asList("1199", "n1199"), second.get(201));
+    }
+
+    /**
+     * 上游没有数据行、也未配置 fields 时，工作表仍带上游表头
+     */
+    @Test
+    public void test_emptyInputKeepsUpstreamHeader(@TempDir Path dir) throws Exception {
+        Path xlsx = dir.resolve("out.xlsx");
+        run(csv(dir, 0, 0), xlsx, false);
+
+        Map<String, List<List<String>>> sheets = read(xlsx);
+        assertEquals(Collections.singletonList("data"), new ArrayList<>(sheets.keySet()));
+        assertEquals(Collections.singletonList(Arrays.asList("id", "name")), sheets.get("data"));
+    }
+}
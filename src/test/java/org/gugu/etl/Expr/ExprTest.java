@@ -0,0 +1,193 @@
+package org.gugu.etl.Expr;
+
+import core.Scheduler;
+import core.StepProgress;
+import core.expr.Evaluator;
+import core.expr.Expr;
+import core.flowdata.Row;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExprTest {
+    private static final List<String> FIELDS = Arrays.asList("name", "age", "price", "qty", "note", "城市");
+
+    private static Row row(Object... values) {
+        Row r = new Row();
+        r.addAll(Arrays.asList(values));
+        return r;
+    }
+
+    private static Object eval(String src, Row r) {
+        return Expr.parse(src).bind(FIELDS).eval(r);
+    }
+
+    @Test
+    public void test_arithmeticAndPrecedence() {
+        Row r = row("Alice", "30", "2.5", "4", null, "上海");
+        assertEquals(10.0, eval("price * qty", r));
+        assertEquals(14L, eval("2 + 3 * 4", r));
+        assertEquals(20L, eval("(2 + 3) * 4", r));
+        assertEquals(3.5, eval("7 / 2", r));
+        assertEquals(3L, eval("9 / 3", r));
+        assertEquals(1L, eval("age % 29", r));
+        assertEquals(-30L, eval("-age", r));
+        assertNull(eval("age / 0", r));
+    }
+
+    @Test
+    public void test_comparisonAndLogic() {
+        Row r = row("Alice", "30", "2.5", "10", null, "上海");
+        assertEquals(true, eval("age > 28 and name = 'Alice'", r));
+        assertEquals(true, eval("qty > 9", r));            // 数值比较，而非 "10" < "9"
+        assertEquals(false, eval("name != \"Alice\"", r));
+        assertEquals(true, eval("not (age < 18) && 城市 = '上海'", r));
+        assertEquals(true, eval("age >= 30 or note > 1", r));
+        assertNull(eval("note > 1", r));
+        assertNull(eval("age > 18 and note > 1", r));
+        assertEquals(false, eval("age < 18 and note > 1", r));
+    }
+
+    @Test
+    public void test_nullHandlingAndFunctions() {
+        Row r = row("  Bob ", "41", "3", "2", null, "北京");
+        assertEquals(true, eval("note is null", r));
+        assertEquals(false, eval("note is not null", r));
+        assertEquals("n/a", eval("coalesce(note, 'n/a')", r));
+        assertNull(eval("note + 1", r));
+        assertEquals("BOB", eval("upper(trim(name))", r));
+        assertEquals(3L, eval("length(trim(name))", r));
+        assertEquals("Bo", eval("substr(trim(name), 1, 2)", r));
+        assertEquals("Bob-41", eval("concat(trim(name), '-', age, note)", r));
+        assertEquals("senior", eval("if(age > 40, 'senior', 'junior')", r));
+        assertEquals(true, eval("contains(name, 'ob') and startswith(trim(name), 'B')", r));
+        assertEquals(3L, eval("round(2.5)", r));
+        assertEquals(2.57, eval("round(2.567, 2)", r));
+        assertEquals("B_b", eval("replace(trim(name), 'o', '_')", r));
+    }
+
+    @Test
+    public void test_errorsReportPosition() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Expr.parse("age > "));
+        assertTrue(e.getMessage().contains("unexpected end"), e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> Expr.parse("foo(1)"));
+        assertTrue(e.getMessage().contains("unknown function 'foo'"), e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> Expr.parse("substr(name)"));
+        assertTrue(e.getMessage().contains("expects 2..3 arguments"), e.getMessage());
+        e = assertThrows(IllegalArgumentException.class, () -> Expr.parse("missing + 1").bind(FIELDS));
+        assertTrue(e.getMessage().contains("unknown field 'missing'"), e.getMessage());
+        assertEquals(new LinkedHashSet<>(Arrays.asList("price", "qty", "order id")),
+                Expr.parse("price * qty + `order id`").getFields());
+    }
+
+    /**
+     * 单行求值耗时：编译后的求值器与手写 Java 代码对比
+     */
+    @Test
+    public void test_evaluationCost() {
+        Evaluator e = Expr.parse("age > 28 and upper(name) != 'BOB' and price * qty > 5").bind(FIELDS);
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) rows.add(row("name" + i, String.valueOf(i % 60), "1.5", String.valueOf(i % 7), null, "x"));
+
+        long hits = 0;
+        long t0 = System.nanoTime();
+        for (Row r : rows) if (Expr.test(e, r)) hits++;
+        long t1 = System.nanoTime();
+        long manual = 0;
+        for (Row r : rows) {
+            if (Integer.parseInt((String) r.get(1)) > 28 && !((String) r.get(0)).toUpperCase().equals("BOB")
+                    && Double.parseDouble((String) r.get(2)) * Long.parseLong((String) r.get(3)) > 5) manual++;
+        }
+        long t2 = System.nanoTime();
+        assertEquals(manual, hits);
+        if (Boolean.getBoolean("etl.bench")) {
+            System.out.printf("Expr evaluation: %.0f ns/row, hand-written: %.0f ns/row%n",
+                    (double) (t1 - t0) / rows.size(), (double) (t2 - t1) / rows.size());
+        }
+    }
+
+    /**
+     * 流程：过滤 + 派生列，写入 SQL 文件核对结果
+     */
+    @Test
+    public void test_exprStepInPipeline(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("orders.csv");
+        Files.write(csv, ("id,name,price,qty\n" +
+                "1,apple,2.5,4\n" +
+                "2,pear,1,0\n" +
+                "3,melon,10,3\n").getBytes(StandardCharsets.UTF_8));
+        Path sql = dir.resolve("out.sql");
+
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("total", "price * qty");
+        columns.put("name", "upper(name)");
+        columns.put("big", "total >= 20");
+
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step expr = new Step()
+                .withStepId(2)
+                .withDomain("process")
+                .withSubType("expr")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filter", "qty > 0")
+                .withConfig("columns", columns);
+        Step output = new Step()
+                .withStepId(3)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("2"))
+                .withConfig("filename", sql.toString())
+                .withConfig("table_name", "orders");
+
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, expr, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure());
+
+        StepProgress exprStep = scheduler.getProgress().get(1);
+        assertEquals(3, exprStep.getRowsIn());
+        assertEquals(2, exprStep.getRowsOut());
+
+        String text = new String(Files.readAllBytes(sql), StandardCharsets.UTF_8);
+        assertTrue(text.contains("'1', 'APPLE', '2.5', '4', '10.0', 'false'"), text);
+        assertTrue(text.contains("'3', 'MELON', '10', '3', '30', 'true'"), text);
+        assertFalse(text.contains("PEAR"), text);
+    }
+
+    @Test
+    public void test_unknownFieldFailsPipeline(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("a.csv");
+        Files.write(csv, "id,name\n1,a\n".getBytes(StandardCharsets.UTF_8));
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step expr = new Step()
+                .withStepId(2)
+                .withDomain("process")
+                .withSubType("expr")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filter", "age > 1");
+        Step output = new Step()
+                .withStepId(3)
+                .withDomain("output")
+                .withSubType("console")
+                .withParentStepId(Collections.singletonList("2"));
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, expr, output)));
+        scheduler.execute();
+        assertNotNull(scheduler.getFailure());
+        assertTrue(core.CancellationToken.describe(scheduler.getFailure()).contains("unknown field 'age'"));
+    }
+}
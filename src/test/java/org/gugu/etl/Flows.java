@@ -0,0 +1,73 @@
+package org.gugu.etl;
+
+import core.Scheduler;
+import core.StepProgress;
+import runtask.Step;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 测试公用的流程片段：常用步骤的构造、按步骤 ID 取进度计数、读取 sqlfile 输出中的首列 ID
+ */
+public final class Flows {
+    private static final Pattern FIRST_VALUE = Pattern.compile("VALUES \\('(\\d+)'");
+
+    private Flows() {
+    }
+
+    /**
+     * csv 输入步骤
+     */
+    public static Step csv(int id, Path file) {
+        return new Step()
+                .withStepId(id)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", file.toString());
+    }
+
+    /**
+     * sqlfile 输出步骤，表名 t
+     */
+    public static Step sqlOut(int id, Path file, String... parents) {
+        return new Step()
+                .withStepId(id)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Arrays.asList(parents))
+                .withConfig("filename", file.toString())
+                .withConfig("table_name", "t");
+    }
+
+    public static long rowsIn(Scheduler scheduler, int stepId) {
+        return progress(scheduler, stepId).getRowsIn();
+    }
+
+    public static long rowsOut(Scheduler scheduler, int stepId) {
+        return progress(scheduler, stepId).getRowsOut();
+    }
+
+    private static StepProgress progress(Scheduler scheduler, int stepId) {
+        for (StepProgress p : scheduler.getProgress()) {
+            if (p.getStepId() == stepId) return p;
+        }
+        throw new IllegalArgumentException("no step " + stepId);
+    }
+
+    /**
+     * sqlfile 输出中每条 INSERT 的首个值（按出现顺序），要求首列为整数
+     */
+    public static List<Long> ids(Path sql) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        Matcher m = FIRST_VALUE.matcher(new String(Files.readAllBytes(sql), StandardCharsets.UTF_8));
+        while (m.find()) ids.add(Long.parseLong(m.group(1)));
+        return ids;
+    }
+}
@@ -0,0 +1,81 @@
+package org.gugu.etl.Job;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.gugu.etl.StartUp;
+import org.gugu.etl.controller.JobController;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobControllerTest {
+
+    /**
+     * 提交流程文件后轮询状态，直到作业结束，并核对各步骤的行数统计
+     */
+    @Test
+    public void test_submitAndPoll(@TempDir Path dir) throws InterruptedException {
+        StartUp.dataDir = dir.toString();
+        Step input = new Step()
+                .withStepId(1)
+                .withDes("读取csv文件")
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", "src/test/java/org/gugu/etl/CsvInput/smallFile.csv");
+        Step output = new Step()
+                .withStepId(2)
+                .withDes("输出到控制台")
+                .withDomain("output")
+                .withSubType("console")
+                .withParentStepId(Collections.singletonList("1"));
+        FileUtil.writeString(new StepList(Arrays.asList(input, output)).toString(),
+                StartUp.getPathString("flow.json"), StandardCharsets.UTF_8);
+
+        JobController controller = new JobController();
+        JSONObject submitted = JSONUtil.parseObj(controller.submit("flow.json", null));
+        assertEquals("200", submitted.getStr("status"));
+        String jobId = submitted.getStr("jobId");
+
+        JSONObject job = null;
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            job = JSONUtil.parseObj(controller.status(jobId)).getJSONObject("job");
+            if ("SUCCEEDED".equals(job.getStr("state")) || "FAILED".equals(job.getStr("state"))) break;
+            Thread.sleep(100);
+        }
+        assertEquals("SUCCEEDED", job.getStr("state"));
+        JSONArray steps = job.getJSONArray("steps");
+        long produced = steps.getJSONObject(0).getLong("rowsOut");
+        assertTrue(produced > 0);
+        assertEquals(produced, steps.getJSONObject(1).getLong("rowsIn"));
+
+        JSONObject cancel = JSONUtil.parseObj(controller.cancel(jobId));
+        assertEquals("400", cancel.getStr("status"));
+    }
+
+    @Test
+    public void test_rejectsMissingAndInvalidFlows(@TempDir Path dir) {
+        StartUp.dataDir = dir.toString();
+        JobController controller = new JobController();
+        assertEquals("400", JSONUtil.parseObj(controller.submit("missing.json", null)).getStr("status"));
+
+        Step orphan = new Step().withStepId(1).withDomain("output").withSubType("console");
+        FileUtil.writeString(new StepList(Collections.singletonList(orphan)).toString(),
+                StartUp.getPathString("bad.json"), StandardCharsets.UTF_8);
+        JSONObject result = JSONUtil.parseObj(controller.submit("bad.json", null));
+        assertEquals("400", result.getStr("status"));
+        assertTrue(result.getStr("message").contains("Invalid flow"));
+
+        assertEquals("404", JSONUtil.parseObj(controller.status("no-such-job")).getStr("status"));
+    }
+}
@@ -0,0 +1,153 @@
+package org.gugu.etl.Join;
+
+import core.CancellationToken;
+import core.Scheduler;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.gugu.etl.Flows.csv;
+import static org.gugu.etl.Flows.rowsOut;
+import static org.gugu.etl.Flows.sqlOut;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class HashJoinTest {
+    private static Step join(int id, String type, String... parents) {
+        return new Step()
+                .withStepId(id)
+                .withDes("订单关联客户")
+                .withDomain("process")
+                .withSubType("join")
+                .withParentStepId(Arrays.asList(parents))
+                .withConfig("left", parents[0])
+                .withConfig("right", parents[1])
+                .withConfig("leftKey", "customer_id")
+                .withConfig("rightKey", "id")
+                .withConfig("joinType", type);
+    }
+
+    private static Path write(Path file, String content) throws Exception {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Scheduler run(Path dir, String type) throws Exception {
+        Path orders = write(dir.resolve("orders.csv"), "order_id,customer_id,amount\n" +
+                "1,10,5\n" +
+                "2,20,7\n" +
+                "3,10,9\n" +
+                "4,30,1\n" +
+                "5,,2\n");
+        Path customers = write(dir.resolve("customers.csv"), "id,name\n" +
+                "10,alice\n" +
+                "20,bob\n" +
+                "20,bobby\n" +
+                "40,carol\n");
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(
+                csv(1, orders), csv(2, customers), join(3, type, "1", "2"), sqlOut(4, dir.resolve(type + ".sql"), "3"))));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        return scheduler;
+    }
+
+    @Test
+    public void test_innerJoin(@TempDir Path dir) throws Exception {
+        Scheduler scheduler = run(dir, "inner");
+        assertEquals(4, rowsOut(scheduler, 3)); // 10 两单各 1 条，20 一单匹配 2 条
+        String sql = new String(Files.readAllBytes(dir.resolve("inner.sql")), StandardCharsets.UTF_8);
+        assertTrue(sql.contains("(`order_id`, `customer_id`, `amount`, `name`)"), sql);
+        assertTrue(sql.contains("'2', '20', '7', 'bobby'"), sql);
+        assertFalse(sql.contains("'4', '30'"), sql);
+    }
+
+    @Test
+    public void test_leftAndAntiJoin(@TempDir Path dir) throws Exception {
+        assertEquals(6, rowsOut(run(dir, "left"), 3)); // 4 条匹配 + 30 与空键各 1 条
+        String sql = new String(Files.readAllBytes(dir.resolve("left.sql")), StandardCharsets.UTF_8);
+        assertTrue(sql.contains("'4', '30', '1', NULL"), sql);
+
+        assertEquals(2, rowsOut(run(dir, "anti"), 3));
+    }
+
+    /**
+     * 构建侧超过内存上限时分区溢写，结果与内存连接一致，临时文件被清理
+     */
+    @Test
+    public void test_spillToDisk(@TempDir Path dir) throws Exception {
+        Path customers = dir.resolve("customers.csv");
+        Path orders = dir.resolve("orders.csv");
+        try (BufferedWriter c = Files.newBufferedWriter(customers); BufferedWriter o = Files.newBufferedWriter(orders)) {
+            c.write("id,name\n");
+            o.write("order_id,customer_id\n");
+            for (int i = 0; i < 5_000; i++) c.write(i + ",c" + i + "\n");
+            for (int i = 0; i < 20_000; i++) o.write(i + "," + (i % 6_000) + "\n");
+        }
+        Path spill = Files.createDirectories(dir.resolve("spill"));
+        Step join = join(3, "inner", "1", "2")
+                .withConfig("memoryRows", 500)
+                .withConfig("spillPartitions", 8)
+                .withConfig("spillDir", spill.toString());
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(
+                csv(1, orders), csv(2, customers), join, sqlOut(4, dir.resolve("out.sql"), "3"))));
+        scheduler.execute();
+
+        assertNull(scheduler.getFailure());
+        long expected = 0;
+        for (int i = 0; i < 20_000; i++) if (i % 6_000 < 5_000) expected++;
+        assertEquals(expected, rowsOut(scheduler, 3));
+        File[] left = spill.toFile().listFiles();
+        assertNotNull(left);
+        assertEquals(0, left.length, Arrays.toString(left));
+    }
+
+    /**
+     * 两侧来自同一上游：构建完成前探测侧的行被缓存，小通道容量下也不会死锁
+     */
+    @Test
+    public void test_sameSourceNoDeadlock(@TempDir Path dir) throws Exception {
+        Path data = dir.resolve("data.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(data)) {
+            w.write("customer_id,id\n");
+            for (int i = 0; i < 2_000; i++) w.write(i + "," + i + "\n");
+        }
+        List<Step> steps = Arrays.asList(
+                csv(1, data),
+                new Step().withStepId(2).withDomain("process").withSubType("expr")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filter", "true").withConfig("channelCapacity", 4),
+                new Step().withStepId(3).withDomain("process").withSubType("expr")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filter", "id % 2 = 0").withConfig("channelCapacity", 4),
+                join(4, "inner", "2", "3").withConfig("channelCapacity", 4),
+                sqlOut(5, dir.resolve("out.sql"), "4"));
+        long start = System.currentTimeMillis();
+        Scheduler scheduler = new Scheduler(new StepList(steps));
+        scheduler.execute();
+        assertNull(scheduler.getFailure());
+        assertEquals(1_000, rowsOut(scheduler, 4));
+        assertTrue(System.currentTimeMillis() - start < 30_000);
+    }
+
+    @Test
+    public void test_badKeyFailsPipeline(@TempDir Path dir) throws Exception {
+        Path a = write(dir.resolve("a.csv"), "customer_id\n1\n");
+        Path b = write(dir.resolve("b.csv"), "other\n1\n");
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(
+                csv(1, a), csv(2, b), join(3, "inner", "1", "2"), sqlOut(4, dir.resolve("x.sql"), "3"))));
+        scheduler.execute();
+        assertNotNull(scheduler.getFailure());
+        assertTrue(CancellationToken.describe(scheduler.getFailure()).contains("join key 'id' not found"));
+    }
+}
@@ -0,0 +1,130 @@
+package org.gugu.etl.Limit;
+
+import core.CancellationToken;
+import core.Channel;
+import core.Scheduler;
+import core.flowdata.Row;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.gugu.etl.Flows.ids;
+import static org.gugu.etl.Flows.rowsOut;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class LimitTest {
+    private static final int TOTAL = 300_000;
+
+    private static Path bigCsv(Path dir) throws Exception {
+        Path csv = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            for (int i = 0; i < TOTAL; i++) w.write(i + ",n" + i + "\n");
+        }
+        return csv;
+    }
+
+    /**
+     * 输入 -> expr -> 抽取步骤 -> sqlfile
+     */
+    private static Scheduler run(Path csv, Path out, String type, Map<String, Object> cfg) throws InterruptedException {
+        Step take = new Step()
+                .withStepId(3)
+                .withDomain("process")
+                .withSubType(type)
+                .withParentStepId(Collections.singletonList("2"));
+        for (Map.Entry<String, Object> e : cfg.entrySet()) take.withConfig(e.getKey(), e.getValue());
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(
+                new Step().withStepId(1).withDomain("input").withSubType("csv")
+                        .withConfig("filePath", csv.toString()),
+                new Step().withStepId(2).withDomain("process").withSubType("expr")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filter", "id >= 0"),
+                take,
+                new Step().withStepId(4).withDomain("output").withSubType("sqlfile")
+                        .withParentStepId(Collections.singletonList("3"))
+                        .withConfig("filename", out.toString())
+                        .withConfig("table_name", "t"))));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        return scheduler;
+    }
+
+    /**
+     * 取满后经中间步骤通知输入停止读取
+     */
+    @Test
+    public void test_limitStopsUpstreamEarly(@TempDir Path dir) throws Exception {
+        Path csv = bigCsv(dir);
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("limit", 10);
+        cfg.put("offset", 5);
+        Scheduler scheduler = run(csv, dir.resolve("out.sql"), "limit", cfg);
+        assertEquals(Arrays.asList(5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L), ids(dir.resolve("out.sql")));
+        assertTrue(rowsOut(scheduler, 1) < TOTAL / 2, "input read " + rowsOut(scheduler, 1) + " rows");
+    }
+
+    @Test
+    public void test_sampleIsReproducibleAndOrdered(@TempDir Path dir) throws Exception {
+        Path csv = bigCsv(dir);
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("size", 50);
+        cfg.put("seed", 7);
+        run(csv, dir.resolve("a.sql"), "sample", cfg);
+        run(csv, dir.resolve("b.sql"), "sample", cfg);
+        List<Long> a = ids(dir.resolve("a.sql"));
+        assertEquals(50, a.size());
+        assertEquals(a, ids(dir.resolve("b.sql")));
+        for (int i = 1; i < a.size(); i++) assertTrue(a.get(i - 1) < a.get(i));
+        assertTrue(a.get(a.size() - 1) > TOTAL / 2, "sample should cover the whole input: " + a);
+
+        cfg.put("maxRows", 1000);
+        Scheduler scheduler = run(csv, dir.resolve("c.sql"), "sample", cfg);
+        List<Long> c = ids(dir.resolve("c.sql"));
+        assertEquals(50, c.size());
+        for (long id : c) assertTrue(id < 1000);
+        assertTrue(rowsOut(scheduler, 1) < TOTAL / 2, "input read " + rowsOut(scheduler, 1) + " rows");
+    }
+
+    /**
+     * 停止后写入被丢弃，阻塞在满队列上的生产者随即返回
+     */
+    @Test
+    public void test_requestStopReleasesBlockedProducer() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "1", 1);
+            List<Runnable> fired = new CopyOnWriteArrayList<>();
+            ch.onStop(() -> fired.add(null));
+            Row row = new Row();
+            row.add("x");
+            ch.publish(row);
+            Future<?> blocked = pool.submit(() -> ch.publish(row));
+            Thread.sleep(100);
+            assertFalse(blocked.isDone());
+
+            ch.requestStop();
+            blocked.get(5, TimeUnit.SECONDS);
+            assertTrue(ch.isClosed());
+            assertTrue(ch.isEmpty());
+            assertTrue(Channel.allStopped(Collections.singletonList(ch)));
+            assertEquals(1, fired.size());
+            ch.publish(row);
+            assertEquals(1, ch.getPublished());
+            ch.onStop(() -> fired.add(null)); // 已停止时注册立即执行
+            assertEquals(2, fired.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
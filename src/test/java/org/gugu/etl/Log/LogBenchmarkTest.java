@@ -0,0 +1,108 @@
+package org.gugu.etl.Log;
+
+import core.flowdata.Row;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import tool.Log;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 日志开销基准，默认不运行：
+ *   mvn test -Dtest=LogBenchmarkTest -Detl.bench=true [-Detl.bench.rows=20000000]
+ * 级别 0 时对比不打日志、旧写法（先拼好字符串再调用）与 Supplier 写法的每行开销；
+ * 级别 3 时测多线程写入异步后端的吞吐（输出丢弃）
+ */
+@EnabledIfSystemProperty(named = "etl.bench", matches = "true")
+@ExtendWith(QuietLog.class)
+public class LogBenchmarkTest {
+    private static final long ROWS = Long.getLong("etl.bench.rows", 20_000_000L);
+
+    private PrintStream savedOut;
+
+    @BeforeEach
+    public void quiet() {
+        savedOut = System.out;
+    }
+
+    @AfterEach
+    public void restore() {
+        Log.flush();
+        System.setOut(savedOut);
+    }
+
+    private static Row row(long i) {
+        Row row = new Row();
+        row.add(i);
+        row.add("user" + (i & 1023));
+        return row;
+    }
+
+    /**
+     * mode 0 不打日志，1 先拼字符串，2 Supplier，3 先判断级别；返回每行纳秒数
+     */
+    private static double perRow(int mode, Row[] rows) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < ROWS; i++) {
+            Row row = rows[(int) (i & (rows.length - 1))];
+            sink += row.size();
+            if (mode == 1) Log.data("Bench", row.toString());
+            else if (mode == 2) Log.data("Bench", row::toString);
+            else if (mode == 3 && Log.dataEnabled()) Log.data("Bench", row.toString());
+        }
+        double ns = (System.nanoTime() - start) / (double) ROWS;
+        assertTrue(sink > 0);
+        return ns;
+    }
+
+    @Test
+    public void benchDisabledOverhead() {
+        Log.LOG_LEVEL = 0;
+        Row[] rows = new Row[1024];
+        for (int i = 0; i < rows.length; i++) rows[i] = row(i);
+        String[] names = {"no log", "eager string", "supplier", "guarded"};
+        double[] best = new double[names.length];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for (int round = 0; round < 3; round++) { // 第一轮兼作预热，取各模式最好的一轮
+            for (int mode = 0; mode < names.length; mode++) best[mode] = Math.min(best[mode], perRow(mode, rows));
+        }
+        for (int mode = 0; mode < names.length; mode++) {
+            System.out.printf("level 0 %-12s %.2f ns/row%n", names[mode], best[mode]);
+        }
+        assertTrue(best[2] - best[0] < 5, "supplier overhead " + (best[2] - best[0]) + " ns/row");
+    }
+
+    @Test
+    public void benchAsyncThroughput() throws Exception {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Log.LOG_LEVEL = 3;
+        long perThread = Math.min(ROWS / 4, 1_000_000);
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread w = new Thread(() -> {
+                for (long i = 0; i < perThread; i++) Log.info("Bench", "line " + i);
+            });
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+        long callers = System.nanoTime() - start;
+        Log.flush();
+        long total = System.nanoTime() - start;
+        System.setOut(savedOut);
+        System.out.printf("level 3 async info lines=%d callers done=%dms written=%dms lines/s=%d%n",
+                perThread * 4, callers / 1_000_000, total / 1_000_000, (long) (perThread * 4 / (total / 1e9)));
+    }
+}
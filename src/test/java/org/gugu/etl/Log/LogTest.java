@@ -0,0 +1,97 @@
+package org.gugu.etl.Log;
+
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import tool.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class LogTest {
+    private PrintStream savedOut;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    @BeforeEach
+    public void capture() {
+        savedOut = System.out;
+        Log.flush(); // 之前测试的异步日志不要写进本次捕获
+        System.setOut(new PrintStream(captured, true));
+    }
+
+    @AfterEach
+    public void restore() {
+        Log.flush();
+        System.setOut(savedOut);
+    }
+
+    private String output() {
+        Log.flush();
+        return new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 多线程并发写日志：flush 后全部写出，格式不变，每个线程内的先后顺序保持
+     */
+    @Test
+    public void test_concurrentLinesAreCompleteAndOrdered() throws Exception {
+        Log.LOG_LEVEL = 2;
+        int threads = 4, lines = 5_000; // 总数超过环形缓冲区，覆盖缓冲区满时等待的路径
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread w = new Thread(() -> {
+                for (int i = 0; i < lines; i++) Log.info("LogTest", "t" + id + " " + i);
+            }, "worker-" + t);
+            workers.add(w);
+            w.start();
+        }
+        for (Thread w : workers) w.join();
+
+        Pattern p = Pattern.compile("\u001B\\[34m\\[\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}] \\[INFO ] "
+                + "\\[LogTest] \\[worker-(\\d)] t\\1 (\\d+)\u001B\\[0m");
+        int[] next = new int[threads];
+        int total = 0;
+        for (String line : output().split("\n")) {
+            Matcher m = p.matcher(line);
+            if (!m.matches()) continue;
+            int t = Integer.parseInt(m.group(1));
+            assertEquals(next[t]++, Integer.parseInt(m.group(2)), line);
+            total++;
+        }
+        assertEquals(threads * lines, total);
+    }
+
+    /**
+     * 级别关闭时 Supplier 不被调用，也没有任何输出
+     */
+    @Test
+    public void test_disabledLevelsSkipSuppliers() {
+        AtomicInteger calls = new AtomicInteger();
+        Log.LOG_LEVEL = 0;
+        Log.data("LogTest", () -> "row " + calls.incrementAndGet());
+        Log.info("LogTest", () -> "info " + calls.incrementAndGet());
+        Log.debug("LogTest", () -> "debug " + calls.incrementAndGet());
+        assertEquals(0, calls.get());
+        assertEquals("", output());
+
+        Log.LOG_LEVEL = 1;
+        Log.data("LogTest", () -> "[a, b]");
+        Log.info("LogTest", () -> "info " + calls.incrementAndGet());
+        assertEquals(0, calls.get());
+        String out = output();
+        assertTrue(out.contains("[DATA ]\u001B[0m [LogTest] [" + Thread.currentThread().getName() + "]\n"), out);
+        assertTrue(out.contains("\t\u001B[90ma, b\u001B[0m\n"), out);
+        assertFalse(out.contains("info"), out);
+    }
+}
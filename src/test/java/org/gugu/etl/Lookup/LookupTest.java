@@ -0,0 +1,203 @@
+package org.gugu.etl.Lookup;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.sun.net.httpserver.HttpServer;
+import core.CancellationToken;
+import core.Scheduler;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+import tool.BoundedCache;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.gugu.etl.Flows.rowsOut;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class LookupTest {
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger maxKeys = new AtomicInteger();
+    private final AtomicInteger minKeys = new AtomicInteger(Integer.MAX_VALUE);
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // 维表接口：id 0..49 存在，按请求中的 keys 返回对应行
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/dim", ex -> {
+            requests.incrementAndGet();
+            byte[] in;
+            try (InputStream is = ex.getRequestBody()) {
+                in = readAll(is);
+            }
+            JSONArray keys = JSONUtil.parseObj(new String(in, StandardCharsets.UTF_8)).getJSONArray("keys");
+            maxKeys.accumulateAndGet(keys.size(), Math::max);
+            minKeys.accumulateAndGet(keys.size(), Math::min);
+            JSONArray rows = new JSONArray();
+            for (Object k : keys) {
+                int id = Integer.parseInt(k.toString());
+                if (id < 50) rows.add(new JSONObject().set("id", id).set("name", "n" + id));
+            }
+            JSONObject data = new JSONObject().set("columns", Arrays.asList("id", "name")).set("rows", rows);
+            byte[] out = new JSONObject().set("data", data).toString().getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, out.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(out);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) > 0) bos.write(buf, 0, n);
+        return bos.toByteArray();
+    }
+
+    private static StepList flow(Path csv, Step lookup, Path out) {
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(3)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("2"))
+                .withConfig("filename", out.toString())
+                .withConfig("table_name", "t");
+        return new StepList(Arrays.asList(input, lookup.withStepId(2).withDomain("process").withSubType("lookup")
+                .withParentStepId(Collections.singletonList("1")), output));
+    }
+
+    /**
+     * 按需查找：未命中的键批量请求，重复键与查不到的键都命中缓存，每个键只请求一次
+     */
+    @Test
+    public void test_lazyHttpBatchesAndCaches(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("facts.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("fact_id,customer_id\n");
+            for (int i = 0; i < 3_000; i++) w.write(i + "," + (i % 60) + "\n"); // 50..59 查不到
+        }
+        Step lookup = new Step()
+                .withConfig("url", "http://127.0.0.1:" + server.getAddress().getPort() + "/dim")
+                .withConfig("key", "customer_id")
+                .withConfig("lookupKey", "id")
+                .withConfig("batchSize", 16);
+        Scheduler scheduler = new Scheduler(flow(csv, lookup, dir.resolve("out.sql")));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+
+        assertEquals(3_000, rowsOut(scheduler, 2));
+        // 60 个键按 16 个一批；未配置 fields 时维表字段取自第一批响应，不额外发空键请求
+        assertEquals(4, requests.get());
+        assertTrue(maxKeys.get() <= 16);
+        assertTrue(minKeys.get() > 0);
+        String sql = new String(Files.readAllBytes(dir.resolve("out.sql")), StandardCharsets.UTF_8);
+        assertTrue(sql.contains("(`fact_id`, `customer_id`, `name`)"), sql);
+        assertTrue(sql.contains("'2999', '59', NULL"), sql);
+        assertTrue(sql.contains("'2989', '49', 'n49'"), sql);
+        // 输出保持输入顺序
+        assertTrue(sql.indexOf("'1', '1', 'n1'") < sql.indexOf("'2', '2', 'n2'"), sql);
+    }
+
+    @Test
+    public void test_eagerFileLookupDropsMisses(@TempDir Path dir) throws Exception {
+        Path csv = Files.write(dir.resolve("facts.csv"),
+                "fact_id,city\n1,sh\n2,bj\n3,xx\n4,sh\n".getBytes(StandardCharsets.UTF_8));
+        Path dim = Files.write(dir.resolve("city.csv"),
+                "city,city_name,region\nsh,Shanghai,east\nbj,Beijing,north\n".getBytes(StandardCharsets.UTF_8));
+        Step lookup = new Step()
+                .withConfig("filePath", dim.toString())
+                .withConfig("key", "city")
+                .withConfig("fields", "city_name")
+                .withConfig("onMiss", "drop");
+        Scheduler scheduler = new Scheduler(flow(csv, lookup, dir.resolve("out.sql")));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        assertEquals(3, rowsOut(scheduler, 2));
+        String sql = new String(Files.readAllBytes(dir.resolve("out.sql")), StandardCharsets.UTF_8);
+        assertTrue(sql.contains("(`fact_id`, `city`, `city_name`)"), sql);
+        assertTrue(sql.contains("'4', 'sh', 'Shanghai'"), sql);
+        assertFalse(sql.contains("'3', 'xx'"), sql);
+    }
+
+    @Test
+    public void test_lruEvictsLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, BoundedCache.Policy.LRU);
+        cache.put("a", 1, 0);
+        cache.put("b", 2, 0);
+        assertEquals(1, cache.get("a"));
+        cache.put("c", 3, 0); // 淘汰 b
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void test_lfuEvictsLeastFrequentlyUsed() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, BoundedCache.Policy.LFU);
+        cache.put("a", 1, 0);
+        cache.put("b", 2, 0);
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+        cache.put("c", 3, 0); // b 频次更低
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.get("a"));
+        cache.put("d", 4, 0); // c 只有 1 次
+        assertNull(cache.get("c"));
+        assertEquals(4, cache.get("d"));
+    }
+
+    @Test
+    public void test_ttlExpiresEntries() {
+        AtomicLong now = new AtomicLong(1_000);
+        BoundedCache<String, Integer> cache = new BoundedCache<>(4, BoundedCache.Policy.LFU, now::get);
+        cache.put("a", 1, 100);
+        cache.put("b", 2, 0);
+        now.addAndGet(99);
+        assertEquals(1, cache.get("a"));
+        now.addAndGet(1);
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.get("b"));
+        assertEquals(1, cache.getExpirations());
+        // 过期移除清空最低频次桶后仍能正常淘汰
+        cache.put("c", 3, 0);
+        cache.put("d", 4, 0);
+        cache.put("e", 5, 0);
+        cache.put("f", 6, 0);
+        assertEquals(4, cache.size());
+    }
+}
@@ -0,0 +1,112 @@
+package org.gugu.etl.Planner;
+
+import core.Engine;
+import core.plan.ExecutionPlan;
+import core.plan.Planner;
+import org.junit.jupiter.api.Test;
+import runtask.Step;
+import runtask.StepList;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlannerTest {
+
+    private static Step step(int id, String domain, String... parents) {
+        return new Step()
+                .withStepId(id)
+                .withDes("step " + id)
+                .withDomain(domain)
+                .withSubType("console")
+                .withParentStepId(Arrays.asList(parents));
+    }
+
+    /**
+     * 声明顺序打乱时仍按拓扑序输出，边列表带通道容量
+     */
+    @Test
+    public void test_topologicalOrder() {
+        StepList list = new StepList(Arrays.asList(
+                step(3, "output", "2"),
+                step(2, "process", "1"),
+                step(1, "input"),
+                step(4, "output", "2")));
+        ExecutionPlan plan = new Planner(null).plan(list);
+
+        List<Integer> order = plan.getOrder().stream().map(Step::getStepId).collect(Collectors.toList());
+        assertTrue(order.indexOf(1) < order.indexOf(2));
+        assertTrue(order.indexOf(2) < order.indexOf(3));
+        assertTrue(order.indexOf(2) < order.indexOf(4));
+        assertEquals(3, plan.getEdges().size());
+        assertEquals(Arrays.asList(3, 4), plan.getChildren(2));
+        assertEquals(7, plan.getThreadDemand());
+    }
+
+    @Test
+    public void test_channelCapacityFromConfig() {
+        Step out = step(2, "output", "1").withConfig("channelCapacity", 16);
+        ExecutionPlan plan = new Planner(null).plan(new StepList(Arrays.asList(step(1, "input"), out)));
+        assertEquals(16, plan.getEdges().get(0).getCapacity());
+    }
+
+    @Test
+    public void test_cycleFailsFast() {
+        StepList list = new StepList(Arrays.asList(
+                step(1, "input"),
+                step(2, "process", "1", "3"),
+                step(3, "process", "2"),
+                step(4, "output", "3")));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new Planner(null).plan(list));
+        assertTrue(e.getMessage().contains("cycle"));
+    }
+
+    @Test
+    public void test_missingParentFailsFast() {
+        StepList list = new StepList(Arrays.asList(
+                step(1, "input"),
+                step(2, "output", "9")));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new Planner(null).plan(list));
+        assertTrue(e.getMessage().contains("missing parent 9"));
+        assertTrue(e.getMessage().contains("input step 1 has no downstream"));
+    }
+
+    @Test
+    public void test_duplicateAndDomainErrors() {
+        StepList list = new StepList(Arrays.asList(
+                step(1, "input"),
+                step(1, "output", "1"),
+                step(2, "sink", "1")));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new Planner(null).plan(list));
+        assertTrue(e.getMessage().contains("duplicate stepId 1"));
+        assertTrue(e.getMessage().contains("unknown domain 'sink'"));
+    }
+
+    @Test
+    public void test_emptyFlow() {
+        assertThrows(IllegalArgumentException.class, () -> new Planner(null).plan(new StepList(Collections.emptyList())));
+    }
+
+    /**
+     * 输出插件自建的线程（分片写线程、并发发送线程）计入线程需求
+     */
+    @Test
+    public void test_pluginThreadsCounted() {
+        Step sql = new Step().withStepId(2).withDomain("output").withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"));
+        Step table = new Step().withStepId(3).withDomain("output").withSubType("table")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("maxInFlight", 3);
+        Step input = new Step().withStepId(1).withDomain("input").withSubType("csv");
+        Planner planner = new Planner(Engine.factory());
+
+        int base = planner.plan(new StepList(Arrays.asList(input, sql))).getThreadDemand();
+        assertEquals(3, base);
+        sql.withConfig("shards", 4);
+        assertEquals(base + 4, planner.plan(new StepList(Arrays.asList(input, sql))).getThreadDemand());
+        assertEquals(base + 4 + 2 + 3 + 1, planner.plan(new StepList(Arrays.asList(input, sql, table))).getThreadDemand());
+    }
+}
@@ -0,0 +1,126 @@
+package org.gugu.etl.PluginIndex;
+
+import anno.processor.PluginIndexProcessor;
+import core.Factory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PluginIndexTest {
+
+    /**
+     * 索引注册结果与类路径扫描一致，并对比两种方式的启动耗时
+     */
+    @Test
+    public void test_indexMatchesScan() {
+        long t0 = System.nanoTime();
+        Factory scanned = new Factory(true);
+        long t1 = System.nanoTime();
+        Factory indexed = new Factory(false);
+        long t2 = System.nanoTime();
+
+        assertFalse(scanned.isIndexed());
+        assertTrue(indexed.isIndexed());
+        for (String domain : Arrays.asList("input", "process", "output")) {
+            assertEquals(scanned.typesOf(domain), indexed.typesOf(domain), domain);
+            assertFalse(indexed.typesOf(domain).isEmpty(), domain);
+        }
+        // 同名 type 在不同领域各自注册
+        assertTrue(indexed.has("input", "table"));
+        assertTrue(indexed.has("output", "table"));
+        if (Boolean.getBoolean("etl.bench")) System.out.printf("Plugin registration: scan %.1f ms, index %.1f ms%n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+    }
+
+    /**
+     * 未实现要求接口、缺少无参构造、重复 type 的插件在编译期报错
+     */
+    @Test
+    public void test_invalidPluginsFailCompilation(@TempDir Path dir) throws Exception {
+        Path src = Files.createDirectories(dir.resolve("src/plugin/bad"));
+        Files.write(src.resolve("NotAnInput.java"), (
+                "package plugin.bad;\n" +
+                "@anno.Input(type = \"notAnInput\")\n" +
+                "public class NotAnInput { }\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("NoDefaultCtor.java"), (
+                "package plugin.bad;\n" +
+                "@anno.Output(type = \"noCtor\")\n" +
+                "public class NoDefaultCtor extends plugin.output.Console {\n" +
+                "    public NoDefaultCtor(int x) { }\n" +
+                "}\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("DupCsv.java"), (
+                "package plugin.bad;\n" +
+                "@anno.Input(type = \"csv\")\n" +
+                "public class DupCsv extends plugin.input.CsvInput { }\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(src.resolve("OtherCsv.java"), (
+                "package plugin.bad;\n" +
+                "@anno.Input(type = \"csv\")\n" +
+                "public class OtherCsv extends plugin.input.CsvInput { }\n").getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Path out = Files.createDirectories(dir.resolve("out"));
+        int code = compiler.run(null, null, err,
+                "-proc:only",
+                "-processor", PluginIndexProcessor.class.getName(),
+                "-cp", System.getProperty("java.class.path"),
+                "-d", out.toString(),
+                src.resolve("NotAnInput.java").toString(),
+                src.resolve("NoDefaultCtor.java").toString(),
+                src.resolve("DupCsv.java").toString(),
+                src.resolve("OtherCsv.java").toString());
+        String msg = new String(err.toByteArray(), StandardCharsets.UTF_8);
+
+        assertNotEquals(0, code);
+        assertTrue(msg.contains("plugin.bad.NotAnInput"), msg);
+        assertTrue(msg.contains("public no-arg constructor"), msg);
+        assertTrue(msg.contains("Duplicate input plugin type 'csv'"), msg);
+    }
+
+    /**
+     * 只重编部分源文件时与已有索引合并：未重编且仍存在的条目保留，已删除的类与重编后改了 type 的旧条目去掉
+     */
+    @Test
+    public void test_incrementalCompileMergesIndex(@TempDir Path dir) throws Exception {
+        Path src = Files.createDirectories(dir.resolve("src/plugin/inc"));
+        Files.write(src.resolve("Renamed.java"), (
+                "package plugin.inc;\n" +
+                "@anno.Output(type = \"newName\")\n" +
+                "public class Renamed extends plugin.output.Console { }\n").getBytes(StandardCharsets.UTF_8));
+        Path out = Files.createDirectories(dir.resolve("out"));
+        Path index = out.resolve(PluginIndexProcessor.INDEX);
+        Files.createDirectories(index.getParent());
+        Files.write(index, (
+                "output.console=plugin.output.Console\n" +
+                "output.oldName=plugin.inc.Renamed\n" +
+                "input.gone=plugin.inc.Gone\n").getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int code = ToolProvider.getSystemJavaCompiler().run(null, null, err,
+                "-proc:only",
+                "-processor", PluginIndexProcessor.class.getName(),
+                "-cp", System.getProperty("java.class.path"),
+                "-d", out.toString(),
+                src.resolve("Renamed.java").toString());
+        assertEquals(0, code, new String(err.toByteArray(), StandardCharsets.UTF_8));
+
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(index)) {
+            props.load(in);
+        }
+        assertEquals("plugin.output.Console", props.getProperty("output.console"));
+        assertEquals("plugin.inc.Renamed", props.getProperty("output.newName"));
+        assertNull(props.getProperty("output.oldName"));
+        assertNull(props.getProperty("input.gone"));
+    }
+}
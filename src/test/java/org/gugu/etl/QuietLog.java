@@ -0,0 +1,26 @@
+package org.gugu.etl;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import tool.Log;
+
+/**
+ * 测试公用扩展：每个测试前关闭日志（Log.LOG_LEVEL = 0），结束后恢复原级别。
+ * 测试中可以自行调整级别，不需要再各自保存与恢复。用法：@ExtendWith(QuietLog.class)
+ */
+public class QuietLog implements BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace NS = ExtensionContext.Namespace.create(QuietLog.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        context.getStore(NS).put("level", Log.LOG_LEVEL);
+        Log.LOG_LEVEL = 0;
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        Integer saved = context.getStore(NS).remove("level", Integer.class);
+        if (saved != null) Log.LOG_LEVEL = saved;
+    }
+}
@@ -0,0 +1,182 @@
+package org.gugu.etl.Repartition;
+
+import core.CancellationToken;
+import core.Channel;
+import core.Scheduler;
+import core.StepProgress;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.process.Repartition;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class RepartitionTest {
+    private static Scheduler run(Path csv, Path dir, String tag) throws InterruptedException {
+        List<Step> steps = new ArrayList<>();
+        steps.add(new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString()));
+        steps.add(new Step()
+                .withStepId(2)
+                .withDomain("process")
+                .withSubType("repartition")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("fields", "user")
+                .withConfig("batchSize", 32));
+        for (int id = 3; id <= 5; id++) {
+            steps.add(new Step()
+                    .withStepId(id)
+                    .withDomain("output")
+                    .withSubType("sqlfile")
+                    .withParentStepId(Collections.singletonList("2"))
+                    .withConfig("filename", dir.resolve(tag + "-" + id + ".sql").toString())
+                    .withConfig("table_name", "t"));
+        }
+        Scheduler scheduler = new Scheduler(new StepList(steps));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        return scheduler;
+    }
+
+    private static Set<String> users(Path sql) throws Exception {
+        Set<String> users = new HashSet<>();
+        Matcher m = Pattern.compile("VALUES \\('\\d+', '([^']*)'").matcher(new String(Files.readAllBytes(sql), StandardCharsets.UTF_8));
+        while (m.find()) users.add(m.group(1));
+        return users;
+    }
+
+    /**
+     * 同一键只落在一个分区，所有行都被输出，两次运行分区结果相同
+     */
+    @Test
+    public void test_sameKeySamePartitionAcrossRuns(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,user\n");
+            for (int i = 0; i < 20_000; i++) w.write(i + ",u" + (i % 97) + "\n");
+        }
+        Scheduler first = run(csv, dir, "a");
+        long total = 0;
+        for (StepProgress p : first.getProgress()) {
+            if (p.getStepId() >= 3) {
+                assertTrue(p.getRowsIn() > 0, "empty partition " + p.getStepId());
+                total += p.getRowsIn();
+            }
+        }
+        assertEquals(20_000, total);
+
+        Set<String> seen = new HashSet<>();
+        for (int id = 3; id <= 5; id++) {
+            Set<String> users = users(dir.resolve("a-" + id + ".sql"));
+            for (String u : users) assertTrue(seen.add(u), "user " + u + " in two partitions");
+        }
+        assertEquals(97, seen.size());
+
+        run(csv, dir, "b");
+        for (int id = 3; id <= 5; id++) {
+            assertEquals(users(dir.resolve("a-" + id + ".sql")), users(dir.resolve("b-" + id + ".sql")));
+        }
+    }
+
+    @Test
+    public void test_channelBatchPublish() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Channel polled = new Channel(pool, "1", 2);
+            List<Row> rows = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Row r = new Row();
+                r.add(i);
+                rows.add(r);
+            }
+            polled.publishAll(rows);
+            polled.publish(rows.get(0));
+            assertEquals(2, polled.size()); // 一批只占一个位置
+            assertEquals(6, polled.getPublished());
+            for (int i = 0; i < 5; i++) assertEquals(i, ((Row) polled.poll(100)).get(0));
+            assertFalse(polled.isEmpty());
+            assertSame(rows.get(0), polled.poll(100));
+            assertTrue(polled.isEmpty());
+            assertEquals(6, polled.getConsumed());
+
+            Channel received = new Channel(pool, "2", 2);
+            List<Object> got = Collections.synchronizedList(new ArrayList<>());
+            received.onReceive(got::add, null);
+            received.publishAll(rows);
+            received.publishAll(rows.subList(0, 2));
+            received.close();
+            received.completion().get(10, TimeUnit.SECONDS);
+            assertEquals(7, got.size());
+            assertEquals(7, received.getConsumed());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 上游整批写入时按 batchSize 攒批写出，不因消费跟得上而退化成单行批次
+     */
+    @Test
+    public void test_batchesBehindBatchedProducer() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel input = new Channel(pool, "1", 1000);
+            input.setHeader(new RowSetTable(Arrays.asList("id", "user")));
+            List<Channel> outputs = Arrays.asList(new Channel(pool, "2", 10_000), new Channel(pool, "3", 10_000));
+            Repartition step = new Repartition();
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("fields", "user");
+            cfg.put("batchSize", 64);
+            cfg.put("lingerMs", 1000);
+            step.init(cfg);
+            Future<?> running = pool.submit(() -> {
+                step.process(input, outputs);
+                return null;
+            });
+            for (int b = 0; b < 10; b++) {
+                List<Row> rows = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    Row r = new Row();
+                    r.add(b * 100 + i);
+                    r.add("u" + i);
+                    rows.add(r);
+                }
+                input.publishAll(rows);
+                Thread.sleep(5);
+            }
+            input.close();
+            running.get(10, TimeUnit.SECONDS);
+
+            long rows = 0;
+            for (Channel out : outputs) {
+                rows += out.getPublished();
+                assertTrue(out.size() <= out.getPublished() / 64 + 1,
+                        out.getPublished() + " rows in " + out.size() + " batches");
+            }
+            assertEquals(1000, rows);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
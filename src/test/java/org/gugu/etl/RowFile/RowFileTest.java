@@ -0,0 +1,212 @@
+package org.gugu.etl.RowFile;
+
+import core.CancellationToken;
+import core.Channel;
+import core.Scheduler;
+import core.flowdata.Row;
+import core.flowdata.RowCodec;
+import core.flowdata.RowFile;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.output.RowFileOutput;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class RowFileTest {
+    private static Row row(Object... values) {
+        Row row = new Row();
+        row.addAll(Arrays.asList(values));
+        return row;
+    }
+
+    private static List<Row> sample(int n) {
+        String[] cities = {"Shanghai", "Beijing", "Shenzhen"};
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Row r = row((long) i * 3 - 500, i % 5 == 0 ? null : i, i / 10.0, i % 3 == 0,
+                    cities[i / 100 % 3], "user-" + i, i % 2 == 0 ? "mixed" : (Object) (long) i);
+            if (i % 97 == 0) r.remove(r.size() - 1);   // 列数不齐的行
+            rows.add(r);
+        }
+        return rows;
+    }
+
+    /**
+     * 各类型列与 null、不齐的行原样读回；其他类型按字符串保存；重复字符串走字典，比 RowCodec 小
+     */
+    @Test
+    public void test_roundTripAndStats(@TempDir Path dir) throws Exception {
+        List<Row> rows = sample(10_000);
+        rows.add(row(new BigDecimal("1.50"), null, null));
+        Path file = dir.resolve("data.rows");
+        try (RowFile.Writer w = new RowFile.Writer(Files.newOutputStream(file),
+                Arrays.asList("id", "n", "score", "flag", "city", "name", "x"), 4096)) {
+            for (Row r : rows) w.write(r);
+        }
+
+        List<Row> read = new ArrayList<>();
+        List<RowFile.Block> blocks = new ArrayList<>();
+        try (RowFile.Reader r = new RowFile.Reader(Files.newInputStream(file))) {
+            assertEquals(Arrays.asList("id", "n", "score", "flag", "city", "name", "x"), r.getFields());
+            for (RowFile.Block b; (b = r.nextBlock()) != null; ) {
+                blocks.add(b);
+                read.addAll(b.rows());
+            }
+        }
+        rows.set(rows.size() - 1, row("1.50", null, null));
+        assertEquals(rows, read);
+
+        assertEquals(3, blocks.size());
+        RowFile.Block first = blocks.get(0);
+        assertEquals(4096, first.size());
+        assertEquals(-500L, first.min(0));
+        assertEquals(4095L * 3 - 500, first.max(0));
+        assertEquals(820, first.nullCount(1));
+        assertEquals(1, first.min(1));
+        assertEquals(4095.0 / 10, first.max(2));
+        assertEquals("Beijing", first.min(4));
+        assertEquals("user-999", first.max(5));
+        assertNull(first.min(3));
+        assertNull(first.min(6));
+        assertEquals(10_001 - 8192, blocks.get(2).size());
+
+        ByteArrayOutputStream codec = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(codec)) {
+            for (Row r : rows) RowCodec.write(out, r);
+        }
+        assertTrue(Files.size(file) < codec.size() * 0.6, Files.size(file) + " vs " + codec.size());
+    }
+
+    /**
+     * 行组内容损坏时校验和不符；缺少结束标记视为文件不完整
+     */
+    @Test
+    public void test_detectsCorruptionAndTruncation(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("data.rows");
+        try (RowFile.Writer w = new RowFile.Writer(Files.newOutputStream(file), Collections.singletonList("a"), 100)) {
+            for (Row r : sample(300)) w.write(row(r.get(5)));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] flipped = bytes.clone();
+        flipped[bytes.length / 2] ^= 0x10;
+        IOException e = assertThrows(IOException.class, () -> readAll(flipped));
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 12);
+        e = assertThrows(IOException.class, () -> readAll(truncated));
+        assertTrue(e.getMessage().contains("Truncated"), e.getMessage());
+
+        assertEquals(300, readAll(bytes));
+    }
+
+    private static int readAll(byte[] bytes) throws IOException {
+        int n = 0;
+        try (RowFile.Reader r = new RowFile.Reader(new ByteArrayInputStream(bytes))) {
+            while (r.next() != null) n++;
+        }
+        return n;
+    }
+
+    /**
+     * csv -> rowfile 输出，再由 rowfile 输入读回写成 csv；配置范围时只输出命中的行
+     */
+    @Test
+    public void test_pipelineRoundTripWithRange(@TempDir Path dir) throws Exception {
+        Path in = dir.resolve("in.csv");
+        StringBuilder expected = new StringBuilder("id,name\n");
+        try (BufferedWriter w = Files.newBufferedWriter(in)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 5000; i++) {
+                w.write(i + ",n" + String.format("%05d", i) + "\n");
+                if (i >= 1200 && i <= 1300) expected.append(i).append(",n").append(String.format("%05d", i)).append('\n');
+            }
+        }
+        Path rows = dir.resolve("stage.rows");
+        run(new Step().withStepId(1).withDomain("input").withSubType("csv")
+                        .withConfig("filePath", in.toString()),
+                new Step().withStepId(2).withDomain("output").withSubType("rowfile")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filename", rows.toString())
+                        .withConfig("blockRows", 500));
+
+        Path all = dir.resolve("all.csv");
+        run(new Step().withStepId(1).withDomain("input").withSubType("rowfile")
+                        .withConfig("filePath", rows.toString()),
+                new Step().withStepId(2).withDomain("output").withSubType("csv")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filename", all.toString()));
+        assertEquals(new String(Files.readAllBytes(in), StandardCharsets.UTF_8),
+                new String(Files.readAllBytes(all), StandardCharsets.UTF_8));
+
+        Path some = dir.resolve("some.csv");
+        run(new Step().withStepId(1).withDomain("input").withSubType("rowfile")
+                        .withConfig("filePath", rows.toString())
+                        .withConfig("rangeField", "name")
+                        .withConfig("rangeMin", "n01200")
+                        .withConfig("rangeMax", "n01300"),
+                new Step().withStepId(2).withDomain("output").withSubType("csv")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filename", some.toString()));
+        assertEquals(expected.toString(), new String(Files.readAllBytes(some), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 流程取消时不写结束标记、不替换目标文件：已有文件保持原样，临时文件被删除
+     */
+    @Test
+    public void test_cancelLeavesNoPartialFile(@TempDir Path dir) throws Exception {
+        Path target = dir.resolve("stage.rows");
+        Files.write(target, "old".getBytes(StandardCharsets.UTF_8));
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 1000);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            RowFileOutput out = new RowFileOutput();
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("filename", target.toString());
+            cfg.put("blockRows", 10);
+            cfg.put("overwrite", true);
+            out.init(cfg);
+            Future<?> consumer = pool.submit(() -> {
+                out.consume(ch);
+                return null;
+            });
+            for (int i = 0; i < 100; i++) ch.publish(row((long) i, "n" + i));
+            Path tmp = dir.resolve("stage.rows.tmp");
+            for (int i = 0; i < 200 && !Files.exists(tmp); i++) Thread.sleep(10);
+            assertTrue(Files.exists(tmp));
+            ch.getToken().cancel(new CancellationException("test"));
+            consumer.get(10, TimeUnit.SECONDS);
+
+            assertEquals("old", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+            assertFalse(Files.exists(tmp));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void run(Step... steps) throws InterruptedException {
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(steps)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+    }
+}
@@ -0,0 +1,85 @@
+package org.gugu.etl.SQLFileOutput;
+
+import core.Channel;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.output.SQLFileOutput;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 写入吞吐基准，默认不运行：
+ *   mvn test -Dtest=SQLFileOutputBenchmarkTest -Detl.bench=true [-Detl.bench.rows=10000000]
+ * 直接向通道写行，不含 CSV 解析开销，对比单行 INSERT、多行 INSERT 与多分片并行写
+ */
+@EnabledIfSystemProperty(named = "etl.bench", matches = "true")
+@ExtendWith(QuietLog.class)
+public class SQLFileOutputBenchmarkTest {
+    private static final long ROWS = Long.getLong("etl.bench.rows", 10_000_000L);
+
+    private static long write(Path file, int batchSize, int shards) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("filename", file.toString());
+            cfg.put("table_name", "bench");
+            cfg.put("batch_size", batchSize);
+            cfg.put("shards", shards);
+            SQLFileOutput out = new SQLFileOutput();
+            out.init(cfg);
+
+            Channel ch = new Channel(pool, "2", 10_000);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name", "city", "amount")));
+            long start = System.nanoTime();
+            Future<?> consumer = pool.submit(() -> {
+                out.consume(ch);
+                return null;
+            });
+            for (long i = 0; i < ROWS; i++) {
+                Row row = new Row();
+                row.add(String.valueOf(i));
+                row.add("user" + (i % 1000));
+                row.add(i % 7 == 0 ? "O'Fallon" : "Shanghai");
+                row.add(String.valueOf(i % 10_000 / 100.0));
+                ch.publish(row);
+            }
+            ch.close();
+            consumer.get();
+            return System.nanoTime() - start;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void benchSingleVsBatchedInsert(@TempDir Path dir) throws Exception {
+        int[][] runs = {{1, 1}, {100, 1}, {1000, 1}, {1000, 4}};
+        for (int[] run : runs) {
+            Path runDir = Files.createDirectory(dir.resolve("bench-" + run[0] + "-" + run[1]));
+            long nanos = write(runDir.resolve("bench.sql"), run[0], run[1]);
+            long size = 0;
+            try (Stream<Path> files = Files.list(runDir)) {
+                for (Path f : (Iterable<Path>) files::iterator) {
+                    size += Files.size(f);
+                    Files.delete(f);
+                }
+            }
+            System.out.printf("sqlfile batch_size=%-5d shards=%d rows=%d time=%dms rows/s=%d size=%dMB%n",
+                    run[0], run[1], ROWS, nanos / 1_000_000, (long) (ROWS / (nanos / 1e9)), size >> 20);
+            assertTrue(size > 0);
+        }
+    }
+}
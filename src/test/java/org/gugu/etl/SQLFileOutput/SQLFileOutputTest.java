@@ -1,15 +1,34 @@
 package org.gugu.etl.SQLFileOutput;
 
+import core.CancellationToken;
+import core.Channel;
 import core.Scheduler;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import plugin.output.SQLFileOutput;
 import runtask.Step;
 import runtask.StepList;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Arrays;
-import java.util.Collections;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -131,4 +150,262 @@ public class SQLFileOutputTest {
         assertTrue(outputFile.exists());
         assertTrue(outputFile.length() > 0);
     }
-}
\ No newline at end of file
+
+    private static String writeSql(Path dir, Path csv, String dbtype, int batchSize) throws Exception {
+        return writeSql(dir, csv, dbtype, batchSize, "insert");
+    }
+
+    private static String writeSql(Path dir, Path csv, String dbtype, int batchSize, String format) throws Exception {
+        Path out = dir.resolve(dbtype + "-" + batchSize + "-" + format + ".sql");
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(2)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("dbtype", dbtype)
+                .withConfig("filename", out.toString())
+                .withConfig("table_name", "t")
+                .withConfig("batch_size", batchSize)
+                .withConfig("format", format);
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        return new String(Files.readAllBytes(out), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 多行 INSERT：每条语句 batch_size 行，最后一条为余数；转义规则与单行模式一致
+     */
+    @Test
+    public void testBatchedInsert(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            w.write("0,\"it's \\ \"\"q\"\"\"\n");
+            for (int i = 1; i < 25; i++) w.write(i + ",n" + i + "\n");
+        }
+        String batched = writeSql(dir, csv, "mysql", 10);
+        String[] lines = batched.trim().split("\n");
+        assertEquals(3, lines.length, batched);
+        assertTrue(lines[0].startsWith("INSERT INTO `t` (`id`, `name`) VALUES ('0', 'it\\'s \\\\ \\\"q\\\"'),('1', 'n1'),"), lines[0]);
+        assertTrue(lines[0].endsWith("('9', 'n9');"), lines[0]);
+        assertEquals("INSERT INTO `t` (`id`, `name`) VALUES ('20', 'n20'),('21', 'n21'),('22', 'n22'),('23', 'n23'),('24', 'n24');", lines[2]);
+
+        String single = writeSql(dir, csv, "mysql", 1);
+        assertEquals(25, single.trim().split("\n").length);
+        assertTrue(single.contains("VALUES ('0', 'it\\'s \\\\ \\\"q\\\"');"), single);
+
+        String pg = writeSql(dir, csv, "postgresql", 100);
+        assertEquals(1, pg.trim().split("\n").length);
+        assertTrue(pg.startsWith("INSERT INTO \"t\" (\"id\", \"name\") VALUES ('0', 'it''s \\\\ \"q\"'),"), pg);
+    }
+
+    /**
+     * 批量导入格式：PostgreSQL 的 COPY 块写在脚本内，MySQL 写数据文件与 LOAD DATA 语句
+     */
+    @Test
+    public void testBulkFormats(@TempDir Path dir) throws Exception {
+        Path csv = Files.write(dir.resolve("in.csv"),
+                "id,name\n1,\"tab\there \\ it's\"\n2,plain\n".getBytes(StandardCharsets.UTF_8));
+
+        String pg = writeSql(dir, csv, "postgresql", 1, "bulk");
+        assertEquals("COPY \"t\" (\"id\", \"name\") FROM STDIN;\n" +
+                "1\ttab\\there \\\\ it's\n" +
+                "2\tplain\n" +
+                "\\.\n", pg.replace("\r\n", "\n"));
+
+        String mysql = writeSql(dir, csv, "mysql", 1, "bulk");
+        Path data = dir.resolve("mysql-1-bulk.tsv");
+        assertTrue(mysql.startsWith("LOAD DATA LOCAL INFILE '" + data.toAbsolutePath().toString().replace('\\', '/')
+                + "' INTO TABLE `t` CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                + " LINES TERMINATED BY '\\n' (`id`, `name`);"), mysql);
+        assertEquals("1\ttab\\there \\\\ it's\n2\tplain\n",
+                new String(Files.readAllBytes(data), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 按键分片、超过大小切换文件并 gzip 压缩：每个文件可单独执行，同一键只出现在一个分片中
+     */
+    @Test
+    public void testShardedRolloverGzip(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,user\n");
+            for (int i = 0; i < 3000; i++) w.write(i + ",u" + (i % 50) + "\n");
+        }
+        Path outDir = dir.resolve("out");
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(2)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filename", outDir.resolve("part.sql").toString())
+                .withConfig("table_name", "t")
+                .withConfig("create_table", true)
+                .withConfig("batch_size", 10)
+                .withConfig("shards", 3)
+                .withConfig("shard_by", "user")
+                .withConfig("max_file_size", "8KB")
+                .withConfig("compress", "gzip");
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(outDir)) {
+            files = list.sorted().collect(Collectors.toList());
+        }
+        assertTrue(files.size() > 3, "expected rollover, got " + files);
+        Pattern name = Pattern.compile("part-(\\d)-\\d{3}\\.sql\\.gz");
+        Pattern row = Pattern.compile("\\('(\\d+)', '(u\\d+)'\\)");
+        Map<String, String> shardOfUser = new HashMap<>();
+        Set<String> ids = new HashSet<>();
+        for (Path f : files) {
+            Matcher n = name.matcher(f.getFileName().toString());
+            assertTrue(n.matches(), f.toString());
+            String sql;
+            try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(f))) {
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                byte[] b = new byte[8192];
+                for (int r; (r = in.read(b)) > 0; ) buf.write(b, 0, r);
+                sql = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+            }
+            assertTrue(sql.startsWith("CREATE TABLE IF NOT EXISTS `t`"), sql);
+            assertTrue(sql.trim().endsWith(");"), sql);
+            Matcher m = row.matcher(sql);
+            while (m.find()) {
+                assertTrue(ids.add(m.group(1)), "duplicate row " + m.group(1));
+                String prev = shardOfUser.put(m.group(2), n.group(1));
+                assertTrue(prev == null || prev.equals(n.group(1)), "user " + m.group(2) + " in two shards");
+            }
+        }
+        assertEquals(3000, ids.size());
+        assertEquals(50, shardOfUser.size());
+        assertEquals(3, new HashSet<>(shardOfUser.values()).size());
+    }
+
+    /**
+     * max_file_size 按 UTF-8 字节计：非 ASCII 数据的文件不会超出上限一条语句以上
+     */
+    @Test
+    public void testRolloverCountsBytes(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 1000; i++) w.write(i + ",用户名称用户名称\n");
+        }
+        Path outDir = dir.resolve("out");
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(2)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("filename", outDir.resolve("part.sql").toString())
+                .withConfig("table_name", "t")
+                .withConfig("max_file_size", "4KB");
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(outDir)) {
+            files = list.sorted().collect(Collectors.toList());
+        }
+        assertTrue(files.size() > 1, "expected rollover, got " + files);
+        for (Path f : files) {
+            assertTrue(Files.size(f) <= 4096 + 128, f + " has " + Files.size(f) + " bytes");
+        }
+    }
+
+    private static Row row(Object... values) {
+        Row row = new Row();
+        row.addAll(Arrays.asList(values));
+        return row;
+    }
+
+    private static Future<?> consume(ExecutorService pool, Channel ch, Map<String, Object> cfg) {
+        SQLFileOutput out = new SQLFileOutput();
+        out.init(cfg);
+        return pool.submit(() -> {
+            out.consume(ch);
+            return null;
+        });
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 流程取消时不写出结束语句：各分片的临时文件被删除，已有的目标文件保持原样
+     */
+    @Test
+    public void testCancelLeavesNoPartialFiles(@TempDir Path dir) throws Exception {
+        Path old = Files.write(dir.resolve("part-0-000.sql"), "old".getBytes(StandardCharsets.UTF_8));
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 1000);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("filename", dir.resolve("part.sql").toString());
+            cfg.put("table_name", "t");
+            cfg.put("shards", 2);
+            cfg.put("overwrite", true);
+            Future<?> consumer = consume(pool, ch, cfg);
+            for (int i = 0; i < 2000; i++) ch.publish(row(i, "n" + i));
+            Path tmp = dir.resolve("part-1-000.sql.tmp");
+            for (int i = 0; i < 200 && !Files.exists(tmp); i++) Thread.sleep(10);
+            assertTrue(Files.exists(tmp));
+            ch.getToken().cancel(new CancellationException("test"));
+            consumer.get(10, TimeUnit.SECONDS);
+
+            assertEquals(Collections.singletonList(old), listFiles(dir));
+            assertEquals("old", new String(Files.readAllBytes(old), StandardCharsets.UTF_8));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 表头在第一条数据前才设置（上游处理步骤收到首行后才确定表头）：不因等待超过 1 秒而失败
+     */
+    @Test
+    public void testWaitsForLateHeader(@TempDir Path dir) throws Exception {
+        Path target = dir.resolve("late.sql");
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 1000);
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("filename", target.toString());
+            cfg.put("table_name", "t");
+            Future<?> consumer = consume(pool, ch, cfg);
+            Thread.sleep(1500);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            ch.publish(row(1, "a"));
+            ch.close();
+            consumer.get(10, TimeUnit.SECONDS);
+
+            assertEquals("INSERT INTO `t` (`id`, `name`) VALUES ('1', 'a');",
+                    new String(Files.readAllBytes(target), StandardCharsets.UTF_8).trim());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
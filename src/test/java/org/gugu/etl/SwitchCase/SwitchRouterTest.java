@@ -0,0 +1,168 @@
+package org.gugu.etl.SwitchCase;
+
+import core.Channel;
+import core.Scheduler;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.process.SwitchCase;
+import runtask.Step;
+import runtask.StepList;
+import tool.Log;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.gugu.etl.Flows.rowsIn;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class SwitchRouterTest {
+    private static StepList switchFlow(Path csv, String field, String type, String mask, Map<String, String> caseMap) {
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step sw = new Step()
+                .withStepId(2)
+                .withDomain("process")
+                .withSubType("switch")
+                .withParentStepId(Collections.singletonList("1"))
+                .withConfig("switchField", field)
+                .withConfig("caseValueType", type)
+                .withConfig("caseValueMask", mask)
+                .withConfig("caseMap", new HashMap<>(caseMap))
+                .withConfig("defaultTarget", "5");
+        List<Step> steps = new ArrayList<>(Arrays.asList(input, sw));
+        for (int id = 3; id <= 5; id++) {
+            steps.add(new Step()
+                    .withStepId(id)
+                    .withDomain("output")
+                    .withSubType("console")
+                    .withParentStepId(Collections.singletonList("2")));
+        }
+        return new StepList(steps);
+    }
+
+    /**
+     * 整数分支：按值路由，未命中的行走默认分支
+     */
+    @Test
+    public void test_integerRouting(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("codes.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,code\n");
+            for (int i = 0; i < 20_000; i++) w.write(i + "," + (i % 4) + "\n");
+        }
+        Map<String, String> caseMap = new HashMap<>();
+        caseMap.put("0", "3");
+        caseMap.put("1", "4");
+        Log.LOG_LEVEL = 0;
+        Scheduler scheduler = new Scheduler(switchFlow(csv, "code", "Integer", "", caseMap));
+        scheduler.execute();
+
+        assertNull(scheduler.getFailure());
+        assertEquals(5_000, rowsIn(scheduler, 3));
+        assertEquals(5_000, rowsIn(scheduler, 4));
+        assertEquals(10_000, rowsIn(scheduler, 5));
+    }
+
+    /**
+     * 日期分支：格式只编译一次，无法解析的值走默认分支
+     */
+    @Test
+    public void test_dateRouting(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("dates.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,day\n");
+            for (int i = 0; i < 300; i++) {
+                String day = i % 3 == 0 ? "2024-01-01" : i % 3 == 1 ? "2024-01-02" : "not-a-date";
+                w.write(i + "," + day + "\n");
+            }
+        }
+        Map<String, String> caseMap = new HashMap<>();
+        caseMap.put("2024-01-01", "3");
+        caseMap.put("2024-01-02", "4");
+        Log.LOG_LEVEL = 0;
+        Scheduler scheduler = new Scheduler(switchFlow(csv, "day", "Date", "yyyy-MM-dd", caseMap));
+        scheduler.execute();
+
+        assertEquals(100, rowsIn(scheduler, 3));
+        assertEquals(100, rowsIn(scheduler, 4));
+        assertEquals(100, rowsIn(scheduler, 5));
+    }
+
+    /**
+     * 日期分支缺少 caseValueMask 是配置错误，在 init 时报出，而不是在首行取消整条流程
+     */
+    @Test
+    public void test_dateWithoutMaskFailsAtInit() {
+        HashMap<String, Object> cfg = new HashMap<>();
+        cfg.put("switchField", "day");
+        cfg.put("caseValueType", "Date");
+        cfg.put("caseMap", Collections.singletonMap("2024-01-01", "3"));
+        cfg.put("defaultTarget", "5");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new SwitchCase().init(cfg));
+        assertTrue(e.getMessage().contains("caseValueMask"));
+    }
+
+    /**
+     * 单行路由耗时：直接驱动 SwitchCase，排除输入解析与输出开销
+     */
+    @Test
+    public void test_routingCostPerRow() throws Exception {
+        Log.LOG_LEVEL = 0;
+        printCost("String", "", new String[]{"a", "b", "c", "d"});
+        printCost("Integer", "", new String[]{"0", "1", "2", "3"});
+        printCost("Date", "yyyy-MM-dd", new String[]{"2024-01-01", "2024-01-02", "2024-01-03", "2024-01-04"});
+    }
+
+    private static void printCost(String type, String mask, String[] values) throws Exception {
+        int n = 200_000;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Map<String, String> caseMap = new HashMap<>();
+            caseMap.put(values[0], "3");
+            caseMap.put(values[1], "4");
+            HashMap<String, Object> cfg = new HashMap<>();
+            cfg.put("switchField", "v");
+            cfg.put("caseValueType", type);
+            cfg.put("caseValueMask", mask);
+            cfg.put("caseMap", caseMap);
+            cfg.put("defaultTarget", "5");
+
+            Channel in = new Channel(pool, "2", n);
+            in.setHeader(new RowSetTable(Arrays.asList("id", "v")));
+            List<Channel> outs = Arrays.asList(new Channel(pool, "3", n), new Channel(pool, "4", n), new Channel(pool, "5", n));
+            for (int i = 0; i < n; i++) {
+                Row row = new Row();
+                row.add(i);
+                row.add(values[i % values.length]);
+                in.publish(row);
+            }
+            in.close();
+
+            SwitchCase sw = new SwitchCase();
+            sw.init(cfg);
+            long start = System.nanoTime();
+            sw.process(in, outs);
+            in.completion().get();
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(n / 4, outs.get(0).getPublished());
+            assertEquals(n / 4, outs.get(1).getPublished());
+            assertEquals(n / 2, outs.get(2).getPublished());
+            if (Boolean.getBoolean("etl.bench")) System.out.printf("SwitchCase %s routing: %.0f ns/row%n", type, (double) elapsed / n);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
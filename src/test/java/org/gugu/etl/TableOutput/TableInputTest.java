@@ -15,7 +15,7 @@ public class TableInputTest {
         input.withStepId(1)
                 .withDes("从接口读取数据")
                 .withDomain("input")
-                .withSubType("http")
+                .withSubType("table")
                 .withConfig("url", "http://localhost:3000/api/query/preview")
                 .withConfig("method", "POST")
                 .withConfig("body", "{\"connectionId\":3,\"sql\":\"SELECT id, name, age, city FROM users;\"}")
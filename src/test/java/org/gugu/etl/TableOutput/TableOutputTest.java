@@ -1,12 +1,297 @@
 package org.gugu.etl.TableOutput;
 
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.sun.net.httpserver.HttpServer;
+import core.CancellationToken;
+import core.Channel;
+import core.Scheduler;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.output.TableOutput;
 import runtask.Step;
 import runtask.StepList;
-import java.util.Arrays;
-import java.util.Collections;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
 public class TableOutputTest {
+    private HttpServer server;
+    private ExecutorService serverPool;
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile int failFirst = 0;
+    private volatile long delayMs = 20;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        // 模拟后端 /api/output/execute：前 failFirst 个请求返回 503，表名 missing 返回 404
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverPool = Executors.newCachedThreadPool();
+        server.setExecutor(serverPool);
+        server.createContext("/api/output/execute", ex -> {
+            int n = requests.incrementAndGet();
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            clientPorts.add(ex.getRemoteAddress().getPort());
+            try {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (InputStream is = ex.getRequestBody()) {
+                    byte[] buf = new byte[4096];
+                    for (int r; (r = is.read(buf)) > 0; ) bos.write(buf, 0, r);
+                }
+                JSONArray batch = JSONUtil.parseObj(new String(bos.toByteArray(), StandardCharsets.UTF_8)).getJSONArray("batch");
+                int code = 200;
+                JSONObject resp;
+                if (n <= failFirst) {
+                    code = 503;
+                    resp = new JSONObject().set("code", 503).set("message", "busy");
+                } else if (batch.getStr(0).contains("`missing`")) {
+                    code = 404;
+                    resp = new JSONObject().set("code", 404).set("message", "表不存在，请检查表名是否正确");
+                } else {
+                    Thread.sleep(delayMs);
+                    batchSizes.add(batch.size());
+                    for (Object s : batch) statements.add(s.toString());
+                    JSONObject summary = new JSONObject().set("total", batch.size()).set("success", batch.size());
+                    resp = new JSONObject().set("code", 200).set("data", new JSONObject().set("summary", summary));
+                }
+                byte[] out = resp.toString().getBytes(StandardCharsets.UTF_8);
+                ex.sendResponseHeaders(code, out.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    os.write(out);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        serverPool.shutdownNow();
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/output/execute";
+    }
+
+    private static Map<String, Object> config(String url, String table) {
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("url", url);
+        cfg.put("connectionId", "1");
+        cfg.put("tableName", table);
+        cfg.put("batchSize", 100);
+        cfg.put("maxInFlight", 3);
+        cfg.put("retryBackoffMs", 10);
+        return cfg;
+    }
+
+    /**
+     * 在当前线程运行 consume，另起线程写入 tables 个各 500 行的 RowSetTable 后关闭通道
+     */
+    private static void deliver(TableOutput out, int tables) throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 4);
+            Future<?> producer = pool.submit(() -> {
+                for (int t = 0; t < tables; t++) {
+                    RowSetTable table = new RowSetTable(Arrays.asList("id", "name"));
+                    for (int i = 0; i < 500; i++) {
+                        Row row = new Row();
+                        row.add(String.valueOf(t * 500 + i));
+                        row.add(i == 0 ? "O'Neil" : null);
+                        table.addRow(row);
+                    }
+                    ch.publish(table);
+                }
+                ch.close();
+            });
+            try {
+                out.consume(ch);
+            } finally {
+                producer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 攒批发送、在途请求数受限、5xx 重试后全部送达，连接被复用
+     */
+    @Test
+    public void test_batchedDeliveryWithRetries() throws Exception {
+        failFirst = 2;
+        TableOutput out = new TableOutput();
+        out.init(config(url(), "people"));
+        deliver(out, 4);
+
+        assertEquals(2000, statements.size());
+        assertEquals(2000, new HashSet<>(statements).size());
+        assertEquals(20, batchSizes.size());
+        for (int size : batchSizes) assertEquals(100, size);
+        assertEquals(22, requests.get());
+        assertTrue(maxActive.get() <= 3, "in flight " + maxActive.get());
+        assertTrue(clientPorts.size() < requests.get() / 2, "connections " + clientPorts.size());
+        assertTrue(statements.contains("INSERT INTO `people` (`id`, `name`) VALUES ('0', 'O\\'Neil')"), statements.get(0));
+        assertTrue(statements.contains("INSERT INTO `people` (`id`, `name`) VALUES ('1', NULL)"));
+    }
+
+    @Test
+    public void test_clientErrorFailsWithoutRetry() throws Exception {
+        TableOutput out = new TableOutput();
+        out.init(config(url(), "missing"));
+        Exception e = assertThrows(Exception.class, () -> deliver(out, 1));
+        assertTrue(String.valueOf(e.getMessage()).contains("HTTP 404"), e.toString());
+        assertTrue(requests.get() <= 5, "requests " + requests.get());
+    }
+
+    /**
+     * 请求发出后读取超时：后端可能已经执行，不重发，步骤失败
+     */
+    @Test
+    public void test_readTimeoutIsNotRetried() throws Exception {
+        delayMs = 1000;
+        TableOutput out = new TableOutput();
+        Map<String, Object> cfg = config(url(), "people");
+        cfg.put("batchSize", 500);
+        cfg.put("timeoutMs", 200);
+        out.init(cfg);
+        Exception e = assertThrows(Exception.class, () -> deliver(out, 1));
+        assertTrue(String.valueOf(e.getMessage()).contains("not retrying"), e.toString());
+        assertEquals(1, requests.get());
+    }
+
+    /**
+     * CSV 逐行输入直接接数据库输出：按通道 Header 生成语句，全部送达
+     */
+    @Test
+    public void test_streamsRowsFromPipeline(@TempDir Path dir) throws Exception {
+        Path csv = dir.resolve("in.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(csv)) {
+            w.write("id,name\n");
+            for (int i = 0; i < 1234; i++) w.write(i + ",n" + i + "\n");
+        }
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", csv.toString());
+        Step output = new Step()
+                .withStepId(2)
+                .withDomain("output")
+                .withSubType("table")
+                .withParentStepId(Collections.singletonList("1"));
+        for (Map.Entry<String, Object> e : config(url(), "people").entrySet()) output.withConfig(e.getKey(), e.getValue());
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+
+        assertEquals(1234, statements.size());
+        assertTrue(statements.contains("INSERT INTO `people` (`id`, `name`) VALUES ('1233', 'n1233')"));
+        int total = 0;
+        for (int size : batchSizes) {
+            assertTrue(size <= 100);
+            total += size;
+        }
+        assertEquals(1234, total);
+    }
+
+    /**
+     * 上游产出慢时，未攒满的批次在 maxBatchDelayMs 后发出，不必等到通道关闭
+     */
+    @Test
+    public void test_partialBatchSentAfterDelay() throws Exception {
+        Map<String, Object> cfg = config(url(), "people");
+        cfg.put("maxBatchDelayMs", 100);
+        TableOutput out = new TableOutput();
+        out.init(cfg);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 10);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            Future<?> consumer = pool.submit(() -> {
+                out.consume(ch);
+                return null;
+            });
+            for (int i = 0; i < 3; i++) {
+                Row row = new Row();
+                row.add(String.valueOf(i));
+                row.add("n" + i);
+                ch.publish(row);
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (statements.size() < 3 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+            assertEquals(3, statements.size());
+            assertFalse(consumer.isDone());
+
+            ch.close();
+            consumer.get(10, TimeUnit.SECONDS);
+            assertEquals(Collections.singletonList(3), batchSizes);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * dbtype=postgresql 时按 PostgreSQL 规则加引号与转义；值个数与字段数不符的行被跳过，不进入批次
+     */
+    @Test
+    public void test_postgresQuotingAndMismatchedRows() throws Exception {
+        Map<String, Object> cfg = config(url(), "people");
+        cfg.put("dbtype", "postgresql");
+        TableOutput out = new TableOutput();
+        out.init(cfg);
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel ch = new Channel(pool, "2", 10);
+            ch.setHeader(new RowSetTable(Arrays.asList("id", "name")));
+            Future<?> consumer = pool.submit(() -> {
+                out.consume(ch);
+                return null;
+            });
+            for (Object[] values : new Object[][]{{"1", "it's"}, {"2", "x", "extra"}, {"3"}, {"4", null}}) {
+                Row row = new Row();
+                row.addAll(Arrays.asList(values));
+                ch.publish(row);
+            }
+            ch.close();
+            consumer.get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(Arrays.asList(
+                "INSERT INTO \"people\" (\"id\", \"name\") VALUES ('1', 'it''s')",
+                "INSERT INTO \"people\" (\"id\", \"name\") VALUES ('4', NULL)"), statements);
+    }
+
     @Test
     public void testTableOutput() {
         Step input = new Step();
@@ -31,4 +316,4 @@ public class TableOutputTest {
         StepList stepList = new StepList(Arrays.asList(input, output));
 //        new Scheduler(stepList).execute();
     }
-}
\ No newline at end of file
+}
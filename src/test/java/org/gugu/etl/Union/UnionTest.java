@@ -0,0 +1,133 @@
+package org.gugu.etl.Union;
+
+import core.CancellationToken;
+import core.Scheduler;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import runtask.Step;
+import runtask.StepList;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.gugu.etl.Flows.csv;
+import static org.gugu.etl.Flows.ids;
+import static org.gugu.etl.Flows.rowsIn;
+import static org.gugu.etl.Flows.sqlOut;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class UnionTest {
+    private static Step union(int id, String... parents) {
+        return new Step()
+                .withStepId(id)
+                .withDomain("process")
+                .withSubType("union")
+                .withParentStepId(Arrays.asList(parents));
+    }
+
+    private static Scheduler run(Step... steps) throws InterruptedException {
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(steps)));
+        scheduler.execute();
+        return scheduler;
+    }
+
+    private static Path numbers(Path file, int from, int to, int step) throws Exception {
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            w.write("id,src\n");
+            for (int i = from; i < to; i += step) w.write(i + "," + file.getFileName() + "\n");
+        }
+        return file;
+    }
+
+    /**
+     * 多个父步骤共用一条输入通道时，先结束的父步骤不再提前关闭通道
+     */
+    @Test
+    public void test_sharedChannelWaitsForAllParents(@TempDir Path dir) throws Exception {
+        Path small = numbers(dir.resolve("small.csv"), 0, 10, 1);
+        Path big = numbers(dir.resolve("big.csv"), 0, 50_000, 1);
+        Scheduler scheduler = run(csv(1, small), csv(2, big), sqlOut(3, dir.resolve("out.sql"), "1", "2"));
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        assertEquals(50_010, rowsIn(scheduler, 3));
+    }
+
+    @Test
+    public void test_unionAlignsFieldsByName(@TempDir Path dir) throws Exception {
+        Path a = Files.write(dir.resolve("a.csv"), "id,name\n1,a\n2,b\n".getBytes(StandardCharsets.UTF_8));
+        Path b = Files.write(dir.resolve("b.csv"), "name,id\nc,3\n".getBytes(StandardCharsets.UTF_8));
+        Scheduler scheduler = run(csv(1, a), csv(2, b), union(3, "1", "2").withConfig("orderBy", "id"),
+                sqlOut(4, dir.resolve("out.sql"), "3"));
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        String sql = new String(Files.readAllBytes(dir.resolve("out.sql")), StandardCharsets.UTF_8);
+        assertTrue(sql.contains("(`id`, `name`) VALUES ('3', 'c')"), sql);
+
+        Path c = Files.write(dir.resolve("c.csv"), "id,other\n4,x\n".getBytes(StandardCharsets.UTF_8));
+        Scheduler bad = run(csv(1, a), csv(2, c), union(3, "1", "2"), sqlOut(4, dir.resolve("bad.sql"), "3"));
+        assertNotNull(bad.getFailure());
+        assertTrue(CancellationToken.describe(bad.getFailure()).contains("has fields"));
+    }
+
+    /**
+     * 有序模式按数值 k 路归并；无序模式行数一致
+     */
+    @Test
+    public void test_orderedMergeOfSortedParents(@TempDir Path dir) throws Exception {
+        Path a = numbers(dir.resolve("a.csv"), 0, 30_000, 3);
+        Path b = numbers(dir.resolve("b.csv"), 1, 30_000, 3);
+        Path c = numbers(dir.resolve("c.csv"), 2, 30_000, 3);
+        Scheduler ordered = run(csv(1, a), csv(2, b), csv(3, c), union(4, "1", "2", "3").withConfig("orderBy", "id"),
+                sqlOut(5, dir.resolve("ordered.sql"), "4"));
+        assertNull(ordered.getFailure(), () -> CancellationToken.describe(ordered.getFailure()));
+        List<Long> ids = ids(dir.resolve("ordered.sql"));
+        assertEquals(30_000, ids.size());
+        for (int i = 0; i < ids.size(); i++) assertEquals(i, ids.get(i).longValue());
+
+        Scheduler unordered = run(csv(1, a), csv(2, b), csv(3, c), union(4, "1", "2", "3"),
+                sqlOut(5, dir.resolve("unordered.sql"), "4"));
+        assertNull(unordered.getFailure());
+        assertEquals(30_000, rowsIn(unordered, 5));
+    }
+
+    /**
+     * 两个父步骤来自同一源头且通道很小：归并等待一侧时预读另一侧，不会死锁
+     */
+    @Test
+    public void test_orderedMergeSameSourceNoDeadlock(@TempDir Path dir) throws Exception {
+        Path data = dir.resolve("data.csv");
+        try (BufferedWriter w = Files.newBufferedWriter(data)) {
+            w.write("id,src\n");
+            for (int i = 0; i < 5_000; i++) w.write(i + "," + (i < 4_000 ? "a" : "b") + "\n");
+        }
+        long start = System.currentTimeMillis();
+        Scheduler scheduler = run(csv(1, data),
+                new Step().withStepId(2).withDomain("process").withSubType("expr")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filter", "src = 'a'").withConfig("channelCapacity", 4),
+                new Step().withStepId(3).withDomain("process").withSubType("expr")
+                        .withParentStepId(Collections.singletonList("1"))
+                        .withConfig("filter", "src = 'b'").withConfig("channelCapacity", 4),
+                union(4, "3", "2").withConfig("orderBy", "id").withConfig("channelCapacity", 4),
+                sqlOut(5, dir.resolve("out.sql"), "4"));
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        assertEquals(5_000, ids(dir.resolve("out.sql")).size());
+        assertTrue(System.currentTimeMillis() - start < 30_000);
+    }
+
+    @Test
+    public void test_unsortedParentFails(@TempDir Path dir) throws Exception {
+        Path a = Files.write(dir.resolve("a.csv"), "id\n1\n5\n3\n".getBytes(StandardCharsets.UTF_8));
+        Path b = Files.write(dir.resolve("b.csv"), "id\n2\n".getBytes(StandardCharsets.UTF_8));
+        Scheduler scheduler = run(csv(1, a), csv(2, b), union(3, "1", "2").withConfig("orderBy", "id"),
+                sqlOut(4, dir.resolve("out.sql"), "3"));
+        assertNotNull(scheduler.getFailure());
+        assertTrue(CancellationToken.describe(scheduler.getFailure()).contains("is not sorted"));
+    }
+}
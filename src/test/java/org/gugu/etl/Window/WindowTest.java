@@ -0,0 +1,143 @@
+package org.gugu.etl.Window;
+
+import core.CancellationToken;
+import core.Channel;
+import core.Scheduler;
+import core.flowdata.Row;
+import core.flowdata.RowSetTable;
+import org.gugu.etl.QuietLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import plugin.process.WindowAggregate;
+import runtask.Step;
+import runtask.StepList;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(QuietLog.class)
+public class WindowTest {
+    private static String runFlow(Path dir, String csv, Map<String, Object> cfg) throws Exception {
+        Path in = Files.write(dir.resolve("in.csv"), csv.getBytes(StandardCharsets.UTF_8));
+        Step input = new Step()
+                .withStepId(1)
+                .withDomain("input")
+                .withSubType("csv")
+                .withConfig("filePath", in.toString());
+        Step window = new Step()
+                .withStepId(2)
+                .withDomain("process")
+                .withSubType("window")
+                .withParentStepId(Collections.singletonList("1"));
+        for (Map.Entry<String, Object> e : cfg.entrySet()) window.withConfig(e.getKey(), e.getValue());
+        Step output = new Step()
+                .withStepId(3)
+                .withDomain("output")
+                .withSubType("sqlfile")
+                .withParentStepId(Collections.singletonList("2"))
+                .withConfig("filename", dir.resolve("out.sql").toString())
+                .withConfig("table_name", "t");
+        Scheduler scheduler = new Scheduler(new StepList(Arrays.asList(input, window, output)));
+        scheduler.execute();
+        assertNull(scheduler.getFailure(), () -> CancellationToken.describe(scheduler.getFailure()));
+        return new String(Files.readAllBytes(dir.resolve("out.sql")), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> aggregates() {
+        Map<String, Object> aggs = new LinkedHashMap<>();
+        aggs.put("n", "count");
+        aggs.put("total", "sum(amount)");
+        aggs.put("avg_amount", "avg(amount)");
+        aggs.put("top", "max(amount)");
+        return aggs;
+    }
+
+    @Test
+    public void test_tumblingPerKeyWithDateFormat(@TempDir Path dir) throws Exception {
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("timeField", "ts");
+        cfg.put("timeFormat", "yyyy-MM-dd HH:mm:ss");
+        cfg.put("window", "1m");
+        cfg.put("groupBy", "user");
+        cfg.put("aggregates", aggregates());
+        String sql = runFlow(dir, "ts,user,amount\n" +
+                "2024-01-01 10:00:05,a,1\n" +
+                "2024-01-01 10:00:30,b,2\n" +
+                "2024-01-01 10:00:59,a,3\n" +
+                "2024-01-01 10:01:00,a,4\n" +
+                "2024-01-01 10:03:10,a,x\n", cfg);
+        assertTrue(sql.contains("(`window_start`, `window_end`, `user`, `n`, `total`, `avg_amount`, `top`)"), sql);
+        assertTrue(sql.contains("'2024-01-01 10:00:00', '2024-01-01 10:01:00', 'a', '2', '4', '2.0', '3'"), sql);
+        assertTrue(sql.contains("'2024-01-01 10:00:00', '2024-01-01 10:01:00', 'b', '1', '2', '2.0', '2'"), sql);
+        assertTrue(sql.contains("'2024-01-01 10:01:00', '2024-01-01 10:02:00', 'a', '1', '4'"), sql);
+        // 非数值不参与 sum/avg/max，但计入 count
+        assertTrue(sql.contains("'2024-01-01 10:03:00', '2024-01-01 10:04:00', 'a', '1', NULL, NULL, NULL"), sql);
+        assertFalse(sql.contains("10:02:00', '2024-01-01 10:03:00'"), sql); // 空窗口不输出
+    }
+
+    @Test
+    public void test_slidingWindowAndLateRows(@TempDir Path dir) throws Exception {
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("timeField", "ts");
+        cfg.put("window", 20);
+        cfg.put("slide", 10);
+        cfg.put("maxDelay", 10);
+        cfg.put("aggregates", Collections.singletonMap("n", "count"));
+        // 12 乱序到达时水位线为 15，仍计入 [0,20)；3 到达时 [-10,10) 与 [0,20) 已输出，丢弃
+        String sql = runFlow(dir, "ts\n1\n8\n25\n12\n31\n3\n44\n", cfg);
+        assertTrue(sql.contains("VALUES ('-10', '10', '2')"), sql);
+        assertTrue(sql.contains("VALUES ('0', '20', '3')"), sql);
+        assertTrue(sql.contains("VALUES ('10', '30', '2')"), sql);
+        assertTrue(sql.contains("VALUES ('20', '40', '2')"), sql);
+        assertTrue(sql.contains("VALUES ('30', '50', '2')"), sql);
+        assertTrue(sql.contains("VALUES ('40', '60', '1')"), sql);
+    }
+
+    /**
+     * 上游不关闭，水位线推进后窗口结果即可到达下游
+     */
+    @Test
+    public void test_emitsBeforeUpstreamCloses() throws Exception {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            Channel in = new Channel(pool, "2", 100);
+            Channel out = new Channel(pool, "3", 100);
+            in.setHeader(new RowSetTable(Arrays.asList("ts", "k")));
+            Map<String, Object> cfg = new HashMap<>();
+            cfg.put("timeField", "ts");
+            cfg.put("window", "1s");
+            cfg.put("groupBy", Collections.singletonList("k"));
+            cfg.put("aggregates", Collections.singletonMap("n", "count"));
+            WindowAggregate window = new WindowAggregate();
+            window.init(cfg);
+            window.process(in, Collections.singletonList(out));
+
+            for (long t : new long[]{100, 200, 900, 1500}) {
+                Row r = new Row();
+                r.add(String.valueOf(t));
+                r.add("k1");
+                in.publish(r);
+            }
+            Row first = (Row) out.poll(5_000);
+            assertNotNull(first, "window [0,1000) should be emitted once an event at 1500 arrives");
+            assertEquals(Arrays.asList(0L, 1000L, "k1", 3L), first);
+            assertNull(out.poll(200));
+            assertFalse(out.isClosed());
+
+            in.close();
+            assertEquals(Arrays.asList(1000L, 2000L, "k1", 1L), out.poll(5_000));
+            in.completion().get(5, TimeUnit.SECONDS);
+            assertTrue(out.isClosed());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}